@@ -963,6 +963,44 @@ public class CoverageDefinition {
 		return numSimpleFeatVectsInCover == numSimpleFeatVectTypes;
 	}
 
+	/**
+	 * Get the number of sentences added to the cover so far
+	 * 
+	 * @return the number of sentences in the cover
+	 */
+	public int getNumSentencesInCover() {
+		return numSentencesInCover;
+	}
+
+	/**
+	 * Check if the usefulness of any given feature vectors can only decrease when sentences are added to the cover, i.e. if the
+	 * scores of all nodes are non-negative and are divided by a wantedWeightDecrease of at least 1 whenever a feature vector is
+	 * added. This is the case for all sensible settings; it allows the selection to re-evaluate only the sentences whose
+	 * earlier usefulness is still higher than the best current usefulness.
+	 *
+	 * @return true if the usefulness of feature vectors cannot increase with the cover
+	 */
+	public boolean usefulnessDecreasesWithCoverage() {
+		return usefulnessDecreasesWithCoverage(simpleCover);
+	}
+
+	private boolean usefulnessDecreasesWithCoverage(CoverNode node) {
+		if (node == null) {
+			return true;
+		}
+		if (!(node.usefulness >= 0) || !(node.wantedWeightDecrease >= 1)) {
+			return false;
+		}
+		if (node.children != null) {
+			for (CoverNode child : node.children) {
+				if (!usefulnessDecreasesWithCoverage(child)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Get the usefulness of the given feature vectors Usefulness of a feature vector is defined as the sum of the score for the
 	 * feature vectors on all levels of the tree. On each level, the score is the product of the two weights of the node. The
@@ -57,7 +57,7 @@ import org.mediawiki.importer.XmlDumpReader;
  * 
  * @author Marcela Charfuelan, Holmer Hemsen.
  */
-public class DBHandler {
+public class DBHandler implements SentenceStore {
 
 	private String locale = "en_US";
 	private Connection cn = null;
@@ -1533,6 +1533,10 @@ public class DBHandler {
 	}
 
 	public String getCleanText(int id) {
+		return getCleanText(id, true);
+	}
+
+	public String getCleanText(int id, boolean markAsProcessed) {
 		String dbQuery, text = null;
 		byte[] textBytes = null;
 
@@ -1546,11 +1550,16 @@ public class DBHandler {
 			e.printStackTrace();
 		}
 		// once retrieved the text record mark it as processed
-		updateTable("UPDATE " + cleanTextTableName + " SET processed=true WHERE id=" + id);
+		if (markAsProcessed)
+			setCleanTextProcessed(id);
 
 		return text;
 	}
 
+	public void setCleanTextProcessed(int id) {
+		updateTable("UPDATE " + cleanTextTableName + " SET processed=true WHERE id=" + id);
+	}
+
 	/***
 	 * Set a sentence record field as true/false in dbselection table.
 	 * 
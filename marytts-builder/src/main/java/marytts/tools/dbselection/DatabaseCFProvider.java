@@ -25,10 +25,10 @@ package marytts.tools.dbselection;
  */
 public class DatabaseCFProvider implements CoverageFeatureProvider {
 
-	private DBHandler dbHandler;
+	private SentenceStore dbHandler;
 	private int[] sentenceIDs;
 
-	public DatabaseCFProvider(DBHandler dbHandler, String condition) {
+	public DatabaseCFProvider(SentenceStore dbHandler, String condition) {
 		this.dbHandler = dbHandler;
 		this.sentenceIDs = dbHandler.getIdListOfType("dbselection", condition);
 	}
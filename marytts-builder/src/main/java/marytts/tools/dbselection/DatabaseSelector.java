@@ -95,8 +95,9 @@ public class DatabaseSelector {
 
 	private static String selectedSentencesTableName;
 	private static String tableDescription;
-	// mySql database
-	protected static DBHandler wikiToDB;
+	// mySql database, or local sentence store if dbDir is given
+	protected static SentenceStore wikiToDB;
+	private static String dbDir;
 	private static String mysqlHost;
 	private static String mysqlDB;
 	private static String mysqlUser;
@@ -171,7 +172,11 @@ public class DatabaseSelector {
 		logOut.println("Date: " + dateString);
 		logOut.println(logBuf.toString());
 
-		wikiToDB = new DBHandler(locale);
+		DBHandler mysqlHandler = null;
+		if (dbDir != null)
+			wikiToDB = new LocalSentenceStore(locale, new File(dbDir));
+		else
+			wikiToDB = mysqlHandler = new DBHandler(locale);
 
 		// Check if name of selectedSentencesTable has to be changed
 		if (selectedSentencesTableName != null)
@@ -180,7 +185,7 @@ public class DatabaseSelector {
 			System.out.println("Current selected sentences table name = " + selectedSentencesTableName);
 
 		// If connection succeed
-		if (wikiToDB.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd)) {
+		if (mysqlHandler == null || mysqlHandler.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd)) {
 
 			/* Read in the feature definition */
 			System.out.println("\nLoading feature definition...");
@@ -366,6 +371,7 @@ public class DatabaseSelector {
 		holdVectorsInMemory = true;
 		verbose = false;
 		logCovDevelopment = false;
+		dbDir = null;
 		mysqlHost = null;
 		mysqlDB = null;
 		mysqlUser = null;
@@ -381,7 +387,6 @@ public class DatabaseSelector {
 		logCovDevelopment = false;
 
 		int i = 0;
-		int numEssentialArgs = 0;
 
 		// loop over args
 		while (args.length > i) {
@@ -391,7 +396,6 @@ public class DatabaseSelector {
 					locale = args[i];
 					log.append("locale : " + args[i] + "\n");
 					System.out.println("  locale : " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No locale.");
 					printUsage();
@@ -400,13 +404,26 @@ public class DatabaseSelector {
 				i++;
 				continue;
 			}
+			if (args[i].equals("-dbDir")) {
+				if (args.length > i + 1) {
+					i++;
+					dbDir = args[i];
+					log.append("dbDir : " + args[i] + "\n");
+					System.out.println("  dbDir : " + args[i]);
+				} else {
+					System.out.println("No dbDir.");
+					printUsage();
+					return false;
+				}
+				i++;
+				continue;
+			}
 			if (args[i].equals("-mysqlHost")) {
 				if (args.length > i + 1) {
 					i++;
 					mysqlHost = args[i];
 					log.append("mysqlHost : " + args[i] + "\n");
 					System.out.println("  mysqlHost : " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No mysqlHost.");
 					printUsage();
@@ -421,7 +438,6 @@ public class DatabaseSelector {
 					mysqlDB = args[i];
 					log.append("mysqlDB : " + args[i] + "\n");
 					System.out.println("  mysqlDB : " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No mysqlDB.");
 					printUsage();
@@ -436,7 +452,6 @@ public class DatabaseSelector {
 					mysqlUser = args[i];
 					log.append("mysqlUser : " + args[i] + "\n");
 					System.out.println("  mysqlUser : " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No mysqlUser.");
 					printUsage();
@@ -451,7 +466,6 @@ public class DatabaseSelector {
 					mysqlPasswd = args[i];
 					log.append("mysqlPasswd : " + args[i] + "\n");
 					System.out.println("  mysqlPasswd : " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No mysqlPasswd.");
 					printUsage();
@@ -494,7 +508,6 @@ public class DatabaseSelector {
 					selectedSentencesTableName = args[i];
 					log.append("selectedSentencesTable name : " + args[i] + "\n");
 					System.out.println("  selectedSentencesTable name: " + args[i]);
-					numEssentialArgs++;
 				} else {
 					System.out.println("No selectedSentencesTable name");
 					printUsage();
@@ -608,9 +621,10 @@ public class DatabaseSelector {
 			i++;
 		}
 		System.out.println();
-		if (numEssentialArgs < 6) {
+		if (locale == null
+				|| (dbDir == null && (mysqlHost == null || mysqlUser == null || mysqlPasswd == null || mysqlDB == null))) {
 			// not all essential arguments were given
-			System.out.println("You must at least specify locale, mysql (host,user,paswd,DB), selectedSentencesTableName");
+			System.out.println("You must at least specify locale, mysql (host,user,paswd,DB) or dbDir, selectedSentencesTableName");
 			printUsage();
 			return false;
 		}
@@ -677,6 +691,7 @@ public class DatabaseSelector {
 		System.out
 				.println("\nUsage: "
 						+ "Usage: java DatabaseSelector -locale language -mysqlHost host -mysqlUser user -mysqlPasswd passwd -mysqlDB wikiDB\n"
+						+ "      (or: java DatabaseSelector -locale language -dbDir dir)\n"
 						+ "-tableName selectedSentencesTableName \n"
 						+ " [-stop stopCriterion]\n"
 						+ " [-featDef file -coverageConfig file]\n"
@@ -684,6 +699,7 @@ public class DatabaseSelector {
 						+ " [-tableDescription a brief description of the table ]\n"
 						+ " [-vectorsOnDisk -overallLog file -selectionDir dir -logCoverageDevelopment -verbose]\n"
 						+ " Arguments:\n"
+						+ " -dbDir dir : use the sentences stored in files in dir (see FeatureMaker) instead of a mysql database.\n"
 						+ " -tableName selectedSentencesTableName : The name of a new selection set, change this name when\n"
 						+ "     generating several selection sets. FINAL name will be: \"locale_name_selectedSenteces\". \n"
 						+ "     where name is the name provided for the selected sentences table.\n"
@@ -29,13 +29,22 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import marytts.LocalMaryInterface;
+import marytts.MaryInterface;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
@@ -45,7 +54,6 @@ import marytts.features.FeatureVector;
 import marytts.features.TargetFeatureComputer;
 import marytts.modules.TargetFeatureLister;
 import marytts.server.Mary;
-import marytts.server.Request;
 import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
@@ -66,14 +74,20 @@ import com.sun.speech.freetts.Utterance;
  *
  */
 public class FeatureMaker {
+	/**
+	 * A sentence of a clean text, with the result of the credibility check and, if it is reliable, its features.
+	 */
+	protected static class Sentence {
+		StringBuilder text;
+		boolean usefulSentence = true;
+		boolean unknownWords;
+		boolean strangeSymbols;
+		byte[] features;
+	}
+
 	// locale
 	private static String locale; // using locale we should be able to get the default voice.
 
-	// stores result of credibility check for current sentence
-	protected static boolean usefulSentence;
-	protected static boolean unknownWords;
-	protected static boolean strangeSymbols;
-
 	// feature definition, features for selection and their indexes
 	protected static FeatureDefinition featDef;
 	protected static Vector<String> selectionFeature;
@@ -85,7 +99,12 @@ public class FeatureMaker {
 	protected static int numSentences = 0;
 	protected static int numUnreliableSentences = 0;
 
-	protected static DBHandler wikiToDB;
+	// number of texts processed in parallel
+	protected static int numThreads;
+
+	protected static SentenceStore wikiToDB;
+	// local sentence store, used instead of the mySql database if set
+	private static String dbDir = null;
 	// mySql database
 	private static String mysqlHost = null;
 	private static String mysqlDB = null;
@@ -93,7 +112,6 @@ public class FeatureMaker {
 	private static String mysqlPasswd = null;
 
 	public static void main(String[] args) throws Exception {
-		boolean test = false;
 		String dateStringIni = "";
 		String dateStringEnd = "";
 		DateFormat fullDate = new SimpleDateFormat("dd_MM_yyyy_HH:mm:ss");
@@ -109,8 +127,13 @@ public class FeatureMaker {
 		System.out.println("\nFeatureMaker started...");
 
 		/* Here the DB connection is open */
-		wikiToDB = new DBHandler(locale);
-		wikiToDB.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
+		if (dbDir != null) {
+			wikiToDB = new LocalSentenceStore(locale, new File(dbDir));
+		} else {
+			DBHandler mysqlHandler = new DBHandler(locale);
+			mysqlHandler.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
+			wikiToDB = mysqlHandler;
+		}
 
 		// check if table exists, if exists already ask user if delete or re-use
 		char c;
@@ -155,11 +178,8 @@ public class FeatureMaker {
 			int textId[];
 			textId = wikiToDB.getUnprocessedTextIds();
 			System.out.println("Number of unprocessed clean_text records to process --> [" + textId.length + "]");
-			String text;
-
-			Vector<String> sentenceList; // this will be the list of sentences in each clean_text
 			String targetFeatures = "";
-			int i, j;
+			int i;
 
 			// get a list separated by spaces of the target features to extract
 			for (i = 0; i < selectionFeature.size(); i++)
@@ -179,60 +199,12 @@ public class FeatureMaker {
 			pw.close();
 			System.out.println("\nCreated featureDefinition file:" + locale + "_featureDefinition.txt");
 
-			for (i = 0; i < textId.length; i++) {
-				// get next unprocessed text
-				text = wikiToDB.getCleanText(textId[i]);
-				System.out.println("Processing(" + i + ") text id=" + textId[i] + " text length=" + text.length());
-				sentenceList = splitIntoSentences(text, textId[i], test);
-
-				if (sentenceList != null) {
-					int index = 0;
-					// loop over the sentences
-					int numSentencesInText = 0;
-					/*
-					 * String newSentence; byte feas[]; // for directly saving a vector of bytes as BLOB in mysql DB for(j=0;
-					 * j<sentenceList.size(); j++) { newSentence = sentenceList.elementAt(j); MaryData d =
-					 * processSentence(newSentence,textId[i],targetFeatures); if (d!=null){ // get the features of the sentence
-					 * feas = getFeatures(d); // Insert in the database the new sentence and its features. numSentencesInText++;
-					 * if(!test) wikiToDB.insertSentence(newSentence,feas, true, false, false, textId[i]); feas = null; } }//end
-					 * of loop over list of sentences
-					 */
-
-					for (String sentence : sentenceList) {
-						byte[] feas = processSentenceToFeatures(sentence, textId[i], featureComputer);
-						if (feas == null)
-							continue;
-						if (false) { // turn on for debugging, to check the features computed make sense
-							int numFeatures = selectionFeature.size();
-							System.out.println(sentence);
-							for (int t = 0; t < feas.length; t += numFeatures) {
-								for (int f = 0; f < numFeatures; f++) {
-									int featureIndex = fdef.getFeatureIndex(selectionFeature.get(f));
-									byte val = feas[t + f];
-									String sVal = fdef.getFeatureValueAsString(featureIndex, val);
-									System.out.print(sVal + " ");
-								}
-								System.out.println();
-							}
-						}
-						// Insert in the database the new sentence and its features.
-						numSentencesInText++;
-						if (!test)
-							wikiToDB.insertSentence(sentence, feas, true, false, false, textId[i]);
-					}
-					sentenceList.clear();
-					sentenceList = null;
-
-					numSentences += numSentencesInText;
-					System.out.println("Inserted " + numSentencesInText + " sentences from text id=" + textId[i]
-							+ " (Total reliable = " + numSentences + ") \n");
-				} // if sentenceList is not null
-			} // end of loop over articles
+			processTexts(textId, featureComputer);
 			wikiToDB.closeDBConnection();
 
 			Date dateEnd = new Date();
 			dateStringEnd = fullDate.format(dateEnd);
-			System.out.println("numSentencesInText;=" + numSentences);
+			System.out.println("numSentences=" + numSentences + " numUnreliableSentences=" + numUnreliableSentences);
 			System.out.println("Start time:" + dateStringIni + "  End time:" + dateStringEnd);
 			System.out.println("Done");
 
@@ -243,19 +215,133 @@ public class FeatureMaker {
 
 	}// end of main method
 
+	/**
+	 * Split the clean texts into sentences and compute the features of the reliable sentences, on a pool of {@link #numThreads}
+	 * workers which each use their own {@link LocalMaryInterface}. The texts are read and the sentences are written on the
+	 * calling thread, text by text in the order of textIds, and a text is marked as processed only after its sentences have been
+	 * written. If the program is interrupted, it can be started again and continues with the first text not yet written.
+	 *
+	 * @param textIds
+	 *            the ids of the clean texts to process
+	 * @param featureComputer
+	 *            computes the features for the selection
+	 * @throws Exception
+	 *             if a worker fails unexpectedly; the remaining texts are not processed.
+	 */
+	protected static void processTexts(int[] textIds, final TargetFeatureComputer featureComputer) throws Exception {
+		final Locale localeObj = MaryUtils.string2locale(locale);
+		final ThreadLocal<MaryInterface> maryInterfaces = new ThreadLocal<MaryInterface>();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		long startTime = System.currentTimeMillis();
+		int numSentencesInRun = 0;
+		try {
+			// only a limited number of texts are read ahead of the one currently written
+			int window = 4 * numThreads;
+			Deque<Future<List<Sentence>>> pending = new ArrayDeque<Future<List<Sentence>>>(window);
+			int next = 0;
+			for (int i = 0; i < textIds.length; i++) {
+				while (next < textIds.length && next < i + window) {
+					final int id = textIds[next++];
+					final String text = wikiToDB.getCleanText(id, false);
+					pending.add(pool.submit(new Callable<List<Sentence>>() {
+						public List<Sentence> call() throws Exception {
+							MaryInterface mary = maryInterfaces.get();
+							if (mary == null) {
+								mary = new LocalMaryInterface();
+								mary.setLocale(localeObj);
+								maryInterfaces.set(mary);
+							}
+							return processText(mary, text, id, featureComputer);
+						}
+					}));
+				}
+				numSentencesInRun += writeSentences(textIds[i], getResult(pending.poll()));
+				long time = System.currentTimeMillis() - startTime;
+				System.out.println("Processed(" + i + ") text id=" + textIds[i] + " (Total reliable = " + numSentences
+						+ ", unreliable = " + numUnreliableSentences + ")"
+						+ (time > 0 ? String.format(", %.1f sentences per second", 1000. * numSentencesInRun / time) : ""));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Split a text into sentences and compute the features of the reliable ones. Reliable sentences whose features cannot be
+	 * computed are left out.
+	 *
+	 * @return the sentences, or null if the text cannot be processed.
+	 */
+	protected static List<Sentence> processText(MaryInterface mary, String text, int id,
+			TargetFeatureComputer featureComputer) throws Exception {
+		List<Sentence> sentences = splitIntoSentences(mary, text, id);
+		if (sentences == null)
+			return null;
+		List<Sentence> result = new ArrayList<Sentence>(sentences.size());
+		for (Sentence sentence : sentences) {
+			if (sentence.usefulSentence) {
+				sentence.features = processSentenceToFeatures(mary, sentence.text.toString(), id, featureComputer);
+				if (sentence.features == null)
+					continue;
+			}
+			result.add(sentence);
+		}
+		return result;
+	}
+
+	/**
+	 * Insert the sentences of a text in the dbselection table and mark the text as processed.
+	 *
+	 * @return the number of sentences inserted
+	 */
+	protected static int writeSentences(int id, List<Sentence> sentences) {
+		int numInserted = 0;
+		if (sentences != null) {
+			for (Sentence sentence : sentences) {
+				// Here the reason why is unreliable can be added to the DB.
+				wikiToDB.insertSentence(sentence.text.toString(), sentence.features, sentence.usefulSentence,
+						sentence.unknownWords, sentence.strangeSymbols, id);
+				if (sentence.usefulSentence)
+					numSentences++;
+				else
+					numUnreliableSentences++;
+				numInserted++;
+			}
+		}
+		wikiToDB.setCleanTextProcessed(id);
+		return numInserted;
+	}
+
 	/**
 	 * Print usage of this program
 	 *
 	 */
 	protected static void printUsage() {
 		System.out.println("\nUsage: " + "java FeatureMaker -locale language -mysqlHost host -mysqlUser user\n"
-				+ "                 -mysqlPasswd passwd -mysqlDB wikiDB\n" + "                 [-reliability strict]\n"
-				+ "                 [-featuresForSelection phone,next_phone,selection_prosody]\n\n"
+				+ "                 -mysqlPasswd passwd -mysqlDB wikiDB\n"
+				+ "       (or: java FeatureMaker -locale language -dbDir dir)\n" + "                 [-reliability strict]\n"
+				+ "                 [-featuresForSelection phone,next_phone,selection_prosody] [-numThreads n]\n\n"
 				+ "  required: This program requires a MARY server running and an already created cleanText table in the DB. \n"
 				+ "            The cleanText table can be created with the WikipediaProcess program. \n"
+				+ "  -dbDir: use tables stored in files in this directory instead of a mysql database. \n"
 				+ "  default/optional: [-maryHost localhost -maryPort 59125]\n"
 				+ "  default/optional: [-featuresForSelection phone,next_phone,selection_prosody] (features separated by ,) \n"
-				+ "  optional: [-reliability [strict|lax]]\n\n"
+				+ "  optional: [-reliability [strict|lax]]\n"
+				+ "  default/optional: [-numThreads n] (number of texts processed in parallel, default: number of processors) \n\n"
 				+ "  -reliability: setting that determines what kind of sentences \n"
 				+ "  are regarded as credible. There are two settings: strict and lax. With \n"
 				+ "  setting strict, only those sentences that contain words in the lexicon \n"
@@ -268,7 +354,8 @@ public class FeatureMaker {
 	private static void printParameters() {
 		System.out.println("FeatureMaker parameters:" +
 
-		"\n  -locale " + locale + "\n  -mysqlHost " + mysqlHost + "\n  -mysqlUser " + mysqlUser + "\n  -mysqlPasswd "
+		"\n  -locale " + locale + "\n  -dbDir " + dbDir + "\n  -mysqlHost " + mysqlHost + "\n  -mysqlUser " + mysqlUser
+				+ "\n  -mysqlPasswd "
 				+ mysqlPasswd + "\n  -mysqlDB " + mysqlDB);
 
 		if (strictReliability)
@@ -281,6 +368,7 @@ public class FeatureMaker {
 		for (i = 0; i < selectionFeature.size() - 1; i++)
 			System.out.print(selectionFeature.elementAt(i) + ",");
 		System.out.println(selectionFeature.elementAt(i));
+		System.out.println("  -numThreads " + numThreads);
 	}
 
 	/**
@@ -293,7 +381,9 @@ public class FeatureMaker {
 	protected static boolean readArgs(String[] args) {
 		// initialise default values
 		locale = null;
+		dbDir = null;
 		strictReliability = false; // per default, allow system to select sentences with unknown words
+		numThreads = Runtime.getRuntime().availableProcessors();
 		featDef = null;
 		selectionFeature = new Vector<String>();
 		selectionFeature.add("phone");
@@ -301,7 +391,7 @@ public class FeatureMaker {
 		selectionFeature.add("selection_prosody");
 
 		// now parse the args
-		if (args.length >= 10) {
+		if (args.length >= 4) {
 			for (int i = 0; i < args.length; i++) {
 
 				if (args[i].equals("-locale") && args.length >= i + 1)
@@ -327,6 +417,12 @@ public class FeatureMaker {
 						selectionFeature.add(feas[k]);
 				}
 
+				else if (args[i].contentEquals("-dbDir") && args.length >= (i + 1))
+					dbDir = args[++i];
+
+				else if (args[i].contentEquals("-numThreads") && args.length >= (i + 1))
+					numThreads = Math.max(1, Integer.parseInt(args[++i]));
+
 				// mysql database parameters
 				else if (args[i].contentEquals("-mysqlHost") && args.length >= (i + 1))
 					mysqlHost = args[++i];
@@ -350,8 +446,8 @@ public class FeatureMaker {
 			// arguments less than 12
 			return false;
 
-		if (mysqlHost == null || mysqlUser == null || mysqlPasswd == null || mysqlDB == null) {
-			System.out.println("\nMissing mysql parameters.\n");
+		if (dbDir == null && (mysqlHost == null || mysqlUser == null || mysqlPasswd == null || mysqlDB == null)) {
+			System.out.println("\nMissing mysql parameters or dbDir.\n");
 			printParameters();
 			return false;
 		}
@@ -453,25 +549,17 @@ public class FeatureMaker {
 	 *            target features names separated by space (ex. "phone next_phone selection_prosody")
 	 * @return a byte array representing the feature vectors for the entire sentence
 	 */
-	protected static byte[] processSentenceToFeatures(String nextSentence, int textId, TargetFeatureComputer featureComputer) {
+	protected static byte[] processSentenceToFeatures(MaryInterface mary, String nextSentence, int textId,
+			TargetFeatureComputer featureComputer) {
 		// do a bit of normalization
 		StringBuilder docBuf = null;
 		nextSentence = nextSentence.replaceAll("\\\\", "").trim();
 		nextSentence = nextSentence.replaceAll("\\s/\\s", "").trim();
 		nextSentence = nextSentence.replaceAll("^/\\s", "").trim();
 
-		if (Mary.currentState() != Mary.STATE_RUNNING)
-			throw new IllegalStateException("MARY system is not running");
-
-		MaryDataType inputType = MaryDataType.get("TEXT");
-		MaryDataType outputType = MaryDataType.get("ALLOPHONES");
-		Locale localeObj = MaryUtils.string2locale(locale);
 		try {
-			Request request = new Request(inputType, outputType, localeObj, null, null, null, textId, null);
-			request.setInputData(nextSentence);
-			request.process();
-			MaryData result = request.getOutputData();
-			Document doc = result.getDocument();
+			mary.setOutputType("ALLOPHONES");
+			Document doc = mary.generateXML(nextSentence);
 			// Now we skip the prediction of acoustic parameters, and apply only the required feature processors
 			// directly to the ALLOPHONES data
 			// (this assumes that "feas" only contains features that do not require acoustic parameters, which seems reasonable
@@ -497,42 +585,26 @@ public class FeatureMaker {
 
 		} catch (Exception e) {
 			e.printStackTrace();
+			System.out.println("Error processing sentence from textId=" + textId + ": \"" + nextSentence
+					+ "\"; skipping sentence");
 		}
 		return null;
 
 	}
 
 	/**
-	 * Process the given text with the MaryClient from Text to Chunked
+	 * Process the given text from Text to Phonemes
 	 * 
+	 * @param mary
+	 *            the interface to use, which is not shared with other threads
 	 * @param textString
 	 *            the text to process
-	 * @return the resulting XML-Document
-	 * @throws Exception
+	 * @return the resulting XML-Document, or null if the text cannot be processed
 	 */
-	protected static Document phonemiseText(String textString, int id) throws Exception {
+	protected static Document phonemiseText(MaryInterface mary, String textString, int id) {
 		try {
-			/*
-			 * ByteArrayOutputStream os = new ByteArrayOutputStream(); //process and dump Mary.process(textString,
-			 * "TEXT","PHONEMES", locale, null, null, null, null, null, os);
-			 * 
-			 * //read into mary data object MaryData maryData = new MaryData(MaryDataType.PHONEMES, null);
-			 * 
-			 * maryData.readFrom(new ByteArrayInputStream(os.toByteArray()));
-			 * 
-			 * return maryData.getDocument();
-			 */
-			if (Mary.currentState() != Mary.STATE_RUNNING)
-				throw new IllegalStateException("MARY system is not running");
-
-			MaryDataType inputType = MaryDataType.get("TEXT");
-			MaryDataType outputType = MaryDataType.get("PHONEMES");
-			Locale localeObj = MaryUtils.string2locale(locale);
-			Request request = new Request(inputType, outputType, localeObj, null, null, null, id, null);
-			request.setInputData(textString);
-			request.process();
-			MaryData result = request.getOutputData();
-			return result.getDocument();
+			mary.setOutputType("PHONEMES");
+			return mary.generateXML(textString);
 		} catch (Exception e) {
 			e.printStackTrace();
 			System.out.println("PhonemiseText: problem processing text id=" + id);
@@ -542,94 +614,41 @@ public class FeatureMaker {
 	}
 
 	/**
-	 * Split the text into separate sentences
+	 * Split the text into separate sentences and check their reliability
 	 * 
-	 * @param file
-	 *            the file
-	 * @return true, if successful
-	 * @throws Exception
+	 * @param mary
+	 *            the interface to use, which is not shared with other threads
+	 * @param text
+	 *            the text
+	 * @param id
+	 *            the id of the text
+	 * @return the sentences, or null if the text cannot be processed
 	 */
-	protected static Vector<String> splitIntoSentences(String text, int id, boolean test) throws Exception {
-
-		Vector<String> sentenceList = null;
-		StringBuilder sentence;
-		// index2sentences = new TreeMap<Integer,String>();
-
-		Document doc = phonemiseText(text, id);
-		// if (doc == null) return false;
-
-		if (doc != null) {
-			sentenceList = new Vector<String>();
-			NodeList sentences = doc.getElementsByTagName("s");
+	protected static List<Sentence> splitIntoSentences(MaryInterface mary, String text, int id) {
+		Document doc = phonemiseText(mary, text, id);
+		if (doc == null)
+			return null;
 
-			int sentenceIndex = 1;
-			int unrelSentences = 0;
-			for (int j = 0; j < sentences.getLength(); j++) {
-				Node nextSentence = sentences.item(j);
+		List<Sentence> sentenceList = new ArrayList<Sentence>();
+		NodeList sentences = doc.getElementsByTagName("s");
+		for (int j = 0; j < sentences.getLength(); j++) {
+			Node nextSentence = sentences.item(j);
+			// ignore all non-element children
+			if (!(nextSentence instanceof Element))
+				continue;
+			Sentence sentence = new Sentence();
+			// get the tokens
+			NodeList tokens = nextSentence.getChildNodes();
+			for (int k = 0; k < tokens.getLength(); k++) {
+				Node nextToken = tokens.item(k);
 				// ignore all non-element children
-				if (!(nextSentence instanceof Element))
-					continue;
-				sentence = null;
-				// get the tokens
-				NodeList tokens = nextSentence.getChildNodes();
-				usefulSentence = true;
-				unknownWords = false;
-				strangeSymbols = false;
-				for (int k = 0; k < tokens.getLength(); k++) {
-					Node nextToken = tokens.item(k);
-					// ignore all non-element children
-					if ((nextToken instanceof Element))
-						sentence = collectTokens(nextToken, sentence);
-				}
-				// System.out.println(sentence);
-				if (sentence != null) {
-					if (usefulSentence) {
-						// store sentence in sentence map
-						// index2sentences.put(new Integer(sentenceIndex),sentence.toString());
-						// check if the sentence is not .
-						if (!sentence.toString().contentEquals(".")) {
-							sentenceList.add(sentence.toString());
-							// System.out.println("reliable sentence=" + sentence.toString() + "\n");
-						}
-					} else {
-						// just print useless sentence to log file
-						// System.out.println(filename+"; "+sentenceIndex+": "+sentence
-						// +" : is unreliable");
-
-						unrelSentences++;
-						/*
-						 * if(unknownWords) System.out.println("unknownWords: " + sentence.toString()); if(strangeSymbols)
-						 * System.out.println("strangeSymbols: " + sentence.toString());
-						 */
-
-						// Here the reason why is unreliable can be added to the DB.
-						// for the moment there is just one field reliable=false in this case.
-						if (!test)
-							wikiToDB.insertSentence(sentence.toString(), null, usefulSentence, unknownWords, strangeSymbols, id);
-						else {
-							wikiToDB.setSentenceRecord(id, "reliable", false);
-							if (unknownWords)
-								wikiToDB.setSentenceRecord(id, "unknownWords", true);
-							if (strangeSymbols)
-								wikiToDB.setSentenceRecord(id, "strangeSymbols", true);
-
-							// System.out.println("unreliable sentence: " + sentence.toString());
-						}
-					}
-					sentenceIndex++;
-
-				} else {
-					// ignore
-					// System.out.println("NULL SENTENCE!!!");
-				}
+				if ((nextToken instanceof Element))
+					collectTokens(nextToken, sentence);
 			}
-			numUnreliableSentences += unrelSentences;
-			System.out.println("Inserted " + unrelSentences + " sentences from text id=" + id + " (Total unreliable = "
-					+ numUnreliableSentences + ")");
-
+			// ignore empty sentences and reliable sentences which are just "."
+			if (sentence.text != null && !(sentence.usefulSentence && sentence.text.toString().contentEquals(".")))
+				sentenceList.add(sentence);
 		}
-
-		sentence = null;
 		return sentenceList;
 	}
 
@@ -640,25 +659,27 @@ public class FeatureMaker {
 	 *            the Node to start from checkCredibility returns 0 if the sentence is useful 1 if the sentence contains
 	 *            unknownWords (so the sentence is not useful) 2 if the sentence contains strangeSymbols (so the sentence is not
 	 *            useful)
+	 * @param sentence
+	 *            the sentence to which the token is added
 	 */
-	protected static StringBuilder collectTokens(Node nextToken, StringBuilder sentence) {
+	protected static void collectTokens(Node nextToken, Sentence sentence) {
 		int credibility = 0;
 		String tokenText, word;
 		String name = nextToken.getLocalName();
 		if (name.equals("t")) {
 			if ((credibility = checkReliability((Element) nextToken)) > 0) {
 				// memorize that we found unreliable sentence
-				usefulSentence = false;
+				sentence.usefulSentence = false;
 				if (credibility == 1)
-					unknownWords = true;
+					sentence.unknownWords = true;
 				else if (credibility == 2)
-					strangeSymbols = true;
+					sentence.strangeSymbols = true;
 			}
-			if (sentence == null) {
-				sentence = new StringBuilder();
+			if (sentence.text == null) {
+				sentence.text = new StringBuilder();
 				// first word of the sentence
 				word = MaryDomUtils.tokenText((Element) nextToken);
-				sentence.append(word);
+				sentence.text.append(word);
 
 			} else {
 				String pos = ((Element) nextToken).getAttribute("pos");
@@ -667,13 +688,13 @@ public class FeatureMaker {
 					// punctuation
 					tokenText = MaryDomUtils.tokenText((Element) nextToken);
 					// just append without whitespace
-					sentence.append(tokenText);
+					sentence.text.append(tokenText);
 					// System.out.println(sentence);
 				} else {
 					// normal word, append a whitespace before it
 					word = MaryDomUtils.tokenText((Element) nextToken);
 					// System.out.println("word=" + word);
-					sentence.append(" " + word);
+					sentence.text.append(" " + word);
 					// System.out.println(sentence);
 				}
 			}
@@ -691,7 +712,6 @@ public class FeatureMaker {
 			}
 
 		}
-		return sentence;
 	}
 
 	/**
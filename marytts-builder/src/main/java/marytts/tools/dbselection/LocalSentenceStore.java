@@ -0,0 +1,822 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.tools.dbselection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import marytts.util.Pair;
+import marytts.util.io.FileUtils;
+
+/**
+ * A {@link SentenceStore} in a directory on the local disk, to run the database selection on one machine without a mysql server.
+ * <p>
+ * Every table is an index file with one fixed size record per row, plus one file per blob column (the text of the clean texts,
+ * the sentences and their features) to which the blobs are appended. A record holds the lengths of the row's blobs, its boolean
+ * fields and the id it refers to, e.g. the cleanText id of a sentence. The index is kept in memory, and the blobs are read from
+ * memory-mapped files, so that the features of millions of sentences can be read at disk speed. Row ids start at 1, as in mysql.
+ * <p>
+ * The selected sentences tables only refer to the sentences in the dbselection table instead of copying them.
+ */
+public class LocalSentenceStore implements SentenceStore {
+
+	private static final String INDEX_SUFFIX = ".idx";
+	private static final String WORD_LIST_SUFFIX = ".words";
+	private static final String DESCRIPTION_SUFFIX = ".description";
+
+	private static final String[] CLEAN_TEXT_FIELDS = { "processed" };
+	private static final String[] DBSELECTION_FIELDS = { "reliable", "unknownWords", "strangeSymbols", "selected", "unwanted" };
+	private static final String[] SELECTED_SENTENCES_FIELDS = { "unwanted" };
+	private static final String[] DESCRIPTION_KEYS = { "name", "description", "stopCriterion", "featuresDefinitionFileName",
+			"featuresDefinitionFile", "covDefConfigFileName", "covDefConfigFile" };
+
+	private final File directory;
+	private final String locale;
+	private final Map<String, Table> tables = new HashMap<String, Table>();
+
+	private String cleanTextTableName = "_cleanText";
+	private String wordListTableName = "_wordList";
+	private String dbselectionTableName = "_dbselection";
+	private String selectedSentencesTableName = "_selectedSentences";
+
+	/**
+	 * Open the store in the given directory, creating the directory if it does not exist.
+	 *
+	 * @param locale
+	 *            database language.
+	 * @param directory
+	 *            the directory containing the tables.
+	 * @throws IOException
+	 *             if the directory can not be created.
+	 */
+	public LocalSentenceStore(String locale, File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+		this.directory = directory;
+		this.locale = locale;
+		cleanTextTableName = locale + cleanTextTableName;
+		wordListTableName = locale + wordListTableName;
+		dbselectionTableName = locale + dbselectionTableName;
+		selectedSentencesTableName = locale + selectedSentencesTableName;
+		System.out.println("\nUsing local sentence store in " + directory.getAbsolutePath() + ", set locale=" + locale);
+	}
+
+	public String getCleanTextTableName() {
+		return cleanTextTableName;
+	}
+
+	public String getWordListTableName() {
+		return wordListTableName;
+	}
+
+	public String getDBselectionTableName() {
+		return dbselectionTableName;
+	}
+
+	public String getSelectedSentencesTableName() {
+		return selectedSentencesTableName;
+	}
+
+	public synchronized void setSelectedSentencesTableName(String name) {
+		if (name.contentEquals(""))
+			selectedSentencesTableName = locale + "_selectedSentences";
+		else
+			selectedSentencesTableName = locale + "_" + name + "_selectedSentences";
+		System.out.println("Current selected sentences table name = " + selectedSentencesTableName);
+	}
+
+	public synchronized boolean tableExist(String tableName) {
+		return tables.containsKey(tableName) || new File(directory, tableName + INDEX_SUFFIX).exists()
+				|| new File(directory, tableName + WORD_LIST_SUFFIX).exists();
+	}
+
+	public synchronized ArrayList<String> getListOfTables() {
+		ArrayList<String> tablesList = new ArrayList<String>();
+		String[] fileNames = directory.list();
+		if (fileNames != null) {
+			Arrays.sort(fileNames);
+			for (String fileName : fileNames) {
+				if (!fileName.startsWith(locale))
+					continue;
+				if (fileName.endsWith(INDEX_SUFFIX))
+					tablesList.add(fileName.substring(0, fileName.length() - INDEX_SUFFIX.length()));
+				else if (fileName.endsWith(WORD_LIST_SUFFIX))
+					tablesList.add(fileName.substring(0, fileName.length() - WORD_LIST_SUFFIX.length()));
+			}
+		}
+		return tablesList;
+	}
+
+	public synchronized void createWikipediaCleanTextTable() {
+		if (tableExist(cleanTextTableName)) {
+			System.out.println("TABLE = " + cleanTextTableName + " already exist deleting.");
+			dropTable(cleanTextTableName);
+		}
+		openTable(cleanTextTableName, true);
+		System.out.println("TABLE = " + cleanTextTableName + " succesfully created.");
+	}
+
+	public synchronized void insertCleanText(String text, String page_id, String text_id) {
+		Table cleanText = openTable(cleanTextTableName, true);
+		cleanText.add(new byte[][] { toBytes(text) }, 0, Integer.parseInt(page_id), Integer.parseInt(text_id));
+	}
+
+	public synchronized int[] getUnprocessedTextIds() {
+		Table cleanText = openTable(cleanTextTableName, false);
+		if (cleanText == null)
+			return new int[0];
+		return cleanText.getIds(cleanText.getFieldBit("processed"), 0);
+	}
+
+	public synchronized String getCleanText(int id) {
+		return getCleanText(id, true);
+	}
+
+	public synchronized String getCleanText(int id, boolean markAsProcessed) {
+		Table cleanText = openTable(cleanTextTableName, false);
+		String text = toString(cleanText.getBlob(0, id - 1));
+		// once retrieved the text record mark it as processed
+		if (markAsProcessed)
+			setCleanTextProcessed(id);
+		return text;
+	}
+
+	public synchronized void setCleanTextProcessed(int id) {
+		// the sentences of the text must be on disk before the text is marked as processed
+		Table dbselection = tables.get(dbselectionTableName);
+		if (dbselection != null)
+			dbselection.flush();
+		openTable(cleanTextTableName, false).setField(id - 1, "processed", true);
+	}
+
+	public synchronized void insertWordList(HashMap<String, Integer> wordList) {
+		System.out.println("Inserting wordList in " + wordListTableName + "...");
+		List<Map.Entry<String, Integer>> words = new ArrayList<Map.Entry<String, Integer>>(wordList.entrySet());
+		sortWords(words, "frequency");
+		File file = new File(directory, wordListTableName + WORD_LIST_SUFFIX);
+		PrintWriter pw = null;
+		try {
+			pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+			for (Map.Entry<String, Integer> word : words) {
+				pw.println(word.getKey() + "\t" + word.getValue());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write " + file, e);
+		} finally {
+			FileUtils.close(pw);
+		}
+		System.out.println("Inserted new words in " + wordListTableName + " table.");
+	}
+
+	public synchronized HashMap<String, Integer> getMostFrequentWords(int numWords, int maxFrequency) {
+		HashMap<String, Integer> wordList = new HashMap<String, Integer>();
+		for (Map.Entry<String, Integer> word : getWords("frequency", numWords, maxFrequency)) {
+			wordList.put(word.getKey(), word.getValue());
+		}
+		return wordList;
+	}
+
+	public synchronized void printWordList(String fileName, String order, int numWords, int maxFrequency) {
+		PrintWriter pw = null;
+		try {
+			pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(fileName)), "UTF-8"));
+			for (Map.Entry<String, Integer> word : getWords(order, numWords, maxFrequency)) {
+				pw.println(word.getKey() + " " + word.getValue());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write " + fileName, e);
+		} finally {
+			FileUtils.close(pw);
+		}
+		System.out.println(wordListTableName + " printed in file: " + fileName + " ordered by " + order);
+	}
+
+	/**
+	 * Read the word list, with the words more frequent than maxFrequency (if positive), sorted in the given order and limited to
+	 * numWords (if positive).
+	 */
+	private List<Map.Entry<String, Integer>> getWords(String order, int numWords, int maxFrequency) {
+		List<Map.Entry<String, Integer>> words = new ArrayList<Map.Entry<String, Integer>>();
+		File file = new File(directory, wordListTableName + WORD_LIST_SUFFIX);
+		if (!file.exists())
+			return words;
+		BufferedReader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			String line;
+			while ((line = in.readLine()) != null) {
+				int tab = line.lastIndexOf('\t');
+				int frequency = Integer.parseInt(line.substring(tab + 1));
+				if (maxFrequency <= 0 || frequency > maxFrequency)
+					words.add(new AbstractMap.SimpleEntry<String, Integer>(line.substring(0, tab), frequency));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read " + file, e);
+		} finally {
+			FileUtils.close(in);
+		}
+		sortWords(words, order);
+		if (numWords > 0 && words.size() > numWords)
+			words = words.subList(0, numWords);
+		return words;
+	}
+
+	private static void sortWords(List<Map.Entry<String, Integer>> words, String order) {
+		if (order.contentEquals("word")) {
+			Collections.sort(words, new Comparator<Map.Entry<String, Integer>>() {
+				public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+					return a.getKey().compareTo(b.getKey());
+				}
+			});
+		} else {
+			Collections.sort(words, new Comparator<Map.Entry<String, Integer>>() {
+				public int compare(Map.Entry<String, Integer> a, Map.Entry<String, Integer> b) {
+					return b.getValue().compareTo(a.getValue());
+				}
+			});
+		}
+	}
+
+	public synchronized void createDataBaseSelectionTable() {
+		if (tableExist(dbselectionTableName))
+			System.out.println("TABLE = " + dbselectionTableName + " already exist, adding sentences to this table.");
+		else
+			System.out.println("TABLE = " + dbselectionTableName + " succesfully created.");
+		openTable(dbselectionTableName, true);
+	}
+
+	public synchronized void insertSentence(String sentence, byte features[], boolean reliable, boolean unknownWords,
+			boolean strangeSymbols, int cleanText_id) {
+		Table dbselection = openTable(dbselectionTableName, true);
+		int fields = 0;
+		if (reliable)
+			fields |= dbselection.getFieldBit("reliable");
+		if (unknownWords)
+			fields |= dbselection.getFieldBit("unknownWords");
+		if (strangeSymbols)
+			fields |= dbselection.getFieldBit("strangeSymbols");
+		dbselection.add(new byte[][] { toBytes(sentence), features }, fields, cleanText_id, 0);
+	}
+
+	public synchronized void setSentenceRecord(int id, String field, boolean fieldValue) {
+		openTable(dbselectionTableName, false).setField(id - 1, field, fieldValue);
+	}
+
+	public synchronized int[] getIdListOfType(String table, String condition) {
+		Table t = openTable(locale + "_" + table, false);
+		int[] ids = null;
+		if (t != null) {
+			int[] maskAndValue = t.parseCondition(condition);
+			ids = t.getIds(maskAndValue[0], maskAndValue[1]);
+		}
+		if (ids == null || ids.length == 0) {
+			System.out.println("WARNING empty list for: " + locale + "_" + table + " where " + condition);
+			return null;
+		}
+		return ids;
+	}
+
+	public synchronized Pair<int[], byte[][]> getIdsAndFeatureVectors(String table, String condition) {
+		int[] ids = getIdListOfType(table, condition);
+		byte[][] features = null;
+		if (ids != null) {
+			System.out.println(ids.length + " sentences to retrieve...");
+			Table t = openTable(locale + "_" + table, false);
+			features = new byte[ids.length][];
+			for (int i = 0; i < ids.length; i++) {
+				features[i] = t.getBlob(1, ids[i] - 1);
+			}
+		}
+		return new Pair<int[], byte[][]>(ids, features);
+	}
+
+	public synchronized byte[] getFeatures(int id) {
+		return openTable(dbselectionTableName, false).getBlob(1, id - 1);
+	}
+
+	public synchronized byte[][] getFeaturesBulk(int[] ids) {
+		Table dbselection = openTable(dbselectionTableName, false);
+		byte[][] data = new byte[ids.length][];
+		for (int i = 0; i < ids.length; i++) {
+			data[i] = dbselection.getBlob(1, ids[i] - 1);
+			if (data[i] == null) {
+				throw new NullPointerException("Could not get features for sentence ID " + ids[i]);
+			}
+		}
+		return data;
+	}
+
+	public synchronized String getDBSelectionSentence(int id) {
+		return toString(openTable(dbselectionTableName, false).getBlob(0, id - 1));
+	}
+
+	public synchronized void createSelectedSentencesTable(String stopCriterion, String featDefFileName,
+			String covDefConfigFileName) {
+		if (tableExist(selectedSentencesTableName)) {
+			System.out.println("  TABLE = " + selectedSentencesTableName + " already exist. New selected sentences "
+					+ "will be added to this table.");
+			return;
+		}
+		System.out.println("  TABLE = " + selectedSentencesTableName + " does not exist, creating a new table and ");
+		System.out.println("  Initialising fields selected=false in TABLE = " + dbselectionTableName
+				+ " (Previously selected sentences marked as unwanted will be kept)");
+		Table dbselection = openTable(dbselectionTableName, false);
+		if (dbselection != null) {
+			int selected = dbselection.getFieldBit("selected");
+			for (int id : dbselection.getIds(selected, selected)) {
+				dbselection.setField(id - 1, "selected", false);
+			}
+		}
+		openTable(selectedSentencesTableName, true);
+		System.out.println("  TABLE = " + selectedSentencesTableName + " succesfully created.");
+	}
+
+	public synchronized void insertSelectedSentence(int dbselection_id, boolean unwanted) {
+		Table selected = openTable(selectedSentencesTableName, true);
+		selected.add(new byte[0][], unwanted ? selected.getFieldBit("unwanted") : 0, dbselection_id, 0);
+	}
+
+	public synchronized int[] getIdListOfSelectedSentences(String actualTableName, String condition) {
+		Table selected = openTable(actualTableName, false);
+		int[] ids = null;
+		if (selected != null) {
+			int[] maskAndValue = selected.parseCondition(condition);
+			int[] rows = selected.getIds(maskAndValue[0], maskAndValue[1]);
+			ids = new int[rows.length];
+			for (int i = 0; i < rows.length; i++) {
+				ids[i] = selected.getReference(rows[i] - 1);
+			}
+		}
+		if (ids == null || ids.length == 0) {
+			System.out.println("WARNING empty list for: " + actualTableName + " where " + condition);
+			return null;
+		}
+		return ids;
+	}
+
+	public synchronized String getSelectedSentence(String tableName, int id) {
+		return getDBSelectionSentence(id);
+	}
+
+	public synchronized void setUnwantedSentenceRecord(String actualTableName, int id, boolean fieldValue) {
+		Table selected = openTable(actualTableName, false);
+		for (int row = 0; row < selected.size(); row++) {
+			if (selected.getReference(row) == id)
+				selected.setField(row, "unwanted", fieldValue);
+		}
+		setSentenceRecord(id, "unwanted", fieldValue);
+	}
+
+	public synchronized void setTableDescription(String tableName, String description, String stopCriterion,
+			String featuresDefinitionFileName, String covDefConfigFileName) {
+		if (tableName == null) {
+			System.out.println("  Error setting table description: tableName can not be null");
+			return;
+		}
+		File file = new File(directory, tableName + DESCRIPTION_SUFFIX);
+		if (file.exists()) {
+			System.out.println("  A description for the table " + tableName + " already exist.");
+			return;
+		}
+		System.out.println("  Adding a description for the table " + tableName + ".");
+		String[] desc = { tableName, description, stopCriterion, featuresDefinitionFileName,
+				readFileOrEmpty(featuresDefinitionFileName), covDefConfigFileName, readFileOrEmpty(covDefConfigFileName) };
+		Properties properties = new Properties();
+		for (int i = 0; i < desc.length; i++) {
+			properties.setProperty(DESCRIPTION_KEYS[i], desc[i] != null ? desc[i] : "");
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			properties.storeToXML(out, null, "UTF-8");
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write " + file, e);
+		} finally {
+			FileUtils.close(out);
+		}
+	}
+
+	private static String readFileOrEmpty(String fileName) {
+		if (fileName == null)
+			return "";
+		try {
+			return FileUtils.getFileAsString(new File(fileName), "UTF-8");
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	public synchronized String[] getTableDescription(String tableName) {
+		String[] desc = new String[DESCRIPTION_KEYS.length];
+		File file = new File(directory, tableName + DESCRIPTION_SUFFIX);
+		if (file.exists()) {
+			Properties properties = new Properties();
+			InputStream in = null;
+			try {
+				in = new FileInputStream(file);
+				properties.loadFromXML(in);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot read " + file, e);
+			} finally {
+				FileUtils.close(in);
+			}
+			for (int i = 0; i < desc.length; i++) {
+				desc[i] = properties.getProperty(DESCRIPTION_KEYS[i]);
+			}
+		}
+		return desc;
+	}
+
+	/**
+	 * Write all data to disk and close the tables. The store can still be used afterwards, the tables are opened again when
+	 * needed.
+	 */
+	public synchronized void closeDBConnection() {
+		for (Table table : tables.values()) {
+			table.close();
+		}
+		tables.clear();
+		System.out.println("\nLocal sentence store closed.");
+	}
+
+	/**
+	 * Get an open table, opening it if necessary.
+	 *
+	 * @param create
+	 *            whether to create the table if it does not exist
+	 * @return the table, or null if it does not exist and create is false
+	 */
+	private Table openTable(String tableName, boolean create) {
+		Table table = tables.get(tableName);
+		if (table == null && (create || new File(directory, tableName + INDEX_SUFFIX).exists())) {
+			try {
+				if (tableName.endsWith("_cleanText"))
+					table = new Table(directory, tableName, 1, CLEAN_TEXT_FIELDS);
+				else if (tableName.endsWith("_dbselection"))
+					table = new Table(directory, tableName, 2, DBSELECTION_FIELDS);
+				else if (tableName.endsWith("_selectedSentences"))
+					table = new Table(directory, tableName, 0, SELECTED_SENTENCES_FIELDS);
+				else
+					throw new IllegalArgumentException("Unknown table: " + tableName);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot open table " + tableName, e);
+			}
+			tables.put(tableName, table);
+		}
+		return table;
+	}
+
+	private void dropTable(String tableName) {
+		Table table = openTable(tableName, false);
+		if (table != null) {
+			tables.remove(tableName);
+			table.delete();
+		}
+	}
+
+	private static byte[] toBytes(String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private static String toString(byte[] bytes) {
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * A table with blob columns, boolean fields and a reference to a row of another table.
+	 * <p>
+	 * The index file has one record per row: the length of each blob (-1 for null), one byte with the boolean fields, and two
+	 * ints, the reference and a second reference that is only stored (e.g. the text id of a clean text). Each blob column is
+	 * stored in its own file, in the order of the rows; the offset of a blob is the sum of the lengths of the blobs before it.
+	 */
+	private static final class Table {
+		private static final int SEGMENT_SIZE = 1 << 30;
+
+		private final File indexFile;
+		private final File[] blobFiles;
+		private final String[] fields;
+		private final int numColumns;
+		private final int recordSize;
+
+		private final FileChannel index;
+		private final DataOutputStream indexOut;
+		private final FileChannel[] blobs;
+		private final OutputStream[] blobOut;
+		private MappedByteBuffer[][] segments;
+
+		private int size;
+		private long[][] offsets;
+		private byte[] flags;
+		private int[] references;
+
+		Table(File directory, String name, int numColumns, String[] fields) throws IOException {
+			this.numColumns = numColumns;
+			this.fields = fields;
+			recordSize = 4 * numColumns + 1 + 4 + 4;
+			indexFile = new File(directory, name + INDEX_SUFFIX);
+			blobFiles = new File[numColumns];
+			for (int c = 0; c < numColumns; c++) {
+				blobFiles[c] = new File(directory, name + ".blob" + c);
+			}
+			read();
+			index = new RandomAccessFile(indexFile, "rw").getChannel();
+			index.truncate((long) size * recordSize);
+			index.position(index.size());
+			indexOut = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(index)));
+			blobs = new FileChannel[numColumns];
+			blobOut = new OutputStream[numColumns];
+			segments = new MappedByteBuffer[numColumns][];
+			for (int c = 0; c < numColumns; c++) {
+				blobs[c] = new RandomAccessFile(blobFiles[c], "rw").getChannel();
+				// drop blobs of rows whose index record was not written
+				blobs[c].truncate(offsets[c][size]);
+				blobs[c].position(blobs[c].size());
+				blobOut[c] = new BufferedOutputStream(Channels.newOutputStream(blobs[c]));
+				segments[c] = new MappedByteBuffer[0];
+			}
+		}
+
+		/**
+		 * Read the index into memory, keeping only the rows whose blobs are complete.
+		 */
+		private void read() throws IOException {
+			int numRecords = (int) (indexFile.length() / recordSize);
+			int capacity = Math.max(numRecords, 16);
+			offsets = new long[numColumns][capacity + 1];
+			flags = new byte[capacity];
+			references = new int[capacity];
+			long[] blobLengths = new long[numColumns];
+			for (int c = 0; c < numColumns; c++) {
+				blobLengths[c] = blobFiles[c].length();
+			}
+			size = 0;
+			if (numRecords == 0)
+				return;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+			try {
+				records: for (int row = 0; row < numRecords; row++) {
+					for (int c = 0; c < numColumns; c++) {
+						int length = in.readInt();
+						offsets[c][row + 1] = offsets[c][row] + Math.max(length, 0);
+						if (offsets[c][row + 1] > blobLengths[c])
+							break records;
+					}
+					flags[row] = in.readByte();
+					references[row] = in.readInt();
+					in.readInt();
+					size++;
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		int size() {
+			return size;
+		}
+
+		int getFieldBit(String field) {
+			for (int i = 0; i < fields.length; i++) {
+				if (fields[i].equalsIgnoreCase(field))
+					return 1 << i;
+			}
+			throw new IllegalArgumentException("Unknown field: " + field);
+		}
+
+		private int getNullBit(int column) {
+			return 0x80 >>> column;
+		}
+
+		/**
+		 * Parse a condition such as "reliable=true and unwanted=false".
+		 *
+		 * @return the bits of the fields in the condition, and the values they must have
+		 */
+		int[] parseCondition(String condition) {
+			int mask = 0;
+			int value = 0;
+			if (condition != null) {
+				for (String term : condition.trim().split("(?i)\\s+and\\s+")) {
+					String[] fieldAndValue = term.split("=");
+					if (fieldAndValue.length != 2)
+						throw new IllegalArgumentException("Unsupported condition: " + condition);
+					int bit = getFieldBit(fieldAndValue[0].trim());
+					String fieldValue = fieldAndValue[1].trim();
+					mask |= bit;
+					if (fieldValue.equalsIgnoreCase("true") || fieldValue.equals("1"))
+						value |= bit;
+					else if (!fieldValue.equalsIgnoreCase("false") && !fieldValue.equals("0"))
+						throw new IllegalArgumentException("Unsupported condition: " + condition);
+				}
+			}
+			return new int[] { mask, value };
+		}
+
+		/**
+		 * @return the ids (row + 1) of the rows whose fields in mask have the given values
+		 */
+		int[] getIds(int mask, int value) {
+			int num = 0;
+			for (int row = 0; row < size; row++) {
+				if ((flags[row] & mask) == value)
+					num++;
+			}
+			int[] ids = new int[num];
+			int i = 0;
+			for (int row = 0; row < size; row++) {
+				if ((flags[row] & mask) == value)
+					ids[i++] = row + 1;
+			}
+			return ids;
+		}
+
+		int getReference(int row) {
+			checkRow(row);
+			return references[row];
+		}
+
+		void add(byte[][] blobData, int fields, int reference, int reference2) {
+			if (size == flags.length) {
+				int capacity = 2 * size;
+				flags = Arrays.copyOf(flags, capacity);
+				references = Arrays.copyOf(references, capacity);
+				for (int c = 0; c < numColumns; c++) {
+					offsets[c] = Arrays.copyOf(offsets[c], capacity + 1);
+				}
+			}
+			try {
+				for (int c = 0; c < numColumns; c++) {
+					if (blobData[c] == null) {
+						fields |= getNullBit(c);
+					} else {
+						blobOut[c].write(blobData[c]);
+					}
+					offsets[c][size + 1] = offsets[c][size] + (blobData[c] != null ? blobData[c].length : 0);
+				}
+				for (int c = 0; c < numColumns; c++) {
+					indexOut.writeInt(blobData[c] != null ? blobData[c].length : -1);
+				}
+				indexOut.writeByte(fields);
+				indexOut.writeInt(reference);
+				indexOut.writeInt(reference2);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot write to " + indexFile, e);
+			}
+			flags[size] = (byte) fields;
+			references[size] = reference;
+			size++;
+		}
+
+		void setField(int row, String field, boolean fieldValue) {
+			checkRow(row);
+			int bit = getFieldBit(field);
+			byte newFlags = (byte) (fieldValue ? flags[row] | bit : flags[row] & ~bit);
+			if (newFlags == flags[row])
+				return;
+			try {
+				// the record may still be in the buffer
+				indexOut.flush();
+				index.write(ByteBuffer.wrap(new byte[] { newFlags }), (long) row * recordSize + 4 * numColumns);
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot write to " + indexFile, e);
+			}
+			flags[row] = newFlags;
+		}
+
+		/**
+		 * @return the blob, or null if it was inserted as null
+		 */
+		byte[] getBlob(int column, int row) {
+			checkRow(row);
+			if ((flags[row] & getNullBit(column)) != 0)
+				return null;
+			long offset = offsets[column][row];
+			byte[] data = new byte[(int) (offsets[column][row + 1] - offset)];
+			try {
+				blobOut[column].flush();
+				int done = 0;
+				while (done < data.length) {
+					long position = offset + done;
+					int segment = (int) (position / SEGMENT_SIZE);
+					int start = (int) (position % SEGMENT_SIZE);
+					int length = Math.min(data.length - done, SEGMENT_SIZE - start);
+					ByteBuffer buffer = getSegment(column, segment, start + length).duplicate();
+					buffer.position(start);
+					buffer.get(data, done, length);
+					done += length;
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot read from " + blobFiles[column], e);
+			}
+			return data;
+		}
+
+		/**
+		 * Get a mapped segment of a blob file which contains at least the first end bytes of the segment, mapping it (again) if
+		 * the file has grown since it was mapped.
+		 */
+		private MappedByteBuffer getSegment(int column, int segment, int end) throws IOException {
+			if (segment >= segments[column].length)
+				segments[column] = Arrays.copyOf(segments[column], segment + 1);
+			MappedByteBuffer buffer = segments[column][segment];
+			if (buffer == null || buffer.capacity() < end) {
+				long start = (long) segment * SEGMENT_SIZE;
+				long length = Math.min(SEGMENT_SIZE, blobs[column].size() - start);
+				buffer = blobs[column].map(FileChannel.MapMode.READ_ONLY, start, length);
+				segments[column][segment] = buffer;
+			}
+			return buffer;
+		}
+
+		private void checkRow(int row) {
+			if (row < 0 || row >= size)
+				throw new IllegalArgumentException("No record with id " + (row + 1) + " in " + indexFile);
+		}
+
+		void flush() {
+			try {
+				// write the blobs before the records referring to them
+				for (int c = 0; c < numColumns; c++) {
+					blobOut[c].flush();
+				}
+				indexOut.flush();
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot write to " + indexFile, e);
+			}
+		}
+
+		void close() {
+			try {
+				// write the blobs before the records referring to them
+				for (int c = 0; c < numColumns; c++) {
+					blobOut[c].close();
+				}
+				indexOut.close();
+			} catch (IOException e) {
+				throw new RuntimeException("Cannot write to " + indexFile, e);
+			}
+			segments = null;
+		}
+
+		void delete() {
+			close();
+			indexFile.delete();
+			for (File blobFile : blobFiles) {
+				blobFile.delete();
+			}
+		}
+	}
+}
@@ -29,9 +29,16 @@ import java.io.PrintWriter;
 import java.net.UnknownHostException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.xml.parsers.ParserConfigurationException;
@@ -55,6 +62,12 @@ import org.xml.sax.SAXException;
  * Selects sentences from a given set using the greedy algorithm. At each step, the most useful sentence is added to the set of
  * selected sentences. Selection is stopped when the stop criterion is reached. Usefulness of sentences is determined by
  * CoverageDefinition.
+ * <p>
+ * Since the usefulness of a sentence can only decrease as the cover grows (see
+ * {@link CoverageDefinition#usefulnessDecreasesWithCoverage()}), the usefulness of all sentences is computed only once, in
+ * parallel. The sentences are kept in a heap ordered by their last known usefulness, which is an upper bound of their current
+ * usefulness; at each step, only the sentences at the top of the heap are re-evaluated until the top one is up to date (lazy
+ * greedy selection). This selects exactly the same sentences as evaluating all sentences at each step, but much faster.
  * 
  * @author Anna Hunecke
  *
@@ -88,6 +101,11 @@ public class SelectionFunction {
 	// if true, print information to command line
 	private boolean verbose;
 
+	// the candidate sentences for lazy greedy selection, or null if they have not been scored yet
+	private CandidateHeap candidates;
+	// the number of sentences scored in one task during parallel scoring
+	private static final int SCORING_CHUNK_SIZE = 10000;
+
 	/**
 	 * Build a new Selection Function
 	 * 
@@ -182,12 +200,13 @@ public class SelectionFunction {
 	 * @throws Exception
 	 */
 	public void select(Set<Integer> selectedIdSents, Set<Integer> unwantedIdSents, CoverageDefinition coverageDefinition,
-			PrintWriter logFile, CoverageFeatureProvider cfProvider, boolean verboseSelect, DBHandler wikiToDB) // throws
+			PrintWriter logFile, CoverageFeatureProvider cfProvider, boolean verboseSelect, SentenceStore wikiToDB) // throws
 																												// IOException
 			throws Exception {
 		this.verbose = verboseSelect;
 		int sentIndex = selectedIdSents.size() + 1;
 		selectedVectors = null;
+		candidates = null;
 		DateFormat fullDate = new SimpleDateFormat("HH_mm_ss");
 
 		// create the selectedSentences table
@@ -294,28 +313,35 @@ public class SelectionFunction {
 	}
 
 	/**
-	 * Select the next sentence
+	 * Select the next sentence. The selected sentence is the one with the highest usefulness; of several sentences with the same
+	 * usefulness, the one which comes first in the cfProvider is selected.
 	 * 
+	 * @param selectedIdSents
+	 *            the ids of the sentences selected so far
+	 * @param unwantedIdSents
+	 *            the ids of the sentences which must not be selected; sentences found to be useless are added
 	 * @param coverageDefinition
 	 *            the coverage definition
-	 * @param logFile
-	 *            the logFile
-	 * @param sentenceIndex
-	 *            the index of the next sentence
-	 * @param basenameList
-	 *            the list of filenames
-	 * @param vectorArray
-	 *            the array of vectors or null if the vectors are on disk
+	 * @param cfProvider
+	 *            the coverage features of all sentences
 	 * @throws IOException
 	 * @return true if a sentence was selected, false otherwise
 	 */
-	private boolean selectNext(Set<Integer> selectedIdSents, Set<Integer> unwantedIdSents, CoverageDefinition coverageDefinition,
+	boolean selectNext(Set<Integer> selectedIdSents, Set<Integer> unwantedIdSents, CoverageDefinition coverageDefinition,
 			CoverageFeatureProvider cfProvider) throws IOException {
-		// TODO: MS, May 2011 -- I have refactored this code but could not test it. Bad me.
-
 		selectedIdSentence = -1;
 		selectedUsefulness = -1;
 
+		if (coverageDefinition.usefulnessDecreasesWithCoverage()) {
+			if (candidates == null) {
+				candidates = scoreAllSentences(unwantedIdSents, coverageDefinition, cfProvider);
+			}
+			selectNextLazily(selectedIdSents, unwantedIdSents, coverageDefinition, cfProvider);
+			return selectedIdSentence >= 0;
+		}
+
+		// TODO: MS, May 2011 -- I have refactored this code but could not test it. Bad me.
+
 		// Loop over all sentences in the cfProvider to find the most useful one.
 		// For speed reasons, we need to be a bit smart: if coverage features are not in memory,
 		// we bulk-load a chunk of them at a time.
@@ -335,6 +361,112 @@ public class SelectionFunction {
 		return selectedIdSentence >= 0;
 	}
 
+	/**
+	 * Get the id of the sentence selected by the last call to
+	 * {@link #selectNext(Set, Set, CoverageDefinition, CoverageFeatureProvider)}.
+	 * 
+	 * @return the id, or -1 if no sentence was selected
+	 */
+	int getSelectedIdSentence() {
+		return selectedIdSentence;
+	}
+
+	/**
+	 * Get the coverage features of the sentence selected by the last call to
+	 * {@link #selectNext(Set, Set, CoverageDefinition, CoverageFeatureProvider)}.
+	 * 
+	 * @return the coverage features
+	 */
+	byte[] getSelectedVectors() {
+		return selectedVectors;
+	}
+
+	/**
+	 * Find the most useful sentence among the candidates, re-evaluating those whose usefulness is out of date until the most
+	 * useful one is up to date.
+	 */
+	private void selectNextLazily(Set<Integer> selectedIdSents, Set<Integer> unwantedIdSents,
+			CoverageDefinition coverageDefinition, CoverageFeatureProvider cfProvider) {
+		while (!candidates.isEmpty()) {
+			int l = candidates.topIndex();
+			int id = cfProvider.getID(l);
+			if (selectedIdSents.contains(id) || unwantedIdSents.contains(id)) {
+				candidates.removeTop();
+				continue;
+			}
+			byte[] featVects = cfProvider.getCoverageFeatures(l);
+			if (candidates.topScoredAt() == coverageDefinition.getNumSentencesInCover()) {
+				// the usefulness is up to date, and no other sentence can be more useful
+				selectedIdSentence = id;
+				selectedVectors = featVects;
+				selectedUsefulness = candidates.topUsefulness();
+				candidates.removeTop();
+				return;
+			}
+			candidates.updateTop(coverageDefinition.usefulnessOfFVs(featVects), coverageDefinition.getNumSentencesInCover());
+		}
+	}
+
+	/**
+	 * Compute the usefulness of all sentences, in parallel, and put them into a heap. Useless sentences are added to the unwanted
+	 * sentences.
+	 */
+	private CandidateHeap scoreAllSentences(Set<Integer> unwantedIdSents, final CoverageDefinition coverageDefinition,
+			CoverageFeatureProvider cfProvider) throws IOException {
+		int numSents = cfProvider.getNumSentences();
+		final double[] usefulness = new double[numSents];
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		try {
+			// if coverage features are not in memory, we bulk-load a chunk of them at a time
+			int loadChunkSize = cfProvider instanceof InMemoryCFProvider ? numSents : 100000;
+			for (int c = 0; c < numSents; c += loadChunkSize) {
+				int len = Math.min(loadChunkSize, numSents - c);
+				final CoverageFeatureProvider chunk = cfProvider instanceof InMemoryCFProvider ? cfProvider
+						: ((DatabaseCFProvider) cfProvider).getFeaturesInMemory(c, len);
+				final int offset = c;
+				List<Future<?>> tasks = new ArrayList<Future<?>>();
+				for (int from = 0; from < len; from += SCORING_CHUNK_SIZE) {
+					final int start = from;
+					final int end = Math.min(from + SCORING_CHUNK_SIZE, len);
+					tasks.add(pool.submit(new Callable<Void>() {
+						public Void call() {
+							for (int l = start; l < end; l++) {
+								usefulness[offset + l] = coverageDefinition.usefulnessOfFVs(chunk.getCoverageFeatures(l));
+							}
+							return null;
+						}
+					}));
+				}
+				for (Future<?> task : tasks) {
+					task.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while computing the usefulness of sentences", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Cannot compute the usefulness of sentences", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		CandidateHeap heap = new CandidateHeap(numSents, coverageDefinition.getNumSentencesInCover());
+		for (int l = 0; l < numSents; l++) {
+			if (usefulness[l] == -1.0) {
+				unwantedIdSents.add(cfProvider.getID(l));
+			} else if (!Double.isNaN(usefulness[l])) {
+				// sentences without features have no usefulness and are never selected
+				heap.add(l, usefulness[l]);
+			}
+		}
+		heap.heapify();
+		return heap;
+	}
+
 	/**
 	 * @param selectedIdSents
 	 * @param unwantedIdSents
@@ -430,4 +562,104 @@ public class SelectionFunction {
 		return vectorBuf;
 	}
 
+	/**
+	 * A binary max-heap of sentences, given by their index in the coverage feature provider, ordered by their usefulness. Of
+	 * sentences with the same usefulness, the one with the lower index comes first. For each sentence, the number of sentences
+	 * in the cover at the time its usefulness was computed is kept.
+	 */
+	private static class CandidateHeap {
+		private final int[] indexes;
+		private final double[] usefulness;
+		private final int[] scoredAt;
+		private final int initialNumSentencesInCover;
+		private int size;
+
+		CandidateHeap(int capacity, int numSentencesInCover) {
+			indexes = new int[capacity];
+			usefulness = new double[capacity];
+			scoredAt = new int[capacity];
+			initialNumSentencesInCover = numSentencesInCover;
+		}
+
+		/**
+		 * Add a sentence scored with the initial cover; call {@link #heapify()} after all sentences have been added.
+		 */
+		void add(int index, double value) {
+			indexes[size] = index;
+			usefulness[size] = value;
+			scoredAt[size] = initialNumSentencesInCover;
+			size++;
+		}
+
+		void heapify() {
+			for (int i = size / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int topIndex() {
+			return indexes[0];
+		}
+
+		double topUsefulness() {
+			return usefulness[0];
+		}
+
+		int topScoredAt() {
+			return scoredAt[0];
+		}
+
+		void removeTop() {
+			size--;
+			move(size, 0);
+			siftDown(0);
+		}
+
+		void updateTop(double value, int numSentencesInCover) {
+			usefulness[0] = value;
+			scoredAt[0] = numSentencesInCover;
+			siftDown(0);
+		}
+
+		private boolean before(int i, int j) {
+			return usefulness[i] > usefulness[j] || usefulness[i] == usefulness[j] && indexes[i] < indexes[j];
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					return;
+				}
+				if (child + 1 < size && before(child + 1, child)) {
+					child++;
+				}
+				if (!before(child, i)) {
+					return;
+				}
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		private void move(int from, int to) {
+			indexes[to] = indexes[from];
+			usefulness[to] = usefulness[from];
+			scoredAt[to] = scoredAt[from];
+		}
+
+		private void swap(int i, int j) {
+			int index = indexes[i];
+			double value = usefulness[i];
+			int scored = scoredAt[i];
+			move(j, i);
+			indexes[j] = index;
+			usefulness[j] = value;
+			scoredAt[j] = scored;
+		}
+	}
 }
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.tools.dbselection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import marytts.util.Pair;
+
+/**
+ * Storage of the text corpus used for the database selection: the clean text extracted from Wikipedia, the word list, the
+ * sentences with their coverage features (the dbselection table) and the selected sentences tables.
+ * <p>
+ * Tables are named as in the mysql database, with the locale as prefix (e.g. en_US_dbselection). Conditions are conjunctions of
+ * boolean fields, e.g. "reliable=true and unwanted=false". {@link DBHandler} keeps the tables in a mysql database,
+ * {@link LocalSentenceStore} in files on the local disk.
+ */
+public interface SentenceStore {
+
+	public String getCleanTextTableName();
+
+	public String getWordListTableName();
+
+	public String getDBselectionTableName();
+
+	public String getSelectedSentencesTableName();
+
+	/**
+	 * Change the name of the selected sentences table to locale_name_selectedSentences, or to the default
+	 * locale_selectedSentences if name is empty.
+	 *
+	 * @param name
+	 */
+	public void setSelectedSentencesTableName(String name);
+
+	/**
+	 * @return true if TABLE=tableName exist.
+	 */
+	public boolean tableExist(String tableName);
+
+	/**
+	 * Get the list of tables for this locale
+	 */
+	public ArrayList<String> getListOfTables();
+
+	/**
+	 * Create an empty cleanText table, deleting an existing one.
+	 */
+	public void createWikipediaCleanTextTable();
+
+	public void insertCleanText(String text, String page_id, String text_id);
+
+	/**
+	 * @return the ids of the cleanText records which have not been processed yet.
+	 */
+	public int[] getUnprocessedTextIds();
+
+	/**
+	 * Get a clean text and mark it as processed.
+	 */
+	public String getCleanText(int id);
+
+	/**
+	 * Get a clean text.
+	 *
+	 * @param markAsProcessed
+	 *            if false, the text is not marked as processed, see {@link #setCleanTextProcessed(int)}.
+	 */
+	public String getCleanText(int id, boolean markAsProcessed);
+
+	/**
+	 * Mark a clean text as processed, after all its sentences have been inserted in the dbselection table. Sentences inserted
+	 * before are written before the mark, so that the processing can be resumed with the unprocessed texts after an
+	 * interruption.
+	 */
+	public void setCleanTextProcessed(int id);
+
+	/**
+	 * Replace the word list by the given words and frequencies.
+	 */
+	public void insertWordList(HashMap<String, Integer> wordList);
+
+	/**
+	 * Get the most frequent words and their frequencies.
+	 *
+	 * @param numWords
+	 *            max number of words to retrieve, or 0 for all words.
+	 * @param maxFrequency
+	 *            only words with a frequency higher than this are retrieved, or 0 for all words.
+	 */
+	public HashMap<String, Integer> getMostFrequentWords(int numWords, int maxFrequency);
+
+	/**
+	 * Print the word list to a file, one "word frequency" per line.
+	 *
+	 * @param order
+	 *            word or frequency
+	 */
+	public void printWordList(String fileName, String order, int numWords, int maxFrequency);
+
+	/**
+	 * Create the dbselection table if it does not exist yet.
+	 */
+	public void createDataBaseSelectionTable();
+
+	/**
+	 * Insert a processed sentence in the dbselection table, with selected=false and unwanted=false.
+	 *
+	 * @param features
+	 *            the coverage features if the sentence is reliable, null otherwise.
+	 * @param cleanText_id
+	 *            the id of the cleanText this sentence comes from.
+	 */
+	public void insertSentence(String sentence, byte features[], boolean reliable, boolean unknownWords, boolean strangeSymbols,
+			int cleanText_id);
+
+	/**
+	 * Set a field of a sentence in the dbselection table.
+	 *
+	 * @param field
+	 *            reliable, unknownWords, strangeSymbols, selected or unwanted
+	 */
+	public void setSentenceRecord(int id, String field, boolean fieldValue);
+
+	/**
+	 * Get the ids of the records in a table which meet a condition.
+	 *
+	 * @param table
+	 *            cleanText or dbselection (without locale)
+	 * @param condition
+	 *            e.g. "reliable=true and unwanted=false", or null for all records
+	 * @return the ids in ascending order, or null if there are none.
+	 */
+	public int[] getIdListOfType(String table, String condition);
+
+	/**
+	 * Get the ids and the features of the sentences which meet a condition.
+	 *
+	 * @see #getIdListOfType(String, String)
+	 */
+	public Pair<int[], byte[][]> getIdsAndFeatureVectors(String table, String condition);
+
+	/**
+	 * Get the coverage features of a sentence in the dbselection table.
+	 */
+	public byte[] getFeatures(int id);
+
+	/**
+	 * Bulk load a set of features as identified by their IDs.
+	 *
+	 * @param ids
+	 *            a sorted array of feature IDs.
+	 * @return an array of coverage features, of the same length as the input array.
+	 */
+	public byte[][] getFeaturesBulk(int[] ids);
+
+	public String getDBSelectionSentence(int id);
+
+	/**
+	 * Create the selected sentences table if it does not exist yet; when it is created, all sentences in the dbselection table
+	 * are set to selected=false.
+	 */
+	public void createSelectedSentencesTable(String stopCriterion, String featDefFileName, String covDefConfigFileName);
+
+	/**
+	 * Add a sentence of the dbselection table to the selected sentences table.
+	 */
+	public void insertSelectedSentence(int dbselection_id, boolean unwanted);
+
+	/**
+	 * Get the dbselection ids of the sentences in a selected sentences table.
+	 *
+	 * @param actualTableName
+	 *            locale_tableName_selectedSentences
+	 * @param condition
+	 *            unwanted=true/false
+	 * @return the ids, or null if there are none.
+	 */
+	public int[] getIdListOfSelectedSentences(String actualTableName, String condition);
+
+	public String getSelectedSentence(String tableName, int id);
+
+	/**
+	 * Set the unwanted field of a sentence both in the selected sentences table and in the dbselection table.
+	 *
+	 * @param id
+	 *            id in dbselection table
+	 */
+	public void setUnwantedSentenceRecord(String actualTableName, int id, boolean fieldValue);
+
+	/**
+	 * Set a description for a table if it does not have one yet. The contents of the files are stored with the description.
+	 */
+	public void setTableDescription(String tableName, String description, String stopCriterion,
+			String featuresDefinitionFileName, String covDefConfigFileName);
+
+	/**
+	 * Get the description of the tableName
+	 *
+	 * @return and String array where: desc[0] tableName desc[1] description desc[2] stopCriterion desc[3]
+	 *         featuresDefinitionFileName desc[4] featuresDefinitionFile desc[5] covDefConfigFileName desc[6] covDefConfigFile
+	 */
+	public String[] getTableDescription(String tableName);
+
+	public void closeDBConnection();
+}
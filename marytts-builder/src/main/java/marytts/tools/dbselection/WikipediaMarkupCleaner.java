@@ -19,8 +19,12 @@
  */
 package marytts.tools.dbselection;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -31,6 +35,11 @@ import java.util.Scanner;
 import java.util.Vector;
 
 import org.apache.commons.lang.StringEscapeUtils;
+import org.mediawiki.importer.DumpWriter;
+import org.mediawiki.importer.Page;
+import org.mediawiki.importer.Revision;
+import org.mediawiki.importer.Siteinfo;
+import org.mediawiki.importer.XmlDumpReader;
 
 /**
  * WikipediaMarkupCleaner
@@ -41,6 +50,8 @@ public class WikipediaMarkupCleaner {
 
 	// locale
 	private String locale = null;
+	// local sentence store, used instead of the mySql database if set
+	private String dbDir = null;
 	// mySql database
 	private String mysqlHost = null;
 	private String mysqlDB = null;
@@ -66,6 +77,10 @@ public class WikipediaMarkupCleaner {
 		locale = str;
 	}
 
+	public void setDbDir(String str) {
+		dbDir = str;
+	}
+
 	public void setMysqlHost(String str) {
 		mysqlHost = str;
 	}
@@ -122,6 +137,10 @@ public class WikipediaMarkupCleaner {
 		return locale;
 	}
 
+	public String getDbDir() {
+		return dbDir;
+	}
+
 	public String getMysqlHost() {
 		return mysqlHost;
 	}
@@ -980,7 +999,7 @@ public class WikipediaMarkupCleaner {
 		sentences = null;
 	}
 
-	public void updateWordList(DBHandler wikiToDB, HashMap<String, Integer> wlNew) {
+	public void updateWordList(SentenceStore wikiToDB, HashMap<String, Integer> wlNew) {
 		String w;
 		HashMap<String, Integer> wlOld;
 		Integer freq;
@@ -1054,6 +1073,9 @@ public class WikipediaMarkupCleaner {
 	 * Using mwdumper extracts pages from a xmlWikiFile and load them in a mysql DB (it loads the tables "locale_text",
 	 * "locale_page" and "locale_revision", where locale is the corresponding wikipedia language). Once the tables are loaded,
 	 * extract/clean text from the pages and create a cleanText table. It also creates a wordList table including frequencies.
+	 * <p>
+	 * If a dbDir is set, the pages are read directly from the xmlWikiFile instead, and the cleanText and wordList tables are
+	 * stored in a {@link LocalSentenceStore} in that directory.
 	 * 
 	 * @throws Exception
 	 */
@@ -1064,35 +1086,42 @@ public class WikipediaMarkupCleaner {
 		Date dateIni = new Date();
 		dateStringIni = fullDate.format(dateIni);
 
-		DBHandler wikiToDB = new DBHandler(locale);
+		SentenceStore wikiToDB;
+		DBHandler mysqlHandler = null;
 
 		// hashMap for the dictionary, HashMap is faster than TreeMap so the list of words will
 		// be kept it in a hashMap. When the process finish the hashMap will be dump in the database.
 		HashMap<String, Integer> wordList;
 
-		System.out.println("Creating connection to DB server...");
-		wikiToDB.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
+		String pageId[] = null;
+		if (dbDir != null) {
+			wikiToDB = new LocalSentenceStore(locale, new File(dbDir));
+		} else {
+			mysqlHandler = new DBHandler(locale);
+			wikiToDB = mysqlHandler;
+			System.out.println("Creating connection to DB server...");
+			mysqlHandler.createDBConnection(mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
 
-		// This loading can take a while
-		// create and load TABLES: page, text and revision
+			// This loading can take a while
+			// create and load TABLES: page, text and revision
 
-		if (loadWikiTables) {
-			System.out.println("Creating and loading TABLES: page, text and revision. (The loading can take a while...)");
-			wikiToDB.loadPagesWithMWDumper(xmlWikiFile, locale, mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
-		} else {
-			// Checking if tables are already created and loaded in the DB
-			if (wikiToDB.checkWikipediaTables())
-				System.out.println("TABLES " + locale + "_page, " + locale + "_text and " + locale
-						+ "_revision already loaded (WARNING USING EXISTING WIKIPEDIA TABLES).");
-			else
-				throw new Exception("WikipediaMarkupCleaner: ERROR IN TABLES " + locale + "_page, " + locale + "_text and "
-						+ locale + "_revision, they are not CREATED/LOADED.");
-		}
+			if (loadWikiTables) {
+				System.out.println("Creating and loading TABLES: page, text and revision. (The loading can take a while...)");
+				mysqlHandler.loadPagesWithMWDumper(xmlWikiFile, locale, mysqlHost, mysqlDB, mysqlUser, mysqlPasswd);
+			} else {
+				// Checking if tables are already created and loaded in the DB
+				if (mysqlHandler.checkWikipediaTables())
+					System.out.println("TABLES " + locale + "_page, " + locale + "_text and " + locale
+							+ "_revision already loaded (WARNING USING EXISTING WIKIPEDIA TABLES).");
+				else
+					throw new Exception("WikipediaMarkupCleaner: ERROR IN TABLES " + locale + "_page, " + locale + "_text and "
+							+ locale + "_revision, they are not CREATED/LOADED.");
+			}
 
-		System.out.println("\nGetting page IDs");
-		String pageId[];
-		pageId = wikiToDB.getIds("page_id", locale + "_page");
-		System.out.println("Number of page IDs to process: " + pageId.length + "\n");
+			System.out.println("\nGetting page IDs");
+			pageId = mysqlHandler.getIds("page_id", locale + "_page");
+			System.out.println("Number of page IDs to process: " + pageId.length + "\n");
+		}
 
 		// create cleanText TABLE
 		if (deleteCleanTextTable) {
@@ -1119,40 +1148,28 @@ public class WikipediaMarkupCleaner {
 		StringBuilder textId = new StringBuilder();
 		int numPagesUsed = 0;
 
-		Vector<String> textList;
 		System.out.println("\nStart processing Wikipedia pages.... Start time:" + dateStringIni + "\n");
 
-		for (int i = 0; i < pageId.length; i++) {
-
-			// first filter
-			text = wikiToDB.getTextFromWikiPage(pageId[i], minPageLength, textId, pw);
-
-			if (text != null) {
-				textList = removeMarkup(text);
-				numPagesUsed++;
-				for (int j = 0; j < textList.size(); j++) {
-					text = textList.get(j);
-					if (text.length() > minTextLength) {
-						// if after cleaning the text is not empty or
-						wikiToDB.insertCleanText(text, pageId[i], textId.toString());
-						// insert the words in text in wordlist
-						addWordToHashMap(text, wordList);
-						if (debug)
-							System.out.println("Cleanedpage_id[" + i + "]=" + pageId[i] + "  textList (" + (j + 1) + "/"
-									+ textList.size() + ") length=" + text.length() + "  numPagesUsed=" + numPagesUsed
-									+ "  Wordlist[" + wordList.size() + "] ");
-
-						if (pw != null)
-							pw.println("CLEANED PAGE page_id[" + i + "]=" + pageId[i] + " textList (" + (j + 1) + "/"
-									+ textList.size() + ") length=" + text.length() + " Wordlist[" + wordList.size() + "] "
-									+ "  NUM_PAGES_USED=" + numPagesUsed + " text:\n\n" + text);
-					} else if (pw != null)
-						pw.println("PAGE NOT USED AFTER CLEANING page_id[" + i + "]=" + pageId[i] + " length=" + text.length());
-				} // for each text in textList
-				System.out.println("Cleanedpage_id[" + i + "]=" + pageId[i] + "  numPagesUsed=" + numPagesUsed + "  Wordlist["
-						+ wordList.size() + "] ");
-				textList.clear(); // clear the list of text
+		if (mysqlHandler != null) {
+			for (int i = 0; i < pageId.length; i++) {
+
+				// first filter
+				text = mysqlHandler.getTextFromWikiPage(pageId[i], minPageLength, textId, pw);
+
+				if (text != null) {
+					numPagesUsed++;
+					insertCleanText(wikiToDB, i, pageId[i], textId.toString(), text, numPagesUsed, wordList, pw);
+				}
+			}
+		} else {
+			DumpPageCleaner pageCleaner = new DumpPageCleaner(wikiToDB, wordList, pw);
+			InputStream xmlInput = new BufferedInputStream(new FileInputStream(xmlWikiFile));
+			try {
+				new XmlDumpReader(xmlInput, pageCleaner).readDump();
+			} finally {
+				xmlInput.close();
 			}
+			numPagesUsed = pageCleaner.numPagesUsed;
 		}
 		Date dateEnd = new Date();
 		dateStringEnd = fullDate.format(dateEnd);
@@ -1173,15 +1190,109 @@ public class WikipediaMarkupCleaner {
 				+ dateStringIni + "  End time:" + dateStringEnd);
 
 		// Once created the cleantext table delete the wikipedia text, page and revision tables.
-		wikiToDB.deleteWikipediaTables();
+		if (mysqlHandler != null)
+			mysqlHandler.deleteWikipediaTables();
 
 		wikiToDB.closeDBConnection();
 
 	}
 
+	/**
+	 * Clean the text of a page, insert the texts which are long enough in the cleanText table and add their words to the word
+	 * list.
+	 */
+	private void insertCleanText(SentenceStore wikiToDB, int i, String pageId, String textId, String text, int numPagesUsed,
+			HashMap<String, Integer> wordList, PrintWriter pw) {
+		Vector<String> textList = removeMarkup(text);
+		for (int j = 0; j < textList.size(); j++) {
+			text = textList.get(j);
+			if (text.length() > minTextLength) {
+				// if after cleaning the text is not empty or
+				wikiToDB.insertCleanText(text, pageId, textId);
+				// insert the words in text in wordlist
+				addWordToHashMap(text, wordList);
+				if (debug)
+					System.out.println("Cleanedpage_id[" + i + "]=" + pageId + "  textList (" + (j + 1) + "/" + textList.size()
+							+ ") length=" + text.length() + "  numPagesUsed=" + numPagesUsed + "  Wordlist[" + wordList.size()
+							+ "] ");
+
+				if (pw != null)
+					pw.println("CLEANED PAGE page_id[" + i + "]=" + pageId + " textList (" + (j + 1) + "/" + textList.size()
+							+ ") length=" + text.length() + " Wordlist[" + wordList.size() + "] " + "  NUM_PAGES_USED="
+							+ numPagesUsed + " text:\n\n" + text);
+			} else if (pw != null)
+				pw.println("PAGE NOT USED AFTER CLEANING page_id[" + i + "]=" + pageId + " length=" + text.length());
+		} // for each text in textList
+		System.out.println("Cleanedpage_id[" + i + "]=" + pageId + "  numPagesUsed=" + numPagesUsed + "  Wordlist["
+				+ wordList.size() + "] ");
+		textList.clear(); // clear the list of text
+	}
+
+	/**
+	 * Receives the pages from the mwdumper xml reader and cleans the text of their last revision, with the same first filter of
+	 * pages as {@link DBHandler#getTextFromWikiPage(String, int, StringBuilder, PrintWriter)}.
+	 */
+	private class DumpPageCleaner implements DumpWriter {
+		private final SentenceStore wikiToDB;
+		private final HashMap<String, Integer> wordList;
+		private final PrintWriter pw;
+		private Page page;
+		private Revision revision;
+		private int numPages = 0;
+		int numPagesUsed = 0;
+
+		DumpPageCleaner(SentenceStore wikiToDB, HashMap<String, Integer> wordList, PrintWriter pw) {
+			this.wikiToDB = wikiToDB;
+			this.wordList = wordList;
+			this.pw = pw;
+		}
+
+		public void writeStartPage(Page page) {
+			this.page = page;
+			revision = null;
+		}
+
+		public void writeRevision(Revision revision) {
+			this.revision = revision;
+		}
+
+		public void writeEndPage() throws IOException {
+			if (revision != null && revision.Text != null) {
+				// titles and page lengths as in the page table loaded by mwdumper
+				String pageTitle = page.Title.Text.replace(' ', '_');
+				int len = revision.Text.getBytes("UTF-8").length;
+				if (len >= minPageLength && !pageTitle.contains("Wikipedia:") && !pageTitle.contains("Image:")
+						&& !pageTitle.contains("Template:") && !pageTitle.contains("Category:")
+						&& !pageTitle.contains("List_of_")) {
+					if (pw != null)
+						pw.println("\nSELECTED PAGE TITLE=" + pageTitle + " Len=" + len);
+					numPagesUsed++;
+					insertCleanText(wikiToDB, numPages, Integer.toString(page.Id), Integer.toString(revision.Id), revision.Text,
+							numPagesUsed, wordList, pw);
+				}
+			}
+			numPages++;
+			page = null;
+			revision = null;
+		}
+
+		public void writeStartWiki() {
+		}
+
+		public void writeEndWiki() {
+		}
+
+		public void writeSiteinfo(Siteinfo info) {
+		}
+
+		public void close() {
+		}
+	}
+
 	private void printParameters() {
-		System.out.println("WikipediaMarkupCleaner parameters:" + "\n  -mysqlHost " + getMysqlHost() + "\n  -mysqlUser "
-				+ getMysqlUser() + "\n  -mysqlPasswd " + getMysqlPasswd() + "\n  -mysqlDB " + getMysqlDB() + "\n  -xmlFile "
+		System.out.println("WikipediaMarkupCleaner parameters:" + "\n  -dbDir " + getDbDir() + "\n  -mysqlHost " + getMysqlHost()
+				+ "\n  -mysqlUser " + getMysqlUser() + "\n  -mysqlPasswd " + getMysqlPasswd() + "\n  -mysqlDB " + getMysqlDB()
+				+ "\n  -xmlFile "
 				+ getXmlWikiFile() + "\n  -minPage " + getMinPageLength() + "\n  -minText " + getMinTextLength()
 				+ "\n  -maxText " + getMaxTextLength() + "\n  -log " + getWikiLog() + "\n  -debugPageId " + getTestId());
 
@@ -1211,8 +1322,11 @@ public class WikipediaMarkupCleaner {
 
 		String help = "\nUsage: java WikipediaMarkupCleaner -locale language -mysqlHost host -mysqlUser user  \n"
 				+ "                       -mysqlPasswd passwd -mysqlDB wikiDB -xmlFile xmlWikiFile \n"
+				+ "       (or: java WikipediaMarkupCleaner -locale language -dbDir dir -xmlFile xmlWikiFile) \n"
 				+ "      default/optional: [-minPage 10000 -minText 1000 -maxText 15000] \n"
 				+ "      optional: [-log wikiLogFile -id pageId -debug]\n\n"
+				+ "      -dbDir the cleanText and wordList tables are stored in files in this directory instead of a mysql database,\n"
+				+ "           and the pages are read directly from the xmlWikiFile.\n"
 				+ "      -minPage is the minimum size of a wikipedia page that will be considered for cleaning.\n"
 				+ "      -minText is the minimum size of a text to be kept in the DB.\n"
 				+ "      -maxText is used to split big articles in small chunks, this is the maximum chunk size. \n"
@@ -1224,11 +1338,14 @@ public class WikipediaMarkupCleaner {
 				+ "      -noDeleteCleanTextTable use this variable to do NOT create a new cleanText table, but adding to an already existing\n"
 				+ "       cleanText table.\n";
 
-		if (args.length >= 12) { // minimum 12 parameters
+		if (args.length >= 6) { // minimum 6 parameters
 			for (int i = 0; i < args.length; i++) {
 				if (args[i].contentEquals("-locale") && args.length >= (i + 1))
 					setLocale(args[++i]);
 
+				else if (args[i].contentEquals("-dbDir") && args.length >= (i + 1))
+					setDbDir(args[++i]);
+
 				else if (args[i].contentEquals("-mysqlHost") && args.length >= (i + 1))
 					setMysqlHost(args[++i]);
 
@@ -1290,8 +1407,9 @@ public class WikipediaMarkupCleaner {
 			return false;
 		}
 
-		if (getMysqlHost() == null || getMysqlUser() == null || getMysqlPasswd() == null || getMysqlDB() == null) {
-			System.out.println("\nMissing required mysql parameters (one/several required variables are null).");
+		if (getDbDir() == null
+				&& (getMysqlHost() == null || getMysqlUser() == null || getMysqlPasswd() == null || getMysqlDB() == null)) {
+			System.out.println("\nMissing required mysql parameters (one/several required variables are null) or dbDir.");
 			printParameters();
 			System.out.println(help);
 			return false;
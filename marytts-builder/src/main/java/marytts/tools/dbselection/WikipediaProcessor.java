@@ -35,6 +35,9 @@ import java.util.Vector;
  * local_page and local_revision are loaded. Once the tables are loaded the WikipediMarkupCleaner is used to extract clean text
  * and a wordList, as a result two tables will be created in the database: local_cleanText and local_wordList (the wordList is
  * also saved in a file).
+ * <p>
+ * With -dbDir, the xml files are read directly and the clean text and wordList are stored in a {@link LocalSentenceStore} in
+ * that directory, so that no mysql server is needed.
  * 
  * @author Marcela Charfuelan.
  */
@@ -42,6 +45,8 @@ public class WikipediaProcessor {
 
 	// locale
 	private String locale = null;
+	// local sentence store, used instead of the mySql database if set
+	private String dbDir = null;
 	// mySql database
 	private String mysqlHost = null;
 	private String mysqlDB = null;
@@ -70,6 +75,10 @@ public class WikipediaProcessor {
 		locale = str;
 	}
 
+	public void setDbDir(String str) {
+		dbDir = str;
+	}
+
 	public void setMysqlHost(String str) {
 		mysqlHost = str;
 	}
@@ -138,6 +147,10 @@ public class WikipediaProcessor {
 		return locale;
 	}
 
+	public String getDbDir() {
+		return dbDir;
+	}
+
 	public String getMysqlHost() {
 		return mysqlHost;
 	}
@@ -203,8 +216,9 @@ public class WikipediaProcessor {
 	}
 
 	private void printParameters() {
-		System.out.println("WikipediaMarkupCleaner parameters:" + "\n  -mysqlHost " + getMysqlHost() + "\n  -mysqlUser "
-				+ getMysqlUser() + "\n  -mysqlPasswd " + getMysqlPasswd() + "\n  -mysqlDB " + getMysqlDB() + "\n  -listFile "
+		System.out.println("WikipediaMarkupCleaner parameters:" + "\n  -dbDir " + getDbDir() + "\n  -mysqlHost " + getMysqlHost()
+				+ "\n  -mysqlUser " + getMysqlUser() + "\n  -mysqlPasswd " + getMysqlPasswd() + "\n  -mysqlDB " + getMysqlDB()
+				+ "\n  -listFile "
 				+ getListFile() + "\n  -minPage " + getMinPageLength() + "\n  -minText " + getMinTextLength() + "\n  -maxText "
 				+ getMaxTextLength());
 
@@ -221,19 +235,24 @@ public class WikipediaProcessor {
 
 		String help = "\nUsage: java WikipediaProcessor -locale language -mysqlHost host -mysqlUser user -mysqlPasswd passwd \n"
 				+ "                                   -mysqlDB wikiDB -listFile wikiFileList.\n"
+				+ "       (or: java WikipediaProcessor -locale language -dbDir dir -listFile wikiFileList)\n"
 				+ "                                   [-minPage 10000 -minText 1000 -maxText 15000] \n\n"
 				+ "      -listFile is a a text file that contains the xml wikipedia file names to be procesed. \n"
-				+ "      This program requires the jar file mwdumper-2008-04-13.jar (or latest). \n\n"
+				+ "      This program requires the jar file mwdumper-2008-04-13.jar (or latest). \n"
+				+ "      -dbDir the cleanText and wordList tables are stored in files in this directory instead of a mysql database.\n\n"
 				+ "      default/optional: [-minPage 10000 -minText 1000 -maxText 15000] \n"
 				+ "      -minPage is the minimum size of a wikipedia page that will be considered for cleaning.\n"
 				+ "      -minText is the minimum size of a text to be kept in the DB.\n"
 				+ "      -maxText is used to split big articles in small chunks, this is the maximum chunk size. \n";
 
-		if (args.length >= 12) { // minimum 12 parameters
+		if (args.length >= 6) { // minimum 6 parameters
 			for (int i = 0; i < args.length; i++) {
 				if (args[i].contentEquals("-locale") && args.length >= (i + 1))
 					setLocale(args[++i]);
 
+				else if (args[i].contentEquals("-dbDir") && args.length >= (i + 1))
+					setDbDir(args[++i]);
+
 				else if (args[i].contentEquals("-mysqlHost") && args.length >= (i + 1))
 					setMysqlHost(args[++i]);
 
@@ -266,13 +285,14 @@ public class WikipediaProcessor {
 				}
 
 			}
-		} else { // num arguments less than 12
+		} else { // num arguments less than 6
 			System.out.println(help);
 			return false;
 		}
 
-		if (getMysqlHost() == null || getMysqlUser() == null || getMysqlPasswd() == null || getMysqlDB() == null) {
-			System.out.println("\nMissing required mysql parameters (one/several required variables are null).");
+		if (getDbDir() == null
+				&& (getMysqlHost() == null || getMysqlUser() == null || getMysqlPasswd() == null || getMysqlDB() == null)) {
+			System.out.println("\nMissing required mysql parameters (one/several required variables are null) or dbDir.");
 			printParameters();
 			System.out.println(help);
 			return false;
@@ -376,8 +396,14 @@ public class WikipediaProcessor {
 		wiki.printParameters();
 
 		// checking if cleanText table exist
-		DBHandler wikiToDB = new DBHandler(wiki.getLocale());
-		wikiToDB.createDBConnection(wiki.getMysqlHost(), wiki.getMysqlDB(), wiki.getMysqlUser(), wiki.getMysqlPasswd());
+		SentenceStore wikiToDB;
+		if (wiki.getDbDir() != null) {
+			wikiToDB = new LocalSentenceStore(wiki.getLocale(), new File(wiki.getDbDir()));
+		} else {
+			DBHandler mysqlHandler = new DBHandler(wiki.getLocale());
+			mysqlHandler.createDBConnection(wiki.getMysqlHost(), wiki.getMysqlDB(), wiki.getMysqlUser(), wiki.getMysqlPasswd());
+			wikiToDB = mysqlHandler;
+		}
 		char c;
 		boolean result = false, processFiles = true;
 		InputStreamReader isr = new InputStreamReader(System.in);
@@ -434,6 +460,7 @@ public class WikipediaProcessor {
 						wikiCleaner.setMaxTextLength(wiki.getMaxTextLength());
 						wikiCleaner.setMinPageLength(wiki.getMinPageLength());
 						wikiCleaner.setMinTextLength(wiki.getMinTextLength());
+						wikiCleaner.setDbDir(wiki.getDbDir());
 						wikiCleaner.setMysqlDB(wiki.getMysqlDB());
 						wikiCleaner.setMysqlHost(wiki.getMysqlHost());
 						wikiCleaner.setMysqlPasswd(wiki.getMysqlPasswd());
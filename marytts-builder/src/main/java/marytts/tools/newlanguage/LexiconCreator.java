@@ -274,12 +274,13 @@ public class LexiconCreator {
 		TrainedLTS lts = new TrainedLTS(allophoneSet, st);
 
 		logger.info(" - looking up " + testGraphemes.size() + " test words...");
+		List<String> predictions = lts.predictPronunciations(testGraphemes);
 		int max = testGraphemes.size();
 		int correct = 0;
 		for (int i = 0; i < max; i++) {
 			String key = testGraphemes.get(i);
 			String expected = testAllophones.get(i);
-			String result = lts.syllabify(lts.predictPronunciation(key));
+			String result = lts.syllabify(predictions.get(i));
 			if (!expected.equals(result))
 				logger.info("    " + key + " -> " + result + " (expected: " + expected + ")");
 			else
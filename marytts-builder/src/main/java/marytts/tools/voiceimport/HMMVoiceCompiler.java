@@ -10,9 +10,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Scanner;
 import java.util.StringTokenizer;
 
+import marytts.exceptions.MaryConfigurationException;
+import marytts.htsengine.HMMData;
+import marytts.htsengine.TreeSetBundle;
+import marytts.util.io.PropertiesAccessor;
+
 import org.apache.commons.io.FileUtils;
 
 /**
@@ -52,6 +58,9 @@ public class HMMVoiceCompiler extends VoiceCompiler {
 	public static String pdfMcpFile;
 	public static String pdfStrFile;
 
+	/** Precompiled trees and pdfs, created from the files above */
+	public static String treeSetBundleFile;
+
 	/** Global variance files */
 	public static String pdfLf0GvFile;
 	public static String pdfMcpGvFile;
@@ -107,6 +116,7 @@ public class HMMVoiceCompiler extends VoiceCompiler {
 		pdfLf0File = "hts/voices/qst" + qnum + "/ver" + vnum + "/lf0.pdf";
 		pdfMcpFile = "hts/voices/qst" + qnum + "/ver" + vnum + "/mgc.pdf";
 		pdfStrFile = "hts/voices/qst" + qnum + "/ver" + vnum + "/str.pdf";
+		treeSetBundleFile = "hts/voices/qst" + qnum + "/ver" + vnum + "/treeset.bin";
 
 		/** Global variance files */
 		pdfLf0GvFile = "hts/voices/qst" + qnum + "/ver" + vnum + "/gv-lf0.pdf";
@@ -120,7 +130,7 @@ public class HMMVoiceCompiler extends VoiceCompiler {
 		// Now I know the names of the resources so I can set the files for resources on the maven compiler
 		String[] filenamesResources = new String[] { rootDir + treeDurFile, rootDir + treeLf0File, rootDir + treeMcpFile,
 				rootDir + treeStrFile, rootDir + pdfDurFile, rootDir + pdfLf0File, rootDir + pdfMcpFile, rootDir + pdfStrFile,
-				rootDir + pdfLf0GvFile, rootDir + pdfMcpGvFile, rootDir + pdfStrGvFile, rootDir + mixFiltersFileLocation,
+				rootDir + treeSetBundleFile, rootDir + pdfLf0GvFile, rootDir + pdfMcpGvFile, rootDir + pdfStrGvFile, rootDir + mixFiltersFileLocation,
 				rootDir + featuresFileExample, rootDir + db.getProperty(trickyPhonesFile) };
 		File[] filesForResources = new File[filenamesResources.length];
 		for (int i = 0; i < filenamesResources.length; i++) {
@@ -146,6 +156,60 @@ public class HMMVoiceCompiler extends VoiceCompiler {
 			replaceBackFeatureNames(rootDir + treeMcpFile);
 			replaceBackFeatureNames(rootDir + treeStrFile);
 		}
+
+		compileTreeSetBundle(rootDir);
+	}
+
+	/**
+	 * Load the trees and pdfs as the runtime does, and write them as a precompiled bundle, so that the voice does not need to
+	 * parse the tree files at startup.
+	 * 
+	 * @param rootDir
+	 *            the voice building directory
+	 * @throws IOException
+	 */
+	private void compileTreeSetBundle(String rootDir) throws IOException {
+		Properties voiceFiles = new Properties();
+		voiceFiles.setProperty("Ftd", rootDir + treeDurFile);
+		voiceFiles.setProperty("Ftf", rootDir + treeLf0File);
+		voiceFiles.setProperty("Ftm", rootDir + treeMcpFile);
+		voiceFiles.setProperty("Fts", rootDir + treeStrFile);
+		voiceFiles.setProperty("Fmd", rootDir + pdfDurFile);
+		voiceFiles.setProperty("Fmf", rootDir + pdfLf0File);
+		voiceFiles.setProperty("Fmm", rootDir + pdfMcpFile);
+		voiceFiles.setProperty("Fms", rootDir + pdfStrFile);
+		voiceFiles.setProperty("FeaFile", rootDir + featuresFileExample);
+		voiceFiles.setProperty("trickyPhonesFile", rootDir + db.getProperty(trickyPhonesFile));
+		compileTreeSetBundle(getVoiceName(db), voiceFiles, new File(rootDir + treeSetBundleFile));
+		logger.info("Compiled trees and pdfs into " + rootDir + treeSetBundleFile);
+	}
+
+	/**
+	 * Load the trees and pdfs of a voice as the runtime does, and write them as a precompiled bundle.
+	 * 
+	 * @param voiceName
+	 *            the name of the voice
+	 * @param voiceFiles
+	 *            the tree, pdf, feature and tricky phone files, keyed by their voice config property without the voice prefix,
+	 *            e.g. "Ftd"; values may be file names or "jar:" resources
+	 * @param bundleFile
+	 *            the bundle to write
+	 * @throws IOException
+	 *             if the files cannot be read or the bundle cannot be written
+	 */
+	static void compileTreeSetBundle(String voiceName, Properties voiceFiles, File bundleFile) throws IOException {
+		String prefix = "voice." + voiceName;
+		Properties props = new Properties();
+		for (String key : voiceFiles.stringPropertyNames()) {
+			props.setProperty(prefix + "." + key, voiceFiles.getProperty(key));
+		}
+		try {
+			HMMData htsData = new HMMData();
+			htsData.initHMMData(new PropertiesAccessor(props), voiceName);
+			TreeSetBundle.write(htsData, bundleFile);
+		} catch (MaryConfigurationException e) {
+			throw new IOException("Cannot compile tree set bundle", e);
+		}
 	}
 
 	@Override
@@ -36,12 +36,12 @@ import java.io.DataOutputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
-import marytts.exceptions.MaryConfigurationException;
 import marytts.features.FeatureDefinition;
 import marytts.features.FeatureVector;
 import marytts.unitselection.data.FeatureFileReader;
@@ -93,15 +93,15 @@ public class JoinCostPrecomputer extends VoiceImportComponent {
 	}
 
 	@Override
-	public boolean compute() throws IOException, MaryConfigurationException {
+	public boolean compute() throws Exception {
 		System.out.println("---- Precomputing join costs");
-		int retainPercent = Integer.getInteger("joincostprecomputer.retainpercent", 10).intValue();
-		int retainMin = Integer.getInteger("joincostprecomputer.retainmin", 20).intValue();
+		final int retainPercent = Integer.getInteger("joincostprecomputer.retainpercent", 10).intValue();
+		final int retainMin = Integer.getInteger("joincostprecomputer.retainmin", 20).intValue();
 		System.out.println("Will retain the top " + retainPercent + "% (but at least " + retainMin
 				+ ") of all joins within a phone");
 
 		/* Make a new join cost file to write to */
-		DataOutputStream jc = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getProp(JOINCOSTFILE))));
+		final DataOutputStream jc = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getProp(JOINCOSTFILE))));
 
 		/**********/
 		/* HEADER */
@@ -112,17 +112,17 @@ public class JoinCostPrecomputer extends VoiceImportComponent {
 		hdr = null;
 
 		FeatureFileReader unitFeatures = FeatureFileReader.getFeatureFileReader(getProp(UNITFEATURESFILE));
-		JoinCostFeatures joinFeatures = new JoinCostFeatures(getProp(JOINCOSTFEATURESFILE));
+		final JoinCostFeatures joinFeatures = new JoinCostFeatures(getProp(JOINCOSTFEATURESFILE));
 		UnitFileReader units = new UnitFileReader(getProp(UNITFILE));
 		if (unitFeatures.getNumberOfUnits() != joinFeatures.getNumberOfUnits())
 			throw new IllegalStateException("Number of units in unit and join feature files does not match!");
 		if (unitFeatures.getNumberOfUnits() != units.getNumberOfUnits())
 			throw new IllegalStateException("Number of units in unit file and unit feature file does not match!");
 		int numUnits = unitFeatures.getNumberOfUnits();
-		FeatureDefinition def = unitFeatures.getFeatureDefinition();
-		int iPhoneme = def.getFeatureIndex("phone");
+		final FeatureDefinition def = unitFeatures.getFeatureDefinition();
+		final int iPhoneme = def.getFeatureIndex("phone");
 		int nPhonemes = def.getNumberOfValues(iPhoneme);
-		List[] left = new List[nPhonemes]; // left half phones grouped by phone
+		final List[] left = new List[nPhonemes]; // left half phones grouped by phone
 		List[] right = new List[nPhonemes]; // right half phones grouped by phone
 		for (int i = 0; i < nPhonemes; i++) {
 			left[i] = new ArrayList();
@@ -145,82 +145,97 @@ public class JoinCostPrecomputer extends VoiceImportComponent {
 		}
 
 		System.out.println("Sorted units by phone and halfphone. Now computing costs.");
-		int totalLeftUnits = 0;
+		int nLeftUnits = 0;
 		for (int i = 0; i < nPhonemes; i++) {
-			totalLeftUnits += left[i].size();
+			nLeftUnits += left[i].size();
 		}
+		final int totalLeftUnits = nLeftUnits;
 		jc.writeInt(totalLeftUnits);
+		// The costs for each left halfphone are computed independently, in parallel, and written in the order of phones:
+		final int[] leftIndices = new int[totalLeftUnits];
+		final int[] leftPhones = new int[totalLeftUnits];
+		for (int i = 0, n = 0; i < nPhonemes; i++) {
+			for (int j = 0; j < left[i].size(); j++, n++) {
+				leftIndices[n] = ((Unit) left[i].get(j)).index;
+				leftPhones[n] = i;
+			}
+		}
+		final int[][] rightIndices = new int[nPhonemes][];
 		for (int i = 0; i < nPhonemes; i++) {
-			String phoneSymbol = def.getFeatureValueAsString(iPhoneme, i);
-			int nLeftPhoneme = left[i].size();
-			int nRightPhoneme = right[i].size();
-			System.out.println(phoneSymbol + ": " + nLeftPhoneme + " left, " + nRightPhoneme + " right half phones");
-			for (int j = 0; j < nLeftPhoneme; j++) {
-				Unit uleft = (Unit) left[i].get(j);
-				SortedMap sortedCosts = new TreeMap();
-				int ileft = uleft.index;
-				// System.out.println("Left unit "+j+" (index "+ileft+")");
-				jc.writeInt(ileft);
-				// Now for this left halfphone, compute the cost of joining to each
-				// right halfphones of the same phone, and remember only the best.
-				for (int k = 0; k < nRightPhoneme; k++) {
-					Unit uright = (Unit) right[i].get(k);
-					int iright = uright.index;
-					// System.out.println("right unit "+k+" (index "+iright+")");
-					double cost = joinFeatures.cost(ileft, iright);
-					Double dCost = new Double(cost);
-					// make sure we don't overwrite any existing entry:
-					if (!sortedCosts.containsKey(dCost)) {
-						sortedCosts.put(dCost, uright);
-					} else {
-						Object value = sortedCosts.get(dCost);
-						List newVal = new ArrayList();
-						if (value instanceof List)
-							newVal.addAll((List) value);
-						else
-							newVal.add(value);
-						newVal.add(uright);
-						sortedCosts.put(dCost, newVal);
-					}
+			rightIndices[i] = new int[right[i].size()];
+			for (int k = 0; k < rightIndices[i].length; k++) {
+				rightIndices[i][k] = ((Unit) right[i].get(k)).index;
+			}
+		}
+		processInParallel("left halfphones", totalLeftUnits, new Task<RetainedJoins>() {
+			public RetainedJoins compute(int n) {
+				return computeBestJoins(joinFeatures, leftIndices[n], rightIndices[leftPhones[n]], retainPercent, retainMin);
+			}
+		}, new ResultHandler<RetainedJoins>() {
+			public void handle(int n, RetainedJoins joins) throws IOException {
+				int i = leftPhones[n];
+				if (n == 0 || leftPhones[n - 1] != i) {
+					String phoneSymbol = def.getFeatureValueAsString(iPhoneme, i);
+					System.out.println(phoneSymbol + ": " + left[i].size() + " left, " + rightIndices[i].length
+							+ " right half phones");
 				}
-				// Number of joins we will retain:
-				int nRetain = nRightPhoneme * retainPercent / 100;
-				if (nRetain < retainMin)
-					nRetain = retainMin;
-				if (nRetain > nRightPhoneme)
-					nRetain = nRightPhoneme;
-				jc.writeInt(nRetain);
-				Iterator it = sortedCosts.keySet().iterator();
-				for (int k = 0; k < nRetain;) {
-					Double cost = (Double) it.next();
-					float fcost = cost.floatValue();
-					Object ob = sortedCosts.get(cost);
-					if (ob instanceof Unit) {
-						Unit u = (Unit) ob;
-						int iright = u.index;
-						jc.writeInt(iright);
-						jc.writeFloat(fcost);
-						k++;
-					} else {
-						assert ob instanceof List;
-						List l = (List) ob;
-						for (Iterator li = l.iterator(); k < nRetain && li.hasNext();) {
-							Unit u = (Unit) li.next();
-							int iright = u.index;
-							jc.writeInt(iright);
-							jc.writeFloat(fcost);
-							k++;
-						}
-					}
+				jc.writeInt(leftIndices[n]);
+				jc.writeInt(joins.rightIndices.length);
+				for (int k = 0; k < joins.rightIndices.length; k++) {
+					jc.writeInt(joins.rightIndices[k]);
+					jc.writeFloat(joins.costs[k]);
 				}
+				percent = 100 * (n + 1) / totalLeftUnits;
 			}
-			percent += 100 * nLeftPhoneme / totalLeftUnits;
-		}
+		});
 		jc.close();
 		PrecompiledJoinCostReader tester = new PrecompiledJoinCostReader(getProp(JOINCOSTFILE));
 		return true;
 	}
 
+	/**
+	 * The best joins of one left halfphone, in order of increasing cost.
+	 */
+	private static class RetainedJoins {
+		int[] rightIndices;
+		float[] costs;
+	}
+
+	/**
+	 * For the given left halfphone, compute the cost of joining to each right halfphone of the same phone, and remember only the
+	 * best. Joins with equal cost are kept in the order of the right halfphones.
+	 */
+	private static RetainedJoins computeBestJoins(JoinCostFeatures joinFeatures, int ileft, int[] rightUnits, int retainPercent,
+			int retainMin) {
+		int nRightPhoneme = rightUnits.length;
+		final double[] costs = new double[nRightPhoneme];
+		Integer[] order = new Integer[nRightPhoneme];
+		for (int k = 0; k < nRightPhoneme; k++) {
+			costs[k] = joinFeatures.cost(ileft, rightUnits[k]);
+			order[k] = k;
+		}
+		// a stable sort:
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer k1, Integer k2) {
+				return Double.compare(costs[k1], costs[k2]);
+			}
+		});
+		// Number of joins we will retain:
+		int nRetain = nRightPhoneme * retainPercent / 100;
+		if (nRetain < retainMin)
+			nRetain = retainMin;
+		if (nRetain > nRightPhoneme)
+			nRetain = nRightPhoneme;
+		RetainedJoins joins = new RetainedJoins();
+		joins.rightIndices = new int[nRetain];
+		joins.costs = new float[nRetain];
+		for (int k = 0; k < nRetain; k++) {
+			joins.rightIndices[k] = rightUnits[order[k]];
+			joins.costs[k] = (float) costs[order[k]];
+		}
+		return joins;
+	}
+
 	/**
 	 * Provide the progress of computation, in percent, or -1 if that feature is not implemented.
 	 * 
@@ -110,7 +110,7 @@ public class PhoneUnitFeatureComputer extends VoiceImportComponent {
 		props2Help.put(MARYSERVERPORT, "the port were the Mary server is listening, default: \"59125\"");
 	}
 
-	public MaryHttpClient getMaryClient() throws IOException {
+	public synchronized MaryHttpClient getMaryClient() throws IOException {
 		if (mary == null) {
 			try {
 				mary = new MaryHttpClient(new Address(getProp(MARYSERVERHOST), Integer.parseInt(getProp(MARYSERVERPORT))));
@@ -155,17 +155,24 @@ public class PhoneUnitFeatureComputer extends VoiceImportComponent {
 
 	}
 
-	public boolean compute() throws IOException {
+	public boolean compute() throws Exception {
 
 		loadFeatureList();
 
 		textDir = new File(db.getProp(db.TEXTDIR));
 		System.out.println("Computing unit features for " + bnl.getLength() + " files");
-		for (int i = 0; i < bnl.getLength(); i++) {
-			percent = 100 * i / bnl.getLength();
-			computeFeaturesFor(bnl.getName(i));
-			System.out.println("    " + bnl.getName(i));
-		}
+		// the MARY server processes the requests for several files at once
+		processInParallel("files", bnl.getLength(), new Task<Void>() {
+			public Void compute(int i) throws IOException {
+				computeFeaturesFor(bnl.getName(i));
+				return null;
+			}
+		}, new ResultHandler<Void>() {
+			public void handle(int i, Void result) {
+				percent = 100 * (i + 1) / bnl.getLength();
+				System.out.println("    " + bnl.getName(i));
+			}
+		});
 		System.out.println("Finished computing the unit features.");
 		return true;
 	}
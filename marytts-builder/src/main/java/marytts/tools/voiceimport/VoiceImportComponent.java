@@ -19,7 +19,14 @@
  */
 package marytts.tools.voiceimport;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import marytts.util.MaryUtils;
 import marytts.util.io.BasenameList;
@@ -34,6 +41,12 @@ import org.apache.log4j.Logger;
  *
  */
 public abstract class VoiceImportComponent {
+	/** System property setting the number of worker threads for {@link #processInParallel(String, int, Task, ResultHandler)} */
+	public static final String NUMTHREADS = "voiceimport.threads";
+
+	/** Interval between progress reports of {@link #processInParallel(String, int, Task, ResultHandler)}, in milliseconds */
+	private static final long REPORT_INTERVAL = 10000;
+
 	protected SortedMap<String, String> props = null;
 	protected SortedMap<String, String> props2Help = null;
 	protected BasenameList bnl;
@@ -128,6 +141,110 @@ public abstract class VoiceImportComponent {
 	 */
 	public abstract int getProgress();
 
+	/**
+	 * Computes the result for one of a number of independent work items, e.g. for one basename. Implementations are called from
+	 * several threads at once and must not modify shared state.
+	 */
+	protected interface Task<T> {
+		T compute(int item) throws Exception;
+	}
+
+	/**
+	 * Consumes the results of a {@link Task}, e.g. by writing them to a file.
+	 */
+	protected interface ResultHandler<T> {
+		void handle(int item, T result) throws Exception;
+	}
+
+	/**
+	 * Get the number of worker threads for processing independent work items, as given by the system property
+	 * {@value #NUMTHREADS}, and by default the number of available processors.
+	 * 
+	 * @return the number of threads, at least 1
+	 */
+	protected int getNumberOfThreads() {
+		return Math.max(1, Integer.getInteger(NUMTHREADS, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Compute the results for numItems independent work items on a pool of {@link #getNumberOfThreads()} worker threads. The
+	 * results are passed to the handler in item order, on the calling thread, so that output files are identical to those of a
+	 * sequential run. Only a limited number of items are computed ahead of the one currently handled. Progress and throughput are
+	 * reported on System.out.
+	 * 
+	 * @param itemName
+	 *            what the items are, for the progress report, e.g. "files"
+	 * @param numItems
+	 *            the number of items
+	 * @param task
+	 *            computes the result for an item
+	 * @param handler
+	 *            consumes the results
+	 * @throws Exception
+	 *             the first exception thrown by the task or the handler; the remaining items are not processed.
+	 */
+	protected <T> void processInParallel(String itemName, int numItems, final Task<T> task, ResultHandler<T> handler)
+			throws Exception {
+		int numThreads = Math.min(getNumberOfThreads(), numItems);
+		long startTime = System.currentTimeMillis();
+		long lastReport = startTime;
+		if (numThreads <= 1) {
+			for (int i = 0; i < numItems; i++) {
+				handler.handle(i, task.compute(i));
+				lastReport = reportProgress(itemName, i + 1, numItems, startTime, lastReport);
+			}
+		} else {
+			ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+			try {
+				int window = 4 * numThreads;
+				Deque<Future<T>> pending = new ArrayDeque<Future<T>>(window);
+				int next = 0;
+				for (int i = 0; i < numItems; i++) {
+					while (next < numItems && next < i + window) {
+						final int item = next++;
+						pending.add(pool.submit(new Callable<T>() {
+							public T call() throws Exception {
+								return task.compute(item);
+							}
+						}));
+					}
+					handler.handle(i, getResult(pending.poll()));
+					lastReport = reportProgress(itemName, i + 1, numItems, startTime, lastReport);
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		long time = System.currentTimeMillis() - startTime;
+		System.out.println(getName() + ": processed " + numItems + " " + itemName + " in " + (time / 1000.) + " s using "
+				+ numThreads + " thread(s)" + (time > 0 ? String.format(" (%.1f per second)", 1000. * numItems / time) : ""));
+	}
+
+	private static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	private long reportProgress(String itemName, int done, int numItems, long startTime, long lastReport) {
+		long now = System.currentTimeMillis();
+		if (now - lastReport < REPORT_INTERVAL || done == numItems) {
+			return lastReport;
+		}
+		double perSecond = 1000. * done / (now - startTime);
+		System.out.println(String.format("    %d/%d %s (%.1f per second, %d s remaining)", done, numItems, itemName, perSecond,
+				(long) ((numItems - done) / perSecond)));
+		return now;
+	}
+
 	public String getHelpText() {
 		StringBuilder helpText = new StringBuilder();
 		helpText.append("<html>\n<head>\n<title>SETTINGS HELP</title>\n" + "</head>\n<body>\n"
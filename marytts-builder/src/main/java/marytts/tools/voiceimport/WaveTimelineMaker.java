@@ -33,6 +33,7 @@ package marytts.tools.voiceimport;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.SortedMap;
 import java.util.TreeMap;
@@ -108,52 +109,37 @@ public class WaveTimelineMaker extends VoiceImportComponent {
 
 			/* 3) Write the datagrams and feed the index */
 
-			float totalDuration = 0.0f; // Accumulator for the total timeline duration
-			long totalTime = 0l;
-			int numDatagrams = 0;
-
-			/* For each EST track file: */
-			ESTTrackReader pmFile = null;
-			for (int i = 0; i < baseNameArray.length; i++) {
-				percent = 100 * i / baseNameArray.length;
-
-				/* - open+load */
-				System.out.println(baseNameArray[i]);
-				pmFile = new ESTTrackReader(db.getProp(PMDIR) + baseNameArray[i] + db.getProp(PMEXT));
-				totalDuration += pmFile.getTimeSpan();
-				wav = new WavReader(db.getProp(db.WAVDIR) + baseNameArray[i] + db.getProp(db.WAVEXT));
-				short[] wave = wav.getSamples();
-				/* - Reset the frame locations in the local file */
-				int frameStart = 0;
-				int frameEnd = 0;
-				int duration = 0;
-				long localTime = 0l;
-				/* - For each frame in the WAV file: */
-				for (int f = 0; f < pmFile.getNumFrames(); f++) {
-
-					/* Locate the corresponding segment in the wave file */
-					frameStart = frameEnd;
-					frameEnd = (int) ((double) pmFile.getTime(f) * (double) (globSampleRate));
-					assert frameEnd <= wave.length : "Frame ends after end of wave data: " + frameEnd + " > " + wave.length;
-
-					duration = frameEnd - frameStart;
-					ByteArrayOutputStream buff = new ByteArrayOutputStream(2 * duration);
-					DataOutputStream subWave = new DataOutputStream(buff);
-					for (int k = 0; k < duration; k++) {
-						subWave.writeShort(wave[frameStart + k]);
+			/*
+			 * The files are read and cut into datagrams on several threads; the datagrams are fed to the timeline in the order of
+			 * the basename list.
+			 */
+			final String[] baseNames = baseNameArray;
+			final int sampleRate = globSampleRate;
+			final TimelineWriter timeline = waveTimeline;
+			final float[] totalDuration = new float[1]; // Accumulator for the total timeline duration
+			final long[] totalTime = new long[1];
+			final int[] numDatagrams = new int[1];
+			processInParallel("files", baseNames.length, new Task<FoldedWave>() {
+				public FoldedWave compute(int i) throws Exception {
+					return foldWave(baseNames[i], sampleRate);
+				}
+			}, new ResultHandler<FoldedWave>() {
+				public void handle(int i, FoldedWave wave) throws Exception {
+					percent = 100 * (i + 1) / baseNames.length;
+					System.out.println(baseNames[i]);
+					totalDuration[0] += wave.timeSpan;
+					/* Feed the datagrams to the timeline */
+					long localTime = 0l;
+					for (Datagram d : wave.datagrams) {
+						timeline.feed(d, sampleRate);
+						localTime += d.getDuration();
 					}
-
-					// Handle the case when the last pitch marks falls beyond the end of the signal
-
-					/* Feed the datagram to the timeline */
-					waveTimeline.feed(new Datagram(duration, buff.toByteArray()), globSampleRate);
-					totalTime += duration;
-					localTime += duration;
-					numDatagrams++;
+					totalTime[0] += localTime;
+					numDatagrams[0] += wave.datagrams.length;
+					// System.out.println( baseNames[i] + " -> pm file says [" + localTime + "] samples, wav file says ["+
+					// wav.getNumSamples() + "] samples." );
 				}
-				// System.out.println( baseNameArray[i] + " -> pm file says [" + localTime + "] samples, wav file says ["+
-				// wav.getNumSamples() + "] samples." );
-			}
+			});
 			waveTimeline.close();
 
 			System.out.println("---- Done.");
@@ -161,10 +147,10 @@ public class WaveTimelineMaker extends VoiceImportComponent {
 			/* 7) Print some stats and close the file */
 			System.out.println("---- Waveform timeline result:");
 			System.out.println("Number of files scanned: " + baseNameArray.length);
-			System.out.println("Total speech duration: [" + totalTime + "] samples / ["
-					+ ((float) (totalTime) / (float) (globSampleRate)) + "] seconds.");
-			System.out.println("(Speech duration approximated from EST Track float times: [" + totalDuration + "] seconds.)");
-			System.out.println("Number of frames: [" + numDatagrams + "].");
+			System.out.println("Total speech duration: [" + totalTime[0] + "] samples / ["
+					+ ((float) (totalTime[0]) / (float) (globSampleRate)) + "] seconds.");
+			System.out.println("(Speech duration approximated from EST Track float times: [" + totalDuration[0] + "] seconds.)");
+			System.out.println("Number of frames: [" + numDatagrams[0] + "].");
 			System.out.println("Size of the index: [" + waveTimeline.getIndex().getNumIdx() + "] ("
 					+ (waveTimeline.getIndex().getNumIdx() * 16) + " bytes, i.e. "
 					+ new DecimalFormat("#.##").format((double) (waveTimeline.getIndex().getNumIdx()) * 16.0 / 1048576.0)
@@ -184,6 +170,58 @@ public class WaveTimelineMaker extends VoiceImportComponent {
 		return (true);
 	}
 
+	/**
+	 * The waveform of one file, cut into pitch periods.
+	 */
+	protected static class FoldedWave {
+		/** the time span of the pitchmark file, in seconds */
+		float timeSpan;
+		Datagram[] datagrams;
+	}
+
+	/**
+	 * Cut the wave file for the given basename into one datagram per pitch period.
+	 * 
+	 * @param baseName
+	 *            the basename
+	 * @param globSampleRate
+	 *            the sampling rate of the timeline
+	 * @return the time span and the datagrams, in order
+	 */
+	protected FoldedWave foldWave(String baseName, int globSampleRate) throws IOException {
+		/* - open+load */
+		ESTTrackReader pmFile = new ESTTrackReader(db.getProp(PMDIR) + baseName + db.getProp(PMEXT));
+		WavReader wav = new WavReader(db.getProp(db.WAVDIR) + baseName + db.getProp(db.WAVEXT));
+		short[] wave = wav.getSamples();
+		FoldedWave folded = new FoldedWave();
+		folded.timeSpan = pmFile.getTimeSpan();
+		folded.datagrams = new Datagram[pmFile.getNumFrames()];
+		/* - Reset the frame locations in the local file */
+		int frameStart = 0;
+		int frameEnd = 0;
+		int duration = 0;
+		/* - For each frame in the WAV file: */
+		for (int f = 0; f < pmFile.getNumFrames(); f++) {
+
+			/* Locate the corresponding segment in the wave file */
+			frameStart = frameEnd;
+			frameEnd = (int) ((double) pmFile.getTime(f) * (double) (globSampleRate));
+			assert frameEnd <= wave.length : "Frame ends after end of wave data: " + frameEnd + " > " + wave.length;
+
+			duration = frameEnd - frameStart;
+			ByteArrayOutputStream buff = new ByteArrayOutputStream(2 * duration);
+			DataOutputStream subWave = new DataOutputStream(buff);
+			for (int k = 0; k < duration; k++) {
+				subWave.writeShort(wave[frameStart + k]);
+			}
+
+			// Handle the case when the last pitch marks falls beyond the end of the signal
+
+			folded.datagrams[f] = new Datagram(duration, buff.toByteArray());
+		}
+		return folded;
+	}
+
 	/**
 	 * Provide the progress of computation, in percent, or -1 if that feature is not implemented.
 	 * 
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.tools.dbselection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+
+import marytts.util.Pair;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalSentenceStoreTest {
+
+	@Rule
+	public TemporaryFolder tempDir = new TemporaryFolder();
+
+	private LocalSentenceStore createStore() throws Exception {
+		LocalSentenceStore store = new LocalSentenceStore("en_US", tempDir.getRoot());
+		store.createWikipediaCleanTextTable();
+		store.insertCleanText("First text. With two sentences.", "10", "100");
+		store.insertCleanText("Second text with ünïcödé.", "11", "101");
+		store.createDataBaseSelectionTable();
+		store.insertSentence("First text.", new byte[] { 1, 2, 3 }, true, false, false, 1);
+		store.insertSentence("With two sentences.", new byte[] { 4, 5, 6, 7, 8, 9 }, true, false, false, 1);
+		store.insertSentence("Second text with ünïcödé.", null, false, true, false, 2);
+		return store;
+	}
+
+	@Test
+	public void tablesSurviveReopening() throws Exception {
+		LocalSentenceStore store = createStore();
+		assertEquals("Second text with ünïcödé.", store.getCleanText(2));
+		store.setSentenceRecord(2, "unwanted", true);
+		store.closeDBConnection();
+
+		store = new LocalSentenceStore("en_US", tempDir.getRoot());
+		assertTrue(store.tableExist("en_US_dbselection"));
+		assertArrayEquals(new int[] { 1 }, store.getUnprocessedTextIds());
+		assertArrayEquals(new int[] { 1, 2, 3 }, store.getIdListOfType("dbselection", null));
+		assertArrayEquals(new int[] { 1 }, store.getIdListOfType("dbselection", "reliable=true and unwanted=false"));
+		assertArrayEquals(new int[] { 3 }, store.getIdListOfType("dbselection", "reliable=false AND unknownWords=true"));
+		assertNull(store.getIdListOfType("dbselection", "selected=true"));
+		assertArrayEquals(new byte[] { 4, 5, 6, 7, 8, 9 }, store.getFeatures(2));
+		assertNull(store.getFeatures(3));
+		assertEquals("Second text with ünïcödé.", store.getDBSelectionSentence(3));
+
+		// new rows are appended after the existing ones
+		store.insertSentence("Third.", new byte[] { 10 }, true, false, false, 1);
+		Pair<int[], byte[][]> idsAndFeatures = store.getIdsAndFeatureVectors("dbselection", "reliable=true");
+		assertArrayEquals(new int[] { 1, 2, 4 }, idsAndFeatures.getFirst());
+		assertArrayEquals(new byte[] { 10 }, idsAndFeatures.getSecond()[2]);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, store.getFeaturesBulk(new int[] { 1, 4 })[0]);
+		store.closeDBConnection();
+	}
+
+	@Test
+	public void selectedSentences() throws Exception {
+		LocalSentenceStore store = createStore();
+		store.setSentenceRecord(1, "selected", true);
+		store.setSelectedSentencesTableName("test");
+		store.createSelectedSentencesTable(null, null, null);
+		assertNull(store.getIdListOfType("dbselection", "selected=true"));
+		store.setSentenceRecord(2, "selected", true);
+		store.insertSelectedSentence(2, false);
+		store.setSentenceRecord(1, "selected", true);
+		store.insertSelectedSentence(1, false);
+		store.setUnwantedSentenceRecord("en_US_test_selectedSentences", 2, true);
+		store.setTableDescription(store.getSelectedSentencesTableName(), "a test", "numSentences 2", null, null);
+		store.closeDBConnection();
+
+		store = new LocalSentenceStore("en_US", tempDir.getRoot());
+		assertArrayEquals(new int[] { 1 }, store.getIdListOfSelectedSentences("en_US_test_selectedSentences", "unwanted=false"));
+		assertArrayEquals(new int[] { 2 }, store.getIdListOfSelectedSentences("en_US_test_selectedSentences", "unwanted=true"));
+		assertArrayEquals(new int[] { 2 }, store.getIdListOfType("dbselection", "unwanted=true"));
+		assertEquals("First text.", store.getSelectedSentence("en_US_test_selectedSentences", 1));
+		String[] desc = store.getTableDescription("en_US_test_selectedSentences");
+		assertEquals("en_US_test_selectedSentences", desc[0]);
+		assertEquals("a test", desc[1]);
+		assertEquals("numSentences 2", desc[2]);
+		assertTrue(store.getListOfTables().contains("en_US_test_selectedSentences"));
+		store.closeDBConnection();
+	}
+
+	@Test
+	public void incompleteRowIsDropped() throws Exception {
+		LocalSentenceStore store = createStore();
+		store.closeDBConnection();
+		// as if the process had been killed while writing the features of the second sentence
+		RandomAccessFile features = new RandomAccessFile(new File(tempDir.getRoot(), "en_US_dbselection.blob1"), "rw");
+		features.setLength(5);
+		features.close();
+
+		store = new LocalSentenceStore("en_US", tempDir.getRoot());
+		assertArrayEquals(new int[] { 1 }, store.getIdListOfType("dbselection", null));
+		store.insertSentence("Next.", new byte[] { 11, 12 }, true, false, false, 2);
+		assertArrayEquals(new byte[] { 11, 12 }, store.getFeatures(2));
+		assertEquals("Next.", store.getDBSelectionSentence(2));
+		store.closeDBConnection();
+	}
+
+	@Test
+	public void sentencesAreWrittenBeforeTextIsMarkedProcessed() throws Exception {
+		LocalSentenceStore store = createStore();
+		assertEquals("First text. With two sentences.", store.getCleanText(1, false));
+		assertArrayEquals(new int[] { 1, 2 }, store.getUnprocessedTextIds());
+		store.insertSentence("Fourth.", new byte[] { 13 }, true, false, false, 1);
+		store.setCleanTextProcessed(1);
+
+		// without closing the store, as if the process had been killed
+		LocalSentenceStore reopened = new LocalSentenceStore("en_US", tempDir.getRoot());
+		assertArrayEquals(new int[] { 2 }, reopened.getUnprocessedTextIds());
+		assertArrayEquals(new int[] { 1, 2, 3, 4 }, reopened.getIdListOfType("dbselection", null));
+		assertArrayEquals(new byte[] { 13 }, reopened.getFeatures(4));
+		reopened.closeDBConnection();
+		store.closeDBConnection();
+	}
+
+	@Test
+	public void wordList() throws Exception {
+		LocalSentenceStore store = new LocalSentenceStore("en_US", tempDir.getRoot());
+		assertFalse(store.tableExist(store.getWordListTableName()));
+		HashMap<String, Integer> words = new HashMap<String, Integer>();
+		words.put("the", 10);
+		words.put("text", 3);
+		words.put("store", 1);
+		store.insertWordList(words);
+		assertTrue(store.tableExist(store.getWordListTableName()));
+		assertEquals(words, store.getMostFrequentWords(0, 0));
+		HashMap<String, Integer> mostFrequent = store.getMostFrequentWords(2, 1);
+		assertEquals(2, mostFrequent.size());
+		assertEquals(Integer.valueOf(3), mostFrequent.get("text"));
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.tools.dbselection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.util.FeatureUtils;
+import marytts.util.io.FileUtils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SelectionFunctionTest {
+	private FeatureDefinition featDef;
+	private CoverageFeatureProvider cfProvider;
+
+	/**
+	 * Create sentences of random length from random feature vectors of the hello world example, so that some sentences are too
+	 * short or too long and many have the same usefulness.
+	 */
+	@Before
+	public void setup() throws Exception {
+		String targetFeaturesData = FileUtils.getStreamAsString(getClass().getResourceAsStream("helloworld.targetfeatures"),
+				"UTF-8");
+		featDef = FeatureUtils.readFeatureDefinition(targetFeaturesData);
+		FeatureVector[] features = FeatureUtils.readFeatureVectors(targetFeaturesData);
+		byte[] helloWorld = CoverageUtils.toCoverageFeatures("phone next_phone selection_prosody", featDef, features);
+		int vectorSize = 3;
+		int numVectors = helloWorld.length / vectorSize;
+		Random random = new Random(4711);
+		byte[][] data = new byte[2000][];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = new byte[vectorSize * (20 + random.nextInt(150))];
+			for (int pos = 0; pos < data[i].length; pos += vectorSize) {
+				System.arraycopy(helloWorld, vectorSize * random.nextInt(numVectors), data[i], pos, vectorSize);
+			}
+		}
+		cfProvider = new InMemoryCFProvider(data, null);
+	}
+
+	private List<Integer> select(boolean lazyGreedy, int numSentences, Set<Integer> unwantedIdSents) throws Exception {
+		CoverageDefinition def;
+		if (lazyGreedy) {
+			def = new CoverageDefinition(featDef, cfProvider, null);
+		} else {
+			// a definition which does not allow lazy greedy selection, so that all sentences are scored every time
+			def = new CoverageDefinition(featDef, cfProvider, null) {
+				@Override
+				public boolean usefulnessDecreasesWithCoverage() {
+					return false;
+				}
+			};
+		}
+		def.initialiseCoverage();
+		SelectionFunction selectionFunction = new SelectionFunction();
+		Set<Integer> selectedIdSents = new HashSet<Integer>();
+		List<Integer> selection = new ArrayList<Integer>();
+		while (selection.size() < numSentences
+				&& selectionFunction.selectNext(selectedIdSents, unwantedIdSents, def, cfProvider)) {
+			selection.add(selectionFunction.getSelectedIdSentence());
+			selectedIdSents.add(selectionFunction.getSelectedIdSentence());
+			def.updateCover(selectionFunction.getSelectedVectors());
+		}
+		return selection;
+	}
+
+	@Test
+	public void lazyGreedySelectsSameSentences() throws Exception {
+		Set<Integer> unwanted = new HashSet<Integer>();
+		Set<Integer> lazyUnwanted = new HashSet<Integer>();
+		List<Integer> selection = select(false, 300, unwanted);
+		List<Integer> lazySelection = select(true, 300, lazyUnwanted);
+		assertEquals(300, selection.size());
+		assertEquals(selection, lazySelection);
+		assertTrue(unwanted.size() > 0);
+		assertEquals(unwanted, lazyUnwanted);
+	}
+
+	@Test
+	public void defaultCoverageDefinitionAllowsLazyGreedy() throws Exception {
+		CoverageDefinition def = new CoverageDefinition(featDef, cfProvider, null);
+		def.initialiseCoverage();
+		assertTrue(def.usefulnessDecreasesWithCoverage());
+	}
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.tools.voiceimport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Properties;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode.BinaryByteDecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.cart.Node;
+import marytts.htsengine.CartTreeSet;
+import marytts.htsengine.HMMData;
+import marytts.util.io.PropertiesAccessor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compile the trees and pdfs of the cmu-slt-hsmm voice into a tree set bundle, and compare the trees loaded from it with
+ * those parsed from the original files.
+ */
+public class HMMVoiceCompilerTest {
+	private static final String VOICE = "cmu-slt-hsmm";
+	private static final String[] VOICE_FILES = { "Ftd", "Ftf", "Ftm", "Fts", "Fmd", "Fmf", "Fmm", "Fms", "FeaFile",
+			"trickyPhonesFile" };
+
+	@Rule
+	public TemporaryFolder tmp = new TemporaryFolder();
+
+	private static Properties voiceConfig() throws Exception {
+		Properties props = new Properties();
+		InputStream config = HMMVoiceCompilerTest.class.getResourceAsStream("/marytts/voice/CmuSltHsmm/voice.config");
+		props.load(config);
+		config.close();
+		return props;
+	}
+
+	private static HMMData loadVoice(Properties props) throws Exception {
+		HMMData htsData = new HMMData();
+		htsData.initHMMData(new PropertiesAccessor(props), VOICE);
+		return htsData;
+	}
+
+	private static void assertSameTree(String where, Node expected, Node actual) {
+		if (expected instanceof PdfLeafNode) {
+			PdfLeafNode expectedLeaf = (PdfLeafNode) expected;
+			PdfLeafNode actualLeaf = (PdfLeafNode) actual;
+			assertEquals(where, expectedLeaf.getUniqueLeafId(), actualLeaf.getUniqueLeafId());
+			assertEquals(where, expectedLeaf.getVectorSize(), actualLeaf.getVectorSize());
+			// the bundle stores pdfs as floats
+			assertEquals(where, (float) expectedLeaf.getVoicedWeight(), actualLeaf.getVoicedWeight(), 0.0);
+			assertArrayEquals(where, toFloats(expectedLeaf.getMean()), toFloats(actualLeaf.getMean()), 0.0f);
+			assertArrayEquals(where, toFloats(expectedLeaf.getVariance()), toFloats(actualLeaf.getVariance()), 0.0f);
+			return;
+		}
+		BinaryByteDecisionNode expectedDecision = (BinaryByteDecisionNode) expected;
+		BinaryByteDecisionNode actualDecision = (BinaryByteDecisionNode) actual;
+		assertEquals(where, expectedDecision.getUniqueDecisionNodeId(), actualDecision.getUniqueDecisionNodeId());
+		assertEquals(where, expectedDecision.getFeatureIndex(), actualDecision.getFeatureIndex());
+		assertEquals(where, expectedDecision.getCriterionValueAsByte(), actualDecision.getCriterionValueAsByte());
+		assertEquals(where, expectedDecision.getNumberOfDaugthers(), actualDecision.getNumberOfDaugthers());
+		assertEquals(where, expectedDecision.getNumberOfData(), actualDecision.getNumberOfData());
+		for (int i = 0; i < expectedDecision.getNumberOfDaugthers(); i++) {
+			Node actualDaughter = actualDecision.getDaughter(i);
+			assertSame(where, actualDecision, actualDaughter.getMother());
+			assertSameTree(where + "/" + i, expectedDecision.getDaughter(i), actualDaughter);
+		}
+	}
+
+	private static float[] toFloats(double[] values) {
+		float[] floats = new float[values.length];
+		for (int i = 0; i < values.length; i++) {
+			floats[i] = (float) values[i];
+		}
+		return floats;
+	}
+
+	@Test
+	public void treeSetBundleRoundTrip() throws Exception {
+		Properties config = voiceConfig();
+		Properties voiceFiles = new Properties();
+		for (String key : VOICE_FILES) {
+			voiceFiles.setProperty(key, config.getProperty("voice." + VOICE + "." + key));
+		}
+		File bundleFile = tmp.newFile("treeset.bin");
+		HMMVoiceCompiler.compileTreeSetBundle(VOICE, voiceFiles, bundleFile);
+
+		HMMData fromFiles = loadVoice(config);
+		assertNull(fromFiles.getTreeSetBundle());
+		Properties bundleConfig = voiceConfig();
+		bundleConfig.setProperty("voice." + VOICE + ".treeSetBundle", bundleFile.getPath());
+		HMMData fromBundle = loadVoice(bundleConfig);
+		assertNotNull(fromBundle.getTreeSetBundle());
+
+		CartTreeSet expected = fromFiles.getCartTreeSet();
+		CartTreeSet actual = fromBundle.getCartTreeSet();
+		assertEquals(expected.getNumStates(), actual.getNumStates());
+		assertEquals(expected.getLf0Stream(), actual.getLf0Stream());
+		for (HMMData.FeatureType type : HMMData.FeatureType.values()) {
+			CART[] expectedTrees = expected.getTrees(type);
+			CART[] actualTrees = actual.getTrees(type);
+			if (expectedTrees == null) {
+				assertNull(type.toString(), actualTrees);
+				continue;
+			}
+			assertEquals(type.toString(), expected.getVsize(type), actual.getVsize(type));
+			assertEquals(type.toString(), expectedTrees.length, actualTrees.length);
+			for (int s = 0; s < expectedTrees.length; s++) {
+				Node actualRoot = actualTrees[s].getRootNode();
+				assertTrue(type + " state " + s, actualRoot.isRoot());
+				assertSameTree(type + " state " + s, expectedTrees[s].getRootNode(), actualRoot);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package marytts.tools.voiceimport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VoiceImportComponentTest {
+
+	private static class TestComponent extends VoiceImportComponent {
+		protected void setupHelp() {
+		}
+
+		public SortedMap<String, String> getDefaultProps(DatabaseLayout db) {
+			return null;
+		}
+
+		public String getName() {
+			return "TestComponent";
+		}
+
+		public boolean compute() {
+			return true;
+		}
+
+		public int getProgress() {
+			return -1;
+		}
+	}
+
+	@After
+	public void resetThreads() {
+		System.clearProperty(VoiceImportComponent.NUMTHREADS);
+	}
+
+	private List<Integer> squares(int numItems) throws Exception {
+		final List<Integer> results = new ArrayList<Integer>();
+		new TestComponent().processInParallel("items", numItems, new VoiceImportComponent.Task<Integer>() {
+			public Integer compute(int item) throws InterruptedException {
+				// vary the time per item, so that items finish out of order
+				Thread.sleep((100 - item) % 3);
+				return item * item;
+			}
+		}, new VoiceImportComponent.ResultHandler<Integer>() {
+			public void handle(int item, Integer result) {
+				assertEquals(results.size(), item);
+				results.add(result);
+			}
+		});
+		return results;
+	}
+
+	@Test
+	public void resultsAreHandledInOrder() throws Exception {
+		System.setProperty(VoiceImportComponent.NUMTHREADS, "4");
+		List<Integer> results = squares(100);
+		assertEquals(100, results.size());
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(i * i, results.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void singleThreadGivesSameResults() throws Exception {
+		System.setProperty(VoiceImportComponent.NUMTHREADS, "4");
+		List<Integer> parallel = squares(50);
+		System.setProperty(VoiceImportComponent.NUMTHREADS, "1");
+		assertEquals(parallel, squares(50));
+	}
+
+	@Test(expected = IOException.class)
+	public void taskExceptionIsRethrown() throws Exception {
+		System.setProperty(VoiceImportComponent.NUMTHREADS, "3");
+		new TestComponent().processInParallel("items", 20, new VoiceImportComponent.Task<Void>() {
+			public Void compute(int item) throws IOException {
+				if (item == 7) {
+					throw new IOException("item " + item);
+				}
+				return null;
+			}
+		}, new VoiceImportComponent.ResultHandler<Void>() {
+			public void handle(int item, Void result) {
+			}
+		});
+	}
+}
@@ -20,6 +20,7 @@
 package marytts.fst;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -136,8 +137,6 @@ public class FST {
 	private void load(InputStream inStream) throws IOException, UnsupportedEncodingException {
 		int i;
 		DataInputStream in = new DataInputStream(new BufferedInputStream(inStream));
-		// int fileSize= (int) f.length();
-		int fileSize = in.available(); // TODO: how robust is this??
 
 		int encLen = in.readInt();
 		byte[] encBytes = new byte[encLen];
@@ -178,12 +177,8 @@ public class FST {
 		offsets = new short[2 * nPairs];
 		for (i = 0; i < 2 * nPairs; i++)
 			offsets[i] = in.readShort();
-		// int nBytes = fileSize - 8 - 4 * (nPairs + nArcs);
-		int nBytes = fileSize - 20 - encLen - 4 * (nPairs + nArcs);
-		mapping = new int[nBytes];
-		bytes = new byte[nBytes];
-		in.readFully(bytes);
-		assert in.available() == 0 : "Partial file read... not good";
+		bytes = readRemaining(in);
+		mapping = new int[bytes.length];
 
 		in.close();
 		createMapping(mapping, bytes, encoding);
@@ -193,8 +188,6 @@ public class FST {
 			UnsupportedEncodingException {
 		int i;
 		DataInputStream in = new DataInputStream(new BufferedInputStream(inStream));
-		// int fileSize= (int) f.length();
-		int fileSize = in.available(); // TODO: how robust is this??
 		int nArcs = in.readInt();
 		// arcs = new int[nArcs];
 
@@ -215,17 +208,30 @@ public class FST {
 		offsets = new short[2 * nPairs];
 		for (i = 0; i < 2 * nPairs; i++)
 			offsets[i] = in.readShort();
-		int nBytes = fileSize - 8 - 4 * (nPairs + nArcs);
-		mapping = new int[nBytes];
-		bytes = new byte[nBytes];
-		in.readFully(bytes);
+		bytes = readRemaining(in);
+		mapping = new int[bytes.length];
 		if (verbose) {
+			int fileSize = 8 + 4 * (nPairs + nArcs) + bytes.length;
 			System.err.println("FST (" + fileSize + " Bytes, " + nArcs + " Arcs, " + nPairs + " Labels)" + " loaded");
 		}
 		in.close();
 		createMapping(mapping, bytes, encoding);
 	}
 
+	/**
+	 * Read the string table, which extends to the end of the stream. Unlike {@link InputStream#available()}, this does not depend
+	 * on the whole stream being buffered, e.g. for resources read from a jar file.
+	 */
+	private static byte[] readRemaining(InputStream in) throws IOException {
+		ByteArrayOutputStream remaining = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int nRead;
+		while ((nRead = in.read(buf)) != -1) {
+			remaining.write(buf, 0, nRead);
+		}
+		return remaining.toByteArray();
+	}
+
 	private void createMapping(int[] mapping, byte[] bytes, String encoding) throws UnsupportedEncodingException {
 		mapping[0] = 0;
 		int last0 = -1;
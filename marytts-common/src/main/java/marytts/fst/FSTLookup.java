@@ -19,7 +19,10 @@
  */
 package marytts.fst;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,14 +44,19 @@ public class FSTLookup {
 	 * Map "filename encoding" or "filename" to FST.
 	 */
 	private static Map<String, FST> knownFSTs = new HashMap<String, FST>();
+	/**
+	 * Map "filename" to mapped FST.
+	 */
+	private static Map<String, MappedFST> knownMappedFSTs = new HashMap<String, MappedFST>();
 
 	// //////////////////// An individual FSTLookup class //////////////
 
 	private FST fst;
+	private MappedFST mappedFst;
 
 	/**
 	 * Initialise the finite state transducer lookup. This constructor will assume that the file contains a header indicating the
-	 * proper encoding.
+	 * proper encoding, or that it is in {@link MappedFST} format, in which case it is memory-mapped rather than loaded.
 	 * 
 	 * @param fileName
 	 *            the name of the file from which to load the FST.
@@ -56,6 +64,15 @@ public class FSTLookup {
 	 *             if the FST cannot be loaded from the given file.
 	 */
 	public FSTLookup(String fileName) throws IOException {
+		File file = new File(fileName);
+		if (MappedFST.isMappedFST(file)) {
+			mappedFst = knownMappedFSTs.get(fileName);
+			if (mappedFst == null) {
+				mappedFst = MappedFST.map(file);
+				knownMappedFSTs.put(fileName, mappedFst);
+			}
+			return;
+		}
 		InputStream inStream = new FileInputStream(fileName);
 		try {
 			init(inStream, fileName);
@@ -66,7 +83,7 @@ public class FSTLookup {
 
 	/**
 	 * Initialise the finite state transducer lookup. This constructor will assume that the stream contains a header indicating
-	 * the proper encoding.
+	 * the proper encoding, or that it is in {@link MappedFST} format.
 	 * 
 	 * @param inStream
 	 *            the stream from which to load the FST.
@@ -80,10 +97,23 @@ public class FSTLookup {
 	}
 
 	private void init(InputStream inStream, String identifier) throws IOException {
+		mappedFst = knownMappedFSTs.get(identifier);
+		if (mappedFst != null) {
+			return;
+		}
 		fst = knownFSTs.get(identifier);
 		if (fst == null) {
-			fst = new FST(inStream);
-			knownFSTs.put(identifier, fst);
+			BufferedInputStream in = new BufferedInputStream(inStream);
+			in.mark(4);
+			int magic = new DataInputStream(in).readInt();
+			in.reset();
+			if (magic == MappedFST.MAGIC) {
+				mappedFst = MappedFST.load(in);
+				knownMappedFSTs.put(identifier, mappedFst);
+			} else {
+				fst = new FST(in);
+				knownFSTs.put(identifier, fst);
+			}
 		}
 
 	}
@@ -161,7 +191,11 @@ public class FSTLookup {
 		StringBuilder buffer2 = new StringBuilder();
 		List<String> results = new ArrayList<String>();
 
-		lookup(word, 0, 0, generate, buffer2, results);
+		if (mappedFst != null) {
+			mappedFst.lookup(word, generate, results);
+		} else {
+			lookup(word, 0, 0, generate, buffer2, results);
+		}
 
 		String[] resultArray = new String[results.size()];
 		resultArray = (String[]) results.toArray(resultArray);
@@ -0,0 +1,360 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.fst;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A finite state transducer in a flat binary format which can be memory-mapped and used for lookup as it is, without decoding
+ * arcs or label strings into Java objects. When the FST is mapped from a file, the pages are shared between all processes using
+ * the same file, and loading costs no more than opening the file.
+ * <p>
+ * File format (all values big-endian):
+ *
+ * <pre>
+ * int   MAGIC
+ * int   VERSION
+ * int   nArcs
+ * int   nPairs
+ * int   nStrings
+ * int   nChars
+ * int   arcs[nArcs]                  packed as in the {@link FST} format: target (20 bits), label (11 bits), isLast (1 bit)
+ * int   pairs[2 * nPairs]            for each label, the index of its input and of its output string
+ * int   stringOffsets[nStrings + 1]  start of each string in chars; the last entry is nChars
+ * char  chars[nChars]                all strings, UTF-16
+ * </pre>
+ *
+ * Files in this format are created from existing FST files with {@link #main(String[])}. FSTs which are only available as a
+ * stream, such as the lexicons shipped in the language jars, are converted into a cache directory on first use with
+ * {@link #extract(InputStream, String, File)}.
+ */
+public class MappedFST {
+	/** "MFST"; cannot be confused with the encoding name length at the start of an {@link FST} file. */
+	public static final int MAGIC = 0x4D465354;
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 6 * 4;
+
+	private final IntBuffer arcs;
+	private final IntBuffer pairs;
+	private final IntBuffer stringOffsets;
+	private final CharBuffer chars;
+
+	private MappedFST(ByteBuffer bb) throws IOException {
+		if (bb.getInt(0) != MAGIC) {
+			throw new IOException("Not a mapped FST");
+		}
+		if (bb.getInt(4) != VERSION) {
+			throw new IOException("Unsupported mapped FST version: " + bb.getInt(4));
+		}
+		int nArcs = bb.getInt(8);
+		int nPairs = bb.getInt(12);
+		int nStrings = bb.getInt(16);
+		int nChars = bb.getInt(20);
+		int pos = HEADER_SIZE;
+		arcs = slice(bb, pos, 4 * nArcs).asIntBuffer();
+		pos += 4 * nArcs;
+		pairs = slice(bb, pos, 8 * nPairs).asIntBuffer();
+		pos += 8 * nPairs;
+		stringOffsets = slice(bb, pos, 4 * (nStrings + 1)).asIntBuffer();
+		pos += 4 * (nStrings + 1);
+		chars = slice(bb, pos, 2 * nChars).asCharBuffer();
+	}
+
+	private static ByteBuffer slice(ByteBuffer bb, int pos, int length) throws IOException {
+		if (pos + length > bb.capacity()) {
+			throw new IOException("Mapped FST is truncated");
+		}
+		ByteBuffer dup = bb.duplicate();
+		dup.position(pos);
+		dup.limit(pos + length);
+		return dup.slice();
+	}
+
+	/**
+	 * Map the given file into memory.
+	 *
+	 * @param file
+	 *            a file in mapped FST format
+	 * @return the FST, reading directly from the mapped file
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not in mapped FST format
+	 */
+	public static MappedFST map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			return new MappedFST(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+		} finally {
+			// the mapping remains valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Load an FST in mapped format from a stream, e.g. a classpath resource which cannot be mapped. The data is kept outside the
+	 * Java heap, in the same layout as in the file.
+	 *
+	 * @param inStream
+	 *            a stream positioned at the start of a mapped FST
+	 * @return the FST
+	 * @throws IOException
+	 *             if the stream cannot be read or is not in mapped FST format
+	 */
+	public static MappedFST load(InputStream inStream) throws IOException {
+		DataInputStream in = new DataInputStream(inStream);
+		int[] header = new int[6];
+		for (int i = 0; i < header.length; i++) {
+			header[i] = in.readInt();
+		}
+		if (header[0] != MAGIC) {
+			throw new IOException("Not a mapped FST");
+		}
+		long size = HEADER_SIZE + 4L * header[2] + 8L * header[3] + 4L * (header[4] + 1) + 2L * header[5];
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Mapped FST too large: " + size + " bytes");
+		}
+		ByteBuffer bb = ByteBuffer.allocateDirect((int) size);
+		for (int h : header) {
+			bb.putInt(h);
+		}
+		byte[] buf = new byte[8192];
+		while (bb.hasRemaining()) {
+			int nRead = in.read(buf, 0, Math.min(buf.length, bb.remaining()));
+			if (nRead == -1) {
+				throw new IOException("Mapped FST is truncated");
+			}
+			bb.put(buf, 0, nRead);
+		}
+		return new MappedFST(bb);
+	}
+
+	/**
+	 * Check whether the given file is in mapped FST format.
+	 *
+	 * @param file
+	 *            the file to check
+	 * @return true if the file starts with {@link #MAGIC}, false otherwise
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static boolean isMappedFST(File file) throws IOException {
+		if (file.length() < HEADER_SIZE) {
+			return false;
+		}
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.readInt() == MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Look up a word in the FST, collecting all results. This method is thread-safe.
+	 *
+	 * @param word
+	 *            the word to look up
+	 * @param generate
+	 *            whether the FST is to run in inverse direction
+	 * @param results
+	 *            the list to which results are added
+	 */
+	void lookup(String word, boolean generate, List<String> results) {
+		lookup(word, 0, 0, generate, new StringBuilder(), results);
+	}
+
+	private void lookup(String word, int offset1, int arc, boolean generate, StringBuilder buffer2, List<String> results) {
+		int thisArc;
+		do {
+			thisArc = arcs.get(arc++);
+			int label = (thisArc >> 20) & 2047;
+			if (label == 0) {
+				if (offset1 == word.length()) {
+					results.add(buffer2.toString());
+				}
+			} else {
+				int s1 = pairs.get(generate ? 2 * label + 1 : 2 * label);
+				int start1 = stringOffsets.get(s1);
+				int len1 = stringOffsets.get(s1 + 1) - start1;
+				if (matches(word, offset1, start1, len1)) {
+					int offset2 = buffer2.length();
+					int s2 = pairs.get(generate ? 2 * label : 2 * label + 1);
+					for (int i = stringOffsets.get(s2), end = stringOffsets.get(s2 + 1); i < end; i++) {
+						buffer2.append(chars.get(i));
+					}
+					lookup(word, offset1 + len1, thisArc & 1048575, generate, buffer2, results);
+					buffer2.setLength(offset2);
+				}
+			}
+		} while (thisArc >= 0); // the sign bit marks the last arc of a state
+	}
+
+	/**
+	 * Equivalent of word.startsWith(s1, offset1), for the string s1 stored at the given position in chars.
+	 */
+	private boolean matches(String word, int offset1, int start, int len) {
+		if (offset1 + len > word.length()) {
+			return false;
+		}
+		for (int i = 0; i < len; i++) {
+			if (word.charAt(offset1 + i) != chars.get(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write the given FST in mapped format.
+	 *
+	 * @param fst
+	 *            an FST loaded from a file in the standard format
+	 * @param out
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static void write(FST fst, File out) throws IOException {
+		int nArcs = fst.targets.length;
+		int nPairs = fst.offsets.length / 2;
+		int nStrings = fst.strings.size();
+		int nChars = 0;
+		for (Object s : fst.strings) {
+			nChars += ((String) s).length();
+		}
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)));
+		try {
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			dos.writeInt(nArcs);
+			dos.writeInt(nPairs);
+			dos.writeInt(nStrings);
+			dos.writeInt(nChars);
+			for (int i = 0; i < nArcs; i++) {
+				int arc = fst.targets[i] | (fst.labels[i] << 20);
+				if (fst.isLast[i]) {
+					arc |= 1 << 31;
+				}
+				dos.writeInt(arc);
+			}
+			for (int i = 0; i < 2 * nPairs; i++) {
+				dos.writeInt(fst.mapping[fst.offsets[i]]);
+			}
+			int offset = 0;
+			for (Object s : fst.strings) {
+				dos.writeInt(offset);
+				offset += ((String) s).length();
+			}
+			dos.writeInt(offset);
+			for (Object s : fst.strings) {
+				dos.writeChars((String) s);
+			}
+		} finally {
+			dos.close();
+		}
+	}
+
+	/**
+	 * Provide a file in mapped format with the contents of the given FST stream, so that it can be mapped by
+	 * {@link #map(File)}. The stream may be in mapped format or in the standard {@link FST} format with an encoding header; in the
+	 * latter case it is converted. The file is kept in the given directory under a name derived from the identifier and a
+	 * checksum of the contents, so that it is created only once for the same FST, and is not reused when the FST changes.
+	 * 
+	 * @param inStream
+	 *            the stream from which to read the FST; it is read to the end but not closed.
+	 * @param identifier
+	 *            the name of the FST, e.g. the resource path; its last path component is used in the file name.
+	 * @param dir
+	 *            the cache directory, created if it does not exist
+	 * @return a file in mapped FST format
+	 * @throws IOException
+	 *             if the FST cannot be read or converted, or the file cannot be written
+	 */
+	public static File extract(InputStream inStream, String identifier, File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Cannot create directory " + dir);
+		}
+		File copy = File.createTempFile("fst", ".tmp", dir);
+		File converted = null;
+		try {
+			CRC32 crc = new CRC32();
+			OutputStream out = new FileOutputStream(copy);
+			try {
+				byte[] buf = new byte[8192];
+				int nRead;
+				while ((nRead = inStream.read(buf)) != -1) {
+					crc.update(buf, 0, nRead);
+					out.write(buf, 0, nRead);
+				}
+			} finally {
+				out.close();
+			}
+			String name = identifier.substring(Math.max(identifier.lastIndexOf('/'), identifier.lastIndexOf('\\')) + 1);
+			name = name.replaceAll("[^A-Za-z0-9._-]", "_") + "-" + Long.toHexString(crc.getValue()) + ".mfst";
+			File file = new File(dir, name);
+			if (file.exists() && isMappedFST(file)) {
+				return file;
+			}
+			if (isMappedFST(copy)) {
+				converted = copy;
+			} else {
+				converted = File.createTempFile("mfst", ".tmp", dir);
+				write(new FST(copy.getPath()), converted);
+			}
+			// another process may have created the file in the meantime
+			if (!converted.renameTo(file) && !(file.exists() && isMappedFST(file))) {
+				throw new IOException("Cannot create " + file);
+			}
+			return file;
+		} finally {
+			copy.delete();
+			if (converted != null) {
+				converted.delete();
+			}
+		}
+	}
+
+	/**
+	 * Convert an FST file into mapped format.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2 && args.length != 3) {
+			System.err.println("usage: java marytts.fst.MappedFST FstFile MappedFstFile [encoding-of-headerless-FstFile]");
+			System.exit(-1);
+		}
+		FST fst = args.length == 3 ? new FST(args[0], args[2]) : new FST(args[0]);
+		write(fst, new File(args[1]));
+	}
+}
@@ -33,10 +33,15 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
 import marytts.exceptions.MaryConfigurationException;
 import marytts.util.MaryUtils;
@@ -76,6 +81,29 @@ public class DomUtils {
 
 	protected static Logger logger = MaryUtils.getLogger("DomUtils");
 
+	/**
+	 * Document builders are not thread-safe but can be reused, so each thread keeps one builder per factory.
+	 */
+	private static final ThreadLocal<DocumentBuilder> builders = new ThreadLocal<DocumentBuilder>();
+	private static final ThreadLocal<DocumentBuilder> validatingBuilders = new ThreadLocal<DocumentBuilder>();
+
+	private static final ErrorHandler throwingErrorHandler = new ErrorHandler() {
+		public void error(SAXParseException e) throws SAXParseException {
+			throw e;
+		}
+
+		public void fatalError(SAXParseException e) throws SAXParseException {
+			throw e;
+		}
+
+		public void warning(SAXParseException e) throws SAXParseException {
+			throw e;
+		}
+	};
+
+	private static DOMImplementationLS domImplLS;
+	private static boolean domImplLSInitialised = false;
+
 	// Static constructor:
 	static {
 		factory = DocumentBuilderFactory.newInstance();
@@ -86,17 +114,16 @@ public class DomUtils {
 		validatingFactory.setExpandEntityReferences(true);
 		validatingFactory.setNamespaceAware(true);
 		validatingFactory.setIgnoringElementContentWhitespace(true);
-		validatingFactory.setValidating(true);
 		try {
-			validatingFactory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaLanguage",
-					"http://www.w3.org/2001/XMLSchema");
-			// Specify other factory configuration settings
-			Object[] schemas = new Object[] { DomUtils.class.getResource("xml.xsd").toString(),
-					DomUtils.class.getResource("MaryXML.xsd").toString() };
-			validatingFactory.setAttribute("http://java.sun.com/xml/jaxp/properties/schemaSource", schemas);
+			// Compile the schemas once, rather than having each validating parser load them again:
+			SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+			Schema schema = schemaFactory.newSchema(new Source[] {
+					new StreamSource(DomUtils.class.getResource("xml.xsd").toString()),
+					new StreamSource(DomUtils.class.getResource("MaryXML.xsd").toString()) });
+			validatingFactory.setSchema(schema);
 		} catch (Exception x) {
-			// This can happen if the parser does not support JAXP 1.2
-			logger.warn("Cannot use Schema validation -- disabling validating parser factory.");
+			// This can happen if the parser does not support JAXP 1.3
+			logger.warn("Cannot use Schema validation -- disabling validating parser factory.", x);
 			validatingFactory = null;
 		}
 	}
@@ -138,7 +165,7 @@ public class DomUtils {
 	 */
 	public static Document parseDocument(Reader inputData, boolean validating) throws ParserConfigurationException, SAXException,
 			IOException {
-		DocumentBuilder builder = createDocumentBuilder(validating);
+		DocumentBuilder builder = getDocumentBuilder(validating);
 		return builder.parse(new InputSource(inputData));
 	}
 
@@ -179,38 +206,44 @@ public class DomUtils {
 	 */
 	public static Document parseDocument(InputStream is, boolean validating) throws ParserConfigurationException, SAXException,
 			IOException {
-		DocumentBuilder builder = createDocumentBuilder(validating);
+		DocumentBuilder builder = getDocumentBuilder(validating);
 		return builder.parse(is);
 	}
 
 	/**
+	 * Get a document builder for use in the current thread. The builder is created on first use and reset for every later use.
+	 * 
 	 * @param validating
-	 * @return
+	 *            whether the builder should Schema-validate the documents it parses
+	 * @return a document builder which must not be shared with other threads
 	 * @throws ParserConfigurationException
+	 *             if no builder can be created
 	 */
+	private static DocumentBuilder getDocumentBuilder(boolean validating) throws ParserConfigurationException {
+		ThreadLocal<DocumentBuilder> threadBuilders = validating ? validatingBuilders : builders;
+		DocumentBuilder builder = threadBuilders.get();
+		if (builder == null) {
+			builder = createDocumentBuilder(validating);
+			threadBuilders.set(builder);
+		} else {
+			builder.reset();
+			if (validating) {
+				builder.setErrorHandler(throwingErrorHandler);
+			}
+		}
+		return builder;
+	}
+
 	private static DocumentBuilder createDocumentBuilder(boolean validating) throws ParserConfigurationException {
 		DocumentBuilder builder;
 		if (validating) {
 			if (validatingFactory == null) {
 				throw new ParserConfigurationException("No validating parser factory available");
-			} else if (!validatingFactory.isValidating()) {
+			} else if (validatingFactory.getSchema() == null) {
 				throw new ParserConfigurationException("factory should be validating but isn't");
 			}
 			builder = validatingFactory.newDocumentBuilder();
-			assert builder.isValidating();
-			builder.setErrorHandler(new ErrorHandler() {
-				public void error(SAXParseException e) throws SAXParseException {
-					throw e;
-				}
-
-				public void fatalError(SAXParseException e) throws SAXParseException {
-					throw e;
-				}
-
-				public void warning(SAXParseException e) throws SAXParseException {
-					throw e;
-				}
-			});
+			builder.setErrorHandler(throwingErrorHandler);
 		} else {
 			builder = factory.newDocumentBuilder();
 		}
@@ -762,15 +795,7 @@ public class DomUtils {
 	 */
 	public static void document2Stream(Document document, OutputStream target) throws MaryConfigurationException {
 		LSSerializer serializer = null;
-		DOMImplementationLS domImplLS = null;
-		try {
-			DOMImplementation implementation = DOMImplementationRegistry.newInstance().getDOMImplementation("XML 3.0");
-			if (implementation != null) {
-				domImplLS = (DOMImplementationLS) implementation.getFeature("LS", "3.0");
-			}
-		} catch (Exception iae) {
-			throw new MaryConfigurationException("Cannot access dom impl registry", iae);
-		}
+		DOMImplementationLS domImplLS = getDOMImplementationLS();
 		if (domImplLS != null) {
 			serializer = domImplLS.createLSSerializer();
 			DOMConfiguration config = serializer.getDomConfig();
@@ -796,6 +821,28 @@ public class DomUtils {
 		}
 	}
 
+	/**
+	 * Look up the DOM Level 3 load and save implementation once; the registry lookup is expensive.
+	 * 
+	 * @return the implementation, or null if none is available
+	 * @throws MaryConfigurationException
+	 *             if the DOM implementation registry cannot be accessed
+	 */
+	private static synchronized DOMImplementationLS getDOMImplementationLS() throws MaryConfigurationException {
+		if (!domImplLSInitialised) {
+			try {
+				DOMImplementation implementation = DOMImplementationRegistry.newInstance().getDOMImplementation("XML 3.0");
+				if (implementation != null) {
+					domImplLS = (DOMImplementationLS) implementation.getFeature("LS", "3.0");
+				}
+			} catch (Exception iae) {
+				throw new MaryConfigurationException("Cannot access dom impl registry", iae);
+			}
+			domImplLSInitialised = true;
+		}
+		return domImplLS;
+	}
+
 	public static void replaceElement(Element oldElement, NodeList newNodes) {
 		Document doc = oldElement.getOwnerDocument();
 		Node parent = oldElement.getParentNode();
@@ -0,0 +1,422 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.dom;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A direct serializer producing the same bytes as the normalise-maryxml.xsl stylesheet used by {@link MaryNormalisedWriter}:
+ * one tag or normalised text node per line, comments and processing instructions removed, UTF-8 encoding. Documents using
+ * constructs for which the output of the stylesheet is not reproduced here (e.g., undeclared namespace prefixes, entity reference
+ * nodes, xml:space or unusual characters) are rejected, so that the caller can fall back to the stylesheet.
+ */
+final class NormalisedXMLSerializer {
+	private static final byte[] XML_DECLARATION = bytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+	private static final List<String> ROOT_NAMESPACES = Collections.unmodifiableList(Arrays.asList(XMLConstants.XML_NS_PREFIX,
+			XMLConstants.XML_NS_URI));
+
+	private final Buffer out = new Buffer();
+	private final StringBuilder text = new StringBuilder();
+	private boolean startTagOpen;
+	private boolean afterText;
+
+	private NormalisedXMLSerializer() {
+	}
+
+	/**
+	 * Serialize the given document.
+	 *
+	 * @param doc
+	 *            the document
+	 * @return the UTF-8 encoded serialization, or null if the document cannot be serialized by this class.
+	 */
+	static Buffer serialize(Document doc) {
+		Element root = doc.getDocumentElement();
+		if (root == null) {
+			return null;
+		}
+		NormalisedXMLSerializer serializer = new NormalisedXMLSerializer();
+		serializer.out.write(XML_DECLARATION);
+		try {
+			serializer.writeElement(root, ROOT_NAMESPACES);
+		} catch (UnsupportedContentException e) {
+			return null;
+		}
+		serializer.out.write('\n');
+		return serializer.out;
+	}
+
+	private void writeElement(Element element, List<String> parentNamespaces) throws UnsupportedContentException {
+		openTag();
+		out.write('<');
+		String name = element.getNodeName();
+		writeAscii(name);
+		NamedNodeMap attributes = element.getAttributes();
+		int numAttributes = attributes.getLength();
+		// Collect the namespaces in scope in the same order as the XSLT processor, i.e. inherited ones first,
+		// then those declared by namespace attributes, then those used by other attributes, then that of the element:
+		List<String> namespaces = parentNamespaces;
+		for (int i = 0; i < numAttributes; i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+				String prefix = attribute.getPrefix() == null ? "" : attribute.getLocalName();
+				namespaces = declare(namespaces, parentNamespaces, prefix, attribute.getValue());
+			}
+		}
+		for (int i = 0; i < numAttributes; i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			String uri = attribute.getNamespaceURI();
+			if (XMLConstants.XML_NS_URI.equals(uri) && "space".equals(attribute.getLocalName())) {
+				// the stylesheet keeps whitespace-only text in xml:space="preserve" elements
+				throw new UnsupportedContentException();
+			}
+			if (uri != null && !XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(uri)) {
+				if (attribute.getPrefix() == null) {
+					throw new UnsupportedContentException();
+				}
+				namespaces = declare(namespaces, parentNamespaces, attribute.getPrefix(), uri);
+			}
+		}
+		String uri = element.getNamespaceURI();
+		String prefix = element.getPrefix() == null ? "" : element.getPrefix();
+		if (uri != null) {
+			namespaces = declare(namespaces, parentNamespaces, prefix, uri);
+		} else if (getUri(namespaces, "") != null) {
+			// the XSLT processor does not undeclare the default namespace
+			throw new UnsupportedContentException();
+		}
+		// The namespace of the element itself is declared first, then any others which are new:
+		if (uri != null && !uri.equals(getUri(parentNamespaces, prefix))) {
+			writeNamespace(prefix, uri);
+		}
+		for (int i = 0; i < namespaces.size(); i += 2) {
+			String nsPrefix = namespaces.get(i);
+			String nsUri = namespaces.get(i + 1);
+			if (!nsUri.equals(getUri(parentNamespaces, nsPrefix)) && !(nsPrefix.equals(prefix) && nsUri.equals(uri))) {
+				writeNamespace(nsPrefix, nsUri);
+			}
+		}
+		for (int i = 0; i < numAttributes; i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+				continue;
+			}
+			out.write(' ');
+			writeAscii(attribute.getName());
+			out.write('=');
+			out.write('"');
+			writeEscaped(attribute.getValue(), true);
+			out.write('"');
+		}
+		startTagOpen = true;
+		afterText = false;
+
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			switch (child.getNodeType()) {
+			case Node.TEXT_NODE:
+			case Node.CDATA_SECTION_NODE:
+				text.append(child.getNodeValue());
+				break;
+			case Node.COMMENT_NODE:
+			case Node.PROCESSING_INSTRUCTION_NODE:
+				// separate text nodes in the XPath data model, but are not copied
+				writeText();
+				break;
+			case Node.ELEMENT_NODE:
+				writeText();
+				writeElement((Element) child, namespaces);
+				break;
+			default:
+				throw new UnsupportedContentException();
+			}
+		}
+		writeText();
+
+		if (startTagOpen) {
+			out.write('/');
+			out.write('>');
+			startTagOpen = false;
+		} else {
+			if (!afterText) {
+				out.write('\n');
+			}
+			out.write('<');
+			out.write('/');
+			writeAscii(name);
+			out.write('>');
+		}
+		afterText = false;
+	}
+
+	private void openTag() {
+		if (startTagOpen) {
+			out.write('>');
+			startTagOpen = false;
+		}
+		if (out.size() > XML_DECLARATION.length && !afterText) {
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Bind the prefix to the uri, if it is not bound to it yet.
+	 *
+	 * @param namespaces
+	 *            the namespaces in scope, as a list of prefixes and uris
+	 * @param parentNamespaces
+	 *            the namespaces in scope at the parent, which must not be modified
+	 * @return the namespaces in scope with the new binding
+	 */
+	private static List<String> declare(List<String> namespaces, List<String> parentNamespaces, String prefix, String uri)
+			throws UnsupportedContentException {
+		if (uri.length() == 0) {
+			throw new UnsupportedContentException();
+		}
+		int index = indexOf(namespaces, prefix);
+		if (index >= 0 && namespaces.get(index + 1).equals(uri)) {
+			return namespaces;
+		}
+		if (namespaces == parentNamespaces) {
+			namespaces = new ArrayList<String>(namespaces);
+		}
+		if (index >= 0) {
+			// rebinding a prefix keeps its position
+			namespaces.set(index + 1, uri);
+		} else {
+			namespaces.add(prefix);
+			namespaces.add(uri);
+		}
+		return namespaces;
+	}
+
+	private static int indexOf(List<String> namespaces, String prefix) {
+		for (int i = 0; i < namespaces.size(); i += 2) {
+			if (namespaces.get(i).equals(prefix)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String getUri(List<String> namespaces, String prefix) {
+		int index = indexOf(namespaces, prefix);
+		return index >= 0 ? namespaces.get(index + 1) : null;
+	}
+
+	private void writeNamespace(String prefix, String uri) throws UnsupportedContentException {
+		if (prefix.length() == 0) {
+			writeAscii(" xmlns=\"");
+		} else {
+			writeAscii(" xmlns:");
+			writeAscii(prefix);
+			out.write('=');
+			out.write('"');
+		}
+		writeEscaped(uri, true);
+		out.write('"');
+	}
+
+	/**
+	 * Write the collected text, if it is not only whitespace, as normalize-space() on a line of its own.
+	 */
+	private void writeText() throws UnsupportedContentException {
+		if (text.length() == 0) {
+			return;
+		}
+		int start = 0;
+		int end = text.length();
+		while (start < end && isWhitespace(text.charAt(start))) {
+			start++;
+		}
+		while (end > start && isWhitespace(text.charAt(end - 1))) {
+			end--;
+		}
+		if (start < end) {
+			if (startTagOpen) {
+				out.write('>');
+				startTagOpen = false;
+			}
+			out.write('\n');
+			boolean inSpace = false;
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				if (isWhitespace(c)) {
+					inSpace = true;
+				} else {
+					if (inSpace) {
+						out.write(' ');
+						inSpace = false;
+					}
+					i = writeEscaped(text, i, false);
+				}
+			}
+			out.write('\n');
+			afterText = true;
+		}
+		text.setLength(0);
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+	}
+
+	private void writeAscii(String s) throws UnsupportedContentException {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80) {
+				writeEscaped(s, true);
+				return;
+			}
+		}
+		for (int i = 0; i < s.length(); i++) {
+			out.write(s.charAt(i));
+		}
+	}
+
+	private void writeEscaped(CharSequence s, boolean inAttribute) throws UnsupportedContentException {
+		for (int i = 0; i < s.length(); i++) {
+			i = writeEscaped(s, i, inAttribute);
+		}
+	}
+
+	/**
+	 * Write the character at the given position, escaped as the XSLT serializer does.
+	 *
+	 * @return the position of the last char consumed
+	 */
+	private int writeEscaped(CharSequence s, int i, boolean inAttribute) throws UnsupportedContentException {
+		char c = s.charAt(i);
+		if (c < 0x80) {
+			switch (c) {
+			case '&':
+				writeRaw("&amp;");
+				break;
+			case '<':
+				writeRaw("&lt;");
+				break;
+			case '>':
+				writeRaw("&gt;");
+				break;
+			case '"':
+				if (inAttribute) {
+					writeRaw("&quot;");
+				} else {
+					out.write(c);
+				}
+				break;
+			default:
+				if (c < 0x20 || c == 0x7F && !inAttribute) {
+					writeCharRef(c);
+				} else {
+					out.write(c);
+				}
+			}
+		} else if (c < 0x800) {
+			if (c <= 0x9F && !inAttribute) {
+				writeCharRef(c);
+			} else {
+				out.write(0xC0 | (c >> 6));
+				out.write(0x80 | (c & 0x3F));
+			}
+		} else if (Character.isHighSurrogate(c)) {
+			if (i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+				writeCharRef(Character.toCodePoint(c, s.charAt(i + 1)));
+				return i + 1;
+			}
+			// the XSLT serializer fails
+			throw new UnsupportedContentException();
+		} else if (Character.isLowSurrogate(c)) {
+			writeCharRef(c);
+		} else {
+			out.write(0xE0 | (c >> 12));
+			out.write(0x80 | ((c >> 6) & 0x3F));
+			out.write(0x80 | (c & 0x3F));
+		}
+		return i;
+	}
+
+	private void writeCharRef(int codePoint) {
+		writeRaw("&#" + codePoint + ";");
+	}
+
+	private void writeRaw(String ascii) {
+		for (int i = 0; i < ascii.length(); i++) {
+			out.write(ascii.charAt(i));
+		}
+	}
+
+	private static byte[] bytes(String ascii) {
+		byte[] b = new byte[ascii.length()];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) ascii.charAt(i);
+		}
+		return b;
+	}
+
+	/**
+	 * An unsynchronized byte buffer.
+	 */
+	static final class Buffer {
+		private byte[] buf = new byte[4096];
+		private int count;
+
+		void write(int b) {
+			if (count == buf.length) {
+				buf = Arrays.copyOf(buf, 2 * count);
+			}
+			buf[count++] = (byte) b;
+		}
+
+		void write(byte[] b) {
+			if (count + b.length > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(2 * buf.length, count + b.length));
+			}
+			System.arraycopy(b, 0, buf, count, b.length);
+			count += b.length;
+		}
+
+		void writeTo(OutputStream os) throws IOException {
+			os.write(buf, 0, count);
+		}
+
+		int size() {
+			return count;
+		}
+	}
+
+	private static final class UnsupportedContentException extends Exception {
+		UnsupportedContentException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -33,18 +33,36 @@ i.e. one tag or text token per line starting at the beginning of the line.
 -->
 
 <xsl:stylesheet xmlns:xsl="http://www.w3.org/1999/XSL/Transform" version="1.0">
+  <!-- The line breaks are written explicitly rather than by indent="yes",
+       whose output differs between XSLT processors. -->
   <xsl:output method="xml" encoding="UTF-8"
-              indent="yes"
+              indent="no"
   />
 
   <xsl:strip-space elements="*"/>
 
-  <xsl:template match="*|@*">
+  <xsl:template match="/">
+    <xsl:apply-templates/>
+    <xsl:text>&#10;</xsl:text>
+  </xsl:template>
+
+  <xsl:template match="*">
+    <!-- a tag starts a new line, unless it follows a text, which ends its line already -->
+    <xsl:if test="parent::* and not((preceding-sibling::*|preceding-sibling::text())[last()][self::text()])">
+      <xsl:text>&#10;</xsl:text>
+    </xsl:if>
     <xsl:copy>
-      <xsl:apply-templates select="*|@*|text()"/>
+      <xsl:apply-templates select="@*|*|text()"/>
+      <xsl:if test="(*|text())[last()][self::*]">
+        <xsl:text>&#10;</xsl:text>
+      </xsl:if>
     </xsl:copy>
   </xsl:template>
 
+  <xsl:template match="@*">
+    <xsl:copy/>
+  </xsl:template>
+
   <xsl:template match="text()">
     <xsl:text>&#10;</xsl:text>
     <xsl:value-of select="normalize-space()"/>
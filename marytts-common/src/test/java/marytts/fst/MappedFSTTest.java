@@ -0,0 +1,106 @@
+package marytts.fst;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFSTTest {
+	@ClassRule
+	public static TemporaryFolder tmp = new TemporaryFolder();
+
+	private static final String[][] LEXICON = { { "Haus", "h aU s" }, { "Hase", "h a: z @" }, { "Häuser", "h OY z 6" },
+			{ "Maus", "m aU s" }, { "an", "' a n" }, { "ab", "' a p" } };
+	private static final String[] QUERIES = { "Haus", "Hase", "Häuser", "Maus", "an", "ab", "a", "Hau", "Hausx", "", "xyz" };
+
+	private static File fstFile;
+	private static File mappedFile;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		AlignerTrainer at = new AlignerTrainer(false, false);
+		for (String[] entry : LEXICON) {
+			at.splitAndAdd(entry[0], entry[1]);
+		}
+		at.alignIteration();
+		TransducerTrie t = new TransducerTrie();
+		for (int i = 0; i < at.lexiconSize(); i++) {
+			t.add(at.getAlignment(i));
+		}
+		t.computeMinimization();
+		fstFile = tmp.newFile("lexicon.fst");
+		DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fstFile)));
+		t.writeFST(os, "UTF-8");
+		os.close();
+		mappedFile = tmp.newFile("lexicon.mfst");
+		MappedFST.write(new FST(fstFile.getPath()), mappedFile);
+	}
+
+	@Test
+	public void detectFormat() throws Exception {
+		assertTrue(MappedFST.isMappedFST(mappedFile));
+		assertFalse(MappedFST.isMappedFST(fstFile));
+	}
+
+	@Test
+	public void mappedFileGivesSameResults() throws Exception {
+		FSTLookup original = new FSTLookup(fstFile.getPath());
+		FSTLookup mapped = new FSTLookup(mappedFile.getPath());
+		for (String q : QUERIES) {
+			assertArrayEquals(q, original.lookup(q), mapped.lookup(q));
+		}
+		for (String[] entry : LEXICON) {
+			assertArrayEquals(entry[1], original.lookup(entry[1], true), mapped.lookup(entry[1], true));
+		}
+	}
+
+	@Test
+	public void mappedStreamGivesSameResults() throws Exception {
+		FSTLookup original = new FSTLookup(fstFile.getPath());
+		InputStream in = new FileInputStream(mappedFile);
+		FSTLookup mapped = new FSTLookup(in, "mappedStreamGivesSameResults");
+		in.close();
+		for (String q : QUERIES) {
+			assertArrayEquals(q, original.lookup(q), mapped.lookup(q));
+		}
+	}
+
+	@Test
+	public void extractConvertsOnce() throws Exception {
+		File dir = new File(tmp.getRoot(), "cache");
+		InputStream in = new FileInputStream(fstFile);
+		File extracted = MappedFST.extract(in, "jar:/marytts/language/xx/lexicon.fst", dir);
+		in.close();
+		assertTrue(MappedFST.isMappedFST(extracted));
+		assertTrue(extracted.getName().startsWith("lexicon.fst-"));
+		assertEquals(1, dir.list().length);
+		FSTLookup original = new FSTLookup(fstFile.getPath());
+		FSTLookup mapped = new FSTLookup(extracted.getPath());
+		for (String q : QUERIES) {
+			assertArrayEquals(q, original.lookup(q), mapped.lookup(q));
+		}
+		// the same FST again, and an FST which is already in mapped format, are not converted again
+		in = new FileInputStream(fstFile);
+		assertEquals(extracted, MappedFST.extract(in, "jar:/marytts/language/xx/lexicon.fst", dir));
+		in.close();
+		in = new FileInputStream(mappedFile);
+		File copied = MappedFST.extract(in, "lexicon.fst", dir);
+		in.close();
+		assertNotEquals(extracted, copied);
+		assertTrue(MappedFST.isMappedFST(copied));
+		assertEquals(2, dir.list().length);
+	}
+}
@@ -1,10 +1,16 @@
 package marytts.util.dom;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.io.ByteArrayInputStream;
 
 import marytts.util.io.FileUtils;
 
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 public class DomUtilsTest {
 
@@ -19,4 +25,30 @@ public class DomUtilsTest {
 		DomUtils.parseDocument(DomUtilsTest.class.getResourceAsStream("sample.maryxml"), true);
 	}
 
+	/**
+	 * The validating parse drops whitespace between elements only where the schema allows no text, e.g. in a syllable, and keeps
+	 * it in mixed content, e.g. in a token.
+	 */
+	@Test
+	public void validatingParseDropsElementContentWhitespace() throws Exception {
+		Document validated = DomUtils.parseDocument(DomUtilsTest.class.getResourceAsStream("sample.maryxml"), true);
+		Document notValidated = DomUtils.parseDocument(DomUtilsTest.class.getResourceAsStream("sample.maryxml"), false);
+		for (String elementOnly : new String[] { "p", "syllable" }) {
+			assertEquals(0, countWhitespaceChildren(validated, elementOnly));
+			assertTrue(countWhitespaceChildren(notValidated, elementOnly) > 0);
+		}
+		assertTrue(countWhitespaceChildren(validated, "t") > 0);
+		assertEquals(countWhitespaceChildren(notValidated, "t"), countWhitespaceChildren(validated, "t"));
+	}
+
+	private int countWhitespaceChildren(Document doc, String elementName) {
+		int count = 0;
+		Element element = (Element) doc.getElementsByTagNameNS("http://mary.dfki.de/2002/MaryXML", elementName).item(0);
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.TEXT_NODE && child.getNodeValue().trim().length() == 0) {
+				count++;
+			}
+		}
+		return count;
+	}
 }
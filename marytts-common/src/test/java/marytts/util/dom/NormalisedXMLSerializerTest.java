@@ -0,0 +1,100 @@
+package marytts.util.dom;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class NormalisedXMLSerializerTest {
+
+	private static byte[] stylesheetOutput(Document doc) throws Exception {
+		Transformer transformer = TransformerFactory.newInstance().newTransformer(
+				new StreamSource(MaryNormalisedWriter.class.getResourceAsStream("normalise-maryxml.xsl")));
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		transformer.transform(new DOMSource(doc), new StreamResult(baos));
+		return baos.toByteArray();
+	}
+
+	private static byte[] directOutput(Document doc) throws Exception {
+		NormalisedXMLSerializer.Buffer buffer = NormalisedXMLSerializer.serialize(doc);
+		assertNotNull(buffer);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		buffer.writeTo(baos);
+		return baos.toByteArray();
+	}
+
+	private static void assertSameAsStylesheet(Document doc) throws Exception {
+		assertArrayEquals(stylesheetOutput(doc), directOutput(doc));
+	}
+
+	private static void assertSameAsStylesheet(String xml) throws Exception {
+		assertSameAsStylesheet(DomUtils.parseDocument(xml, false));
+	}
+
+	@Test
+	public void stylesheetLayoutIsPinned() throws Exception {
+		Document doc = DomUtils.parseDocument("<maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\"><p> some <t>text</t> here"
+				+ "<s><t/></s></p></maryxml>", false);
+		// the same on every JDK, whatever its serializer does for indent="yes"
+		assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\">\n<p>\nsome\n"
+				+ "<t>\ntext\n</t>\nhere\n<s>\n<t/>\n</s>\n</p>\n</maryxml>\n", new String(stylesheetOutput(doc), "UTF-8"));
+	}
+
+	@Test
+	public void sampleDocument() throws Exception {
+		assertSameAsStylesheet(DomUtils.parseDocument(getClass().getResourceAsStream("sample.maryxml"), true));
+	}
+
+	@Test
+	public void textIsNormalised() throws Exception {
+		assertSameAsStylesheet("<maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\" version=\"0.5\"><p>  some\n\ttext\n"
+				+ "<![CDATA[ and <cdata> ]]>more <!-- comment --> text<?pi data?>after</p><p>   </p><p/></maryxml>");
+	}
+
+	@Test
+	public void specialCharactersAreEscaped() throws Exception {
+		assertSameAsStylesheet("<maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\" a=\"&lt;&amp;&gt;&quot;'&#9;&#10;ä\">"
+				+ "&lt;tag&gt; &amp; \"quotes\" üß€ 😀</maryxml>");
+	}
+
+	@Test
+	public void namespacesAreDeclaredLikeStylesheet() throws Exception {
+		assertSameAsStylesheet("<a:root xmlns:a=\"urn:a\" xmlns:b=\"urn:b\" xml:lang=\"de\"><b:x a:att=\"1\"><a:y xmlns:a=\"urn:c\"/>"
+				+ "</b:x><c:z xmlns:c=\"urn:d\" xmlns=\"urn:e\"><w/></c:z></a:root>");
+	}
+
+	@Test
+	public void constructedDocument() throws Exception {
+		Document doc = DomUtils.parseDocument("<maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\"/>", false);
+		Element root = doc.getDocumentElement();
+		Element p = doc.createElementNS(root.getNamespaceURI(), "p");
+		root.appendChild(p);
+		p.appendChild(doc.createTextNode("adjacent "));
+		p.appendChild(doc.createTextNode(" text   nodes"));
+		p.appendChild(doc.createElementNS(root.getNamespaceURI(), "boundary"));
+		assertSameAsStylesheet(doc);
+	}
+
+	@Test
+	public void unsupportedContentIsRejected() throws Exception {
+		Document doc = DomUtils.parseDocument("<root xmlns=\"urn:a\"/>", false);
+		// no namespace while a default namespace is in scope
+		doc.getDocumentElement().appendChild(doc.createElementNS(null, "child"));
+		assertNull(NormalisedXMLSerializer.serialize(doc));
+		// whitespace-only text is kept by the stylesheet
+		assertNull(NormalisedXMLSerializer.serialize(DomUtils.parseDocument(
+				"<root xmlns=\"urn:a\"><a xml:space=\"preserve\"> <b/> </a></root>", false)));
+	}
+}
@@ -23,7 +23,6 @@ package marytts.language.de;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -102,10 +101,9 @@ public class JPhonemiser extends marytts.modules.JPhonemiser {
 			}
 		}
 		if (MaryProperties.getBoolean("de.phonemiser.useenglish")) {
-			InputStream usLexStream = MaryProperties.getStream("en_US.lexicon");
-			if (usLexStream != null) {
+			if (MaryProperties.getProperty("en_US.lexicon") != null) {
 				try {
-					usEnglishLexicon = new FSTLookup(usLexStream, MaryProperties.getProperty("en_US.lexicon"));
+					usEnglishLexicon = loadLexicon("en_US.lexicon");
 				} catch (Exception e) {
 					logger.info("Cannot load English lexicon '" + MaryProperties.getProperty("en_US.lexicon") + "'", e);
 				}
@@ -29,6 +29,7 @@ import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.language.de.preprocess.ExpansionPattern;
+import marytts.language.de.preprocess.TokenSignature;
 import marytts.modules.InternalModule;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.dom.NameNodeFilter;
@@ -98,8 +99,13 @@ public class Preprocess extends InternalModule {
 			}
 			Iterator<ExpansionPattern> it = ExpansionPattern.allPatterns().iterator();
 			boolean fullyExpanded = false;
+			TokenSignature signature = new TokenSignature(MaryDomUtils.tokenText(t));
 			while (!fullyExpanded && it.hasNext()) {
 				ExpansionPattern ep = (ExpansionPattern) it.next();
+				// skip the patterns which according to the token's signature cannot match it
+				if (!ep.mayApplyTo(signature)) {
+					continue;
+				}
 				logger.debug("Now applying ep " + ep + " to token " + MaryDomUtils.getPlainTextBelow(t));
 				List<Element> expanded = new ArrayList<Element>();
 				fullyExpanded = ep.process(t, expanded);
@@ -128,6 +134,8 @@ public class Preprocess extends InternalModule {
 						// assert lastToken != null;
 						tw.setCurrentNode(t);
 					}
+					// the token text may have been modified even if nothing was expanded
+					signature = new TokenSignature(MaryDomUtils.tokenText(t));
 				}
 
 			} // all patterns
@@ -89,6 +89,20 @@ public class AbbrevEP extends ExpansionPattern {
 		return isAbbrev(str) || REPattern.onlyDigits.matcher(str).find() || ".".equals(str);
 	}
 
+	/**
+	 * Necessary conditions for {@link #isCandidate(Element)}, checking the character classes required by the regular expressions
+	 * in {@link #isAbbrev(String)} before looking up the dictionary. Line terminators matched by <code>$</code> count as
+	 * {@link TokenSignature#OTHER}.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		String s = signature.getText();
+		return signature.contains(TokenSignature.LETTER) && signature.contains(TokenSignature.DOT) // letterDot
+				|| signature.containsAfterFirst(TokenSignature.UPPER) // nonInitialCapital
+				|| signature.containsOnly(TokenSignature.CONSONANT | TokenSignature.OTHER) // onlyConsonants
+				|| signature.containsOnly(TokenSignature.DIGIT | TokenSignature.OTHER) // onlyDigits
+				|| signature.containsOnly(TokenSignature.DOT) || abbrevDict.containsKey(s) || abbrevDict.containsKey(s + ".");
+	}
+
 	protected int canDealWith(String s, int type) {
 		return match(s, type);
 	}
@@ -71,6 +71,15 @@ public class CompositeEP extends ExpansionPattern {
 		super();
 	}
 
+	/**
+	 * Tokens are only modified if they contain hyphens, apostrophes or other characters at which to split them, or both letters
+	 * and digits.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.contains(TokenSignature.NON_ALPHANUMERIC)
+				|| signature.contains(TokenSignature.LETTER) && signature.contains(TokenSignature.DIGIT);
+	}
+
 	/**
 	 * Process and expand a list of tokens.
 	 * 
@@ -81,6 +81,7 @@ public class CurrencyEP extends ExpansionPattern {
 
 	// Domain-specific primitives:
 	protected final String sCurrencySymbol = getCurrencySymbols();
+	private final String currencySymbolInitials = getCurrencySymbolInitials();
 	protected final String sCurrencyAmount = "(?:" + NumberEP.sInteger + "(?:[,.](?:-|[0-9][0-9]))?)";
 	protected final String sCurrencyAmountSubstructure = "(?:(" + NumberEP.sInteger + ")(?:[,.](-|[0-9][0-9]))?)";
 	// in this, first parenthesis are the wholes and second paren are the cents.
@@ -116,6 +117,18 @@ public class CurrencyEP extends ExpansionPattern {
 		return _sCurrencySymbol.toString();
 	}
 
+	// Only used to initialise currencySymbolInitials from _currencySymbolNames[]:
+	private String getCurrencySymbolInitials() {
+		StringBuilder initials = new StringBuilder();
+		for (int i = 0; i < _currencySymbolNames.length; i += 2) {
+			char initial = _currencySymbolNames[i].charAt(0);
+			if (initials.indexOf(String.valueOf(initial)) == -1) {
+				initials.append(initial);
+			}
+		}
+		return initials.toString();
+	}
+
 	public CurrencyEP() {
 		super();
 	}
@@ -125,6 +138,14 @@ public class CurrencyEP extends ExpansionPattern {
 		return (s.length() <= 4 || number.isCandidate(t) || matchCurrency(s));
 	}
 
+	/**
+	 * Currency expressions start with either the amount or the currency symbol.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.startsWith(TokenSignature.DIGIT | TokenSignature.MINUS)
+				|| currencySymbolInitials.indexOf(signature.getFirstChar()) != -1;
+	}
+
 	protected int canDealWith(String s, int type) {
 		return match(s, type);
 	}
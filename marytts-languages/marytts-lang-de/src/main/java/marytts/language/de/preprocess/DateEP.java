@@ -128,6 +128,13 @@ public class DateEP extends ExpansionPattern {
 		return reMatchingChars;
 	}
 
+	/**
+	 * All dates recognised without say-as markup start with a day or a year.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.startsWith(TokenSignature.DIGIT);
+	}
+
 	/**
 	 * Every subclass has its own logger. The important point is that if several threads are accessing the variable at the same
 	 * time, the logger needs to be thread-safe or it will produce rubbish.
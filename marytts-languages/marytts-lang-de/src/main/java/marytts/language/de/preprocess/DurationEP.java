@@ -69,6 +69,13 @@ public class DurationEP extends ExpansionPattern {
 		return reMatchingChars;
 	}
 
+	/**
+	 * All durations start with the hours.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.startsWith(TokenSignature.DIGIT);
+	}
+
 	/**
 	 * Every subclass has its own logger. The important point is that if several threads are accessing the variable at the same
 	 * time, the logger needs to be thread-safe or it will produce rubbish.
@@ -271,6 +271,33 @@ public abstract class ExpansionPattern {
 		return reMatchingChars().matcher(MaryDomUtils.tokenText(t)).find();
 	}
 
+	/**
+	 * Cheaply decide, from the signature of token <code>t</code>, whether {@link #process(Element, List)} could possibly expand
+	 * anything starting at <code>t</code>. This allows the preprocessing to skip patterns which cannot match a token without
+	 * running any of their regular expressions.
+	 * 
+	 * @param signature
+	 *            the signature of the token text of t
+	 * @return false if process(t) is certain not to change anything, true otherwise
+	 */
+	public final boolean mayApplyTo(TokenSignature signature) {
+		// The text of an empty token tells nothing about the text of the following tokens
+		return signature.isEmpty() || canMatch(signature);
+	}
+
+	/**
+	 * Subclasses which know a necessary condition for a match starting at a token (typically, for {@link #isCandidate(Element)}
+	 * to be true and for {@link #match(String, int)} to succeed with the most general type) should override this to test that
+	 * condition. It is only called for non-empty tokens. As a default, any token may match.
+	 * 
+	 * @param signature
+	 *            the signature of the (non-empty) token text
+	 * @return false if no match can start at the token, true if it may
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return true;
+	}
+
 	/**
 	 * Try to match and expand the entirety of tokens enclosed by the say-as tag <code>sayas</code>. The <code>type</code> of data
 	 * to expand is given. If the tokens can be matched according to <code>type</code>, they are expanded. Throws DOMException if
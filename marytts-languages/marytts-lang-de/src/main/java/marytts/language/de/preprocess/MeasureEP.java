@@ -133,6 +133,13 @@ public class MeasureEP extends ExpansionPattern {
 		return (reMeasureSymbol.matcher(s).matches() || number.isCandidate(t) || reMeasure.matcher(s).matches());
 	}
 
+	/**
+	 * Measures start with a number.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.startsWith(TokenSignature.DIGIT | TokenSignature.MINUS | TokenSignature.DOT | TokenSignature.COMMA);
+	}
+
 	protected int canDealWith(String s, int type) {
 		return match(s, type);
 	}
@@ -91,6 +91,10 @@ public class MultiWordEP extends ExpansionPattern {
 		return constituentWordSet.contains(str);
 	}
 
+	protected boolean canMatch(TokenSignature signature) {
+		return constituentWordSet.contains(signature.getText());
+	}
+
 	protected int canDealWith(String s, int type) {
 		return match(s, type);
 	}
@@ -101,6 +101,12 @@ public class NetEP extends ExpansionPattern {
 				|| s.equals("ftp") || s.equals("mailto"));
 	}
 
+	protected boolean canMatch(TokenSignature signature) {
+		String s = signature.getText();
+		return signature.contains(TokenSignature.AT | TokenSignature.DOT | TokenSignature.SLASH | TokenSignature.COLON)
+				|| s.equals("http") || s.equals("ftp") || s.equals("mailto");
+	}
+
 	/**
 	 * Inform whether this module performs a full expansion of the input, or whether other patterns should be applied after this
 	 * one.
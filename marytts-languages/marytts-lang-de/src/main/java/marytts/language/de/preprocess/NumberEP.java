@@ -90,6 +90,15 @@ public class NumberEP extends ExpansionPattern {
 				|| reRoman.matcher(s).matches() || reDigits.matcher(s).matches();
 	}
 
+	/**
+	 * All numbers recognised without say-as markup (i.e., all but roman numbers) consist of digits, dots, commas and minus signs
+	 * only.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.contains(TokenSignature.DIGIT)
+				&& signature.containsOnly(TokenSignature.DIGIT | TokenSignature.DOT | TokenSignature.COMMA | TokenSignature.MINUS);
+	}
+
 	/**
 	 * Every subclass has its own logger. The important point is that if several threads are accessing the variable at the same
 	 * time, the logger needs to be thread-safe or it will produce rubbish.
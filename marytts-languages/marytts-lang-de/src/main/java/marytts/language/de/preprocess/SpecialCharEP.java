@@ -238,6 +238,14 @@ public class SpecialCharEP extends ExpansionPattern {
 		return reMatchingChars.matcher(s).matches();
 	}
 
+	/**
+	 * Only tokens consisting of a single special character are matched.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		String s = signature.getText();
+		return s.length() == 1 && specialCharNames.containsKey(s);
+	}
+
 	protected boolean doPronounce(String specialChar) {
 		SCEntry entry = (SCEntry) specialCharNames.get(specialChar);
 		if (entry == null)
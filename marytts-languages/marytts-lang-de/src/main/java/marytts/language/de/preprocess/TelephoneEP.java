@@ -63,6 +63,14 @@ public class TelephoneEP extends ExpansionPattern {
 		return reMatchingChars;
 	}
 
+	/**
+	 * Telephone numbers start with 0 or +.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		char first = signature.getFirstChar();
+		return first == '0' || first == '+';
+	}
+
 	/**
 	 * Every subclass has its own logger. The important point is that if several threads are accessing the variable at the same
 	 * telephone, the logger needs to be thread-safe or it will produce rubbish.
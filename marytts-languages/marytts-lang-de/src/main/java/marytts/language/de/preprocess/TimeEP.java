@@ -71,6 +71,13 @@ public class TimeEP extends ExpansionPattern {
 		return reMatchingChars;
 	}
 
+	/**
+	 * All times recognised without say-as markup start with the hour.
+	 */
+	protected boolean canMatch(TokenSignature signature) {
+		return signature.startsWith(TokenSignature.DIGIT);
+	}
+
 	/**
 	 * Every subclass has its own logger. The important point is that if several threads are accessing the variable at the same
 	 * time, the logger needs to be thread-safe or it will produce rubbish.
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.de.preprocess;
+
+/**
+ * The character classes occurring in a token's text, computed in a single pass over the text. Expansion patterns use the
+ * signature in {@link ExpansionPattern#canMatch(TokenSignature)} to rule out, without running any regular expression, tokens at
+ * which they cannot possibly match.
+ * <p>
+ * Every character belongs to exactly one of the classes below. The letter classes are those used by the patterns in
+ * {@link REPattern}: the letters a-z, A-Z, ä, ö, ü, ß, Ä, Ö, Ü, divided into vowels (including y) and consonants.
+ */
+public final class TokenSignature {
+	public static final int DIGIT = 1 << 0;
+	public static final int LOWER_CONSONANT = 1 << 1;
+	public static final int LOWER_VOWEL = 1 << 2;
+	public static final int UPPER_CONSONANT = 1 << 3;
+	public static final int UPPER_VOWEL = 1 << 4;
+	public static final int DOT = 1 << 5;
+	public static final int COMMA = 1 << 6;
+	public static final int MINUS = 1 << 7;
+	public static final int PLUS = 1 << 8;
+	public static final int SLASH = 1 << 9;
+	public static final int COLON = 1 << 10;
+	public static final int AT = 1 << 11;
+	/** Letters other than the German letters above, e.g. accented letters */
+	public static final int OTHER_LETTER = 1 << 12;
+	/** Any other character, e.g. other punctuation, symbols, whitespace */
+	public static final int OTHER = 1 << 13;
+
+	public static final int LETTER = LOWER_CONSONANT | LOWER_VOWEL | UPPER_CONSONANT | UPPER_VOWEL;
+	public static final int UPPER = UPPER_CONSONANT | UPPER_VOWEL;
+	public static final int CONSONANT = LOWER_CONSONANT | UPPER_CONSONANT;
+	/** Everything except letters and digits */
+	public static final int NON_ALPHANUMERIC = DOT | COMMA | MINUS | PLUS | SLASH | COLON | AT | OTHER;
+
+	private static final int[] LATIN1_CLASSES = new int[256];
+
+	static {
+		for (int c = 0; c < LATIN1_CLASSES.length; c++) {
+			LATIN1_CLASSES[c] = Character.isLetter(c) ? OTHER_LETTER : OTHER;
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			LATIN1_CLASSES[c] = DIGIT;
+		}
+		for (char c = 'a'; c <= 'z'; c++) {
+			LATIN1_CLASSES[c] = LOWER_CONSONANT;
+			LATIN1_CLASSES[Character.toUpperCase(c)] = UPPER_CONSONANT;
+		}
+		LATIN1_CLASSES['ß'] = LOWER_CONSONANT;
+		for (char c : "aeiouyäöü".toCharArray()) {
+			LATIN1_CLASSES[c] = LOWER_VOWEL;
+			LATIN1_CLASSES[Character.toUpperCase(c)] = UPPER_VOWEL;
+		}
+		LATIN1_CLASSES['.'] = DOT;
+		LATIN1_CLASSES[','] = COMMA;
+		LATIN1_CLASSES['-'] = MINUS;
+		LATIN1_CLASSES['+'] = PLUS;
+		LATIN1_CLASSES['/'] = SLASH;
+		LATIN1_CLASSES[':'] = COLON;
+		LATIN1_CLASSES['@'] = AT;
+	}
+
+	/**
+	 * The class of a single character.
+	 *
+	 * @param c
+	 *            the character
+	 * @return exactly one of the class constants of this class
+	 */
+	public static int classOf(char c) {
+		if (c < LATIN1_CLASSES.length) {
+			return LATIN1_CLASSES[c];
+		}
+		return Character.isLetter(c) ? OTHER_LETTER : OTHER;
+	}
+
+	private final String text;
+	private final int firstClass;
+	private final int otherClasses;
+
+	/**
+	 * Compute the signature of a token.
+	 *
+	 * @param text
+	 *            the token text, as returned by {@link marytts.util.dom.MaryDomUtils#tokenText(org.w3c.dom.Element)}
+	 */
+	public TokenSignature(String text) {
+		this.text = text;
+		int others = 0;
+		for (int i = 1, len = text.length(); i < len; i++) {
+			others |= classOf(text.charAt(i));
+		}
+		this.firstClass = text.length() > 0 ? classOf(text.charAt(0)) : 0;
+		this.otherClasses = others;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	public boolean isEmpty() {
+		return text.length() == 0;
+	}
+
+	/**
+	 * @return the first character of the text; must not be called for an empty text
+	 */
+	public char getFirstChar() {
+		return text.charAt(0);
+	}
+
+	/**
+	 * @return true if the first character belongs to any of the given classes
+	 */
+	public boolean startsWith(int classes) {
+		return (firstClass & classes) != 0;
+	}
+
+	/**
+	 * @return true if any character belongs to any of the given classes
+	 */
+	public boolean contains(int classes) {
+		return ((firstClass | otherClasses) & classes) != 0;
+	}
+
+	/**
+	 * @return true if any character except the first belongs to any of the given classes
+	 */
+	public boolean containsAfterFirst(int classes) {
+		return (otherClasses & classes) != 0;
+	}
+
+	/**
+	 * @return true if all characters belong to the given classes
+	 */
+	public boolean containsOnly(int classes) {
+		return ((firstClass | otherClasses) & ~classes) == 0;
+	}
+
+	public String toString() {
+		return text;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.de;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryXML;
+import marytts.language.de.preprocess.ExpansionPattern;
+import marytts.util.dom.MaryDomUtils;
+import marytts.util.dom.NameNodeFilter;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.traversal.DocumentTraversal;
+import org.w3c.dom.traversal.NodeFilter;
+import org.w3c.dom.traversal.TreeWalker;
+
+/**
+ * The German preprocessing as it was before expansion patterns were dispatched by token signature: every pattern is tried on
+ * every token. This is the reference against which {@link Preprocess} is checked and timed.
+ */
+public class AllPatternsPreprocess extends Preprocess {
+
+	@Override
+	public MaryData process(MaryData d) throws Exception {
+		Document doc = d.getDocument();
+		NodeList sayasElements = doc.getElementsByTagName(MaryXML.SAYAS);
+		for (int i = 0; i < sayasElements.getLength(); i++) {
+			Element sayas = (Element) sayasElements.item(i);
+			String type = sayas.getAttribute("type");
+			ExpansionPattern ep = ExpansionPattern.getPattern(type);
+			if (ep != null) {
+				ep.match(sayas, type);
+			}
+		}
+		matchAndExpandPatterns(doc);
+		MaryData result = new MaryData(outputType(), d.getLocale());
+		result.setDocument(doc);
+		return result;
+	}
+
+	private void matchAndExpandPatterns(Document doc) {
+		TreeWalker tw = ((DocumentTraversal) doc).createTreeWalker(doc, NodeFilter.SHOW_ELEMENT,
+				new NameNodeFilter(MaryXML.TOKEN), false);
+		Element t = null;
+		while ((t = (Element) tw.nextNode()) != null) {
+			if (MaryDomUtils.hasAncestor(t, MaryXML.SAYAS) || t.hasAttribute("ph") || t.hasAttribute("sounds_like")) {
+				continue;
+			}
+			boolean fullyExpanded = false;
+			for (ExpansionPattern ep : ExpansionPattern.allPatterns()) {
+				List<Element> expanded = new ArrayList<Element>();
+				fullyExpanded = ep.process(t, expanded);
+				if (fullyExpanded) {
+					tw.setCurrentNode(getToken(expanded, true));
+					break;
+				} else if (!expanded.isEmpty()) {
+					t = getToken(expanded, false);
+					tw.setCurrentNode(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find the first or last token in or below the given elements.
+	 */
+	private static Element getToken(List<Element> l, boolean last) {
+		for (int k = 0; k < l.size(); k++) {
+			Element e = l.get(last ? l.size() - 1 - k : k);
+			Element t;
+			if (e.getTagName().equals(MaryXML.TOKEN)) {
+				t = e;
+			} else if (last) {
+				t = MaryDomUtils.getLastElementByTagName(e, MaryXML.TOKEN);
+			} else {
+				t = MaryDomUtils.getFirstElementByTagName(e, MaryXML.TOKEN);
+			}
+			if (t != null) {
+				return t;
+			}
+		}
+		throw new AssertionError("no token among the expanded elements");
+	}
+}
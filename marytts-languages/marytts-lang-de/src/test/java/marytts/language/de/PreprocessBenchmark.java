@@ -0,0 +1,142 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.de;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+import marytts.datatypes.MaryXML;
+import marytts.util.dom.MaryDomUtils;
+import marytts.util.dom.MaryNormalisedWriter;
+import marytts.util.io.FileUtils;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Measure the throughput of the German {@link Preprocess} module in tokens per second, compared to trying every expansion
+ * pattern on every token as {@link AllPatternsPreprocess} does, and verify that both give the same result.
+ * <p>
+ * Usage: <code>PreprocessBenchmark corpus.txt [rounds]</code>, where the corpus is a UTF-8 text file with one sentence per line,
+ * e.g. from a news corpus. The text is tokenised simply by splitting at whitespace and detaching brackets, quotes and sentence
+ * punctuation, which is close enough to the output of the tokeniser for timing purposes.
+ */
+public class PreprocessBenchmark {
+	private static final String LEADING_PUNCTUATION = "(\"'„‚«»";
+	private static final String TRAILING_PUNCTUATION = ",;:!?)\"'“‘«»";
+
+	static MaryData tokenise(List<String> sentences) throws Exception {
+		Document doc = MaryXML.newDocument();
+		doc.getDocumentElement().setAttribute("xml:lang", "de");
+		Element p = MaryXML.appendChildElement(doc.getDocumentElement(), MaryXML.PARAGRAPH);
+		for (String sentence : sentences) {
+			String[] words = sentence.trim().split("\\s+");
+			if (words.length == 0 || words[0].length() == 0) {
+				continue;
+			}
+			Element s = MaryXML.appendChildElement(p, MaryXML.SENTENCE);
+			for (int i = 0; i < words.length; i++) {
+				String w = words[i];
+				while (w.length() > 1 && LEADING_PUNCTUATION.indexOf(w.charAt(0)) != -1) {
+					addToken(s, w.substring(0, 1));
+					w = w.substring(1);
+				}
+				List<String> trailing = new ArrayList<String>();
+				while (w.length() > 1 && TRAILING_PUNCTUATION.indexOf(w.charAt(w.length() - 1)) != -1) {
+					trailing.add(0, w.substring(w.length() - 1));
+					w = w.substring(0, w.length() - 1);
+				}
+				if (i == words.length - 1 && w.length() > 1 && w.endsWith(".")) {
+					trailing.add(0, ".");
+					w = w.substring(0, w.length() - 1);
+				}
+				addToken(s, w);
+				for (String punct : trailing) {
+					addToken(s, punct);
+				}
+			}
+		}
+		MaryData data = new MaryData(MaryDataType.TOKENS, Locale.GERMAN);
+		data.setDocument(doc);
+		return data;
+	}
+
+	private static void addToken(Element s, String text) {
+		Element t = MaryXML.appendChildElement(s, MaryXML.TOKEN);
+		MaryDomUtils.setTokenText(t, text);
+	}
+
+	static String toString(MaryData data) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		new MaryNormalisedWriter().output(data.getDocument(), baos);
+		return baos.toString("UTF-8");
+	}
+
+	/**
+	 * Preprocess the corpus the given number of times and print the throughput if numTokens is positive.
+	 *
+	 * @return the preprocessed corpus from the last round
+	 */
+	private static String run(Preprocess preprocess, String name, List<String> sentences, int numTokens, int rounds)
+			throws Exception {
+		MaryData result = null;
+		long nanos = 0;
+		for (int i = 0; i < rounds; i++) {
+			MaryData input = tokenise(sentences);
+			long start = System.nanoTime();
+			result = preprocess.process(input);
+			nanos += System.nanoTime() - start;
+		}
+		if (numTokens > 0) {
+			System.out.printf("%-30s %10.0f tokens/s%n", name, (double) numTokens * rounds / (nanos / 1e9));
+		}
+		return toString(result);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java " + PreprocessBenchmark.class.getName() + " corpus.txt [rounds]");
+			System.exit(1);
+		}
+		List<String> sentences = new ArrayList<String>();
+		for (String line : FileUtils.getFileAsString(new File(args[0]), "UTF-8").split("\n")) {
+			sentences.add(line);
+		}
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int numTokens = tokenise(sentences).getDocument().getElementsByTagName(MaryXML.TOKEN).getLength();
+		System.out.println(sentences.size() + " sentences, " + numTokens + " tokens, " + rounds + " rounds");
+
+		Preprocess allPatternsPreprocess = new AllPatternsPreprocess();
+		Preprocess preprocess = new Preprocess();
+		// warm up both variants before measuring
+		for (int i = 0; i < 2; i++) {
+			run(allPatternsPreprocess, null, sentences, 0, rounds);
+			run(preprocess, null, sentences, 0, rounds);
+		}
+		String allPatterns = run(allPatternsPreprocess, "all patterns on all tokens:", sentences, numTokens, rounds);
+		String dispatched = run(preprocess, "dispatch by signature:", sentences, numTokens, rounds);
+		System.out.println(allPatterns.equals(dispatched) ? "Results are identical." : "RESULTS DIFFER!");
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.de;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import marytts.datatypes.MaryData;
+import marytts.datatypes.MaryDataType;
+
+import org.junit.Test;
+
+/**
+ * Check that dispatching the expansion patterns by token signature gives the same result as trying every pattern on every
+ * token.
+ */
+public class PreprocessTest {
+	private static final String[] TOKENS = { "3.4.2014", "3.", "12.", "März", "2014", "14:30", "Uhr", "9:15h", "2", "Std.",
+			"0841/9343-0", "+49", "1,5", "-3", "500.000", "1,85", "m", "40", "%", "25°C", "€", "500", "DM", "$", "sFr.", "z.B.",
+			"Dr.", "BMW", "bcd", "123", ".", ",", "u.a.", "www.dfki.de", "presse@bmf.bund.de", "A9", "US-Dollar", "geht's", "(",
+			")", "&", "-", "/", "Haus", "der", "Kanzler", "sagte", "am", "um", "von", "bis", "km/h", "IV.", "Nr.", "ca.", "usw.",
+			"S.", "§", "3-4", "1990er", "Mio.", "Euro", "10.10.", "''", "\"" };
+
+	private static MaryData read(File file) throws Exception {
+		MaryData data = new MaryData(MaryDataType.TOKENS, Locale.GERMAN);
+		InputStream in = new FileInputStream(file);
+		try {
+			data.readFrom(in, null);
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+
+	@Test
+	public void tokenisedResourcesAreExpandedAsByAllPatterns() throws Exception {
+		File dir = new File(PreprocessTest.class.getResource("/marytts/language/de").toURI());
+		File[] files = dir.listFiles(new FilenameFilter() {
+			public boolean accept(File d, String name) {
+				return name.endsWith(".tokenised");
+			}
+		});
+		assertTrue(files.length > 0);
+		Preprocess preprocess = new Preprocess();
+		Preprocess allPatterns = new AllPatternsPreprocess();
+		for (File file : files) {
+			String expected = PreprocessBenchmark.toString(allPatterns.process(read(file)));
+			String actual = PreprocessBenchmark.toString(preprocess.process(read(file)));
+			assertEquals(file.getName(), expected, actual);
+		}
+	}
+
+	@Test
+	public void randomTokenSequencesAreExpandedAsByAllPatterns() throws Exception {
+		Random random = new Random(4711);
+		Preprocess preprocess = new Preprocess();
+		Preprocess allPatterns = new AllPatternsPreprocess();
+		for (int i = 0; i < 50; i++) {
+			List<String> sentences = new ArrayList<String>();
+			for (int s = 0; s < 20; s++) {
+				StringBuilder sentence = new StringBuilder();
+				for (int n = 1 + random.nextInt(8); n > 0; n--) {
+					sentence.append(TOKENS[random.nextInt(TOKENS.length)]).append(' ');
+				}
+				sentences.add(sentence.toString());
+			}
+			String expected = PreprocessBenchmark.toString(allPatterns.process(PreprocessBenchmark.tokenise(sentences)));
+			String actual = PreprocessBenchmark.toString(preprocess.process(PreprocessBenchmark.tokenise(sentences)));
+			assertEquals(sentences.toString(), expected, actual);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package marytts.language.de.preprocess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import marytts.datatypes.MaryXML;
+import marytts.util.dom.MaryDomUtils;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class TokenSignatureTest {
+
+	@Test
+	public void characterClasses() {
+		assertEquals(TokenSignature.DIGIT, TokenSignature.classOf('7'));
+		assertEquals(TokenSignature.LOWER_CONSONANT, TokenSignature.classOf('ß'));
+		assertEquals(TokenSignature.LOWER_VOWEL, TokenSignature.classOf('y'));
+		assertEquals(TokenSignature.UPPER_VOWEL, TokenSignature.classOf('Ä'));
+		assertEquals(TokenSignature.UPPER_CONSONANT, TokenSignature.classOf('Q'));
+		assertEquals(TokenSignature.OTHER_LETTER, TokenSignature.classOf('é'));
+		assertEquals(TokenSignature.OTHER_LETTER, TokenSignature.classOf('Ж'));
+		assertEquals(TokenSignature.OTHER, TokenSignature.classOf('\''));
+		assertEquals(TokenSignature.OTHER, TokenSignature.classOf('€'));
+	}
+
+	@Test
+	public void signature() {
+		TokenSignature signature = new TokenSignature("3.Mai");
+		assertTrue(signature.startsWith(TokenSignature.DIGIT));
+		assertTrue(signature.contains(TokenSignature.DOT));
+		assertTrue(signature.containsAfterFirst(TokenSignature.UPPER));
+		assertFalse(signature.containsAfterFirst(TokenSignature.DIGIT));
+		assertFalse(signature.contains(TokenSignature.MINUS));
+		assertTrue(signature.containsOnly(TokenSignature.DIGIT | TokenSignature.DOT | TokenSignature.LETTER));
+		assertFalse(signature.containsOnly(TokenSignature.DIGIT | TokenSignature.DOT));
+	}
+
+	@Test
+	public void specialCharactersAreNotAlphanumeric() {
+		// CompositeEP and SpecialCharEP rely on this
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			String s = String.valueOf((char) c);
+			if (ExpansionPattern.specialChar.reMatchingChars().matcher(s).find()
+					|| ExpansionPattern.reSplitAtChars().matcher(s).find()) {
+				assertTrue("character " + c, (TokenSignature.classOf((char) c) & TokenSignature.NON_ALPHANUMERIC) != 0);
+			}
+		}
+	}
+
+	@Test
+	public void matchingTokensAreDispatched() throws Exception {
+		String[] tokens = { "3.4.2014", "3.", "12.März2014", "14:30Uhr", "9:15h", "2Std.", "0841/9343-0", "+49", "1,5", "-3",
+				"500.000", "1,85m", "40%", "25°C", "€500", "500DM", "$3", "sFr.20", "z.B.", "Dr.", "BMW", "bcd", "123", ".", "u.a.",
+				"www.dfki.de", "http", "presse@bmf.bund.de", "A9", "US-Dollar", "geht's", "(", "&" };
+		Document doc = MaryXML.newDocument();
+		for (ExpansionPattern ep : ExpansionPattern.allPatterns()) {
+			if (ep instanceof CompositeEP) {
+				continue;
+			}
+			for (String token : tokens) {
+				Element t = MaryXML.appendChildElement(doc.getDocumentElement(), MaryXML.TOKEN);
+				MaryDomUtils.setTokenText(t, token);
+				if (ep.isCandidate(t) && ep.match(token, 0) != -1) {
+					assertTrue(ep.getClass().getSimpleName() + " for " + token, ep.mayApplyTo(new TokenSignature(token)));
+				}
+			}
+		}
+		assertTrue(ExpansionPattern.composite.mayApplyTo(new TokenSignature("US-Dollar")));
+		assertTrue(ExpansionPattern.composite.mayApplyTo(new TokenSignature("A9")));
+		assertFalse(ExpansionPattern.composite.mayApplyTo(new TokenSignature("Haus")));
+		assertFalse(ExpansionPattern.date.mayApplyTo(new TokenSignature("Januar")));
+		assertFalse(ExpansionPattern.number.mayApplyTo(new TokenSignature("XIV")));
+	}
+}
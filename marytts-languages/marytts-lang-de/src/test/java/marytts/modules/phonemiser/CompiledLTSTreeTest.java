@@ -0,0 +1,176 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.phonemiser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import marytts.cart.CART;
+import marytts.cart.LeafNode.StringAndFloatLeafNode;
+import marytts.cart.io.MaryCARTReader;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compare the predictions of the compiled German letter-to-sound tree with those of the CART it was compiled from. The German
+ * tree contains decision nodes with missing daughters, so some words reach a dead end in the compiled tree.
+ */
+public class CompiledLTSTreeTest {
+	private static final String[] GERMAN_WORDS = { "Haus", "Häuser", "Straße", "Mädchen", "Zwiebel", "Schifffahrt", "Quatsch",
+			"Chor", "Chemie", "Vogel", "Vase", "Yacht", "Jahr", "Xylophon", "Überraschung", "Öl", "Ähre", "Sprachsynthese",
+			"Aussprache", "Wörterbuch", "Buchstabe", "Pfingsten", "Theater", "Philosophie", "Rhythmus", "Computer", "Café", "Niño",
+			"façade", "ABC", "x", "", "R2D2", "e-mail", "Zürich", "München", "Düsseldorf" };
+
+	private static CART tree;
+	private static TrainedLTS lts;
+	private static CompiledLTSTree compiledTree;
+	private static int context;
+	private static Locale locale;
+
+	@BeforeClass
+	public static void loadTree() throws Exception {
+		InputStream treeStream = CompiledLTSTreeTest.class.getResourceAsStream("/marytts/language/de/lexicon/de.lts");
+		tree = new MaryCARTReader().loadFromStream(treeStream);
+		treeStream.close();
+		AllophoneSet allophoneSet = AllophoneSet.getAllophoneSet(
+				CompiledLTSTreeTest.class.getResourceAsStream("/marytts/language/de/lexicon/allophones.de.xml"),
+				"CompiledLTSTreeTest");
+		locale = allophoneSet.getLocale();
+		lts = new TrainedLTS(allophoneSet, tree);
+		context = Integer.parseInt(tree.getProperties().getProperty("context"));
+		compiledTree = CompiledLTSTree.compile(tree, tree.getFeatureDefinition().getFeatureIndex(
+				TrainedLTS.PREDICTED_STRING_FEATURENAME));
+		assertNotNull(compiledTree);
+	}
+
+	/**
+	 * Predict the pronunciation by walking the CART object graph for each letter, as TrainedLTS did before the tree was compiled.
+	 */
+	private static String predictFromCART(String graphemes) {
+		FeatureDefinition featureDefinition = tree.getFeatureDefinition();
+		int indexPredictedFeature = featureDefinition.getFeatureIndex(TrainedLTS.PREDICTED_STRING_FEATURENAME);
+		graphemes = graphemes.toLowerCase(locale);
+		StringBuilder returnStr = new StringBuilder();
+		for (int i = 0; i < graphemes.length(); i++) {
+			byte[] byteFeatures = new byte[2 * context + 1];
+			for (int fnr = 0; fnr < 2 * context + 1; fnr++) {
+				int pos = i - context + fnr;
+				String grAtPos = (pos < 0 || pos >= graphemes.length()) ? "null" : graphemes.substring(pos, pos + 1);
+				try {
+					byteFeatures[fnr] = featureDefinition.getFeatureValueAsByte(fnr, grAtPos);
+				} catch (IllegalArgumentException iae) {
+					byteFeatures[fnr] = featureDefinition.getFeatureValueAsByte(fnr, "null");
+				}
+			}
+			FeatureVector fv = new FeatureVector(byteFeatures, new short[] {}, new float[] {}, 0);
+			StringAndFloatLeafNode leaf = (StringAndFloatLeafNode) tree.interpretToNode(fv, 0);
+			String prediction = leaf.mostProbableString(featureDefinition, indexPredictedFeature);
+			returnStr.append(prediction.substring(1, prediction.length() - 1));
+		}
+		return returnStr.toString();
+	}
+
+	/**
+	 * The prediction, or the class of the exception or assertion error thrown if the CART walk does not reach a leaf.
+	 */
+	private static String outcome(String word, boolean compiled) {
+		try {
+			return compiled ? lts.predictPronunciation(word) : predictFromCART(word);
+		} catch (RuntimeException e) {
+			return e.getClass().getName();
+		} catch (AssertionError e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static boolean reachesDeadEnd(String word) {
+		word = word.toLowerCase(locale);
+		byte[] features = new byte[compiledTree.getNumberOfFeatures()];
+		for (int i = 0; i < word.length(); i++) {
+			for (int f = 0; f < features.length; f++) {
+				features[f] = compiledTree.letterValue(f, word, i - context + f);
+			}
+			if (compiledTree.predict(features) == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Random words made of the letters known to the tree, in upper and lower case, and of some it does not know.
+	 */
+	private static List<String> randomWords(int numWords) {
+		List<String> letters = new ArrayList<String>();
+		for (String value : tree.getFeatureDefinition().getPossibleValues(0)) {
+			if (value.length() == 1) {
+				letters.add(value);
+				letters.add(value.toUpperCase(locale));
+			}
+		}
+		letters.addAll(Arrays.asList("7", "#", "ø", "ł", "ñ"));
+		Random random = new Random(4711);
+		List<String> words = new ArrayList<String>();
+		for (int w = 0; w < numWords; w++) {
+			StringBuilder word = new StringBuilder();
+			for (int i = 1 + random.nextInt(12); i > 0; i--) {
+				word.append(letters.get(random.nextInt(letters.size())));
+			}
+			words.add(word.toString());
+		}
+		return words;
+	}
+
+	@Test
+	public void compiledTreePredictsAsCART() {
+		List<String> words = new ArrayList<String>(Arrays.asList(GERMAN_WORDS));
+		words.addAll(randomWords(20000));
+		int deadEnds = 0;
+		for (String word : words) {
+			if (reachesDeadEnd(word)) {
+				deadEnds++;
+			}
+			assertEquals(word, outcome(word, false), outcome(word, true));
+		}
+		assertTrue("no word reaches a dead end", deadEnds > 0);
+		assertTrue("most words reach a leaf", deadEnds < words.size() / 2);
+	}
+
+	@Test
+	public void batchPredictionMatchesSingleWords() {
+		List<String> words = Arrays.asList(GERMAN_WORDS);
+		List<String> phones = lts.predictPronunciations(words);
+		assertEquals(words.size(), phones.size());
+		for (int i = 0; i < words.size(); i++) {
+			assertEquals(words.get(i), lts.predictPronunciation(words.get(i)), phones.get(i));
+		}
+	}
+}
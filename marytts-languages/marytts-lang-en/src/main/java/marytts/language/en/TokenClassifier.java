@@ -0,0 +1,285 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.sun.speech.freetts.en.us.USEnglish;
+
+/**
+ * Classifies token strings by the USEnglish regular expressions used in {@link TokenToWords}. Rather than trying the regular
+ * expressions one after the other, a single scan over the token determines which of them can possibly match (e.g., only
+ * all-digit tokens can match {@link #DIGITS}, and only tokens starting with a dollar sign can match {@link #US_MONEY}), and only
+ * those are evaluated. The resulting set of matching expressions is cached per token string, since the same tokens recur
+ * frequently in running text; the least recently used tokens are evicted when the cache is full.
+ * <p>
+ * The single scan only rules out expressions; the result is always confirmed by the regular expression itself, so that
+ * {@link #matches(int, String)} gives exactly the same result as matching the expression directly.
+ */
+class TokenClassifier {
+	static final int ALPHABET = 1 << 0;
+	static final int COMMA_INT = 1 << 1;
+	static final int DIGITS_2_DASH = 1 << 2;
+	static final int DIGITS = 1 << 3;
+	static final int DIGITS_SLASH_DIGITS = 1 << 4;
+	static final int DOTTED_ABBREV = 1 << 5;
+	static final int DOUBLE = 1 << 6;
+	static final int DR_ST = 1 << 7;
+	static final int FOUR_DIGITS = 1 << 8;
+	static final int ILLION = 1 << 9;
+	static final int NUMBER_TIME = 1 << 10;
+	static final int NUMESS = 1 << 11;
+	static final int ORDINAL = 1 << 12;
+	static final int ROMAN_NUMBER = 1 << 13;
+	static final int SEVEN_PHONE_NUMBER = 1 << 14;
+	static final int THREE_DIGITS = 1 << 15;
+	static final int US_MONEY = 1 << 16;
+
+	private static final Pattern[] PATTERNS = new Pattern[] { Pattern.compile(USEnglish.RX_ALPHABET),
+			Pattern.compile(USEnglish.RX_COMMAINT), Pattern.compile(USEnglish.RX_DIGITS2DASH),
+			Pattern.compile(USEnglish.RX_DIGITS), Pattern.compile(USEnglish.RX_DIGITSSLASHDIGITS),
+			Pattern.compile(USEnglish.RX_DOTTED_ABBREV), Pattern.compile(USEnglish.RX_DOUBLE), Pattern.compile(USEnglish.RX_DRST),
+			Pattern.compile(USEnglish.RX_FOUR_DIGIT), Pattern.compile(USEnglish.RX_ILLION),
+			Pattern.compile(USEnglish.RX_NUMBER_TIME), Pattern.compile(USEnglish.RX_NUMESS),
+			Pattern.compile(USEnglish.RX_ORDINAL_NUMBER), Pattern.compile(USEnglish.RX_ROMAN_NUMBER),
+			Pattern.compile(USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER), Pattern.compile(USEnglish.RX_THREE_DIGIT),
+			Pattern.compile(USEnglish.RX_US_MONEY) };
+
+	// character classes seen in the single scan
+	private static final int C_LETTER = 1 << 0;
+	private static final int C_DIGIT = 1 << 1;
+	private static final int C_DOT = 1 << 2;
+	private static final int C_COMMA = 1 << 3;
+	private static final int C_MINUS = 1 << 4;
+	private static final int C_PLUS = 1 << 5;
+	private static final int C_SLASH = 1 << 6;
+	private static final int C_COLON = 1 << 7;
+	private static final int C_DOLLAR = 1 << 8;
+	private static final int C_OTHER = 1 << 9;
+	/** The letters I, V, X, which make up roman numbers */
+	private static final int C_ROMAN = 1 << 10;
+	/** The letters e, E, which introduce the exponent of a floating point number */
+	private static final int C_EXP = 1 << 11;
+	/** Any of the letters a-z, A-Z */
+	private static final int C_ANY_LETTER = C_LETTER | C_ROMAN | C_EXP;
+
+	/** Maximum number of cached token classes; enough for the vocabulary of a large text, small enough to be kept in memory. */
+	private static final int MAX_CACHED_TOKENS = 50000;
+
+	/** Token classes in access order, guarded by itself */
+	private final Map<String, Integer> cache;
+
+	TokenClassifier() {
+		this(MAX_CACHED_TOKENS);
+	}
+
+	/**
+	 * @param maxCachedTokens
+	 *            the maximum number of tokens whose classes are remembered
+	 */
+	TokenClassifier(final int maxCachedTokens) {
+		cache = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+				return size() > maxCachedTokens;
+			}
+		};
+	}
+
+	/**
+	 * Determine whether the given token matches the given expression.
+	 *
+	 * @param pattern
+	 *            one of the expression constants of this class
+	 * @param token
+	 *            the token string, must not be null
+	 * @return true if the whole token matches the expression
+	 */
+	boolean matches(int pattern, String token) {
+		return (classify(token) & pattern) != 0;
+	}
+
+	/**
+	 * Get all expressions matching the given token, from the cache if possible.
+	 *
+	 * @param token
+	 *            the token string, must not be null
+	 * @return the bitwise or of the constants of all expressions matching the whole token
+	 */
+	int classify(String token) {
+		Integer classes;
+		synchronized (cache) {
+			classes = cache.get(token);
+		}
+		if (classes == null) {
+			classes = computeClasses(token);
+			synchronized (cache) {
+				cache.put(token, classes);
+			}
+		}
+		return classes;
+	}
+
+	/**
+	 * @param token
+	 *            the token string
+	 * @return true if the classes of the token are currently cached
+	 */
+	boolean isCached(String token) {
+		synchronized (cache) {
+			return cache.containsKey(token);
+		}
+	}
+
+	/**
+	 * Get all expressions matching the given token, evaluating only those which may match according to
+	 * {@link #candidates(String)}.
+	 */
+	static int computeClasses(String token) {
+		int candidates = candidates(token);
+		int classes = 0;
+		while (candidates != 0) {
+			int i = Integer.numberOfTrailingZeros(candidates);
+			if (PATTERNS[i].matcher(token).matches()) {
+				classes |= 1 << i;
+			}
+			candidates &= candidates - 1;
+		}
+		return classes;
+	}
+
+	/**
+	 * Determine, in a single scan over the token, which expressions can possibly match it. Each condition tested here is a
+	 * necessary condition for the respective expression to match.
+	 *
+	 * @param token
+	 *            the token string, must not be null
+	 * @return the bitwise or of the constants of all expressions which may match the whole token
+	 */
+	static int candidates(String token) {
+		int len = token.length();
+		if (len == 0) {
+			return 0;
+		}
+		int seen = 0;
+		for (int i = 0; i < len; i++) {
+			seen |= classOf(token.charAt(i));
+		}
+		int first = classOf(token.charAt(0));
+		int last = classOf(token.charAt(len - 1));
+		int candidates = 0;
+		if (seen == C_DIGIT) {
+			candidates |= DIGITS | DOUBLE;
+			if (len == 3) {
+				candidates |= THREE_DIGITS;
+			} else if (len == 4) {
+				candidates |= FOUR_DIGITS;
+			}
+		} else if (only(seen, C_ANY_LETTER)) {
+			candidates |= ALPHABET;
+			if (len == 1) {
+				candidates |= DOTTED_ABBREV;
+			} else if (len == 2) {
+				candidates |= DR_ST;
+			}
+			if (only(seen, C_ROMAN)) {
+				candidates |= ROMAN_NUMBER;
+			}
+			if (len >= 6 && token.endsWith("illion")) {
+				candidates |= ILLION;
+			}
+		} else {
+			if ((seen & C_DIGIT) != 0 && only(seen, C_DIGIT | C_DOT | C_MINUS | C_PLUS | C_EXP)) {
+				candidates |= DOUBLE;
+			}
+			if (first == C_DIGIT && (seen & C_COMMA) != 0 && only(seen, C_DIGIT | C_COMMA | C_DOT)) {
+				candidates |= COMMA_INT;
+			}
+			if (first == C_DIGIT && (seen & C_MINUS) != 0 && only(seen, C_DIGIT | C_MINUS)) {
+				candidates |= DIGITS_2_DASH;
+				if (len == 8) {
+					candidates |= SEVEN_PHONE_NUMBER;
+				}
+			}
+			if (first == C_DIGIT && (seen & C_SLASH) != 0 && only(seen, C_DIGIT | C_SLASH)) {
+				candidates |= DIGITS_SLASH_DIGITS;
+			}
+			if (len == 5 && first == C_DIGIT && only(seen, C_DIGIT | C_COLON)) {
+				candidates |= NUMBER_TIME;
+			}
+			if (first == C_DIGIT && (last & C_ANY_LETTER) != 0 && only(seen, C_DIGIT | C_COMMA | C_ANY_LETTER)) {
+				candidates |= ORDINAL | NUMESS;
+			}
+			if ((first & C_ANY_LETTER) != 0 && (last & C_ANY_LETTER) != 0 && only(seen, C_ANY_LETTER | C_DOT)) {
+				candidates |= DOTTED_ABBREV;
+			}
+			if (first == C_DOLLAR && only(seen, C_DOLLAR | C_DIGIT | C_COMMA | C_DOT)) {
+				candidates |= US_MONEY;
+			}
+			if (len >= 6 && token.endsWith("illion")) {
+				candidates |= ILLION;
+			}
+		}
+		return candidates;
+	}
+
+	private static boolean only(int seen, int classes) {
+		return (seen & ~classes) == 0;
+	}
+
+	private static int classOf(char c) {
+		if (c >= '0' && c <= '9') {
+			return C_DIGIT;
+		}
+		if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+			switch (c) {
+			case 'I':
+			case 'V':
+			case 'X':
+				return C_ROMAN;
+			case 'e':
+			case 'E':
+				return C_EXP;
+			default:
+				return C_LETTER;
+			}
+		}
+		switch (c) {
+		case '.':
+			return C_DOT;
+		case ',':
+			return C_COMMA;
+		case '-':
+			return C_MINUS;
+		case '+':
+			return C_PLUS;
+		case '/':
+			return C_SLASH;
+		case ':':
+			return C_COLON;
+		case '$':
+			return C_DOLLAR;
+		default:
+			return C_OTHER;
+		}
+	}
+}
@@ -13,8 +13,6 @@ package marytts.language.en;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.sun.speech.freetts.FeatureSet;
 import com.sun.speech.freetts.Item;
@@ -24,7 +22,6 @@ import com.sun.speech.freetts.Utterance;
 import com.sun.speech.freetts.UtteranceProcessor;
 import com.sun.speech.freetts.cart.CART;
 import com.sun.speech.freetts.en.us.PronounceableFSM;
-import com.sun.speech.freetts.en.us.USEnglish;
 import com.sun.speech.freetts.util.Utilities;
 
 /**
@@ -38,61 +35,6 @@ import com.sun.speech.freetts.util.Utilities;
  */
 public class TokenToWords implements UtteranceProcessor {
 
-	// Patterns for regular expression matching
-	private static final Pattern alphabetPattern;
-
-	private static final Pattern commaIntPattern;
-
-	private static final Pattern digits2DashPattern;
-
-	private static final Pattern digitsPattern;
-
-	private static final Pattern digitsSlashDigitsPattern;
-
-	private static final Pattern dottedAbbrevPattern;
-
-	private static final Pattern doublePattern;
-
-	private static final Pattern drStPattern;
-
-	private static final Pattern fourDigitsPattern;
-
-	private static final Pattern illionPattern;
-
-	private static final Pattern numberTimePattern;
-
-	private static final Pattern numessPattern;
-
-	private static final Pattern ordinalPattern;
-
-	private static final Pattern romanNumbersPattern;
-
-	private static final Pattern sevenPhoneNumberPattern;
-
-	private static final Pattern threeDigitsPattern;
-
-	private static final Pattern usMoneyPattern;
-
-	static {
-		alphabetPattern = Pattern.compile(USEnglish.RX_ALPHABET);
-		commaIntPattern = Pattern.compile(USEnglish.RX_COMMAINT);
-		digits2DashPattern = Pattern.compile(USEnglish.RX_DIGITS2DASH);
-		digitsPattern = Pattern.compile(USEnglish.RX_DIGITS);
-		digitsSlashDigitsPattern = Pattern.compile(USEnglish.RX_DIGITSSLASHDIGITS);
-		dottedAbbrevPattern = Pattern.compile(USEnglish.RX_DOTTED_ABBREV);
-		doublePattern = Pattern.compile(USEnglish.RX_DOUBLE);
-		drStPattern = Pattern.compile(USEnglish.RX_DRST);
-		fourDigitsPattern = Pattern.compile(USEnglish.RX_FOUR_DIGIT);
-		illionPattern = Pattern.compile(USEnglish.RX_ILLION);
-		numberTimePattern = Pattern.compile(USEnglish.RX_NUMBER_TIME);
-		numessPattern = Pattern.compile(USEnglish.RX_NUMESS);
-		ordinalPattern = Pattern.compile(USEnglish.RX_ORDINAL_NUMBER);
-		romanNumbersPattern = Pattern.compile(USEnglish.RX_ROMAN_NUMBER);
-		sevenPhoneNumberPattern = Pattern.compile(USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER);
-		threeDigitsPattern = Pattern.compile(USEnglish.RX_THREE_DIGIT);
-		usMoneyPattern = Pattern.compile(USEnglish.RX_US_MONEY);
-	}
-
 	// King-like words
 	private static final String[] kingNames = { "louis", "henry", "charles", "philip", "george", "edward", "pius", "william",
 			"richard", "ptolemy", "john", "paul", "peter", "nicholas", "frederick", "james", "alfonso", "ivan", "napoleon",
@@ -195,6 +137,9 @@ public class TokenToWords implements UtteranceProcessor {
 	// a CART for classifying numbers
 	private CART cart;
 
+	// classifies tokens by the USEnglish regular expressions, with a cache for recurring tokens
+	private final TokenClassifier classifier;
+
 	/**
 	 * Constructs a default USTokenWordProcessor. It uses the USEnglish regular expression set (USEngRegExp) by default.
 	 * 
@@ -202,10 +147,14 @@ public class TokenToWords implements UtteranceProcessor {
 	 *            the cart to use to classify numbers
 	 */
 	public TokenToWords(CART usNumbersCART, PronounceableFSM prefixFSM, PronounceableFSM suffixFSM) {
+		this(usNumbersCART, prefixFSM, suffixFSM, new TokenClassifier());
+	}
+
+	TokenToWords(CART usNumbersCART, PronounceableFSM prefixFSM, PronounceableFSM suffixFSM, TokenClassifier classifier) {
 		this.cart = usNumbersCART;
 		this.prefixFSM = prefixFSM;
 		this.suffixFSM = suffixFSM;
-
+		this.classifier = classifier;
 	}
 
 	/**
@@ -252,13 +201,14 @@ public class TokenToWords implements UtteranceProcessor {
 		String p_name = (String) tokenItem.findFeature("p.name");
 		String p_p_name = (String) tokenItem.findFeature("p.p.name");
 
-		boolean matches3DigitsP_name = matches(threeDigitsPattern, p_name);
+		boolean matches3DigitsP_name = matches(TokenClassifier.THREE_DIGITS, p_name);
 
-		return ((matches(threeDigitsPattern, tokenVal) && ((!matches(digitsPattern, p_name)
-				&& matches(threeDigitsPattern, n_name) && matches(fourDigitsPattern, n_n_name))
-				|| (matches(sevenPhoneNumberPattern, n_name)) || (!matches(digitsPattern, p_p_name) && matches3DigitsP_name && matches(
-				fourDigitsPattern, n_name)))) || (matches(fourDigitsPattern, tokenVal) && (!matches(digitsPattern, n_name)
-				&& matches3DigitsP_name && matches(threeDigitsPattern, p_p_name))));
+		return ((matches(TokenClassifier.THREE_DIGITS, tokenVal) && ((!matches(TokenClassifier.DIGITS, p_name)
+				&& matches(TokenClassifier.THREE_DIGITS, n_name) && matches(TokenClassifier.FOUR_DIGITS, n_n_name))
+				|| (matches(TokenClassifier.SEVEN_PHONE_NUMBER, n_name)) || (!matches(TokenClassifier.DIGITS, p_p_name)
+				&& matches3DigitsP_name && matches(TokenClassifier.FOUR_DIGITS, n_name)))) || (matches(TokenClassifier.FOUR_DIGITS,
+				tokenVal) && (!matches(TokenClassifier.DIGITS, n_name) && matches3DigitsP_name && matches(
+				TokenClassifier.THREE_DIGITS, p_p_name))));
 	}
 
 	/**
@@ -302,19 +252,20 @@ public class TokenToWords implements UtteranceProcessor {
 			/* if A is a sub part of a token, then its ey not ah */
 			wordRelation.addWord(tokenItem, "_a");
 
-		} else if (matches(alphabetPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.ALPHABET, tokenVal)) {
 
-			if (matches(romanNumbersPattern, tokenVal)) {
+			if (matches(TokenClassifier.ROMAN_NUMBER, tokenVal)) {
 
 				/* XVIII */
 				romanToWords(wordRelation, tokenItem, tokenVal);
 
-			} else if (matches(illionPattern, tokenVal) && matches(usMoneyPattern, (String) tokenItem.findFeature("p.name"))) {
+			} else if (matches(TokenClassifier.ILLION, tokenVal)
+					&& matches(TokenClassifier.US_MONEY, (String) tokenItem.findFeature("p.name"))) {
 				/* $ X -illion */
 				wordRelation.addWord(tokenItem, tokenVal);
 				wordRelation.addWord(tokenItem, "dollars");
 
-			} else if (matches(drStPattern, tokenVal)) {
+			} else if (matches(TokenClassifier.DR_ST, tokenVal)) {
 
 				/* St Andrew's St, Dr King Dr */
 				drStToWords(wordRelation, tokenItem, tokenVal);
@@ -364,20 +315,20 @@ public class TokenToWords implements UtteranceProcessor {
 				wordRelation.addWord(tokenItem, tokenVal.toLowerCase());
 			}
 
-		} else if (matches(dottedAbbrevPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.DOTTED_ABBREV, tokenVal)) {
 
 			/* U.S.A. */
 			// remove all dots
 			String aaa = Utilities.deleteChar(tokenVal, '.');
 			NumberExpander.expandLetters(aaa, wordRelation, tokenItem);
 
-		} else if (matches(commaIntPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.COMMA_INT, tokenVal)) {
 
 			/* 99,999,999 */
 			String aaa = Utilities.deleteChar(tokenVal, ',');
 			NumberExpander.expandReal(aaa, wordRelation, tokenItem);
 
-		} else if (matches(sevenPhoneNumberPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.SEVEN_PHONE_NUMBER, tokenVal)) {
 
 			/* 234-3434 telephone numbers */
 			int dashIndex = tokenVal.indexOf('-');
@@ -398,7 +349,7 @@ public class TokenToWords implements UtteranceProcessor {
 			NumberExpander.expandDigits(tokenVal, wordRelation, tokenItem);
 			wordRelation.addBreak();
 
-		} else if (matches(numberTimePattern, tokenVal)) {
+		} else if (matches(TokenClassifier.NUMBER_TIME, tokenVal)) {
 
 			/* 12:35 */
 			int colonIndex = tokenVal.indexOf(':');
@@ -410,12 +361,12 @@ public class TokenToWords implements UtteranceProcessor {
 				NumberExpander.expandID(bbb, wordRelation, tokenItem);
 			}
 
-		} else if (matches(digits2DashPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.DIGITS_2_DASH, tokenVal)) {
 
 			/* 999-999-999 */
 			digitsDashToWords(wordRelation, tokenItem, tokenVal);
 
-		} else if (matches(digitsPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.DIGITS, tokenVal)) {
 
 			digitsToWords(wordRelation, tokenItem, tokenVal);
 
@@ -430,17 +381,17 @@ public class TokenToWords implements UtteranceProcessor {
 			} else {
 				wordRelation.addWord(tokenItem, aaa);
 			}
-		} else if (matches(doublePattern, tokenVal)) {
+		} else if (matches(TokenClassifier.DOUBLE, tokenVal)) {
 
 			NumberExpander.expandReal(tokenVal, wordRelation, tokenItem);
 
-		} else if (matches(ordinalPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.ORDINAL, tokenVal)) {
 
 			/* explicit ordinals */
 			String aaa = tokenVal.substring(0, tokenLength - 2);
 			NumberExpander.expandOrdinal(aaa, wordRelation, tokenItem);
 
-		} else if (matches(usMoneyPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.US_MONEY, tokenVal)) {
 
 			/* US money */
 			usMoneyToWords(wordRelation, tokenItem, tokenVal);
@@ -452,7 +403,7 @@ public class TokenToWords implements UtteranceProcessor {
 			wordRelation.addWord(tokenItem, "per");
 			wordRelation.addWord(tokenItem, "cent");
 
-		} else if (matches(numessPattern, tokenVal)) {
+		} else if (matches(TokenClassifier.NUMESS, tokenVal)) {
 
 			/* 60s and 7s and 9s */
 			tokenToWords(wordRelation, tokenItem, tokenVal.substring(0, tokenLength - 1));
@@ -462,7 +413,7 @@ public class TokenToWords implements UtteranceProcessor {
 
 			postropheToWords(wordRelation, tokenItem, tokenVal);
 
-		} else if (matches(digitsSlashDigitsPattern, tokenVal) && tokenVal.equals(itemName)) {
+		} else if (matches(TokenClassifier.DIGITS_SLASH_DIGITS, tokenVal) && tokenVal.equals(itemName)) {
 
 			digitsSlashDigitsToWords(wordRelation, tokenItem, tokenVal);
 
@@ -470,7 +421,7 @@ public class TokenToWords implements UtteranceProcessor {
 
 			dashToWords(wordRelation, tokenItem, tokenVal);
 
-		} else if (tokenLength > 1 && !matches(alphabetPattern, tokenVal)) {
+		} else if (tokenLength > 1 && !matches(TokenClassifier.ALPHABET, tokenVal)) {
 
 			notJustAlphasToWords(wordRelation, tokenItem, tokenVal);
 
@@ -682,7 +633,7 @@ public class TokenToWords implements UtteranceProcessor {
 
 		int dotIndex = tokenVal.indexOf('.');
 
-		if (matches(illionPattern, (String) tokenItem.findFeature("n.name"))) {
+		if (matches(TokenClassifier.ILLION, (String) tokenItem.findFeature("n.name"))) {
 			NumberExpander.expandReal(tokenVal.substring(1), wordRelation, tokenItem);
 		} else if (dotIndex == -1) {
 
@@ -764,7 +715,7 @@ public class TokenToWords implements UtteranceProcessor {
 		int a, b;
 
 		// if the previous token is a number, add an "and"
-		if (matches(digitsPattern, (String) tokenItem.findFeature("p.name")) && tokenItem.getPrevious() != null) {
+		if (matches(TokenClassifier.DIGITS, (String) tokenItem.findFeature("p.name")) && tokenItem.getPrevious() != null) {
 			wordRelation.addWord(tokenItem, "and");
 		}
 
@@ -796,7 +747,7 @@ public class TokenToWords implements UtteranceProcessor {
 		String aaa = tokenVal.substring(0, index);
 		String bbb = tokenVal.substring(index + 1, tokenVal.length());
 
-		if (matches(digitsPattern, aaa) && matches(digitsPattern, bbb)) {
+		if (matches(TokenClassifier.DIGITS, aaa) && matches(TokenClassifier.DIGITS, bbb)) {
 			FeatureSet featureSet = tokenItem.getFeatures();
 			featureSet.setString("name", aaa);
 			tokenToWords(wordRelation, tokenItem, aaa);
@@ -831,7 +782,7 @@ public class TokenToWords implements UtteranceProcessor {
 		String aaa = tokenVal.substring(0, index + 1);
 		String bbb = tokenVal.substring(index + 1, tokenLength);
 
-		if (matches(drStPattern, aaa)) {
+		if (matches(TokenClassifier.DR_ST, aaa)) {
 
 			/* St Andrew's St, Dr King Dr */
 			drStToWords(wordRelation, tokenItem, tokenVal);
@@ -909,14 +860,14 @@ public class TokenToWords implements UtteranceProcessor {
 				// is at least 3 letters long, is an alphabet sequence,
 				// and has a comma.
 				boolean previousIsCity = (isUppercaseLetter(previous.charAt(0)) && previous.length() > 2
-						&& matches(alphabetPattern, previous) && tokenItem.findFeature("p.punc").equals(","));
+						&& matches(TokenClassifier.ALPHABET, previous) && tokenItem.findFeature("p.punc").equals(","));
 
 				// check if next token starts with a lower case, or
 				// this is the end of sentence, or if next token
 				// is a period (".") or a zip code (5 or 10 digits).
 				boolean nextIsGood = (isLowercaseLetter(next.charAt(0)) || tokenItem.getNext() == null
 						|| featureSet.getString("punc").equals(".") || ((nextLength == 5 || nextLength == 10) && matches(
-						digitsPattern, next)));
+						TokenClassifier.DIGITS, next)));
 
 				if (previousIsCity && nextIsGood) {
 					expandState = true;
@@ -939,18 +890,17 @@ public class TokenToWords implements UtteranceProcessor {
 	}
 
 	/**
-	 * Determines if the given input matches the given Pattern.
+	 * Determines if the given input matches the given regular expression.
 	 * 
 	 * @param pattern
-	 *            the pattern to match
+	 *            the regular expression to match, one of the constants in {@link TokenClassifier}
 	 * @param input
 	 *            the string to test
 	 * 
-	 * @return <code>true</code> if the input string matches the given Pattern; <code>false</code> otherwise
+	 * @return <code>true</code> if the input string matches the given expression; <code>false</code> otherwise
 	 */
-	private static boolean matches(Pattern pattern, String input) {
-		Matcher m = pattern.matcher(input);
-		return m.matches();
+	private boolean matches(int pattern, String input) {
+		return classifier.matches(pattern, input);
 	}
 
 	/**
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import java.util.regex.Pattern;
+
+import com.sun.speech.freetts.en.us.USEnglish;
+
+/**
+ * Matches tokens against the USEnglish regular expressions directly, one expression per query, as {@link TokenToWords} did
+ * before {@link TokenClassifier}. This is the reference against which the classifier is checked and timed.
+ */
+class RegexTokenClassifier extends TokenClassifier {
+	/** The expressions, in the order of the bits of the TokenClassifier constants */
+	private static final Pattern[] EXPRESSIONS = new Pattern[] { Pattern.compile(USEnglish.RX_ALPHABET),
+			Pattern.compile(USEnglish.RX_COMMAINT), Pattern.compile(USEnglish.RX_DIGITS2DASH),
+			Pattern.compile(USEnglish.RX_DIGITS), Pattern.compile(USEnglish.RX_DIGITSSLASHDIGITS),
+			Pattern.compile(USEnglish.RX_DOTTED_ABBREV), Pattern.compile(USEnglish.RX_DOUBLE), Pattern.compile(USEnglish.RX_DRST),
+			Pattern.compile(USEnglish.RX_FOUR_DIGIT), Pattern.compile(USEnglish.RX_ILLION),
+			Pattern.compile(USEnglish.RX_NUMBER_TIME), Pattern.compile(USEnglish.RX_NUMESS),
+			Pattern.compile(USEnglish.RX_ORDINAL_NUMBER), Pattern.compile(USEnglish.RX_ROMAN_NUMBER),
+			Pattern.compile(USEnglish.RX_SEVEN_DIGIT_PHONE_NUMBER), Pattern.compile(USEnglish.RX_THREE_DIGIT),
+			Pattern.compile(USEnglish.RX_US_MONEY) };
+
+	/** The bitwise or of all expression constants */
+	static final int ALL = (1 << EXPRESSIONS.length) - 1;
+
+	RegexTokenClassifier() {
+		super(0);
+	}
+
+	@Override
+	boolean matches(int pattern, String token) {
+		return EXPRESSIONS[Integer.numberOfTrailingZeros(pattern)].matcher(token).matches();
+	}
+
+	@Override
+	int classify(String token) {
+		int classes = 0;
+		for (int pattern = 1; pattern <= ALL; pattern <<= 1) {
+			if (matches(pattern, token)) {
+				classes |= pattern;
+			}
+		}
+		return classes;
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenClassifierTest {
+	private static final RegexTokenClassifier REFERENCE = new RegexTokenClassifier();
+
+	/**
+	 * Evaluate every expression on the token.
+	 */
+	private static int matchAll(String token) {
+		return REFERENCE.classify(token);
+	}
+
+	@Test
+	public void typicalTokens() {
+		TokenClassifier classifier = new TokenClassifier();
+		assertTrue(classifier.matches(TokenClassifier.ALPHABET, "hello"));
+		assertTrue(classifier.matches(TokenClassifier.ROMAN_NUMBER, "XIV"));
+		assertTrue(classifier.matches(TokenClassifier.DIGITS, "2014"));
+		assertTrue(classifier.matches(TokenClassifier.FOUR_DIGITS, "2014"));
+		assertTrue(classifier.matches(TokenClassifier.DOUBLE, "2014"));
+		assertTrue(classifier.matches(TokenClassifier.DOUBLE, "-1.5e+3"));
+		assertTrue(classifier.matches(TokenClassifier.COMMA_INT, "1,234,567.89"));
+		assertTrue(classifier.matches(TokenClassifier.US_MONEY, "$1,000.50"));
+		assertTrue(classifier.matches(TokenClassifier.ORDINAL, "21st"));
+		assertTrue(classifier.matches(TokenClassifier.NUMESS, "1960s"));
+		assertTrue(classifier.matches(TokenClassifier.NUMBER_TIME, "11:45"));
+		assertTrue(classifier.matches(TokenClassifier.SEVEN_PHONE_NUMBER, "555-1234"));
+		assertTrue(classifier.matches(TokenClassifier.DIGITS_2_DASH, "1-800-555"));
+		assertTrue(classifier.matches(TokenClassifier.DIGITS_SLASH_DIGITS, "3/4"));
+		assertTrue(classifier.matches(TokenClassifier.DOTTED_ABBREV, "U.S.A"));
+		assertTrue(classifier.matches(TokenClassifier.DR_ST, "Dr"));
+		assertTrue(classifier.matches(TokenClassifier.ILLION, "billion"));
+		assertFalse(classifier.matches(TokenClassifier.DIGITS, "12a"));
+		assertFalse(classifier.matches(TokenClassifier.ALPHABET, ""));
+	}
+
+	@Test
+	public void sameAsRegularExpressions() {
+		String[] tokens = { "", "a", "A", "I", "IX", "XXIV", "Mr", "st", "ST", "xyz", "Illinois", "million", "$3", "$", "1.",
+				".5", "-.5", "1e5", "1E-5", "e5", "1,000", "1,00", "12,345.6", "1-2", "1-2-3", "555-12345", "12:30", "24:00",
+				"1:30", "3rd", "3RD", "3Rd", "1,000th", "80s", "s", "1/2", "/2", "a.b", "a.", ".a", "U.S.A.", "don't",
+				"e-mail", "x+y", "+1", "--1", "1.2.3" };
+		TokenClassifier classifier = new TokenClassifier();
+		for (String token : tokens) {
+			assertEquals(token, matchAll(token), TokenClassifier.computeClasses(token));
+			assertEquals(token, matchAll(token), classifier.classify(token));
+		}
+	}
+
+	@Test
+	public void sameAsRegularExpressionsOnRandomTokens() {
+		String alphabet = "0123456789.,-+/:$eEIVXabdilnorsthRST'x";
+		Random random = new Random(4711);
+		for (int i = 0; i < 100000; i++) {
+			char[] chars = new char[1 + random.nextInt(9)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+			}
+			String token = new String(chars);
+			assertEquals(token, matchAll(token), TokenClassifier.computeClasses(token));
+		}
+	}
+
+	@Test
+	public void cacheEvictsLeastRecentlyUsedTokens() {
+		TokenClassifier classifier = new TokenClassifier(3);
+		classifier.classify("a");
+		classifier.classify("1");
+		classifier.classify("$3");
+		classifier.classify("a");
+		classifier.classify("Dr");
+		assertTrue(classifier.isCached("a"));
+		assertFalse(classifier.isCached("1"));
+		assertTrue(classifier.isCached("$3"));
+		assertTrue(classifier.isCached("Dr"));
+		// tokens seen after the cache has filled up are still cached, and still classified correctly
+		for (int i = 0; i < 100; i++) {
+			String token = String.valueOf(i);
+			assertEquals(token, matchAll(token), classifier.classify(token));
+			assertTrue(token, classifier.isCached(token));
+		}
+		assertFalse(classifier.isCached("a"));
+		assertEquals(matchAll("a"), classifier.classify("a"));
+	}
+}
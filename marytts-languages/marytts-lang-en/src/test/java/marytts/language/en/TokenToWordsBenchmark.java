@@ -0,0 +1,139 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.language.en;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import marytts.util.io.FileUtils;
+
+import com.sun.speech.freetts.Item;
+import com.sun.speech.freetts.Relation;
+import com.sun.speech.freetts.Token;
+import com.sun.speech.freetts.Tokenizer;
+import com.sun.speech.freetts.Utterance;
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.cart.CARTImpl;
+import com.sun.speech.freetts.en.us.CMUVoice;
+import com.sun.speech.freetts.en.us.PrefixFSM;
+import com.sun.speech.freetts.en.us.SuffixFSM;
+import com.sun.speech.freetts.en.us.USEnglish;
+
+/**
+ * Measure the throughput of the English {@link TokenToWords} processor in tokens per second, once matching every token against
+ * the regular expressions one after the other, as {@link RegexTokenClassifier} does, and once with the single-scan
+ * classification and token cache of {@link TokenClassifier}, and verify that both give the same words.
+ * <p>
+ * Usage: <code>TokenToWordsBenchmark corpus.txt [rounds]</code>, where the corpus is a UTF-8 text file with one sentence per
+ * line, e.g. from a news corpus. The text is tokenised with the FreeTTS tokenizer, as in {@link FreeTTSTextToTokens}.
+ */
+public class TokenToWordsBenchmark {
+
+	private static List<List<Token>> tokenise(List<String> sentences) {
+		List<List<Token>> tokenLists = new ArrayList<List<Token>>();
+		for (String sentence : sentences) {
+			Tokenizer tokenizer = new com.sun.speech.freetts.en.TokenizerImpl();
+			tokenizer.setWhitespaceSymbols(USEnglish.WHITESPACE_SYMBOLS);
+			tokenizer.setSingleCharSymbols(USEnglish.SINGLE_CHAR_SYMBOLS);
+			tokenizer.setPrepunctuationSymbols(USEnglish.PREPUNCTUATION_SYMBOLS);
+			tokenizer.setPostpunctuationSymbols(USEnglish.PUNCTUATION_SYMBOLS);
+			tokenizer.setInputText(sentence);
+			List<Token> tokens = new ArrayList<Token>();
+			while (tokenizer.hasMoreTokens()) {
+				Token token = tokenizer.getNextToken();
+				if (token.getWord().length() > 0) {
+					tokens.add(token);
+				}
+			}
+			if (!tokens.isEmpty()) {
+				tokenLists.add(tokens);
+			}
+		}
+		return tokenLists;
+	}
+
+	/**
+	 * Convert the tokens to words the given number of times and print the throughput if numTokens is positive.
+	 *
+	 * @return the words from the last round
+	 */
+	private static String run(TokenToWords processor, String name, Voice voice, List<List<Token>> tokenLists, int numTokens,
+			int rounds) throws Exception {
+		StringBuilder words = null;
+		long nanos = 0;
+		for (int i = 0; i < rounds; i++) {
+			List<Utterance> utterances = new ArrayList<Utterance>();
+			for (List<Token> tokens : tokenLists) {
+				utterances.add(new Utterance(voice, tokens));
+			}
+			long start = System.nanoTime();
+			for (Utterance utterance : utterances) {
+				processor.processUtterance(utterance);
+			}
+			nanos += System.nanoTime() - start;
+			words = new StringBuilder();
+			for (Utterance utterance : utterances) {
+				for (Item word = utterance.getRelation(Relation.WORD).getHead(); word != null; word = word.getNext()) {
+					words.append(word.getFeatures().getString("name")).append(' ');
+				}
+				words.append('\n');
+			}
+		}
+		if (numTokens > 0) {
+			System.out.printf("%-30s %10.0f tokens/s%n", name, (double) numTokens * rounds / (nanos / 1e9));
+		}
+		return words.toString();
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java " + TokenToWordsBenchmark.class.getName() + " corpus.txt [rounds]");
+			System.exit(1);
+		}
+		List<String> sentences = new ArrayList<String>();
+		for (String line : FileUtils.getFileAsString(new File(args[0]), "UTF-8").split("\n")) {
+			sentences.add(line);
+		}
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		List<List<Token>> tokenLists = tokenise(sentences);
+		int numTokens = 0;
+		for (List<Token> tokens : tokenLists) {
+			numTokens += tokens.size();
+		}
+		System.out.println(sentences.size() + " sentences, " + numTokens + " tokens, " + rounds + " rounds");
+
+		Voice voice = new DummyFreeTTSVoice();
+		voice.allocate();
+		CARTImpl numbersCart = new CARTImpl(CMUVoice.class.getResource("nums_cart.txt"));
+		PrefixFSM prefixFSM = new PrefixFSM(CMUVoice.class.getResource("prefix_fsm.txt"));
+		SuffixFSM suffixFSM = new SuffixFSM(CMUVoice.class.getResource("suffix_fsm.txt"));
+		TokenToWords regexProcessor = new TokenToWords(numbersCart, prefixFSM, suffixFSM, new RegexTokenClassifier());
+		TokenToWords processor = new TokenToWords(numbersCart, prefixFSM, suffixFSM);
+		// warm up both variants before measuring
+		for (int i = 0; i < 2; i++) {
+			run(regexProcessor, null, voice, tokenLists, 0, rounds);
+			run(processor, null, voice, tokenLists, 0, rounds);
+		}
+		String allExpressions = run(regexProcessor, "all expressions in turn:", voice, tokenLists, numTokens, rounds);
+		String classified = run(processor, "single scan and cache:", voice, tokenLists, numTokens, rounds);
+		System.out.println(allExpressions.equals(classified) ? "Results are identical." : "RESULTS DIFFER!");
+	}
+}
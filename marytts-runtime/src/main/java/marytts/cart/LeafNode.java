@@ -487,6 +487,27 @@ public abstract class LeafNode extends Node {
 
 		}
 
+		/**
+		 * Create a leaf from vectors which have already been separated, e.g. when reading a precompiled tree set.
+		 *
+		 * @param idx
+		 *            , a unique index number
+		 * @param mean
+		 *            , the mean vector
+		 * @param variance
+		 *            , the diagonal covariance, of the same length as mean
+		 * @param voicedWeight
+		 *            , the voiced weight (only for lf0 trees, 0 otherwise)
+		 */
+		public PdfLeafNode(int idx, double[] mean, double[] variance, double voicedWeight) {
+			super();
+			this.setUniqueLeafId(idx);
+			this.vectorSize = mean.length;
+			this.mean = mean;
+			this.variance = variance;
+			this.voicedWeight = voicedWeight;
+		}
+
 		public int getDataLength() {
 			return mean.length;
 		}
@@ -64,6 +64,7 @@
 package marytts.htsengine;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import marytts.cart.CART;
 import marytts.cart.LeafNode.PdfLeafNode;
@@ -91,6 +92,13 @@ public class CartTreeSet {
 	private CART[] strTree; // CART trees for strengths
 	private CART[] magTree; // CART trees for Fourier magnitudes
 
+	// Leaf pdfs per context, for each of the tree sets above
+	private PdfLeafCache durCache;
+	private PdfLeafCache lf0Cache;
+	private PdfLeafCache mgcCache;
+	private PdfLeafCache strCache;
+	private PdfLeafCache magCache;
+
 	private int numStates; /* # of HMM states for individual HMM */
 	private int lf0Stream; /* # of stream for log f0 modeling */
 	private int mcepVsize; /* vector size for mcep modeling */
@@ -133,6 +141,10 @@ public class CartTreeSet {
 	/** Loads all the CART trees */
 	public void loadTreeSet(HMMData htsData, FeatureDefinition featureDef, PhoneTranslator trickyPhones) throws IOException,
 			MaryConfigurationException {
+		if (htsData.getTreeSetBundle() != null) {
+			loadTreeSet(htsData, htsData.getTreeSetBundle(), featureDef);
+			return;
+		}
 		// Check if there are tricky phones, and create a PhoneTranslator object
 		PhoneTranslator phTranslator = trickyPhones;
 
@@ -175,6 +187,115 @@ public class CartTreeSet {
 					featureDef, phTranslator);
 			magVsize = htsReader.getVectorSize();
 		}
+		createCaches(featureDef, htsData.getModelCacheSize());
+	}
+
+	/**
+	 * Loads the trees from a precompiled bundle instead of the tree and pdf files. As with the files, only the trees whose tree
+	 * file is configured are loaded; the tree and pdf streams are closed without being read.
+	 */
+	private void loadTreeSet(HMMData htsData, TreeSetBundle bundle, FeatureDefinition featureDef) throws IOException,
+			MaryConfigurationException {
+		bundle.checkFeatureDefinition(featureDef);
+		if (htsData.getTreeDurStream() != null) {
+			logger.debug("Loading duration tree from bundle...");
+			durTree = bundle.getTrees(HMMData.FeatureType.DUR);
+			numStates = bundle.getNumStates();
+			closeStreams(htsData.getTreeDurStream(), htsData.getPdfDurStream());
+		}
+		if (htsData.getTreeLf0Stream() != null) {
+			logger.debug("Loading log F0 tree from bundle...");
+			lf0Tree = bundle.getTrees(HMMData.FeatureType.LF0);
+			lf0Stream = bundle.getVectorSize(HMMData.FeatureType.LF0);
+			closeStreams(htsData.getTreeLf0Stream(), htsData.getPdfLf0Stream());
+		}
+		if (htsData.getTreeMgcStream() != null) {
+			logger.debug("Loading mgc tree from bundle...");
+			mgcTree = bundle.getTrees(HMMData.FeatureType.MGC);
+			mcepVsize = bundle.getVectorSize(HMMData.FeatureType.MGC);
+			closeStreams(htsData.getTreeMgcStream(), htsData.getPdfMgcStream());
+		}
+		if (htsData.getTreeStrStream() != null) {
+			logger.debug("Loading str tree from bundle...");
+			strTree = bundle.getTrees(HMMData.FeatureType.STR);
+			strVsize = bundle.getVectorSize(HMMData.FeatureType.STR);
+			closeStreams(htsData.getTreeStrStream(), htsData.getPdfStrStream());
+		}
+		if (htsData.getTreeMagStream() != null) {
+			logger.debug("Loading mag tree from bundle...");
+			magTree = bundle.getTrees(HMMData.FeatureType.MAG);
+			magVsize = bundle.getVectorSize(HMMData.FeatureType.MAG);
+			closeStreams(htsData.getTreeMagStream(), htsData.getPdfMagStream());
+		}
+		createCaches(featureDef, htsData.getModelCacheSize());
+	}
+
+	private static void closeStreams(InputStream treeStream, InputStream pdfStream) throws IOException {
+		treeStream.close();
+		if (pdfStream != null)
+			pdfStream.close();
+	}
+
+	private void createCaches(FeatureDefinition featureDef, int cacheSize) {
+		if (durTree != null)
+			durCache = new PdfLeafCache(durTree, 0, featureDef, cacheSize);
+		if (lf0Tree != null)
+			lf0Cache = new PdfLeafCache(lf0Tree, 1, featureDef, cacheSize);
+		if (mgcTree != null)
+			mgcCache = new PdfLeafCache(mgcTree, 1, featureDef, cacheSize);
+		if (strTree != null)
+			strCache = new PdfLeafCache(strTree, 1, featureDef, cacheSize);
+		if (magTree != null)
+			magCache = new PdfLeafCache(magTree, 1, featureDef, cacheSize);
+		logger.debug("Caching leaf pdfs for up to " + cacheSize + " contexts per tree set");
+	}
+
+	/**
+	 * Get the trees for the given parameter stream, e.g. to write them to a {@link TreeSetBundle}.
+	 * 
+	 * @param type
+	 *            the parameter stream
+	 * @return one tree per state, or null if the voice has no trees for this stream
+	 */
+	public CART[] getTrees(HMMData.FeatureType type) {
+		switch (type) {
+		case DUR:
+			return durTree;
+		case LF0:
+			return lf0Tree;
+		case MGC:
+			return mgcTree;
+		case STR:
+			return strTree;
+		case MAG:
+			return magTree;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Get the cache of leaf pdfs for the given tree set, e.g. to monitor its hit rate.
+	 * 
+	 * @param type
+	 *            the parameter stream
+	 * @return the cache, or null if the voice has no trees for this stream
+	 */
+	public PdfLeafCache getCache(HMMData.FeatureType type) {
+		switch (type) {
+		case DUR:
+			return durCache;
+		case LF0:
+			return lf0Cache;
+		case MGC:
+			return mgcCache;
+		case STR:
+			return strCache;
+		case MAG:
+			return magCache;
+		default:
+			return null;
+		}
 	}
 
 	/***
@@ -200,7 +321,7 @@ public class CartTreeSet {
 		double durscale = htsData.getDurationScale();
 		double meanVector[], varVector[];
 		// the duration tree has only one state
-		PdfLeafNode node = (PdfLeafNode) durTree[0].interpretToNode(fv, 0);
+		PdfLeafNode node = durCache.lookup(fv)[0];
 
 		meanVector = node.getMean();
 		varVector = node.getVariance();
@@ -242,8 +363,9 @@ public class CartTreeSet {
 	 * @throws Exception
 	 */
 	public void searchLf0InCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef, double uvthresh) {
+		PdfLeafNode[] nodes = lf0Cache.lookup(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) lf0Tree[s].interpretToNode(fv, 1);
+			PdfLeafNode node = nodes[s];
 			m.setLf0Mean(s, node.getMean());
 			m.setLf0Variance(s, node.getVariance());
 			// set voiced or unvoiced
@@ -267,8 +389,9 @@ public class CartTreeSet {
 	 * @throws Exception
 	 */
 	public void searchMgcInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] nodes = mgcCache.lookup(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) mgcTree[s].interpretToNode(fv, 1);
+			PdfLeafNode node = nodes[s];
 			m.setMcepMean(s, node.getMean());
 			m.setMcepVariance(s, node.getVariance());
 		}
@@ -286,8 +409,9 @@ public class CartTreeSet {
 	 * @throws Exception
 	 */
 	public void searchStrInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] nodes = strCache.lookup(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) strTree[s].interpretToNode(fv, 1);
+			PdfLeafNode node = nodes[s];
 			m.setStrMean(s, node.getMean());
 			m.setStrVariance(s, node.getVariance());
 		}
@@ -305,8 +429,9 @@ public class CartTreeSet {
 	 * @throws Exception
 	 */
 	public void searchMagInCartTree(HTSModel m, FeatureVector fv, FeatureDefinition featureDef) {
+		PdfLeafNode[] nodes = magCache.lookup(fv);
 		for (int s = 0; s < numStates; s++) {
-			PdfLeafNode node = (PdfLeafNode) magTree[s].interpretToNode(fv, 1);
+			PdfLeafNode node = nodes[s];
 			m.setMagMean(s, node.getMean());
 			m.setMagVariance(s, node.getVariance());
 		}
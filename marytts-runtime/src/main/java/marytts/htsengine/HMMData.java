@@ -64,6 +64,7 @@
 package marytts.htsengine;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -159,6 +160,8 @@ public class HMMData {
 
 	private boolean useAcousticModels = false; /* true is using AcousticModeller, is true for MARY 4.1 voices */
 
+	private int modelCacheSize = 2000; /* max number of contexts per tree set whose leaf pdfs are cached, 0 to disable */
+
 	/**
 	 * variables for controlling generation of speech in the vocoder these variables have default values but can be fixed and read
 	 * from the audio effects component. [Default][min--max]
@@ -184,6 +187,9 @@ public class HMMData {
 	 */
 	private CartTreeSet cart = new CartTreeSet();
 
+	/** Precompiled trees and pdfs; if set, the tree and pdf files are not parsed */
+	private TreeSetBundle treeSetBundle;
+
 	/** HMM pdf model files and ModelSet object */
 	private InputStream pdfDurStream; /* durations Pdf file */
 	private InputStream pdfLf0Stream; /* lf0 Pdf file */
@@ -320,6 +326,10 @@ public class HMMData {
 		return useAcousticModels;
 	}
 
+	public int getModelCacheSize() {
+		return modelCacheSize;
+	}
+
 	public void setUseAcousticModels(boolean bval) {
 		useAcousticModels = bval;
 	}
@@ -468,6 +478,10 @@ public class HMMData {
 		return cart;
 	}
 
+	public TreeSetBundle getTreeSetBundle() {
+		return treeSetBundle;
+	}
+
 	public GVModelSet getGVModelSet() {
 		return gv;
 	}
@@ -552,6 +566,7 @@ public class HMMData {
 		stage = p.getInteger(prefix + ".gamma", stage);
 		useLogGain = p.getBoolean(prefix + ".logGain", useLogGain);
 		beta = p.getDouble(prefix + ".beta", beta);
+		modelCacheSize = p.getInteger(prefix + ".modelCacheSize", modelCacheSize);
 
 		treeDurStream = p.getStream(prefix + ".Ftd"); /* Tree DUR */
 		treeLf0Stream = p.getStream(prefix + ".Ftf"); /* Tree LF0 */
@@ -624,6 +639,7 @@ public class HMMData {
 
 		/* Load TreeSet in CARTs. */
 		logger.debug("Loading Tree Set in CARTs:");
+		readTreeSetBundle(p, prefix);
 		loadCartTreeSet();
 
 		/* Load GV ModelSet gv */
@@ -658,6 +674,7 @@ public class HMMData {
 	public void initHMMDataForHMMModel(String voiceName) throws IOException, MaryConfigurationException {
 		PropertiesAccessor p = MaryConfig.getVoiceConfig(voiceName).getPropertiesAccessor(true);
 		String prefix = "voice." + voiceName;
+		modelCacheSize = p.getInteger(prefix + ".modelCacheSize", modelCacheSize);
 		treeDurStream = p.getStream(prefix + ".Ftd");
 		pdfDurStream = p.getStream(prefix + ".Fmd");
 
@@ -692,6 +709,7 @@ public class HMMData {
 
 		/* Load TreeSet ts and ModelSet ms for current voice */
 		logger.info("Loading Tree Set in CARTs:");
+		readTreeSetBundle(p, prefix);
 		cart.loadTreeSet(this, feaDef, trickyPhones);
 
 		logger.info("Loading GV Model Set:");
@@ -699,6 +717,21 @@ public class HMMData {
 
 	}
 
+	/**
+	 * Open the precompiled tree set bundle, if the voice has one. A bundle given as a file is memory-mapped, a classpath
+	 * resource is copied into a direct buffer.
+	 */
+	private void readTreeSetBundle(PropertiesAccessor p, String prefix) throws IOException, MaryConfigurationException {
+		String bundle = p.getProperty(prefix + ".treeSetBundle");
+		if (bundle == null) {
+			treeSetBundle = null;
+		} else if (bundle.startsWith("jar:")) {
+			treeSetBundle = TreeSetBundle.load(p.getStream(prefix + ".treeSetBundle"));
+		} else {
+			treeSetBundle = TreeSetBundle.map(new File(bundle));
+		}
+	}
+
 	/**
 	 * Initialisation for mixed excitation : it loads the filter taps, they are read from MixFilterFile specified in the
 	 * configuration file.
@@ -63,6 +63,7 @@
 
 package marytts.htsengine;
 
+import marytts.server.Request;
 import marytts.util.MaryUtils;
 import java.util.Arrays;
 
@@ -272,7 +273,11 @@ public class HTSPStream {
 		else
 			logger.info("Global variance optimization");
 
+		Request request = Request.current();
 		for (int m = 0; m < order; m++) {
+			if (request != null) {
+				request.checkCancelled();
+			}
 			calcWUWandWUM(m);
 			double[][] mywuw = new double[nT][];
 			for (int x = 0; x < wuw.length; x++) {
@@ -76,6 +76,7 @@ import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
+import marytts.server.Request;
 import marytts.signalproc.process.AmplitudeNormalizer;
 import marytts.util.MaryUtils;
 import marytts.util.data.BufferedDoubleDataSource;
@@ -315,6 +316,10 @@ public class HTSVocoder {
 		magSample = 1;
 		magPulseSize = 0;
 		for (mcepframe = 0, lf0frame = 0; mcepframe < mcepPst.getT(); mcepframe++) { /* for each mcep frame */
+			if (audioProducer != null && audioProducer.isCancelled()) {
+				logger.info("Request cancelled, stopping after " + mcepframe + " of " + mcepPst.getT() + " frames");
+				break;
+			}
 
 			/** feature vector for a particular frame */
 			double mc[] = new double[m]; /* feature vector for a particular frame */
@@ -1634,6 +1639,8 @@ public class HTSVocoder {
 		private HTSPStream magPst;
 		private boolean[] voiced;
 		private HMMData htsData;
+		// the request for which the audio is produced, or null
+		private Request request;
 
 		public HTSVocoderDataProducer(int audioSize, HTSParameterGeneration pdf2par, HMMData htsData) {
 			super(audioSize, new AmplitudeNormalizer(INITIAL_MAX_AMPLITUDE));
@@ -1643,7 +1650,14 @@ public class HTSVocoder {
 			magPst = pdf2par.getMagPst();
 			voiced = pdf2par.getVoicedArray();
 			this.htsData = htsData;
+			this.request = Request.current();
+		}
 
+		/**
+		 * Whether the request for which the audio is produced has been cancelled, so that the rest of the audio is not needed.
+		 */
+		boolean isCancelled() {
+			return request != null && request.isCancelled();
 		}
 
 		public void run() {
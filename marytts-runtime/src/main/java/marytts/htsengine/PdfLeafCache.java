@@ -0,0 +1,211 @@
+/**
+ * Copyright 2011 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.cart.Node;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.server.Metrics;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * A bounded, concurrent cache of the leaf pdfs which one set of HMM state trees (e.g., the mgc trees for all states) returns for a
+ * given context. The cache key is the projection of the context feature vector onto the features actually queried by any decision
+ * node in the trees, so that full-context labels which only differ in features irrelevant to the trees share one entry.
+ */
+public class PdfLeafCache {
+	private final CART[] trees;
+	private final int minNumberOfData;
+	private final int[] featureIndices;
+	private final FeatureVector.FeatureType[] featureTypes;
+	private final Cache<ContextKey, PdfLeafNode[]> cache;
+
+	/**
+	 * Create a cache for the given trees.
+	 *
+	 * @param trees
+	 *            one tree per state
+	 * @param minNumberOfData
+	 *            the minimum number of data passed to {@link CART#interpretToNode(FeatureVector, int)}
+	 * @param featureDefinition
+	 *            the feature definition of the context feature vectors
+	 * @param maxSize
+	 *            the maximum number of contexts to remember; if this is 0, the trees are interpreted on every lookup.
+	 */
+	public PdfLeafCache(CART[] trees, int minNumberOfData, FeatureDefinition featureDefinition, int maxSize) {
+		this.trees = trees;
+		this.minNumberOfData = minNumberOfData;
+		SortedSet<Integer> queried = new TreeSet<Integer>();
+		for (CART tree : trees) {
+			collectFeatureIndices(tree.getRootNode(), queried);
+		}
+		featureIndices = new int[queried.size()];
+		featureTypes = new FeatureVector.FeatureType[queried.size()];
+		int i = 0;
+		for (int featureIndex : queried) {
+			featureIndices[i] = featureIndex;
+			if (featureDefinition.isByteFeature(featureIndex)) {
+				featureTypes[i] = FeatureVector.FeatureType.byteValued;
+			} else if (featureDefinition.isShortFeature(featureIndex)) {
+				featureTypes[i] = FeatureVector.FeatureType.shortValued;
+			} else {
+				featureTypes[i] = FeatureVector.FeatureType.floatValued;
+			}
+			i++;
+		}
+		if (maxSize > 0) {
+			cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+		} else {
+			cache = null;
+		}
+	}
+
+	private static void collectFeatureIndices(Node node, SortedSet<Integer> queried) {
+		if (node instanceof DecisionNode) {
+			DecisionNode decision = (DecisionNode) node;
+			queried.add(decision.getFeatureIndex());
+			for (int i = 0; i < decision.getNumberOfDaugthers(); i++) {
+				collectFeatureIndices(decision.getDaughter(i), queried);
+			}
+		}
+	}
+
+	/**
+	 * Get the leaf pdfs for the given context, one per state.
+	 *
+	 * @param fv
+	 *            the context feature vector
+	 * @return the leaves reached in each state's tree. The array is shared between callers and must not be modified.
+	 */
+	public PdfLeafNode[] lookup(FeatureVector fv) {
+		if (cache == null) {
+			return interpret(fv);
+		}
+		ContextKey key = project(fv);
+		PdfLeafNode[] leaves = cache.getIfPresent(key);
+		Metrics.cacheLookup("hts_pdf_leaves", leaves != null);
+		if (leaves == null) {
+			leaves = interpret(fv);
+			cache.put(key, leaves);
+		}
+		return leaves;
+	}
+
+	private PdfLeafNode[] interpret(FeatureVector fv) {
+		PdfLeafNode[] leaves = new PdfLeafNode[trees.length];
+		for (int s = 0; s < trees.length; s++) {
+			leaves[s] = (PdfLeafNode) trees[s].interpretToNode(fv, minNumberOfData);
+		}
+		return leaves;
+	}
+
+	private ContextKey project(FeatureVector fv) {
+		int[] values = new int[featureIndices.length];
+		for (int i = 0; i < values.length; i++) {
+			switch (featureTypes[i]) {
+			case byteValued:
+				values[i] = fv.getByteFeature(featureIndices[i]);
+				break;
+			case shortValued:
+				values[i] = fv.getShortFeature(featureIndices[i]);
+				break;
+			default:
+				values[i] = Float.floatToIntBits(fv.getContinuousFeature(featureIndices[i]));
+			}
+		}
+		return new ContextKey(values);
+	}
+
+	/**
+	 * The number of features the trees query, i.e. the length of the cache key.
+	 *
+	 * @return the number of distinct features in all decision nodes
+	 */
+	public int getNumberOfQueriedFeatures() {
+		return featureIndices.length;
+	}
+
+	/**
+	 * @return the number of contexts currently cached
+	 */
+	public long size() {
+		return cache == null ? 0 : cache.size();
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public long getHitCount() {
+		return cache == null ? 0 : cache.stats().hitCount();
+	}
+
+	/**
+	 * @return the number of lookups which had to interpret the trees
+	 */
+	public long getMissCount() {
+		return cache == null ? 0 : cache.stats().missCount();
+	}
+
+	/**
+	 * @return the ratio of hits to lookups, 1.0 if there have not been any lookups yet, or 0 if caching is disabled
+	 */
+	public double getHitRate() {
+		return cache == null ? 0 : cache.stats().hitRate();
+	}
+
+	public String toString() {
+		if (cache == null) {
+			return "no cache (" + featureIndices.length + " features queried)";
+		}
+		CacheStats stats = cache.stats();
+		return String.format("%d contexts on %d features, %d hits, %d misses, hit rate %.3f, %d evictions", cache.size(),
+				featureIndices.length, stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+	}
+
+	private static final class ContextKey {
+		private final int[] values;
+		private final int hash;
+
+		ContextKey(int[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ContextKey && hash == ((ContextKey) o).hash && Arrays.equals(values, ((ContextKey) o).values);
+		}
+	}
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2011 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.DecisionNode.BinaryByteDecisionNode;
+import marytts.cart.LeafNode.PdfLeafNode;
+import marytts.cart.Node;
+import marytts.exceptions.MaryConfigurationException;
+import marytts.features.FeatureDefinition;
+import marytts.htsengine.HMMData.FeatureType;
+
+/**
+ * The decision trees and leaf pdfs of an HMM voice in a precompiled binary format. Questions are stored as resolved feature
+ * indices and byte values, daughters by index, and pdfs as float vectors, so that loading a {@link CartTreeSet} from a bundle
+ * needs neither text parsing, nor tricky phone translation, nor searching the partially built trees. A bundle is
+ * memory-mapped when it is a file, or copied into a direct buffer when it is a classpath resource.
+ * <p>
+ * File format (all values big-endian):
+ *
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * ...    the feature definition, as written by {@link FeatureDefinition#writeBinaryTo(java.io.DataOutput)}
+ * int    numStates
+ * int    nSections
+ * per section (one per parameter stream):
+ *   int  featureType            ordinal of {@link FeatureType}
+ *   int  vectorSize             as reported by {@link marytts.cart.io.HTSCARTReader#getVectorSize()}
+ *   int  nTrees                 one per state
+ *   per tree:
+ *     int  nDecisions
+ *     int  nLeaves
+ *     int  leafVectorSize
+ *     per decision node (node 0 is the root, unless nDecisions is 0 and the tree is a single leaf):
+ *       int  uniqueId, featureIndex, value, daughter[0], daughter[1]   daughters &gt;= 0 are decision nodes, &lt; 0 are ~leaf
+ *     per leaf:
+ *       int    uniqueId
+ *       float  voicedWeight
+ *       float  mean[leafVectorSize]
+ *       float  variance[leafVectorSize]
+ * </pre>
+ *
+ * Bundles are created from the tree and pdf files of a voice with {@link #main(String[])}, or by the HMM voice compiler.
+ */
+public class TreeSetBundle {
+	/** "HTSB" */
+	public static final int MAGIC = 0x48545342;
+	public static final int VERSION = 1;
+
+	private static final int DECISION_SIZE = 5 * 4;
+
+	private final ByteBuffer bb;
+	private final FeatureDefinition featureDefinition;
+	private final int numStates;
+	private final Map<FeatureType, Integer> sectionOffsets = new EnumMap<FeatureType, Integer>(FeatureType.class);
+	private final Map<FeatureType, Integer> vectorSizes = new EnumMap<FeatureType, Integer>(FeatureType.class);
+
+	private TreeSetBundle(ByteBuffer buffer) throws IOException {
+		bb = buffer.duplicate();
+		if (bb.getInt() != MAGIC) {
+			throw new IOException("Not a tree set bundle");
+		}
+		int version = bb.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported tree set bundle version: " + version);
+		}
+		featureDefinition = new FeatureDefinition(bb);
+		numStates = bb.getInt();
+		int nSections = bb.getInt();
+		int pos = bb.position();
+		// Only remember where each section starts, the trees are built when they are requested:
+		for (int i = 0; i < nSections; i++) {
+			FeatureType type = FeatureType.values()[bb.getInt(pos)];
+			vectorSizes.put(type, bb.getInt(pos + 4));
+			int nTrees = bb.getInt(pos + 8);
+			sectionOffsets.put(type, pos + 12);
+			pos += 12;
+			for (int t = 0; t < nTrees; t++) {
+				int nDecisions = bb.getInt(pos);
+				int nLeaves = bb.getInt(pos + 4);
+				int leafVectorSize = bb.getInt(pos + 8);
+				pos += 12 + nDecisions * DECISION_SIZE + nLeaves * (8 + 8 * leafVectorSize);
+			}
+			if (pos > bb.limit()) {
+				throw new IOException("Tree set bundle is truncated");
+			}
+		}
+	}
+
+	/**
+	 * Map the given bundle file into memory.
+	 *
+	 * @param file
+	 *            a tree set bundle
+	 * @return the bundle
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a tree set bundle
+	 */
+	public static TreeSetBundle map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel fc = raf.getChannel();
+			return new TreeSetBundle(fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size()));
+		} finally {
+			// the mapping remains valid after the channel is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Load a bundle from a stream, e.g. a classpath resource which cannot be mapped. The data is kept outside the Java heap.
+	 *
+	 * @param inStream
+	 *            a stream positioned at the start of a tree set bundle; it is read to the end and closed.
+	 * @return the bundle
+	 * @throws IOException
+	 *             if the stream cannot be read or is not a tree set bundle
+	 */
+	public static TreeSetBundle load(InputStream inStream) throws IOException {
+		DataInputStream in = new DataInputStream(inStream);
+		try {
+			ByteBuffer buf = ByteBuffer.allocateDirect(Math.max(in.available(), 1 << 16));
+			byte[] chunk = new byte[8192];
+			int nRead;
+			while ((nRead = in.read(chunk)) != -1) {
+				if (buf.remaining() < nRead) {
+					ByteBuffer bigger = ByteBuffer.allocateDirect(2 * buf.capacity() + nRead);
+					buf.flip();
+					bigger.put(buf);
+					buf = bigger;
+				}
+				buf.put(chunk, 0, nRead);
+			}
+			buf.flip();
+			return new TreeSetBundle(buf);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Check that the trees in this bundle were compiled for the given feature definition, i.e. that the feature indices and byte
+	 * values in their questions mean the same.
+	 *
+	 * @param featureDef
+	 *            the feature definition of the voice
+	 * @throws MaryConfigurationException
+	 *             if the feature definitions differ
+	 */
+	public void checkFeatureDefinition(FeatureDefinition featureDef) throws MaryConfigurationException {
+		if (!featureDefinition.featureEquals(featureDef)) {
+			throw new MaryConfigurationException("Tree set bundle was compiled for a different feature definition: "
+					+ featureDefinition.featureEqualsAnalyse(featureDef));
+		}
+	}
+
+	/**
+	 * @return the number of HMM states, i.e. the vector size of the duration pdfs
+	 */
+	public int getNumStates() {
+		return numStates;
+	}
+
+	/**
+	 * Whether this bundle contains trees for the given parameter stream.
+	 *
+	 * @param type
+	 *            the parameter stream
+	 * @return true if {@link #getTrees(FeatureType)} will return the trees
+	 */
+	public boolean hasTrees(FeatureType type) {
+		return sectionOffsets.containsKey(type);
+	}
+
+	/**
+	 * @param type
+	 *            the parameter stream
+	 * @return the vector size of the given parameter stream, as reported by the HTS tree reader, or 0 if there are no trees for it
+	 */
+	public int getVectorSize(FeatureType type) {
+		Integer vectorSize = vectorSizes.get(type);
+		return vectorSize == null ? 0 : vectorSize;
+	}
+
+	/**
+	 * Build the trees for the given parameter stream.
+	 *
+	 * @param type
+	 *            the parameter stream
+	 * @return one tree per state
+	 * @throws MaryConfigurationException
+	 *             if the bundle has no trees for the given stream
+	 */
+	public CART[] getTrees(FeatureType type) throws MaryConfigurationException {
+		Integer offset = sectionOffsets.get(type);
+		if (offset == null) {
+			throw new MaryConfigurationException("Tree set bundle has no trees for " + type);
+		}
+		int pos = offset;
+		int nTrees = bb.getInt(pos - 4);
+		CART[] trees = new CART[nTrees];
+		for (int t = 0; t < nTrees; t++) {
+			int nDecisions = bb.getInt(pos);
+			int nLeaves = bb.getInt(pos + 4);
+			int leafVectorSize = bb.getInt(pos + 8);
+			pos += 12;
+			int decisionsStart = pos;
+			pos += nDecisions * DECISION_SIZE;
+
+			PdfLeafNode[] leaves = new PdfLeafNode[nLeaves];
+			for (int l = 0; l < nLeaves; l++) {
+				int id = bb.getInt(pos);
+				double voicedWeight = bb.getFloat(pos + 4);
+				pos += 8;
+				double[] mean = new double[leafVectorSize];
+				for (int k = 0; k < leafVectorSize; k++, pos += 4) {
+					mean[k] = bb.getFloat(pos);
+				}
+				double[] variance = new double[leafVectorSize];
+				for (int k = 0; k < leafVectorSize; k++, pos += 4) {
+					variance[k] = bb.getFloat(pos);
+				}
+				leaves[l] = new PdfLeafNode(id, mean, variance, voicedWeight);
+			}
+
+			DecisionNode[] decisions = new DecisionNode[nDecisions];
+			for (int d = 0; d < nDecisions; d++) {
+				int p = decisionsStart + d * DECISION_SIZE;
+				decisions[d] = new BinaryByteDecisionNode(bb.getInt(p + 4), (byte) bb.getInt(p + 8), featureDefinition);
+				decisions[d].setUniqueDecisionNodeId(bb.getInt(p));
+			}
+			for (int d = 0; d < nDecisions; d++) {
+				int p = decisionsStart + d * DECISION_SIZE;
+				for (int i = 0; i < 2; i++) {
+					int ref = bb.getInt(p + 12 + 4 * i);
+					decisions[d].replaceDaughter(ref >= 0 ? decisions[ref] : leaves[~ref], i);
+				}
+			}
+
+			Node root = nDecisions > 0 ? decisions[0] : leaves[0];
+			root.setIsRoot(true);
+			if (root instanceof DecisionNode) {
+				((DecisionNode) root).countData();
+			}
+			trees[t] = new CART();
+			trees[t].setRootNode(root);
+		}
+		return trees;
+	}
+
+	/**
+	 * Write the trees and pdfs of the given voice data as a bundle.
+	 *
+	 * @param htsData
+	 *            voice data whose tree set has been loaded
+	 * @param out
+	 *            the file to write
+	 * @throws IOException
+	 *             if the file cannot be written, or the trees contain nodes other than binary byte decision nodes and pdf
+	 *             leaves
+	 */
+	public static void write(HMMData htsData, File out) throws IOException {
+		CartTreeSet treeSet = htsData.getCartTreeSet();
+		List<FeatureType> types = new ArrayList<FeatureType>();
+		for (FeatureType type : FeatureType.values()) {
+			if (treeSet.getTrees(type) != null) {
+				types.add(type);
+			}
+		}
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(out)));
+		try {
+			dos.writeInt(MAGIC);
+			dos.writeInt(VERSION);
+			htsData.getFeatureDefinition().writeBinaryTo(dos);
+			dos.writeInt(treeSet.getNumStates());
+			dos.writeInt(types.size());
+			for (FeatureType type : types) {
+				CART[] trees = treeSet.getTrees(type);
+				dos.writeInt(type.ordinal());
+				dos.writeInt(type == FeatureType.LF0 ? treeSet.getLf0Stream() : type == FeatureType.DUR ? treeSet
+						.getNumStates() : treeSet.getVsize(type));
+				dos.writeInt(trees.length);
+				for (CART tree : trees) {
+					writeTree(tree.getRootNode(), dos);
+				}
+			}
+		} finally {
+			dos.close();
+		}
+	}
+
+	private static void writeTree(Node root, DataOutputStream dos) throws IOException {
+		List<DecisionNode> decisions = new ArrayList<DecisionNode>();
+		List<PdfLeafNode> leaves = new ArrayList<PdfLeafNode>();
+		List<int[]> daughters = new ArrayList<int[]>();
+		number(root, decisions, leaves, daughters);
+		int leafVectorSize = leaves.isEmpty() ? 0 : leaves.get(0).getVectorSize();
+		dos.writeInt(decisions.size());
+		dos.writeInt(leaves.size());
+		dos.writeInt(leafVectorSize);
+		for (int d = 0; d < decisions.size(); d++) {
+			BinaryByteDecisionNode decision = (BinaryByteDecisionNode) decisions.get(d);
+			dos.writeInt(decision.getUniqueDecisionNodeId());
+			dos.writeInt(decision.getFeatureIndex());
+			dos.writeInt(decision.getCriterionValueAsByte());
+			dos.writeInt(daughters.get(d)[0]);
+			dos.writeInt(daughters.get(d)[1]);
+		}
+		for (PdfLeafNode leaf : leaves) {
+			if (leaf.getVectorSize() != leafVectorSize) {
+				throw new IOException("Leaf " + leaf.getUniqueLeafId() + " has vector size " + leaf.getVectorSize() + ", expected "
+						+ leafVectorSize);
+			}
+			dos.writeInt(leaf.getUniqueLeafId());
+			dos.writeFloat((float) leaf.getVoicedWeight());
+			for (double m : leaf.getMean()) {
+				dos.writeFloat((float) m);
+			}
+			for (double v : leaf.getVariance()) {
+				dos.writeFloat((float) v);
+			}
+		}
+	}
+
+	/**
+	 * Assign indices to the nodes below node in pre-order, and record the daughter references of each decision node.
+	 *
+	 * @return the reference to node
+	 */
+	private static int number(Node node, List<DecisionNode> decisions, List<PdfLeafNode> leaves, List<int[]> daughters)
+			throws IOException {
+		if (node instanceof PdfLeafNode) {
+			leaves.add((PdfLeafNode) node);
+			return ~(leaves.size() - 1);
+		}
+		if (!(node instanceof BinaryByteDecisionNode) || ((DecisionNode) node).getNumberOfDaugthers() != 2) {
+			throw new IOException("Cannot write node " + node + " to a tree set bundle");
+		}
+		DecisionNode decision = (DecisionNode) node;
+		int index = decisions.size();
+		decisions.add(decision);
+		int[] refs = new int[2];
+		daughters.add(refs);
+		for (int i = 0; i < 2; i++) {
+			refs[i] = number(decision.getDaughter(i), decisions, leaves, daughters);
+		}
+		return index;
+	}
+
+	/**
+	 * Compile the trees and pdfs of an HMM voice into a bundle.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 4) {
+			System.err.println("usage: java marytts.htsengine.TreeSetBundle voiceName marybase configFile bundleFile");
+			System.err.println("e.g.:  java marytts.htsengine.TreeSetBundle cmu-slt-hsmm /path/to/src/main/resources "
+					+ "/marytts/voice/CmuSltHsmm/voice.config treeset.bin");
+			System.exit(-1);
+		}
+		HMMData htsData = new HMMData();
+		htsData.initHMMData(args[0], args[1], args[2]);
+		write(htsData, new File(args[3]));
+	}
+}
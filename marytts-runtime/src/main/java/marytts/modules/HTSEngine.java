@@ -93,6 +93,7 @@ import marytts.htsengine.HTSUttModel;
 import marytts.htsengine.HTSVocoder;
 import marytts.htsengine.HTSEngineTest.PhonemeDuration;
 import marytts.modules.synthesis.Voice;
+import marytts.server.Request;
 import marytts.unitselection.select.Target;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.AppendableSequenceAudioInputStream;
@@ -411,8 +412,12 @@ public class HTSEngine extends InternalModule {
 		}
 
 		// process feature vectors in targetFeatureList
+		Request request = Request.current();
 		int i = 0;
 		for (Target target : targetFeaturesList) {
+			if (request != null) {
+				request.checkCancelled();
+			}
 
 			FeatureVector fv = target.getFeatureVector(); // feaDef.toFeatureVector(0, nextLine);
 			HTSModel m = new HTSModel(cart.getNumStates());
@@ -39,6 +39,7 @@ import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.MaryConfigurationException;
 import marytts.fst.FSTLookup;
+import marytts.fst.MappedFST;
 import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.phonemiser.TrainedLTS;
 import marytts.server.MaryProperties;
@@ -111,8 +112,7 @@ public class JPhonemiser extends InternalModule {
 						+ "' does not exist. Ignoring.");
 			}
 		}
-		InputStream lexiconStream = MaryProperties.needStream(lexiconProperty);
-		lexicon = new FSTLookup(lexiconStream, lexiconProperty);
+		lexicon = loadLexicon(lexiconProperty);
 		InputStream ltsStream = MaryProperties.needStream(ltsProperty);
 		if (removetrailingonefromphonesProperty != null) {
 			this.removeTrailingOneFromPhones = MaryProperties.getBoolean(removetrailingonefromphonesProperty, true);
@@ -383,6 +383,42 @@ public class JPhonemiser extends InternalModule {
 		return fLexicon;
 	}
 
+	/**
+	 * Load the FST lexicon named by the given property. A lexicon file in {@link MappedFST} format is mapped rather than read; a
+	 * lexicon in a jar is converted into that format in the directory given by <code>fst.cache.dir</code> on first use, and
+	 * the converted file is mapped. If that fails, the lexicon is loaded into memory.
+	 * 
+	 * @param lexiconProperty
+	 *            the property giving the file name or jar resource of the lexicon
+	 * @return the lexicon
+	 * @throws IOException
+	 *             if the lexicon cannot be loaded
+	 * @throws MaryConfigurationException
+	 *             if the property is not set or the lexicon does not exist
+	 */
+	protected FSTLookup loadLexicon(String lexiconProperty) throws IOException, MaryConfigurationException {
+		String lexiconName = MaryProperties.needProperty(lexiconProperty);
+		if (!lexiconName.startsWith("jar:")) {
+			return new FSTLookup(MaryProperties.getFilename(lexiconProperty));
+		}
+		File cacheDir = new File(MaryProperties.getFilename("fst.cache.dir", System.getProperty("java.io.tmpdir")
+				+ File.separator + "marytts-fst"));
+		InputStream lexiconStream = MaryProperties.needStream(lexiconProperty);
+		try {
+			return new FSTLookup(MappedFST.extract(lexiconStream, lexiconName, cacheDir).getPath());
+		} catch (IOException e) {
+			logger.warn("Cannot map lexicon '" + lexiconName + "' from " + cacheDir + ", loading it into memory", e);
+		} finally {
+			lexiconStream.close();
+		}
+		lexiconStream = MaryProperties.needStream(lexiconProperty);
+		try {
+			return new FSTLookup(lexiconStream, lexiconName);
+		} finally {
+			lexiconStream.close();
+		}
+	}
+
 	protected void setPh(Element t, String ph) {
 		if (!t.getTagName().equals(MaryXML.TOKEN))
 			throw new DOMException(DOMException.INVALID_ACCESS_ERR, "Only t elements allowed, received " + t.getTagName() + ".");
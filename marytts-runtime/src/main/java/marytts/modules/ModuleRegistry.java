@@ -20,16 +20,23 @@
 package marytts.modules;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import marytts.datatypes.MaryDataType;
 import marytts.exceptions.MaryConfigurationException;
 import marytts.modules.synthesis.Voice;
+import marytts.server.Metrics;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 
@@ -47,9 +54,29 @@ import org.apache.log4j.Logger;
 public class ModuleRegistry {
 	private static MultiKeyMap mkm;
 	private static List<MaryModule> allModules;
-	private static boolean registrationComplete;
+	private static Set<MaryDataType> registeredTypes;
+	private static Set<Locale> registeredLocales;
+	private static volatile boolean registrationComplete;
 	private static Logger logger;
 
+	/**
+	 * The processing plans computed so far. Plans without a voice are computed for all registered data types and locales when
+	 * registration completes; voices are registered later, so that voice-specific plans are added on first use.
+	 */
+	private static final ConcurrentHashMap<PlanKey, ProcessingPlan> plans = new ConcurrentHashMap<PlanKey, ProcessingPlan>();
+	/**
+	 * Stored in {@link #plans} for combinations of registered data types and locales for which there is no path through the
+	 * modules.
+	 */
+	private static final ProcessingPlan NO_PLAN = new ProcessingPlan(MaryDataType.TEXT, MaryDataType.TEXT, null, null,
+			Collections.<MaryModule> emptyList());
+	/**
+	 * Upper bound on the number of plans added on first use, as request locales come from the client. The plans computed when
+	 * registration completes do not count against it.
+	 */
+	static final int MAX_PLANS = 10000;
+	private static final AtomicInteger numPlansAddedOnFirstUse = new AtomicInteger();
+
 	private ModuleRegistry() {
 	}
 
@@ -59,6 +86,8 @@ public class ModuleRegistry {
 	static {
 		mkm = new MultiKeyMap();
 		allModules = new ArrayList<MaryModule>();
+		registeredTypes = new LinkedHashSet<MaryDataType>();
+		registeredLocales = new LinkedHashSet<Locale>();
 		registrationComplete = false;
 		logger = MaryUtils.getLogger("ModuleRegistry");
 	}
@@ -126,6 +155,11 @@ public class ModuleRegistry {
 		l.add(module);
 
 		allModules.add(module);
+		registeredTypes.add(type);
+		registeredTypes.add(module.outputType());
+		if (locale != null) {
+			registeredLocales.add(locale);
+		}
 
 		MaryDataType.registerDataType(type);
 		MaryDataType.registerDataType(module.outputType());
@@ -144,7 +178,8 @@ public class ModuleRegistry {
 	}
 
 	/**
-	 * Indicate that the registration is now complete. No further calls to registerModules() will be possible.
+	 * Indicate that the registration is now complete. No further calls to registerModules() will be possible. The processing
+	 * plans between all registered data types are computed for all registered locales, and for no locale.
 	 * 
 	 * @throws IllegalStateException
 	 *             if called when registration was already completed before.
@@ -154,6 +189,26 @@ public class ModuleRegistry {
 			throw new IllegalStateException("Registration has already completed, cannot do that a second time");
 
 		registrationComplete = true;
+		long startTime = System.currentTimeMillis();
+		List<Locale> locales = new ArrayList<Locale>(registeredLocales);
+		locales.add(null);
+		int numPlans = 0;
+		for (Locale locale : locales) {
+			for (MaryDataType sourceType : registeredTypes) {
+				for (MaryDataType targetType : registeredTypes) {
+					LinkedList<MaryModule> modules = computeModulesRequiredForProcessing(sourceType, targetType, locale, null);
+					if (modules != null) {
+						plans.put(new PlanKey(sourceType, targetType, locale, null), new ProcessingPlan(sourceType, targetType,
+								locale, null, modules));
+						numPlans++;
+					} else {
+						plans.put(new PlanKey(sourceType, targetType, locale, null), NO_PLAN);
+					}
+				}
+			}
+		}
+		logger.debug("Computed " + numPlans + " processing plans for " + registeredTypes.size() + " data types and "
+				+ locales.size() + " locales in " + (System.currentTimeMillis() - startTime) + " ms");
 		MaryDataType.setRegistrationComplete();
 	}
 
@@ -223,14 +278,73 @@ public class ModuleRegistry {
 	 */
 	public static LinkedList<MaryModule> modulesRequiredForProcessing(MaryDataType sourceType, MaryDataType targetType,
 			Locale locale, Voice voice) {
+		ProcessingPlan plan = getProcessingPlan(sourceType, targetType, locale, voice);
+		return plan != null ? new LinkedList<MaryModule>(plan.getModules()) : null;
+	}
+
+	/**
+	 * Get the processing plan which transforms the given source data type into the requested target data type. If the voice given
+	 * is not null, any preferred modules it may have are taken into account. Plans are computed only once for each combination of
+	 * arguments, and are shared between callers; combinations of unregistered data types or locales for which there is no path
+	 * are not remembered.
+	 * 
+	 * @return the plan, or null if no path through the modules could be found.
+	 * @throws IllegalStateException
+	 *             if called while registration is not yet complete.
+	 * @throws NullPointerException
+	 *             if source data type or target data type is null.
+	 */
+	public static ProcessingPlan getProcessingPlan(MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice) {
 		if (!registrationComplete)
 			throw new IllegalStateException("Cannot inquire about modules while registration is ongoing");
 		if (sourceType == null)
 			throw new NullPointerException("Received null source type");
 		if (targetType == null)
 			throw new NullPointerException("Received null target type");
-		// if (locale == null)
-		// throw new NullPointerException("Received null locale");
+		PlanKey key = new PlanKey(sourceType, targetType, locale, voice);
+		ProcessingPlan plan = plans.get(key);
+		Metrics.cacheLookup("processing_plan", plan != null);
+		if (plan == null) {
+			LinkedList<MaryModule> modules = computeModulesRequiredForProcessing(sourceType, targetType, locale, voice);
+			if (modules == null) {
+				return null;
+			}
+			plan = new ProcessingPlan(sourceType, targetType, locale, voice, modules);
+			if (numPlansAddedOnFirstUse.get() < MAX_PLANS) {
+				ProcessingPlan existing = plans.putIfAbsent(key, plan);
+				if (existing != null) {
+					plan = existing;
+				} else {
+					numPlansAddedOnFirstUse.incrementAndGet();
+				}
+			}
+		}
+		return plan != NO_PLAN ? plan : null;
+	}
+
+	/**
+	 * Provide all processing plans computed so far, e.g. to inspect their timing.
+	 * 
+	 * @return an unmodifiable snapshot of the plans
+	 */
+	public static Collection<ProcessingPlan> getProcessingPlans() {
+		List<ProcessingPlan> result = new ArrayList<ProcessingPlan>();
+		for (ProcessingPlan plan : plans.values()) {
+			if (plan != NO_PLAN) {
+				result.add(plan);
+			}
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Search the list of modules required to transform the given source data type into the requested target data type, without
+	 * looking at the processing plans computed before.
+	 * 
+	 * @return the (ordered) list of modules required, or null if no such list could be found.
+	 */
+	static LinkedList<MaryModule> computeModulesRequiredForProcessing(MaryDataType sourceType, MaryDataType targetType,
+			Locale locale, Voice voice) {
 		LinkedList<MaryDataType> seenTypes = new LinkedList<MaryDataType>();
 		seenTypes.add(sourceType);
 		return modulesRequiredForProcessing(sourceType, targetType, locale, voice, seenTypes);
@@ -346,4 +460,34 @@ public class ModuleRegistry {
 		return returnList;
 	}
 
+	private static final class PlanKey {
+		private final MaryDataType sourceType;
+		private final MaryDataType targetType;
+		private final Locale locale;
+		private final Voice voice;
+		private final int hash;
+
+		PlanKey(MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice) {
+			this.sourceType = sourceType;
+			this.targetType = targetType;
+			this.locale = locale;
+			this.voice = voice;
+			this.hash = Objects.hash(sourceType, targetType, locale, voice);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof PlanKey)) {
+				return false;
+			}
+			PlanKey other = (PlanKey) o;
+			return hash == other.hash && sourceType.equals(other.sourceType) && targetType.equals(other.targetType)
+					&& Objects.equals(locale, other.locale) && voice == other.voice;
+		}
+	}
 }
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2008 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import marytts.datatypes.MaryDataType;
+import marytts.modules.synthesis.Voice;
+
+/**
+ * The ordered list of modules which converts a given source data type into a given target data type, for a given locale and
+ * voice, as determined by {@link ModuleRegistry#getProcessingPlan(MaryDataType, MaryDataType, Locale, Voice)}. The module list is
+ * immutable; in addition, the plan counts how often and for how long each of its steps has been run, so that the module which
+ * dominates the processing time of a plan can be identified.
+ */
+public class ProcessingPlan {
+	private final MaryDataType sourceType;
+	private final MaryDataType targetType;
+	private final Locale locale;
+	private final Voice voice;
+	private final List<MaryModule> modules;
+	private final AtomicLongArray stepCounts;
+	private final AtomicLongArray stepNanos;
+
+	ProcessingPlan(MaryDataType sourceType, MaryDataType targetType, Locale locale, Voice voice, List<MaryModule> modules) {
+		this.sourceType = sourceType;
+		this.targetType = targetType;
+		this.locale = locale;
+		this.voice = voice;
+		this.modules = Collections.unmodifiableList(new ArrayList<MaryModule>(modules));
+		this.stepCounts = new AtomicLongArray(modules.size());
+		this.stepNanos = new AtomicLongArray(modules.size());
+	}
+
+	public MaryDataType getSourceType() {
+		return sourceType;
+	}
+
+	public MaryDataType getTargetType() {
+		return targetType;
+	}
+
+	/**
+	 * @return the locale for which the plan was computed, or null if it is locale-independent
+	 */
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return the voice for which the plan was computed, or null if it is not voice-specific
+	 */
+	public Voice getVoice() {
+		return voice;
+	}
+
+	/**
+	 * @return the unmodifiable, ordered list of modules to run
+	 */
+	public List<MaryModule> getModules() {
+		return modules;
+	}
+
+	/**
+	 * Add the time needed for one run of the given step.
+	 *
+	 * @param step
+	 *            the index of the module in {@link #getModules()}
+	 * @param nanos
+	 *            the processing time, in nanoseconds
+	 */
+	public void recordStepTime(int step, long nanos) {
+		stepCounts.incrementAndGet(step);
+		stepNanos.addAndGet(step, nanos);
+	}
+
+	/**
+	 * @param step
+	 *            the index of the module in {@link #getModules()}
+	 * @return how often the given step has been run
+	 */
+	public long getStepCount(int step) {
+		return stepCounts.get(step);
+	}
+
+	/**
+	 * @param step
+	 *            the index of the module in {@link #getModules()}
+	 * @return the total time spent in the given step, in nanoseconds
+	 */
+	public long getStepNanos(int step) {
+		return stepNanos.get(step);
+	}
+
+	/**
+	 * @return the total time spent in all steps of this plan, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for (int i = 0; i < modules.size(); i++) {
+			total += stepNanos.get(i);
+		}
+		return total;
+	}
+
+	/**
+	 * @return the index of the step on which most time has been spent so far, or -1 if the plan has not been run yet
+	 */
+	public int getDominantStep() {
+		int dominant = -1;
+		long max = 0;
+		for (int i = 0; i < modules.size(); i++) {
+			long nanos = stepNanos.get(i);
+			if (nanos > max) {
+				max = nanos;
+				dominant = i;
+			}
+		}
+		return dominant;
+	}
+
+	/**
+	 * Describe the plan and the time spent in each of its steps.
+	 *
+	 * @return a multi-line description, one line per step
+	 */
+	public String getTimingReport() {
+		StringBuilder buf = new StringBuilder(toString());
+		long total = getTotalNanos();
+		for (int i = 0; i < modules.size(); i++) {
+			long count = stepCounts.get(i);
+			long nanos = stepNanos.get(i);
+			buf.append(String.format("%n  %-30s %8d runs %10.1f ms total %8.2f ms/run %5.1f%%", modules.get(i).name(), count,
+					nanos / 1e6, count > 0 ? nanos / 1e6 / count : 0., total > 0 ? 100. * nanos / total : 0.));
+		}
+		return buf.toString();
+	}
+
+	public String toString() {
+		return sourceType.name() + " -> " + targetType.name() + " (locale " + locale + ", voice "
+				+ (voice != null ? voice.getName() : null) + "): " + modules.size() + " modules";
+	}
+}
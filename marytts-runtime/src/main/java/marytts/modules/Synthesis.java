@@ -33,6 +33,7 @@ import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
+import marytts.modules.synthesis.IncrementalWaveformSynthesizer;
 import marytts.modules.synthesis.Voice;
 import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.server.MaryProperties;
@@ -162,11 +163,8 @@ public class Synthesis extends InternalModule {
 				if (currentVoiceElement != null) {
 					// We have just left a voice section
 					if (!elements.isEmpty()) {
-						AudioInputStream ais = synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect,
-								targetFormat, outputParams);
-						if (ais != null) {
-							result.appendAudio(ais);
-						}
+						synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams,
+								result);
 						elements.clear();
 					}
 					currentVoice = defaultVoice;
@@ -181,11 +179,7 @@ public class Synthesis extends InternalModule {
 							currentEffect))) {
 				// We have just entered a new voice section
 				if (!elements.isEmpty()) {
-					AudioInputStream ais = synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect,
-							targetFormat, outputParams);
-					if (ais != null) {
-						result.appendAudio(ais);
-					}
+					synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
 					elements.clear();
 				}
 
@@ -206,11 +200,7 @@ public class Synthesis extends InternalModule {
 			// Chunk at sentence boundaries
 			if (s != currentSentence) {
 				if (!elements.isEmpty()) {
-					AudioInputStream ais = synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect,
-							targetFormat, outputParams);
-					if (ais != null) {
-						result.appendAudio(ais);
-					}
+					synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
 					elements.clear();
 				}
 				currentSentence = s;
@@ -219,39 +209,62 @@ public class Synthesis extends InternalModule {
 		}
 
 		if (!elements.isEmpty()) {
-			AudioInputStream ais = synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat,
-					outputParams);
-
-			if (ais != null) {
-				result.appendAudio(ais);
-			}
+			synthesizeOneSection(elements, currentVoice, currentStyle, currentEffect, targetFormat, outputParams, result);
 		}
 
 		return result;
 	}
 
 	/**
-	 * Synthesize one section, consisting of tokens and boundaries, with a given voice, to the given target audio format.
+	 * Synthesize one section, consisting of tokens and boundaries, with a given voice, to the given target audio format, and
+	 * append the audio to the result. If the result audio can be read while it is being produced and the voice's synthesizer can
+	 * synthesize the section incrementally, each piece of audio is appended as soon as it is available, unless an effect
+	 * is to be applied.
 	 */
-	private AudioInputStream synthesizeOneSection(List<Element> tokensAndBoundaries, Voice voice, String currentStyle,
-			String currentEffect, AudioFormat targetFormat, String outputParams) throws SynthesisException,
-			UnsupportedAudioFileException {
+	private void synthesizeOneSection(List<Element> tokensAndBoundaries, final Voice voice, String currentStyle,
+			final String currentEffect, final AudioFormat targetFormat, String outputParams, final MaryData result)
+			throws SynthesisException, UnsupportedAudioFileException {
 		// sanity check: are there any tokens containing phone descendants?
 		if (!containsPhoneDescendants(tokensAndBoundaries)) {
 			logger.warn("No PHONE segments found in this section; will not attempt to synthesize it!");
-			return null;
+			return;
 		}
 
-		EffectsApplier ef = new EffectsApplier();
+		final EffectsApplier ef = new EffectsApplier();
 
 		// HMM-only effects need to get their parameters prior to synthesis
 		ef.setHMMEffectParameters(voice, currentEffect);
 		//
 
+		// Effects keep state across the signal, so they must see the audio of the whole section at once:
+		if (result.getAudio() instanceof AppendableSequenceAudioInputStream
+				&& voice.synthesizer() instanceof IncrementalWaveformSynthesizer
+				&& (currentEffect == null || currentEffect.equals(""))) {
+			((IncrementalWaveformSynthesizer) voice.synthesizer()).synthesizeIncrementally(tokensAndBoundaries, voice,
+					outputParams, new IncrementalWaveformSynthesizer.AudioReceiver() {
+						public void append(AudioInputStream ais) throws SynthesisException {
+							try {
+								result.appendAudio(postProcess(ais, voice, currentEffect, ef, targetFormat));
+							} catch (UnsupportedAudioFileException e) {
+								throw new SynthesisException(e.getMessage(), e);
+							}
+						}
+					});
+			return;
+		}
+
 		AudioInputStream ais = null;
 		ais = voice.synthesize(tokensAndBoundaries, outputParams);
 		if (ais == null)
-			return null;
+			return;
+		result.appendAudio(postProcess(ais, voice, currentEffect, ef, targetFormat));
+	}
+
+	/**
+	 * Convert the audio of a voice to the target audio format, and apply the effect if present.
+	 */
+	private AudioInputStream postProcess(AudioInputStream ais, Voice voice, String currentEffect, EffectsApplier ef,
+			AudioFormat targetFormat) throws UnsupportedAudioFileException {
 		// Conversion to targetFormat required?
 		if (!ais.getFormat().matches(targetFormat)) {
 			// Attempt conversion; if not supported, log a warning
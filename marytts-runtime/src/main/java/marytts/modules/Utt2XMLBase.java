@@ -22,6 +22,7 @@ package marytts.modules;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -37,6 +38,7 @@ import marytts.modules.phonemiser.AllophoneSet;
 import marytts.modules.phonemiser.Syllabifier;
 import marytts.modules.synthesis.FreeTTSVoices;
 import marytts.modules.synthesis.Voice;
+import marytts.server.Request;
 import marytts.util.MaryUtils;
 import marytts.util.dom.MaryDomUtils;
 import marytts.util.dom.MaryNormalisedWriter;
@@ -88,6 +90,7 @@ public abstract class Utt2XMLBase extends InternalModule {
 		Element paragraph = MaryXML.appendChildElement(root, MaryXML.PARAGRAPH);
 
 		List<Utterance> utterances = d.getUtterances();
+		List<Element> sentences = new ArrayList<Element>(utterances.size());
 		Iterator<Utterance> it = utterances.iterator();
 		while (it.hasNext()) {
 			Utterance utterance = it.next();
@@ -147,6 +150,13 @@ public abstract class Utt2XMLBase extends InternalModule {
 			insertHere.appendChild(sentence);
 
 			fillSentence(sentence, utterance);
+			sentences.add(sentence);
+		}
+		// Remember the utterances, so that they can be reused if the document is converted back later in the request; otherwise,
+		// following the modifications of the document would only slow down the modules which run after this one:
+		Request request = Request.current();
+		if (request != null && isConvertedBack(inputType(), request.getLaterModules())) {
+			UtteranceView.attach(doc, inputType(), sentences, utterances);
 		}
 
 		if (logger.getEffectiveLevel().equals(Level.DEBUG)) {
@@ -162,6 +172,19 @@ public abstract class Utt2XMLBase extends InternalModule {
 		return output;
 	}
 
+	/**
+	 * Whether one of the given modules converts a document back into utterances of the given type, and can thus reuse the
+	 * utterances from which it was created.
+	 */
+	static boolean isConvertedBack(MaryDataType utteranceType, List<MaryModule> laterModules) {
+		for (MaryModule module : laterModules) {
+			if (module instanceof XML2UttBase && module.outputType().equals(utteranceType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Depending on the data type, find the right information in the utterance and insert it into the sentence.
 	 */
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2008 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import marytts.datatypes.MaryDataType;
+import marytts.datatypes.MaryXML;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.events.Event;
+import org.w3c.dom.events.EventListener;
+import org.w3c.dom.events.EventTarget;
+
+import com.sun.speech.freetts.Utterance;
+
+/**
+ * The FreeTTS utterances from which a MaryXML document was created by {@link Utt2XMLBase}, one per sentence element. The view is
+ * only attached to the document if a later module of the request converts it back, and follows its modifications until then: a
+ * sentence whose content is changed by the (DOM-based) modules which run in between is marked as modified, and any change outside
+ * of the sentences invalidates the whole view. When the document is converted back into utterances of the same type by
+ * {@link XML2UttBase}, the utterances of all unmodified sentences are reused as they are, so that only modified sentences need to
+ * be converted again.
+ */
+final class UtteranceView implements EventListener {
+	private static final String USER_DATA_KEY = UtteranceView.class.getName();
+	private static final String[] MUTATION_EVENTS = new String[] { "DOMNodeInserted", "DOMNodeRemoved", "DOMAttrModified",
+			"DOMCharacterDataModified" };
+
+	private final Document doc;
+	private final MaryDataType type;
+	private final Map<Element, Utterance> utterances;
+	private boolean valid;
+
+	private UtteranceView(Document doc, MaryDataType type, List<Element> sentences, List<Utterance> utteranceList) {
+		assert sentences.size() == utteranceList.size();
+		this.doc = doc;
+		this.type = type;
+		this.utterances = new HashMap<Element, Utterance>();
+		for (int i = 0; i < sentences.size(); i++) {
+			utterances.put(sentences.get(i), utteranceList.get(i));
+		}
+		this.valid = true;
+	}
+
+	/**
+	 * Attach a view to the given document.
+	 *
+	 * @param doc
+	 *            the document
+	 * @param type
+	 *            the data type of the utterances
+	 * @param sentences
+	 *            the sentence elements in the document
+	 * @param utterances
+	 *            the utterance from which each sentence was created
+	 */
+	static void attach(Document doc, MaryDataType type, List<Element> sentences, List<Utterance> utterances) {
+		if (!(doc instanceof EventTarget)) {
+			// cannot follow modifications
+			return;
+		}
+		detach(doc);
+		UtteranceView view = new UtteranceView(doc, type, sentences, utterances);
+		for (String event : MUTATION_EVENTS) {
+			((EventTarget) doc).addEventListener(event, view, true);
+		}
+		doc.setUserData(USER_DATA_KEY, view, null);
+	}
+
+	/**
+	 * Remove the view from the given document, if there is one, and return it.
+	 *
+	 * @param doc
+	 *            the document
+	 * @param type
+	 *            the data type of the utterances required
+	 * @return the view attached to the document, or null if there is no view, if it holds utterances of a different type, or if
+	 *         it was invalidated by modifications of the document.
+	 */
+	static UtteranceView detach(Document doc, MaryDataType type) {
+		UtteranceView view = detach(doc);
+		if (view == null || !view.valid || !view.type.equals(type)) {
+			return null;
+		}
+		return view;
+	}
+
+	private static UtteranceView detach(Document doc) {
+		UtteranceView view = (UtteranceView) doc.getUserData(USER_DATA_KEY);
+		if (view != null) {
+			for (String event : MUTATION_EVENTS) {
+				((EventTarget) doc).removeEventListener(event, view, true);
+			}
+			doc.setUserData(USER_DATA_KEY, null, null);
+		}
+		return view;
+	}
+
+	/**
+	 * Get the utterance for the given sentence.
+	 *
+	 * @param sentence
+	 *            a sentence element in the document
+	 * @return the utterance from which the sentence was created, or null if the sentence is new or has been modified since.
+	 */
+	Utterance getUtterance(Element sentence) {
+		return utterances.get(sentence);
+	}
+
+	public void handleEvent(Event evt) {
+		if (!valid) {
+			return;
+		}
+		Node target = (Node) evt.getTarget();
+		if (isSentence(target) && !evt.getType().equals("DOMAttrModified")) {
+			// sentences added or removed
+			valid = false;
+			return;
+		}
+		Element sentence = getSentence(target);
+		if (sentence == null) {
+			// modification outside of sentences, e.g. of voice or prosody settings
+			valid = false;
+		} else {
+			utterances.remove(sentence);
+		}
+	}
+
+	private static Element getSentence(Node node) {
+		while (node != null && !isSentence(node)) {
+			if (node.getNodeType() == Node.ATTRIBUTE_NODE) {
+				node = ((Attr) node).getOwnerElement();
+			} else {
+				node = node.getParentNode();
+			}
+		}
+		return (Element) node;
+	}
+
+	private static boolean isSentence(Node node) {
+		return node.getNodeType() == Node.ELEMENT_NODE && ((Element) node).getTagName().equals(MaryXML.SENTENCE);
+	}
+
+	public String toString() {
+		return "utterance view of type " + type + " for " + utterances.size() + " sentences" + (valid ? "" : " (invalid)")
+				+ " in " + doc;
+	}
+}
@@ -94,11 +94,24 @@ public abstract class XML2UttBase extends InternalModule {
 			logger.debug(debugOut.toString());
 		}
 
+		// Utterances from which unmodified sentences were created can be reused:
+		UtteranceView view = UtteranceView.detach(doc, outputType());
+		int numReused = 0;
 		List<Utterance> utterances = new ArrayList<Utterance>();
 		NodeIterator sentenceIt = ((DocumentTraversal) doc).createNodeIterator(doc, NodeFilter.SHOW_ELEMENT, new NameNodeFilter(
 				MaryXML.SENTENCE), false);
 		Element sentence = null;
 		while ((sentence = (Element) sentenceIt.nextNode()) != null) {
+			if (view != null) {
+				Utterance utterance = view.getUtterance(sentence);
+				if (utterance != null) {
+					utterance.setFirst(false);
+					utterance.setLast(false);
+					utterances.add(utterance);
+					numReused++;
+					continue;
+				}
+			}
 			// Make sure we have the correct voice:
 			Element voice = (Element) MaryDomUtils.getAncestor(sentence, MaryXML.VOICE);
 			Voice maryVoice = Voice.getVoice(voice);
@@ -148,6 +161,10 @@ public abstract class XML2UttBase extends InternalModule {
 
 		}
 
+		if (view != null) {
+			logger.debug("Reused " + numReused + " of " + utterances.size() + " utterances");
+		}
+
 		if (utterances.size() > 0) {
 			Utterance firstUtt = (Utterance) utterances.get(0);
 			firstUtt.setFirst(true);
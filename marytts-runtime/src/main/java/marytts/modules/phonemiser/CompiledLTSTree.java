@@ -0,0 +1,263 @@
+/**
+ * Copyright 2000-2009 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.phonemiser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.DecisionNode.BinaryByteDecisionNode;
+import marytts.cart.DecisionNode.ByteDecisionNode;
+import marytts.cart.LeafNode.StringAndFloatLeafNode;
+import marytts.cart.Node;
+import marytts.features.FeatureDefinition;
+
+/**
+ * A flat array encoding of a letter-to-sound CART, as trained by LTSTrainer. Decision nodes are stored in parallel int arrays,
+ * daughters are referenced by index (negative values denote leaves), and the most probable prediction of every leaf is resolved
+ * to its string once at compile time. Letters are mapped to feature values through sorted lookup tables instead of the feature
+ * definition's string maps.
+ * <p>
+ * Only trees consisting of byte-valued decision nodes and string-and-float leaves can be compiled; {@link #compile(CART, int)}
+ * returns null for anything else, so that the caller can fall back to interpreting the CART itself. Paths on which
+ * {@link CART#interpretToNode(marytts.features.FeatureVector, int)} would not reach a leaf (missing daughters, decision nodes
+ * without data) are kept as dead ends, for which {@link #predict(byte[])} returns null.
+ */
+class CompiledLTSTree {
+	private static final int MULTIWAY = Integer.MIN_VALUE;
+	private static final int NO_DAUGHTER = Integer.MIN_VALUE;
+
+	// One entry per decision node:
+	private final int[] nodeFeature;
+	private final int[] nodeCriterion; // byte value for binary nodes, MULTIWAY for n-ary ones
+	private final int[] nodeFirstDaughter; // offset into daughters
+	private final int[] nodeNumDaughters;
+	// Daughter references: >= 0 is a decision node index, < 0 is ~leafIndex, or NO_DAUGHTER
+	private final int[] daughters;
+	private final String[] leafPredictions;
+	private final int root;
+
+	// Per input feature: letter lookup table and the value for "null" / unknown letters
+	private final char[][] letterKeys;
+	private final byte[][] letterValues;
+	private final byte[] nullValues;
+
+	private CompiledLTSTree(int[] nodeFeature, int[] nodeCriterion, int[] nodeFirstDaughter, int[] nodeNumDaughters,
+			int[] daughters, String[] leafPredictions, int root, char[][] letterKeys, byte[][] letterValues, byte[] nullValues) {
+		this.nodeFeature = nodeFeature;
+		this.nodeCriterion = nodeCriterion;
+		this.nodeFirstDaughter = nodeFirstDaughter;
+		this.nodeNumDaughters = nodeNumDaughters;
+		this.daughters = daughters;
+		this.leafPredictions = leafPredictions;
+		this.root = root;
+		this.letterKeys = letterKeys;
+		this.letterValues = letterValues;
+		this.nullValues = nullValues;
+	}
+
+	/**
+	 * Get the number of input features, i.e. the size of the feature buffer expected by {@link #predict(byte[])}.
+	 *
+	 * @return 2 * context + 1
+	 */
+	int getNumberOfFeatures() {
+		return nullValues.length;
+	}
+
+	/**
+	 * Translate the letter at position pos of graphemes into the value of the given feature. Positions outside the word, and
+	 * letters unknown to the feature, are mapped to the "null" value.
+	 *
+	 * @param feature
+	 *            the feature index
+	 * @param graphemes
+	 *            the word
+	 * @param pos
+	 *            the letter position, may be outside the word
+	 * @return the byte value of the feature
+	 */
+	byte letterValue(int feature, String graphemes, int pos) {
+		if (pos < 0 || pos >= graphemes.length()) {
+			return nullValues[feature];
+		}
+		int i = Arrays.binarySearch(letterKeys[feature], graphemes.charAt(pos));
+		return i >= 0 ? letterValues[feature][i] : nullValues[feature];
+	}
+
+	/**
+	 * Walk the tree for the given byte features and return the most probable prediction in the leaf reached, without the
+	 * surrounding delimiters.
+	 *
+	 * @param features
+	 *            the byte feature values, one per input feature
+	 * @return the predicted phone string for the letter, or null if the walk ends without reaching a leaf
+	 */
+	String predict(byte[] features) {
+		int current = root;
+		while (current >= 0) {
+			int val = features[nodeFeature[current]];
+			int criterion = nodeCriterion[current];
+			int daughter;
+			if (criterion == MULTIWAY) {
+				if (val < 0 || val >= nodeNumDaughters[current]) {
+					throw new ArrayIndexOutOfBoundsException(val);
+				}
+				daughter = val;
+			} else {
+				daughter = val == criterion ? 0 : 1;
+			}
+			current = daughters[nodeFirstDaughter[current] + daughter];
+		}
+		if (current == NO_DAUGHTER) {
+			return null;
+		}
+		return leafPredictions[~current];
+	}
+
+	/**
+	 * Compile the given LTS tree into its array representation.
+	 *
+	 * @param tree
+	 *            a tree as trained by LTSTrainer
+	 * @param indexPredictedFeature
+	 *            index of the predicted-string feature in the tree's feature definition
+	 * @return the compiled tree, or null if the tree uses node types or structures that cannot be compiled.
+	 */
+	static CompiledLTSTree compile(CART tree, int indexPredictedFeature) {
+		FeatureDefinition featureDefinition = tree.getFeatureDefinition();
+		int numFeatures = Integer.parseInt(tree.getProperties().getProperty("context")) * 2 + 1;
+		if (numFeatures > featureDefinition.getNumberOfByteFeatures()) {
+			return null;
+		}
+		char[][] letterKeys = new char[numFeatures][];
+		byte[][] letterValues = new byte[numFeatures][];
+		byte[] nullValues = new byte[numFeatures];
+		for (int f = 0; f < numFeatures; f++) {
+			if (!featureDefinition.hasFeatureValue(f, "null")) {
+				return null;
+			}
+			nullValues[f] = featureDefinition.getFeatureValueAsByte(f, "null");
+			String[] values = featureDefinition.getPossibleValues(f);
+			StringBuilder keys = new StringBuilder();
+			for (String v : values) {
+				if (v.length() == 1) {
+					keys.append(v);
+				}
+			}
+			char[] sorted = keys.toString().toCharArray();
+			Arrays.sort(sorted);
+			letterKeys[f] = sorted;
+			letterValues[f] = new byte[sorted.length];
+			for (int i = 0; i < sorted.length; i++) {
+				letterValues[f][i] = featureDefinition.getFeatureValueAsByte(f, String.valueOf(sorted[i]));
+			}
+		}
+
+		Builder builder = new Builder(featureDefinition, indexPredictedFeature, numFeatures);
+		int root;
+		try {
+			root = builder.add(tree.getRootNode());
+		} catch (UnsupportedOperationException uoe) {
+			return null;
+		}
+		return new CompiledLTSTree(builder.toArray(builder.nodeFeature), builder.toArray(builder.nodeCriterion),
+				builder.toArray(builder.nodeFirstDaughter), builder.toArray(builder.nodeNumDaughters),
+				builder.toArray(builder.daughters), builder.leafPredictions.toArray(new String[0]), root, letterKeys, letterValues,
+				nullValues);
+	}
+
+	private static class Builder {
+		private final FeatureDefinition featureDefinition;
+		private final int indexPredictedFeature;
+		private final int numFeatures;
+		private final List<Integer> nodeFeature = new ArrayList<Integer>();
+		private final List<Integer> nodeCriterion = new ArrayList<Integer>();
+		private final List<Integer> nodeFirstDaughter = new ArrayList<Integer>();
+		private final List<Integer> nodeNumDaughters = new ArrayList<Integer>();
+		private final List<Integer> daughters = new ArrayList<Integer>();
+		private final List<String> leafPredictions = new ArrayList<String>();
+
+		Builder(FeatureDefinition featureDefinition, int indexPredictedFeature, int numFeatures) {
+			this.featureDefinition = featureDefinition;
+			this.indexPredictedFeature = indexPredictedFeature;
+			this.numFeatures = numFeatures;
+		}
+
+		/**
+		 * Add the given node and, recursively, its daughters.
+		 *
+		 * @return the reference to the node
+		 * @throws UnsupportedOperationException
+		 *             if the subtree uses node types which cannot be represented in compiled form
+		 */
+		int add(Node node) {
+			if (node instanceof StringAndFloatLeafNode) {
+				String prediction = ((StringAndFloatLeafNode) node).mostProbableString(featureDefinition, indexPredictedFeature);
+				leafPredictions.add(prediction.substring(1, prediction.length() - 1));
+				return ~(leafPredictions.size() - 1);
+			}
+			// CART.interpretToNode() stops at a missing daughter or at a decision node without data:
+			if (node == null || node instanceof DecisionNode && node.getNumberOfData() <= 0) {
+				return NO_DAUGHTER;
+			}
+			if (!(node instanceof DecisionNode)) {
+				throw new UnsupportedOperationException();
+			}
+			DecisionNode decision = (DecisionNode) node;
+			int criterion;
+			if (decision instanceof BinaryByteDecisionNode) {
+				criterion = ((BinaryByteDecisionNode) decision).getCriterionValueAsByte();
+			} else if (decision instanceof ByteDecisionNode) {
+				criterion = MULTIWAY;
+			} else {
+				throw new UnsupportedOperationException();
+			}
+			if (decision.getFeatureIndex() >= numFeatures) {
+				throw new UnsupportedOperationException();
+			}
+			int numDaughters = decision.getNumberOfDaugthers();
+			int index = nodeFeature.size();
+			nodeFeature.add(decision.getFeatureIndex());
+			nodeCriterion.add(criterion);
+			nodeFirstDaughter.add(daughters.size());
+			nodeNumDaughters.add(numDaughters);
+			// reserve the daughter slots first so that they stay contiguous:
+			int first = daughters.size();
+			for (int i = 0; i < numDaughters; i++) {
+				daughters.add(0);
+			}
+			for (int i = 0; i < numDaughters; i++) {
+				daughters.set(first + i, add(decision.getDaughter(i)));
+			}
+			return index;
+		}
+
+		int[] toArray(List<Integer> list) {
+			int[] array = new int[list.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = list.get(i);
+			}
+			return array;
+		}
+	}
+}
@@ -24,6 +24,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import marytts.cart.CART;
@@ -50,6 +52,8 @@ public class TrainedLTS {
 	private AllophoneSet allophoneSet;
 	private boolean convertToLowercase;
 	protected boolean removeTrailingOneFromPhones = true;
+	private CompiledLTSTree compiledTree;
+	private ThreadLocal<byte[]> featureBuffer;
 
 	/**
 	 * 
@@ -93,6 +97,7 @@ public class TrainedLTS {
 			throw new IllegalArgumentException("Prediction tree does not contain properties");
 		convertToLowercase = Boolean.parseBoolean(props.getProperty("lowercase"));
 		context = Integer.parseInt(props.getProperty("context"));
+		compileTree();
 	}
 
 	/**
@@ -113,42 +118,102 @@ public class TrainedLTS {
 			throw new IllegalArgumentException("Prediction tree does not contain properties");
 		convertToLowercase = Boolean.parseBoolean(props.getProperty("lowercase"));
 		context = Integer.parseInt(props.getProperty("context"));
+		compileTree();
 	}
 
+	/**
+	 * Predict the pronunciation of the given word, letter by letter.
+	 * 
+	 * @param graphemes
+	 *            the word
+	 * @return the predicted phone string, unsyllabified
+	 */
 	public String predictPronunciation(String graphemes) {
 		if (convertToLowercase)
 			graphemes = graphemes.toLowerCase(allophoneSet.getLocale());
 
-		String returnStr = "";
+		if (compiledTree == null) {
+			return predictPronunciationFromCART(graphemes);
+		}
 
+		byte[] byteFeatures = featureBuffer.get();
+		StringBuilder returnStr = new StringBuilder(2 * graphemes.length());
 		for (int i = 0; i < graphemes.length(); i++) {
+			for (int fnr = 0; fnr < byteFeatures.length; fnr++) {
+				byteFeatures[fnr] = compiledTree.letterValue(fnr, graphemes, i - context + fnr);
+			}
+			String prediction = compiledTree.predict(byteFeatures);
+			if (prediction == null) { // dead end in the compiled tree, let the CART decide what to do
+				prediction = predictLetterFromCART(graphemes, i);
+			}
+			returnStr.append(prediction);
+		}
+		return returnStr.toString();
+	}
 
-			byte[] byteFeatures = new byte[2 * this.context + 1];
+	/**
+	 * Predict the pronunciations of a list of words, e.g. when building or testing a lexicon.
+	 * 
+	 * @param graphemeList
+	 *            the words
+	 * @return a list of the same size, containing the predicted phone string for each word in the same order
+	 */
+	public List<String> predictPronunciations(List<String> graphemeList) {
+		List<String> phones = new ArrayList<String>(graphemeList.size());
+		for (String graphemes : graphemeList) {
+			phones.add(predictPronunciation(graphemes));
+		}
+		return phones;
+	}
 
-			for (int fnr = 0; fnr < 2 * this.context + 1; fnr++) {
-				int pos = i - context + fnr;
+	/**
+	 * Walk the CART object graph for each letter; used for trees which cannot be compiled into a {@link CompiledLTSTree}.
+	 */
+	private String predictPronunciationFromCART(String graphemes) {
+		StringBuilder returnStr = new StringBuilder();
+		for (int i = 0; i < graphemes.length(); i++) {
+			returnStr.append(predictLetterFromCART(graphemes, i));
+		}
+		return returnStr.toString();
+	}
 
-				String grAtPos = (pos < 0 || pos >= graphemes.length()) ? "null" : graphemes.substring(pos, pos + 1);
+	private String predictLetterFromCART(String graphemes, int i) {
+		byte[] byteFeatures = new byte[2 * this.context + 1];
 
-				try {
-					byteFeatures[fnr] = this.tree.getFeatureDefinition().getFeatureValueAsByte(fnr, grAtPos);
-					// ... can also try to call explicit:
-					// features[fnr] = this.fd.getFeatureValueAsByte("att"+fnr, cg.substr(pos)
-				} catch (IllegalArgumentException iae) {
-					// Silently ignore unknown characters
-					byteFeatures[fnr] = this.tree.getFeatureDefinition().getFeatureValueAsByte(fnr, "null");
-				}
-			}
+		for (int fnr = 0; fnr < 2 * this.context + 1; fnr++) {
+			int pos = i - context + fnr;
 
-			FeatureVector fv = new FeatureVector(byteFeatures, new short[] {}, new float[] {}, 0);
+			String grAtPos = (pos < 0 || pos >= graphemes.length()) ? "null" : graphemes.substring(pos, pos + 1);
 
-			StringAndFloatLeafNode leaf = (StringAndFloatLeafNode) tree.interpretToNode(fv, 0);
-			String prediction = leaf.mostProbableString(featureDefinition, indexPredictedFeature);
-			returnStr += prediction.substring(1, prediction.length() - 1);
+			try {
+				byteFeatures[fnr] = this.tree.getFeatureDefinition().getFeatureValueAsByte(fnr, grAtPos);
+				// ... can also try to call explicit:
+				// features[fnr] = this.fd.getFeatureValueAsByte("att"+fnr, cg.substr(pos)
+			} catch (IllegalArgumentException iae) {
+				// Silently ignore unknown characters
+				byteFeatures[fnr] = this.tree.getFeatureDefinition().getFeatureValueAsByte(fnr, "null");
+			}
 		}
 
-		return returnStr;
+		FeatureVector fv = new FeatureVector(byteFeatures, new short[] {}, new float[] {}, 0);
+
+		StringAndFloatLeafNode leaf = (StringAndFloatLeafNode) tree.interpretToNode(fv, 0);
+		String prediction = leaf.mostProbableString(featureDefinition, indexPredictedFeature);
+		return prediction.substring(1, prediction.length() - 1);
+	}
 
+	/**
+	 * Compile the current tree into its array form and set up the per-thread feature buffer.
+	 */
+	private void compileTree() {
+		compiledTree = CompiledLTSTree.compile(tree, indexPredictedFeature);
+		final int numFeatures = 2 * context + 1;
+		featureBuffer = new ThreadLocal<byte[]>() {
+			@Override
+			protected byte[] initialValue() {
+				return new byte[numFeatures];
+			}
+		};
 	}
 
 	/**
@@ -76,6 +76,7 @@ import javax.sound.sampled.AudioInputStream;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.RequestCancelledException;
 import marytts.exceptions.SynthesisException;
 import marytts.features.FeatureRegistry;
 import marytts.features.TargetFeatureComputer;
@@ -273,6 +274,8 @@ public class HMMSynthesizer implements WaveformSynthesizer {
 
 			return audio.getAudio();
 
+		} catch (RequestCancelledException e) {
+			throw e;
 		} catch (Exception e) {
 			throw new SynthesisException("HMM Synthesiser could not synthesise: ", e);
 		}
@@ -0,0 +1,64 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import java.util.List;
+
+import javax.sound.sampled.AudioInputStream;
+
+import marytts.exceptions.SynthesisException;
+
+import org.w3c.dom.Element;
+
+/**
+ * A waveform synthesizer which can deliver the audio of a part of a MaryXML document in several pieces, each one as soon as it
+ * has been synthesized. The Synthesis module uses this when the audio is streamed to the client, so that the client can start
+ * playing the audio of the first phrase while the rest of the sentence is being synthesized.
+ */
+public interface IncrementalWaveformSynthesizer extends WaveformSynthesizer {
+
+	/**
+	 * Receives the pieces of audio of an incremental synthesis.
+	 */
+	public interface AudioReceiver {
+		/**
+		 * @param audio
+		 *            the next piece of audio, in synthesizer-native audio format.
+		 */
+		public void append(AudioInputStream audio) throws SynthesisException;
+	}
+
+	/**
+	 * Synthesize a given part of a MaryXML document like {@link #synthesize(List, Voice, String)}, passing the audio to the
+	 * receiver in one or more pieces. This method is expected to be thread-safe.
+	 * 
+	 * @param tokensAndBoundaries
+	 *            the part of the MaryXML document to synthesize; a list containing a number of adjacent <t> and <boundary>
+	 *            elements.
+	 * @param voice
+	 *            the Voice to use for synthesis
+	 * @param outputParams
+	 *            any specified output parameters; may be null
+	 * @param receiver
+	 *            receives the pieces of audio in the order in which they are to be played
+	 */
+	public void synthesizeIncrementally(List<Element> tokensAndBoundaries, Voice voice, String outputParams,
+			AudioReceiver receiver) throws SynthesisException;
+}
@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -118,7 +119,7 @@ public class Voice {
 					: true); // big-endian
 	/**
 	 * List all registered voices. This set will always return the voices in the order of their wantToBeDefault value, highest
-	 * first.
+	 * first. Only accessed while holding the lock on Voice.class; lookups use the {@link #index}.
 	 */
 	private static Set<Voice> allVoices = new TreeSet<Voice>(new Comparator<Voice>() {
 		public int compare(Voice v1, Voice v2) {
@@ -133,6 +134,16 @@ public class Voice {
 
 	private static Map<Locale, Voice> defaultVoices = new HashMap<Locale, Voice>();
 
+	/**
+	 * The index of the registered voices, replaced whenever a voice is registered or unregistered.
+	 */
+	private static volatile VoiceIndex index = new VoiceIndex(allVoices, defaultVoices);
+
+	/**
+	 * The number of times a voice has been registered or unregistered.
+	 */
+	private static volatile int registrationCount = 0;
+
 	protected static Logger logger = MaryUtils.getLogger("Voice");
 
 	/** A local map of already-instantiated Lexicons */
@@ -619,10 +630,10 @@ public class Voice {
 	 * registered as the default voice for its locale. This value is set in the config file setting
 	 * <code>voice.(name).want.to.be.default.voice</code>.
 	 */
-	public static void registerVoice(Voice voice) {
+	public static synchronized void registerVoice(Voice voice) {
 		if (voice == null)
 			throw new NullPointerException("Cannot register null voice.");
-		if (!allVoices.contains(voice)) {
+		if (!index.byName.containsKey(voice.getName())) {
 			logger.info("Registering voice `" + voice.getName() + "': " + voice.gender() + ", locale " + voice.getLocale());
 			allVoices.add(voice);
 			try {
@@ -632,6 +643,40 @@ public class Voice {
 			}
 		}
 		checkIfDefaultVoice(voice);
+		index = new VoiceIndex(allVoices, defaultVoices);
+		registrationCount++;
+	}
+
+	/**
+	 * Unregister the given voice, so that it is no longer available for new requests. If it was the default voice for its
+	 * locale, the remaining voice for the locale with the highest value of <code>wantToBeDefault</code> becomes the default
+	 * voice.
+	 */
+	public static synchronized void unregisterVoice(Voice voice) {
+		if (!allVoices.remove(voice)) {
+			return;
+		}
+		logger.info("Unregistering voice `" + voice.getName() + "'");
+		Locale locale = voice.getLocale();
+		if (defaultVoices.get(locale) == voice) {
+			defaultVoices.remove(locale);
+			for (Voice v : allVoices) {
+				if (v.getLocale().equals(locale)) {
+					defaultVoices.put(locale, v);
+					break;
+				}
+			}
+		}
+		index = new VoiceIndex(allVoices, defaultVoices);
+		registrationCount++;
+	}
+
+	/**
+	 * The number of times a voice has been registered or unregistered so far. Information derived from the available voices can
+	 * be kept as long as this number does not change.
+	 */
+	public static int getRegistrationCount() {
+		return registrationCount;
 	}
 
 	/**
@@ -657,27 +702,20 @@ public class Voice {
 	 * @return
 	 */
 	public static Voice getVoice(String name) {
-		for (Iterator<Voice> it = allVoices.iterator(); it.hasNext();) {
-			Voice v = it.next();
-			if (v.hasName(name))
-				return v;
+		VoiceIndex voices = index;
+		Voice voice = voices.byName.get(name);
+		if (voice != null) {
+			return voice;
 		}
 		// Interpolating voices are created as needed:
 		if (InterpolatingVoice.isInterpolatingVoiceName(name)) {
-			InterpolatingSynthesizer interpolatingSynthesizer = null;
-			for (Iterator<Voice> it = allVoices.iterator(); it.hasNext();) {
-				Voice v = it.next();
-				if (v instanceof InterpolatingVoice) {
-					interpolatingSynthesizer = (InterpolatingSynthesizer) v.synthesizer();
-					break;
-				}
-			}
-			if (interpolatingSynthesizer == null)
+			if (voices.interpolatingSynthesizer == null)
 				return null;
 			try {
-				Voice v = new InterpolatingVoice(interpolatingSynthesizer, name);
+				Voice v = new InterpolatingVoice(voices.interpolatingSynthesizer, name);
 				registerVoice(v);
-				return v;
+				// another thread may have registered the same voice first
+				return index.byName.get(name);
 			} catch (Exception e) {
 				logger.warn("Could not create Interpolating voice:", e);
 				return null;
@@ -691,7 +729,7 @@ public class Voice {
 	 * their "wantToBeDefault" value.
 	 */
 	public static Collection<Voice> getAvailableVoices() {
-		return Collections.unmodifiableSet(allVoices);
+		return index.voices;
 	}
 
 	/**
@@ -702,13 +740,7 @@ public class Voice {
 	 * @return a collection of Voice objects, or an empty collection if no voice is available for the given locale.
 	 */
 	public static Collection<Voice> getAvailableVoices(Locale locale) {
-		ArrayList<Voice> list = new ArrayList<Voice>();
-		for (Voice v : allVoices) {
-			if (MaryUtils.subsumes(locale, v.getLocale())) {
-				list.add(v);
-			}
-		}
-		return list;
+		return new ArrayList<Voice>(index.getVoices(locale));
 	}
 
 	/**
@@ -722,7 +754,7 @@ public class Voice {
 			throw new NullPointerException("Got null WaveformSynthesizer");
 		}
 		ArrayList<Voice> list = new ArrayList<Voice>();
-		for (Voice v : allVoices) {
+		for (Voice v : index.voices) {
 			if (synth.equals(v.synthesizer())) {
 				list.add(v);
 			}
@@ -738,8 +770,8 @@ public class Voice {
 	 */
 	public static Collection<Voice> getAvailableVoices(WaveformSynthesizer synth, Locale locale) {
 		ArrayList<Voice> list = new ArrayList<Voice>();
-		for (Voice v : allVoices) {
-			if (v.synthesizer().equals(synth) && MaryUtils.subsumes(locale, v.getLocale())) {
+		for (Voice v : index.getVoices(locale)) {
+			if (v.synthesizer().equals(synth)) {
 				list.add(v);
 			}
 		}
@@ -747,11 +779,10 @@ public class Voice {
 	}
 
 	public static Voice getVoice(Locale locale, Gender gender) {
-		for (Voice v : allVoices) {
-			if (MaryUtils.subsumes(locale, v.getLocale()) && v.gender().equals(gender))
-				return v;
-		}
-		return null; // no such voice found
+		Map<String, Voice> byGender = index.byLocaleAndGender.get(locale);
+		if (byGender == null)
+			return null; // no such voice found
+		return byGender.get(gender.toString());
 	}
 
 	public static Voice getVoice(Element voiceElement) {
@@ -781,7 +812,7 @@ public class Voice {
 	}
 
 	public static Voice getDefaultVoice(Locale locale) {
-		Voice v = defaultVoices.get(locale);
+		Voice v = index.defaultVoices.get(locale);
 		if (v == null)
 			v = getVoice(locale, FEMALE);
 		if (v == null)
@@ -802,8 +833,9 @@ public class Voice {
 			guessedVoice = Voice.getDefaultVoice(docLocale);
 		} else {
 			// get any voice
-			if (allVoices.size() != 0)
-				guessedVoice = (Voice) allVoices.iterator().next();
+			List<Voice> voices = index.voices;
+			if (voices.size() != 0)
+				guessedVoice = voices.get(0);
 		}
 		if (guessedVoice != null)
 			logger.debug("Guessing default voice `" + guessedVoice.getName() + "'");
@@ -874,6 +906,75 @@ public class Voice {
 		return lexicon;
 	}
 
+	/**
+	 * An immutable index of the registered voices by name, by locale and by locale and gender, so that looking up a voice does not
+	 * need to go through the list of all voices nor to take a lock.
+	 */
+	private static class VoiceIndex {
+		/** All voices in decreasing order of their "wantToBeDefault" value */
+		final List<Voice> voices;
+		final Map<String, Voice> byName = new HashMap<String, Voice>();
+		/** For each locale, the voices whose locale it subsumes, in the order of {@link #voices} */
+		final Map<Locale, List<Voice>> byLocale = new HashMap<Locale, List<Voice>>();
+		/** For each locale and gender name, the first of the voices with that gender whose locale it subsumes */
+		final Map<Locale, Map<String, Voice>> byLocaleAndGender = new HashMap<Locale, Map<String, Voice>>();
+		final Map<Locale, Voice> defaultVoices;
+		final InterpolatingSynthesizer interpolatingSynthesizer;
+
+		VoiceIndex(Collection<Voice> allVoices, Map<Locale, Voice> defaultVoices) {
+			this.voices = Collections.unmodifiableList(new ArrayList<Voice>(allVoices));
+			this.defaultVoices = new HashMap<Locale, Voice>(defaultVoices);
+			InterpolatingSynthesizer interpolating = null;
+			for (Voice v : voices) {
+				byName.put(v.getName(), v);
+				for (Locale locale : getSubsumingLocales(v.getLocale())) {
+					List<Voice> localeVoices = byLocale.get(locale);
+					if (localeVoices == null) {
+						localeVoices = new ArrayList<Voice>();
+						byLocale.put(locale, localeVoices);
+					}
+					localeVoices.add(v);
+					Map<String, Voice> byGender = byLocaleAndGender.get(locale);
+					if (byGender == null) {
+						byGender = new HashMap<String, Voice>();
+						byLocaleAndGender.put(locale, byGender);
+					}
+					if (!byGender.containsKey(v.gender().toString())) {
+						byGender.put(v.gender().toString(), v);
+					}
+				}
+				if (interpolating == null && v instanceof InterpolatingVoice) {
+					interpolating = (InterpolatingSynthesizer) v.synthesizer();
+				}
+			}
+			this.interpolatingSynthesizer = interpolating;
+		}
+
+		List<Voice> getVoices(Locale locale) {
+			List<Voice> localeVoices = byLocale.get(locale);
+			if (localeVoices == null)
+				return Collections.emptyList();
+			return localeVoices;
+		}
+
+		/**
+		 * The locales which subsume the given locale in the sense of {@link MaryUtils#subsumes(Locale, Locale)}: the locale itself,
+		 * the locale without its variant, and the language.
+		 */
+		static Set<Locale> getSubsumingLocales(Locale locale) {
+			Set<Locale> locales = new LinkedHashSet<Locale>();
+			if (locale == null) {
+				return locales;
+			}
+			locales.add(locale);
+			if (!locale.getCountry().equals("")) {
+				locales.add(new Locale(locale.getLanguage(), locale.getCountry()));
+			}
+			locales.add(new Locale(locale.getLanguage()));
+			return locales;
+		}
+	}
+
 	public static class Gender {
 		String name;
 
@@ -55,6 +55,7 @@ import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureRegistry;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
+import marytts.modules.ProcessingPlan;
 import marytts.modules.Synthesis;
 import marytts.modules.synthesis.Voice;
 import marytts.util.MaryCache;
@@ -362,6 +363,11 @@ public class Mary {
 		if (currentState != STATE_RUNNING)
 			throw new IllegalStateException("MARY system is not running");
 		currentState = STATE_SHUTTING_DOWN;
+		for (ProcessingPlan plan : ModuleRegistry.getProcessingPlans()) {
+			if (plan.getDominantStep() >= 0) {
+				logger.info("Processing times for " + plan.getTimingReport());
+			}
+		}
 		logger.info("Shutting down modules...");
 		// Shut down modules:
 		for (MaryModule m : ModuleRegistry.getAllModules()) {
@@ -494,7 +500,9 @@ public class Mary {
 		Runnable main = null;
 
 		if (server.equals("socket")) { // socket server mode
-			main = (Runnable) Class.forName("marytts.server.MaryServer").newInstance();
+			String serverClass = MaryProperties.getBoolean("server.socket.nio", true) ? "marytts.server.NioMaryServer"
+					: "marytts.server.MaryServer";
+			main = (Runnable) Class.forName(serverClass).newInstance();
 		} else if (server.equals("http")) { // http server mode
 			main = (Runnable) Class.forName("marytts.server.http.MaryHttpServer").newInstance();
 		} else { // command-line mode
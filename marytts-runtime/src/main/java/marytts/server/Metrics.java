@@ -0,0 +1,324 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Server-wide counters and histograms of request processing, exported in the Prometheus text format by the <code>metrics</code>
+ * request of the http server.
+ * <p>
+ * Recording only updates atomic counters, so that it can be done in the request path without locking. The series for a module,
+ * voice or cache are created on first use.
+ */
+public class Metrics {
+	/**
+	 * Upper bounds of the latency buckets, in seconds.
+	 */
+	static final double[] LATENCY_BUCKETS = { 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+	/**
+	 * Upper bounds of the real-time factor buckets, i.e. of processing time divided by audio duration.
+	 */
+	static final double[] REALTIME_FACTOR_BUCKETS = { 0.01, 0.02, 0.05, 0.1, 0.2, 0.5, 1, 2, 5 };
+
+	private static final AtomicLong requestsSucceeded = new AtomicLong();
+	private static final AtomicLong requestsFailed = new AtomicLong();
+	private static final AtomicLong requestsRejected = new AtomicLong();
+	private static final AtomicInteger requestsInFlight = new AtomicInteger();
+	private static final AtomicInteger requestsQueued = new AtomicInteger();
+	private static final AtomicLong allocatedBytes = new AtomicLong();
+	private static final ConcurrentMap<String, Histogram> queueDurations = new ConcurrentHashMap<String, Histogram>();
+	private static final ConcurrentMap<String, Histogram> moduleDurations = new ConcurrentHashMap<String, Histogram>();
+	private static final ConcurrentMap<String, Histogram> voiceDurations = new ConcurrentHashMap<String, Histogram>();
+	private static final ConcurrentMap<String, Histogram> voiceRealtimeFactors = new ConcurrentHashMap<String, Histogram>();
+	private static final ConcurrentMap<String, AtomicLongArray> cacheLookups = new ConcurrentHashMap<String, AtomicLongArray>();
+
+	private static final com.sun.management.ThreadMXBean threadAllocation;
+	static {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+			threadAllocation = (com.sun.management.ThreadMXBean) threads;
+		} else {
+			threadAllocation = null;
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Record that a request has been waiting for a processing thread, e.g. an input of a batch request. Must be followed by
+	 * {@link #requestDequeued()}.
+	 */
+	public static void requestQueued() {
+		requestsQueued.incrementAndGet();
+	}
+
+	public static void requestDequeued() {
+		requestsQueued.decrementAndGet();
+	}
+
+	/**
+	 * Record that a request has been admitted by the {@link RequestScheduler}.
+	 * 
+	 * @param priority
+	 *            the priority class of the request
+	 * @param nanos
+	 *            the time the request has been waiting
+	 */
+	public static void requestAdmitted(String priority, long nanos) {
+		getHistogram(queueDurations, priority, LATENCY_BUCKETS).observe(nanos / 1e9);
+	}
+
+	/**
+	 * Record that a request has been refused by the {@link RequestScheduler} because too many requests were waiting.
+	 */
+	public static void requestRejected() {
+		requestsRejected.incrementAndGet();
+	}
+
+	/**
+	 * Record the start of {@link Request#process()}. Must be followed by
+	 * {@link #requestFinished(String, long, double, long, boolean)}.
+	 */
+	public static void requestStarted() {
+		requestsInFlight.incrementAndGet();
+	}
+
+	/**
+	 * Record the end of {@link Request#process()}.
+	 * 
+	 * @param voice
+	 *            the name of the default voice of the request, or null
+	 * @param nanos
+	 *            the processing time
+	 * @param audioSeconds
+	 *            the duration of the audio produced, or 0 if the output is not audio or its duration is unknown
+	 * @param allocated
+	 *            the number of bytes allocated by the processing thread, or -1 if unknown
+	 * @param success
+	 *            whether the request has been processed without exception
+	 */
+	public static void requestFinished(String voice, long nanos, double audioSeconds, long allocated, boolean success) {
+		requestsInFlight.decrementAndGet();
+		if (!success) {
+			requestsFailed.incrementAndGet();
+			return;
+		}
+		requestsSucceeded.incrementAndGet();
+		if (voice == null) {
+			voice = "";
+		}
+		getHistogram(voiceDurations, voice, LATENCY_BUCKETS).observe(nanos / 1e9);
+		if (audioSeconds > 0) {
+			getHistogram(voiceRealtimeFactors, voice, REALTIME_FACTOR_BUCKETS).observe(nanos / 1e9 / audioSeconds);
+		}
+		if (allocated > 0) {
+			allocatedBytes.addAndGet(allocated);
+		}
+	}
+
+	/**
+	 * Record the processing time of one module for one chunk of data.
+	 */
+	public static void moduleProcessed(String module, long nanos) {
+		getHistogram(moduleDurations, module, LATENCY_BUCKETS).observe(nanos / 1e9);
+	}
+
+	/**
+	 * Record a lookup in a cache.
+	 * 
+	 * @param cache
+	 *            the name of the cache, e.g. "request" for the cache of processing results
+	 * @param hit
+	 *            whether the lookup has found an entry
+	 */
+	public static void cacheLookup(String cache, boolean hit) {
+		AtomicLongArray lookups = cacheLookups.get(cache);
+		if (lookups == null) {
+			AtomicLongArray existing = cacheLookups.putIfAbsent(cache, lookups = new AtomicLongArray(2));
+			if (existing != null) {
+				lookups = existing;
+			}
+		}
+		lookups.incrementAndGet(hit ? 0 : 1);
+	}
+
+	/**
+	 * The number of bytes allocated so far by the current thread, for measuring the allocation of a piece of processing.
+	 * 
+	 * @return the number of bytes, or -1 if the JVM does not measure allocation per thread.
+	 */
+	public static long getCurrentThreadAllocatedBytes() {
+		if (threadAllocation == null) {
+			return -1;
+		}
+		return threadAllocation.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static Histogram getHistogram(ConcurrentMap<String, Histogram> histograms, String label, double[] buckets) {
+		Histogram histogram = histograms.get(label);
+		if (histogram == null) {
+			Histogram existing = histograms.putIfAbsent(label, histogram = new Histogram(buckets));
+			if (existing != null) {
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Write all metrics in the Prometheus text exposition format.
+	 */
+	public static void writeTo(StringBuilder out) {
+		writeHeader(out, "mary_requests_total", "counter", "Requests processed, by outcome.");
+		out.append("mary_requests_total{outcome=\"success\"} ").append(requestsSucceeded.get()).append('\n');
+		out.append("mary_requests_total{outcome=\"error\"} ").append(requestsFailed.get()).append('\n');
+		out.append("mary_requests_total{outcome=\"rejected\"} ").append(requestsRejected.get()).append('\n');
+		writeHeader(out, "mary_requests_in_flight", "gauge", "Requests currently being processed.");
+		out.append("mary_requests_in_flight ").append(requestsInFlight.get()).append('\n');
+		writeHeader(out, "mary_requests_queued", "gauge", "Requests waiting for a processing thread.");
+		out.append("mary_requests_queued ").append(requestsQueued.get()).append('\n');
+
+		writeHistograms(out, "mary_request_queue_seconds", "Time requests have waited for admission, by priority.", "priority",
+				queueDurations);
+		writeHistograms(out, "mary_module_duration_seconds", "Processing time of one chunk of data by a module.", "module",
+				moduleDurations);
+		writeHistograms(out, "mary_request_duration_seconds", "Processing time of successful requests, by default voice.",
+				"voice", voiceDurations);
+		writeHistograms(out, "mary_realtime_factor", "Processing time divided by audio duration of audio requests.", "voice",
+				voiceRealtimeFactors);
+
+		writeHeader(out, "mary_cache_lookups_total", "counter", "Cache lookups, by cache and result.");
+		for (Map.Entry<String, AtomicLongArray> entry : new TreeMap<String, AtomicLongArray>(cacheLookups).entrySet()) {
+			String cache = escapeLabelValue(entry.getKey());
+			out.append("mary_cache_lookups_total{cache=\"").append(cache).append("\",result=\"hit\"} ")
+					.append(entry.getValue().get(0)).append('\n');
+			out.append("mary_cache_lookups_total{cache=\"").append(cache).append("\",result=\"miss\"} ")
+					.append(entry.getValue().get(1)).append('\n');
+		}
+
+		if (threadAllocation != null) {
+			writeHeader(out, "mary_allocated_bytes_total", "counter", "Bytes allocated by the threads processing requests.");
+			out.append("mary_allocated_bytes_total ").append(allocatedBytes.get()).append('\n');
+		}
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		writeHeader(out, "jvm_memory_heap_used_bytes", "gauge", "Used heap memory.");
+		out.append("jvm_memory_heap_used_bytes ").append(heap.getUsed()).append('\n');
+		writeHeader(out, "jvm_memory_heap_max_bytes", "gauge", "Maximum heap memory.");
+		out.append("jvm_memory_heap_max_bytes ").append(heap.getMax()).append('\n');
+		writeHeader(out, "jvm_gc_collections_total", "counter", "Garbage collections, by collector.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			out.append("jvm_gc_collections_total{gc=\"").append(escapeLabelValue(gc.getName())).append("\"} ")
+					.append(gc.getCollectionCount()).append('\n');
+		}
+		writeHeader(out, "jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collection, by collector.");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			out.append("jvm_gc_collection_seconds_total{gc=\"").append(escapeLabelValue(gc.getName())).append("\"} ")
+					.append(gc.getCollectionTime() / 1000.).append('\n');
+		}
+	}
+
+	private static void writeHeader(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void writeHistograms(StringBuilder out, String name, String help, String labelName,
+			Map<String, Histogram> histograms) {
+		writeHeader(out, name, "histogram", help);
+		for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(histograms).entrySet()) {
+			entry.getValue().writeTo(out, name, labelName + "=\"" + escapeLabelValue(entry.getKey()) + "\"");
+		}
+	}
+
+	static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * A histogram with fixed buckets. Observations are recorded with atomic operations only; a snapshot taken while observations
+	 * are recorded may be slightly inconsistent, but its count is always the sum of its buckets.
+	 */
+	static class Histogram {
+		/**
+		 * Sums are kept as fixed point numbers with this many units per 1.0, so that they can be added atomically.
+		 */
+		private static final double SUM_SCALE = 1e9;
+
+		private final double[] upperBounds;
+		/**
+		 * The number of observations in each bucket, not cumulative; the last one counts the observations above the largest
+		 * upper bound.
+		 */
+		private final AtomicLongArray counts;
+		private final AtomicLong scaledSum = new AtomicLong();
+
+		Histogram(double[] upperBounds) {
+			this.upperBounds = upperBounds;
+			this.counts = new AtomicLongArray(upperBounds.length + 1);
+		}
+
+		void observe(double value) {
+			int bucket = 0;
+			while (bucket < upperBounds.length && value > upperBounds[bucket]) {
+				bucket++;
+			}
+			counts.incrementAndGet(bucket);
+			scaledSum.addAndGet(Math.round(value * SUM_SCALE));
+		}
+
+		long getCount() {
+			long count = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				count += counts.get(i);
+			}
+			return count;
+		}
+
+		double getSum() {
+			return scaledSum.get() / SUM_SCALE;
+		}
+
+		void writeTo(StringBuilder out, String name, String labels) {
+			long cumulative = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				cumulative += counts.get(i);
+				String upperBound = i < upperBounds.length ? String.valueOf(upperBounds[i]) : "+Inf";
+				out.append(name).append("_bucket{").append(labels).append(",le=\"").append(upperBound).append("\"} ")
+						.append(cumulative).append('\n');
+			}
+			out.append(name).append("_sum{").append(labels).append("} ").append(getSum()).append('\n');
+			out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+		}
+	}
+}
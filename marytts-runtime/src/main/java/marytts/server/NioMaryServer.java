@@ -0,0 +1,762 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.datatypes.MaryDataType;
+import marytts.exceptions.RequestCancelledException;
+import marytts.util.MaryUtils;
+import marytts.util.data.audio.StreamingAudioWriter;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A socket server for the protocol described in {@link MaryServer}, with one selector thread for all connections instead of one
+ * thread per connection. The selector thread reads the request lines and answers information requests; when the data connection
+ * of a synthesis request arrives, both connections are switched to blocking mode and the request is handed to a bounded pool of
+ * <code>server.socket.parallelthreads</code> threads, with up to <code>server.socket.queuesize</code> requests waiting for a
+ * thread. Further requests are refused with an error message on the info connection.
+ * <p>
+ * In addition to the protocol with two connections, clients can use a <b>framed protocol</b> on a single connection:
+ * <ol>
+ * <li>The client sends one line "MARY FRAMED IN=INPUTTYPE OUT=OUTPUTTYPE LOCALE=LOCALE [AUDIO=AUDIOTYPE] [VOICE=VOICENAME] ...",
+ * with the same parameters as the synthesis request line, optionally preceded by information requests.</li>
+ * <li>The client sends the input data as one frame: its length in bytes as a four byte big-endian integer, followed by the data
+ * in UTF-8.</li>
+ * <li>The server sends frames of one type byte, a four byte big-endian length and the payload: one or more 'D' frames with the
+ * output data, which for STREAMING_ audio types are sent while the audio is being synthesised, and finally either an empty 'F'
+ * frame if the request has been processed successfully, or an 'E' frame with an error message in UTF-8.</li>
+ * <li>The server closes the connection.</li>
+ * </ol>
+ * While a framed request is processed, the selector thread keeps watching its connection; if the client closes it, also only
+ * for writing, the request is aborted.
+ */
+public class NioMaryServer implements Runnable {
+	/**
+	 * The maximum length of a request line, in bytes.
+	 */
+	static final int MAX_LINE_LENGTH = 64 * 1024;
+	static final String FRAMED_PREFIX = "MARY FRAMED ";
+	static final byte FRAME_DATA = 'D';
+	static final byte FRAME_ERROR = 'E';
+	static final byte FRAME_END = 'F';
+
+	private final Logger logger;
+	private final int port;
+	private final int maxInputLength;
+	private final ThreadPoolExecutor synthesisPool;
+	private final AtomicInteger runningNumber = new AtomicInteger(1);
+	/**
+	 * The synthesis requests whose data connection has not arrived yet, by id. An entry is created before the id is sent to the
+	 * client, so that the data connection always finds it.
+	 */
+	private final ConcurrentMap<Integer, Connection> pendingRequests = new ConcurrentHashMap<Integer, Connection>();
+	/**
+	 * Connections whose keys have been cancelled; they are switched to blocking mode after the next selection, which deregisters
+	 * them from the selector. Only used by the selector thread.
+	 */
+	private final List<Runnable> handOffs = new ArrayList<Runnable>();
+	/**
+	 * Tasks for the selector thread from other threads, which wake up the selector after adding one.
+	 */
+	private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<Runnable>();
+	private final CountDownLatch started = new CountDownLatch(1);
+	private volatile Selector selector;
+	private volatile ServerSocketChannel serverChannel;
+
+	public NioMaryServer() {
+		this(MaryProperties.needInteger("socket.port"));
+	}
+
+	/**
+	 * @param port
+	 *            the port to listen on, or 0 for any free port
+	 */
+	NioMaryServer(int port) {
+		this.logger = MaryUtils.getLogger("server");
+		this.port = port;
+		this.maxInputLength = MaryProperties.getInteger("server.socket.maxinputbytes", 16 * 1024 * 1024);
+		int numThreads = MaryProperties.getInteger("server.socket.parallelthreads", Runtime.getRuntime().availableProcessors());
+		int queueSize = MaryProperties.getInteger("server.socket.queuesize", 100);
+		synthesisPool = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+				queueSize), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "SocketRequests " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	public void run() {
+		logger.info("Starting server.");
+		try {
+			selector = Selector.open();
+			serverChannel = ServerSocketChannel.open();
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.socket().bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			logger.info("Waiting for clients to connect on port " + serverChannel.socket().getLocalPort());
+			started.countDown();
+			while (true) {
+				Runnable task;
+				while ((task = selectorTasks.poll()) != null) {
+					task.run();
+				}
+				if (handOffs.isEmpty()) {
+					selector.select();
+				} else {
+					selector.selectNow();
+					for (Runnable handOff : handOffs) {
+						handOff.run();
+					}
+					handOffs.clear();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isAcceptable()) {
+						accept();
+					} else if (key.isValid()) {
+						Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isWritable()) {
+								writePending(connection);
+							}
+							if (key.isValid() && key.isReadable()) {
+								read(connection);
+							}
+						} catch (IOException e) {
+							logger.info("Connection problem, closing connection: " + e.getMessage());
+							close(connection);
+						}
+					}
+				}
+			}
+		} catch (ClosedSelectorException e) {
+			logger.info("Server stopped.");
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		} finally {
+			started.countDown();
+		}
+	}
+
+	/**
+	 * Wait until the server is listening.
+	 * 
+	 * @return the port the server listens on
+	 */
+	int getLocalPort() throws InterruptedException {
+		started.await();
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stop accepting connections and processing requests.
+	 */
+	void shutdown() throws IOException {
+		selector.close();
+		serverChannel.close();
+		synthesisPool.shutdownNow();
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		logger.info("Connection from " + channel.socket().getInetAddress().getHostAddress() + ".");
+		channel.configureBlocking(false);
+		Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+	}
+
+	private void read(Connection connection) throws IOException {
+		ByteBuffer buffer = connection.state == State.FRAME ? connection.frame : connection.in;
+		int numRead = connection.channel.read(buffer);
+		if (numRead < 0) {
+			if (connection.state == State.LINES && connection.in.position() > 0) {
+				logger.info("Client seems to have disconnected - cannot read.");
+			}
+			close(connection);
+			return;
+		}
+		if (connection.state == State.WAITING_FOR_DATA || connection.state == State.PROCESSING
+				|| connection.state == State.CLOSING) {
+			// nothing more is expected from the client on this connection
+			connection.in.clear();
+			return;
+		}
+		processInput(connection);
+	}
+
+	private void processInput(Connection connection) throws IOException {
+		while (true) {
+			switch (connection.state) {
+			case LINES:
+				String line = takeLine(connection.in);
+				if (line == null) {
+					if (!connection.in.hasRemaining()) {
+						if (connection.in.capacity() >= MAX_LINE_LENGTH) {
+							sendError(connection, "Request line too long");
+							return;
+						}
+						ByteBuffer bigger = ByteBuffer.allocate(2 * connection.in.capacity());
+						connection.in.flip();
+						bigger.put(connection.in);
+						connection.in = bigger;
+					}
+					return;
+				}
+				processLine(connection, line);
+				break;
+			case FRAME_LENGTH:
+				if (connection.in.position() < 4) {
+					return;
+				}
+				connection.in.flip();
+				int length = connection.in.getInt();
+				if (length < 0 || length > maxInputLength) {
+					sendFrame(connection, FRAME_ERROR, "Input too long: " + length + " bytes, the maximum is " + maxInputLength);
+					return;
+				}
+				connection.frame = ByteBuffer.allocate(length);
+				while (connection.frame.hasRemaining() && connection.in.hasRemaining()) {
+					connection.frame.put(connection.in.get());
+				}
+				connection.in.compact();
+				connection.state = State.FRAME;
+				break;
+			case FRAME:
+				if (!connection.frame.hasRemaining()) {
+					startFramedRequest(connection);
+				}
+				return;
+			default:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Take the first line from a buffer that is being filled.
+	 * 
+	 * @return the line without the line terminator, or null if the buffer does not contain a complete line.
+	 */
+	static String takeLine(ByteBuffer in) throws IOException {
+		byte[] bytes = in.array();
+		int end = in.position();
+		for (int i = 0; i < end; i++) {
+			if (bytes[i] == '\n') {
+				int lineEnd = i > 0 && bytes[i - 1] == '\r' ? i - 1 : i;
+				String line = new String(bytes, 0, lineEnd, "UTF-8");
+				in.flip();
+				in.position(i + 1);
+				in.compact();
+				return line;
+			}
+		}
+		return null;
+	}
+
+	private void processLine(Connection connection, String line) throws IOException {
+		logger.debug("read request: `" + line + "'");
+		StringWriter answer = new StringWriter();
+		PrintWriter answerOut = new PrintWriter(answer);
+		SocketProtocol protocol = new SocketProtocol(answerOut, logger);
+		try {
+			if (protocol.handleInfoRequest(line)) {
+				answerOut.flush();
+				send(connection, answer.toString().getBytes("UTF-8"));
+				return;
+			}
+			if (line.startsWith(FRAMED_PREFIX)) {
+				connection.request = protocol.parseSynthesisRequest("MARY " + line.substring(FRAMED_PREFIX.length()),
+						runningNumber);
+				connection.state = State.FRAME_LENGTH;
+				return;
+			}
+			Request request = protocol.parseSynthesisRequest(line, runningNumber);
+			if (request != null) {
+				connection.request = request;
+				connection.state = State.WAITING_FOR_DATA;
+				pendingRequests.put(request.getId(), connection);
+				answerOut.println(request.getId());
+				answerOut.flush();
+				send(connection, answer.toString().getBytes("UTF-8"));
+				return;
+			}
+			Integer id = SocketProtocol.parseRequestNumber(line);
+			if (id != null) {
+				pairWithInfoConnection(connection, id);
+				return;
+			}
+			String nl = System.getProperty("line.separator");
+			throw new Exception("Expected either a line" + nl + "MARY IN=<INPUTTYPE> OUT=<OUTPUTTYPE> [AUDIO=<AUDIOTYPE>]" + nl
+					+ "or a line containing only a number identifying a request.");
+		} catch (Exception e) {
+			logger.info("Error parsing request:", e);
+			if (line.startsWith(FRAMED_PREFIX)) {
+				sendFrame(connection, FRAME_ERROR, "Error parsing request: " + e.getMessage());
+			} else {
+				sendError(connection, "Error parsing request:" + System.getProperty("line.separator") + e.getMessage());
+			}
+		}
+	}
+
+	private void pairWithInfoConnection(final Connection data, int id) throws Exception {
+		final Connection info = pendingRequests.get(id);
+		// Verify that the corresponding connection comes from the same IP address:
+		if (info == null || !info.channel.socket().getInetAddress().equals(data.channel.socket().getInetAddress())
+				|| !pendingRequests.remove(id, info)) {
+			throw new Exception("Invalid identification number.");
+			// Don't be more specific, because in general it is none of
+			// their business whether in principle someone else has
+			// this id.
+		}
+		final Request request = info.request;
+		info.state = State.HANDED_OFF;
+		data.state = State.HANDED_OFF;
+		info.key.cancel();
+		data.key.cancel();
+		// the beginning of the input data may have been read already
+		data.in.flip();
+		final byte[] prefetched = new byte[data.in.remaining()];
+		data.in.get(prefetched);
+		handOffs.add(new Runnable() {
+			public void run() {
+				startRequest(info, data, request, prefetched);
+			}
+		});
+	}
+
+	private void startRequest(Connection info, Connection data, Request request, byte[] prefetched) {
+		Socket infoSocket;
+		Socket dataSocket;
+		Reader reader;
+		try {
+			infoSocket = toBlockingSocket(info);
+			dataSocket = toBlockingSocket(data);
+			reader = new BufferedReader(new InputStreamReader(new SequenceInputStream(new ByteArrayInputStream(prefetched),
+					dataSocket.getInputStream()), "UTF-8"));
+		} catch (IOException e) {
+			logger.info("Cannot start request " + request.getId(), e);
+			closeQuietly(info);
+			closeQuietly(data);
+			return;
+		}
+		if (!execute(new RequestHandler(request, infoSocket, dataSocket, reader))) {
+			try {
+				PrintWriter infoOut = new PrintWriter(new OutputStreamWriter(infoSocket.getOutputStream(), "UTF-8"), true);
+				infoOut.println("Server is busy, please try again later.");
+			} catch (IOException e) {
+				logger.debug("Cannot tell client that the server is busy", e);
+			}
+			closeQuietly(info);
+			closeQuietly(data);
+		}
+	}
+
+	private void startFramedRequest(final Connection connection) throws IOException {
+		final String input = new String(connection.frame.array(), "UTF-8");
+		connection.frame = null;
+		connection.state = State.PROCESSING;
+		if (!execute(new FramedRequestHandler(connection, input))) {
+			sendFrame(connection, FRAME_ERROR, "Server is busy, please try again later.");
+		}
+	}
+
+	/**
+	 * Take a connection of a framed request away from the selector thread and switch it to blocking mode, so that the output
+	 * can be written. Called by the synthesis pool.
+	 * 
+	 * @throws IOException
+	 *             if the connection has been closed meanwhile
+	 */
+	private Socket takeOver(final Connection connection) throws IOException, InterruptedException {
+		final FutureTask<Socket> blocking = new FutureTask<Socket>(new Callable<Socket>() {
+			public Socket call() throws IOException {
+				return toBlockingSocket(connection);
+			}
+		});
+		selectorTasks.add(new Runnable() {
+			public void run() {
+				if (connection.state == State.PROCESSING) {
+					connection.state = State.HANDED_OFF;
+				}
+				connection.key.cancel();
+				handOffs.add(blocking);
+			}
+		});
+		selector.wakeup();
+		try {
+			return blocking.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Run a request on the synthesis pool.
+	 * 
+	 * @return false if the pool and its queue are full
+	 */
+	private boolean execute(final Runnable handler) {
+		Metrics.requestQueued();
+		try {
+			synthesisPool.execute(new Runnable() {
+				public void run() {
+					Metrics.requestDequeued();
+					handler.run();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			Metrics.requestDequeued();
+			logger.warn("Too many requests, refusing request");
+			return false;
+		}
+	}
+
+	/**
+	 * Switch a connection whose key has been cancelled and deregistered to blocking mode, writing any pending output.
+	 */
+	private Socket toBlockingSocket(Connection connection) throws IOException {
+		connection.channel.configureBlocking(true);
+		for (ByteBuffer buffer : connection.out) {
+			while (buffer.hasRemaining()) {
+				connection.channel.write(buffer);
+			}
+		}
+		connection.out.clear();
+		return connection.channel.socket();
+	}
+
+	private void send(Connection connection, byte[] data) throws IOException {
+		connection.out.add(ByteBuffer.wrap(data));
+		writePending(connection);
+	}
+
+	/**
+	 * Send an error message and close the connection.
+	 */
+	private void sendError(Connection connection, String message) throws IOException {
+		connection.state = State.CLOSING;
+		connection.closeWhenWritten = true;
+		send(connection, (message + System.getProperty("line.separator")).getBytes("UTF-8"));
+	}
+
+	/**
+	 * Send a frame and close the connection.
+	 */
+	private void sendFrame(Connection connection, byte type, String message) throws IOException {
+		byte[] payload = message.getBytes("UTF-8");
+		ByteBuffer frame = ByteBuffer.allocate(5 + payload.length);
+		frame.put(type).putInt(payload.length).put(payload).flip();
+		connection.state = State.CLOSING;
+		connection.closeWhenWritten = true;
+		connection.out.add(frame);
+		writePending(connection);
+	}
+
+	private void writePending(Connection connection) throws IOException {
+		while (!connection.out.isEmpty()) {
+			ByteBuffer buffer = connection.out.peek();
+			connection.channel.write(buffer);
+			if (buffer.hasRemaining()) {
+				break;
+			}
+			connection.out.poll();
+		}
+		if (!connection.key.isValid()) {
+			return;
+		}
+		if (!connection.out.isEmpty()) {
+			connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} else if (connection.closeWhenWritten) {
+			close(connection);
+		} else {
+			connection.key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	private void close(Connection connection) {
+		if (connection.state == State.WAITING_FOR_DATA) {
+			pendingRequests.remove(connection.request.getId(), connection);
+		} else if (connection.state == State.PROCESSING) {
+			logger.info("Client has closed the connection of request " + connection.request.getId());
+			connection.request.abort();
+		}
+		connection.state = State.CLOSING;
+		closeQuietly(connection);
+	}
+
+	private void closeQuietly(Connection connection) {
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			logger.debug("Cannot close connection", e);
+		}
+	}
+
+	/**
+	 * Write one frame of the framed protocol.
+	 */
+	static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+		out.writeByte(type);
+		out.writeInt(payload.length);
+		out.write(payload);
+	}
+
+	private enum State {
+		/** reading request lines */
+		LINES,
+		/** info connection of a synthesis request, waiting for the data connection */
+		WAITING_FOR_DATA,
+		/** reading the length of the input frame of a framed request */
+		FRAME_LENGTH,
+		/** reading the input frame of a framed request */
+		FRAME,
+		/** framed request processed by the synthesis pool, watched for the client closing the connection */
+		PROCESSING,
+		/** processed by the synthesis pool */
+		HANDED_OFF,
+		/** to be closed, ignoring further input */
+		CLOSING
+	}
+
+	/**
+	 * The state of one client connection while it is handled by the selector thread.
+	 */
+	private static class Connection {
+		final SocketChannel channel;
+		SelectionKey key;
+		State state = State.LINES;
+		/** the bytes read and not processed yet, in fill mode */
+		ByteBuffer in = ByteBuffer.allocate(1024);
+		final Deque<ByteBuffer> out = new ArrayDeque<ByteBuffer>();
+		boolean closeWhenWritten;
+		Request request;
+		ByteBuffer frame;
+
+		Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * Buffers output data into 'D' frames.
+	 */
+	static class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final byte[] buffer = new byte[8192];
+		private int count;
+
+		FrameOutputStream(DataOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length) {
+				flushFrame();
+			}
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length) {
+					flushFrame();
+				}
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void flushFrame() throws IOException {
+			if (count > 0) {
+				out.writeByte(FRAME_DATA);
+				out.writeInt(count);
+				out.write(buffer, 0, count);
+				count = 0;
+				out.flush();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushFrame();
+		}
+
+		/**
+		 * Sends the pending data, but leaves the underlying stream open for the final frame.
+		 */
+		@Override
+		public void close() throws IOException {
+			flushFrame();
+		}
+	}
+
+	/**
+	 * Processes a request of the framed protocol and sends the output as frames.
+	 */
+	private class FramedRequestHandler implements Runnable {
+		private final Connection connection;
+		private final Request request;
+		private final String input;
+
+		FramedRequestHandler(Connection connection, String input) {
+			this.connection = connection;
+			this.request = connection.request;
+			this.input = input;
+		}
+
+		private DataOutputStream openOutput() throws IOException, InterruptedException {
+			Socket socket = takeOver(connection);
+			return new DataOutputStream(new BufferedOutputStream(request.getTrace().recordFirstByte(socket.getOutputStream()),
+					8192 + 5));
+		}
+
+		public void run() {
+			Logger logger = MaryUtils.getLogger("RH " + request.getId());
+			boolean ok = false;
+			try {
+				DataOutputStream out = null;
+				Thread writer = null;
+				try {
+					request.setInputData(input);
+					if (request.getOutputType() == MaryDataType.AUDIO && request.getStreamAudio()) {
+						out = openOutput();
+						final FrameOutputStream data = new FrameOutputStream(out);
+						writer = new Thread("RW " + request.getId()) {
+							public void run() {
+								try {
+									StreamingAudioWriter.write(request.getAudio(), request.getAudioFileFormat().getType(), data);
+									data.flush();
+								} catch (IOException e) {
+									request.abort();
+								}
+							}
+						};
+						writer.start();
+						request.process();
+						writer.join();
+					} else {
+						// the connection stays with the selector thread until the output is ready
+						request.process();
+						out = openOutput();
+						FrameOutputStream data = new FrameOutputStream(out);
+						request.writeOutputData(data);
+						data.flush();
+					}
+					writeFrame(out, FRAME_END, new byte[0]);
+					ok = true;
+				} catch (RequestCancelledException e) {
+					logger.info("Processing stopped: " + e.getMessage());
+					if (writer != null) {
+						writer.join();
+					}
+					if (out == null) {
+						out = openOutput();
+					}
+					writeFrame(out, FRAME_ERROR, e.getMessage().getBytes("UTF-8"));
+				} catch (Throwable e) {
+					logger.error("Processing failed.", e);
+					if (writer != null) {
+						// let the writer send what has been synthesised, so that it does not wait for more audio
+						request.getAudio().doneAppending();
+						writer.join();
+					}
+					if (out == null) {
+						out = openOutput();
+					}
+					writeFrame(out, FRAME_ERROR, ("Processing failed." + System.getProperty("line.separator") + MaryUtils
+							.getThrowableAndCausesAsString(e)).getBytes("UTF-8"));
+				}
+				out.flush();
+			} catch (IOException e) {
+				logger.info("Cannot write output, client seems to have disconnected. ", e);
+				ok = false;
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while waiting for the audio to be written", e);
+				ok = false;
+			} finally {
+				closeQuietly(connection);
+			}
+			request.getTrace().finish(ok);
+			if (ok)
+				logger.info("Request handled successfully.");
+			else
+				logger.info("Request couldn't be handled successfully.");
+		}
+	}
+}
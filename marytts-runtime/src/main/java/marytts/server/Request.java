@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -45,8 +46,10 @@ import javax.xml.transform.TransformerException;
 import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
+import marytts.exceptions.RequestCancelledException;
 import marytts.modules.MaryModule;
 import marytts.modules.ModuleRegistry;
+import marytts.modules.ProcessingPlan;
 import marytts.modules.synthesis.Voice;
 import marytts.util.MaryCache;
 import marytts.util.MaryRuntimeUtils;
@@ -93,12 +96,27 @@ public class Request {
 	protected MaryData inputData;
 	protected MaryData outputData;
 	protected boolean streamAudio = false;;
-	protected boolean abortRequested = false;
+	protected volatile boolean abortRequested = false;
+	// when the request was created, and the time after which processing is given up, or 0
+	private final long createdNanos = System.nanoTime();
+	private volatile long timeoutNanos = 0;
+	// the priority class for the admission by the RequestScheduler, or null to process without admission
+	private RequestScheduler.Priority priority = null;
 
 	// Keep track of timing info for each module
 	// (map MaryModule onto Long)
 	protected Set<MaryModule> usedModules;
 	protected Map<MaryModule, Long> timingInfo;
+	protected RequestTrace trace;
+	// the paragraph being processed, or -1
+	private int currentChunk = -1;
+	// the modules which will process the current chunk after the one which is running now
+	private List<MaryModule> laterModules = Collections.emptyList();
+
+	/**
+	 * The request processed by the current thread, for the cancellation checks in the modules.
+	 */
+	private static final ThreadLocal<Request> currentRequest = new ThreadLocal<Request>();
 
 	public Request(MaryDataType inputType, MaryDataType outputType, Locale defaultLocale, Voice defaultVoice,
 			String defaultEffects, String defaultStyle, int id, AudioFileFormat audioFileFormat) {
@@ -121,7 +139,7 @@ public class Request {
 		this.id = id;
 		this.audioFileFormat = audioFileFormat;
 		this.streamAudio = streamAudio;
-		if (outputType == MaryDataType.get("AUDIO")) {
+		if (outputType == MaryDataType.AUDIO) {
 			if (audioFileFormat == null)
 				throw new NullPointerException("audio file format is needed for output type AUDIO");
 			this.appendableAudioStream = new AppendableSequenceAudioInputStream(audioFileFormat.getFormat(), null);
@@ -129,6 +147,7 @@ public class Request {
 			this.appendableAudioStream = null;
 		}
 		this.logger = MaryUtils.getLogger("R " + id);
+		this.trace = new RequestTrace(id);
 		this.outputTypeParams = outputTypeParams;
 		this.inputData = null;
 		this.outputData = null;
@@ -193,6 +212,14 @@ public class Request {
 		return streamAudio;
 	}
 
+	/**
+	 * The timing of the phases of this request. Whoever sends the output to the client should record the first byte and finish
+	 * the trace.
+	 */
+	public RequestTrace getTrace() {
+		return trace;
+	}
+
 	/**
 	 * Inform this request that any further processing does not make sense.
 	 */
@@ -201,6 +228,104 @@ public class Request {
 		abortRequested = true;
 	}
 
+	/**
+	 * Give up processing this request if it is not finished the given time after it was created.
+	 * 
+	 * @param timeoutMillis
+	 *            the time in milliseconds, or 0 for no deadline
+	 */
+	public void setTimeout(long timeoutMillis) {
+		timeoutNanos = Math.max(timeoutMillis, 0) * 1000000;
+	}
+
+	/**
+	 * The timeout for a request from a client of the server: the time set in the property <code>server.request.timeout</code>,
+	 * or the time requested by the client if that is shorter.
+	 * 
+	 * @param requestedMillis
+	 *            the timeout requested by the client, or 0 for none
+	 * @return the timeout in milliseconds, or 0 for none
+	 */
+	public static long getServerTimeout(long requestedMillis) {
+		long serverMillis = MaryProperties.getInteger("server.request.timeout", 0);
+		if (serverMillis <= 0 || requestedMillis > 0 && requestedMillis < serverMillis) {
+			return Math.max(requestedMillis, 0);
+		}
+		return serverMillis;
+	}
+
+	/**
+	 * Let this request wait for admission by the {@link RequestScheduler} before it is processed, so that only a limited number
+	 * of requests are processed at the same time. Requests from the clients of the server should be admitted; requests without
+	 * a priority are processed immediately.
+	 * 
+	 * @param priority
+	 *            the priority class, or null to process the request without admission
+	 */
+	public void setPriority(RequestScheduler.Priority priority) {
+		this.priority = priority;
+	}
+
+	public RequestScheduler.Priority getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Whether this request has been aborted or has passed its deadline, so that any further processing does not make sense.
+	 */
+	public boolean isCancelled() {
+		return abortRequested || timeoutNanos > 0 && System.nanoTime() - createdNanos > timeoutNanos;
+	}
+
+	/**
+	 * @throws RequestCancelledException
+	 *             if this request has been aborted or has passed its deadline.
+	 */
+	public void checkCancelled() throws RequestCancelledException {
+		if (abortRequested) {
+			throw new RequestCancelledException("Request " + id + " has been aborted");
+		}
+		if (timeoutNanos > 0 && System.nanoTime() - createdNanos > timeoutNanos) {
+			throw new RequestCancelledException("Request " + id + " has not finished within " + timeoutNanos / 1000000 + " ms");
+		}
+	}
+
+	/**
+	 * Find the cancellation which caused the given exception, if any.
+	 * 
+	 * @param e
+	 *            an exception thrown while processing
+	 * @return the RequestCancelledException in the cause chain of e, or null
+	 */
+	static RequestCancelledException findCancellation(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t instanceof RequestCancelledException) {
+				return (RequestCancelledException) t;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The request processed by the current thread. Long-running loops in the modules check it for cancellation every now and
+	 * then; work handed to another thread should check the request of the thread which created it.
+	 * 
+	 * @return the request, or null if the current thread is not processing a request.
+	 */
+	public static Request current() {
+		return currentRequest.get();
+	}
+
+	/**
+	 * The modules which will process the current chunk of data after the module which is running now, so that a module can
+	 * prepare data which only a later module needs.
+	 * 
+	 * @return an unmodifiable list of modules, empty if no module is running.
+	 */
+	public List<MaryModule> getLaterModules() {
+		return laterModules;
+	}
+
 	/**
 	 * Set the input data directly, in case it is already in the form of a MaryData object.
 	 */
@@ -253,12 +378,98 @@ public class Request {
 	}
 
 	/**
-	 * Process the input data to produce the output data.
+	 * Process the input data to produce the output data. If a priority has been set, wait for admission by the
+	 * {@link RequestScheduler} first.
 	 * 
 	 * @see #getOutputData for direct access to the resulting output data
 	 * @see #writeOutputData for writing the output data to a stream
 	 */
 	public void process() throws Exception {
+		currentRequest.set(this);
+		boolean admitted = false;
+		try {
+			if (priority != null) {
+				waitForAdmission();
+				admitted = true;
+			}
+			processMeasured();
+		} catch (RequestCancelledException e) {
+			logger.info("Processing stopped: " + e.getMessage());
+			if (appendableAudioStream != null) {
+				// let a streaming writer finish with the audio produced so far
+				appendableAudioStream.doneAppending();
+			}
+			throw e;
+		} finally {
+			currentRequest.remove();
+			if (admitted) {
+				RequestScheduler.getInstance().release();
+			}
+		}
+	}
+
+	private void waitForAdmission() throws InterruptedException {
+		RequestTrace.Span span = trace.startSpan("queue", priority.toString(), -1);
+		try {
+			RequestScheduler.getInstance().admit(this, priority, estimateCost());
+		} finally {
+			trace.endSpan(span);
+		}
+	}
+
+	/**
+	 * The cost of processing this request, estimated from the length of the input text.
+	 * 
+	 * @return the number of characters of text in the input, or 1 if the input is not text.
+	 */
+	long estimateCost() {
+		String text = null;
+		if (inputData != null) {
+			if (inputData.getPlainText() != null) {
+				text = inputData.getPlainText();
+			} else if (inputData.getDocument() != null && inputData.getDocument().getDocumentElement() != null) {
+				text = inputData.getDocument().getDocumentElement().getTextContent();
+			}
+		}
+		return text != null ? Math.max(text.length(), 1) : 1;
+	}
+
+	private void processMeasured() throws Exception {
+		Metrics.requestStarted();
+		long startNanos = System.nanoTime();
+		long allocatedBefore = Metrics.getCurrentThreadAllocatedBytes();
+		boolean success = false;
+		RequestTrace.Span span = trace.startSpan("process", "process", -1);
+		try {
+			processData();
+			success = true;
+		} finally {
+			trace.endSpan(span);
+			long nanos = System.nanoTime() - startNanos;
+			long allocated = allocatedBefore >= 0 ? Metrics.getCurrentThreadAllocatedBytes() - allocatedBefore : -1;
+			Metrics.requestFinished(defaultVoice != null ? defaultVoice.getName() : null, nanos, getAudioSeconds(), allocated,
+					success);
+		}
+	}
+
+	/**
+	 * The duration of the audio output produced so far.
+	 * 
+	 * @return the duration in seconds, or 0 if the output is not audio or if its duration is not known.
+	 */
+	private double getAudioSeconds() {
+		if (appendableAudioStream == null) {
+			return 0;
+		}
+		long frames = appendableAudioStream.getFrameLength();
+		float frameRate = appendableAudioStream.getFormat().getFrameRate();
+		if (frames == AudioSystem.NOT_SPECIFIED || frameRate <= 0) {
+			return 0;
+		}
+		return frames / frameRate;
+	}
+
+	private void processData() throws Exception {
 		assert Mary.currentState() == Mary.STATE_RUNNING;
 		long startTime = System.currentTimeMillis();
 		if (inputData == null)
@@ -314,7 +525,8 @@ public class Request {
 			outputData.setAudioFileFormat(audioFileFormat);
 		}
 		int len = inputDataList.getLength();
-		for (int i = 0; i < len && !abortRequested; i++) {
+		for (int i = 0; i < len; i++) {
+			checkCancelled();
 			Element currentInputParagraph = (Element) inputDataList.item(i);
 			assert currentInputParagraph.getTagName().equals(MaryXML.PARAGRAPH);
 			NodeList outputNodeList = null;
@@ -324,7 +536,15 @@ public class Request {
 			} else { // process "real" data:
 				MaryData oneInputData = extractParagraphAsMaryData(rawmaryxml, currentInputParagraph);
 				// assert oneInputData.getDefaultVoice() != null;
-				MaryData oneOutputData = processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
+				RequestTrace.Span chunkSpan = trace.startSpan("chunk", "paragraph", i);
+				currentChunk = i;
+				MaryData oneOutputData;
+				try {
+					oneOutputData = processOrLookupOneChunk(oneInputData, outputType, outputTypeParams);
+				} finally {
+					currentChunk = -1;
+					trace.endSpan(chunkSpan);
+				}
 				// assert oneOutputData.getDefaultVoice() != null;
 				if (outputType.isMaryXML()) {
 					NodeList outParagraphList = oneOutputData.getDocument().getDocumentElement()
@@ -404,6 +624,7 @@ public class Request {
 			try {
 				String outputtext = cache.lookupText(inputtype, outputtype, localeString, voice, outputParams, defaultStyle,
 						defaultEffects, inputtext);
+				Metrics.cacheLookup("request", outputtext != null);
 				if (outputtext != null) {
 					MaryData outData = new MaryData(oneOutputType, locale);
 					ByteArrayInputStream sr = new ByteArrayInputStream(outputtext.getBytes());
@@ -421,6 +642,7 @@ public class Request {
 			try {
 				byte[] wavFileData = cache.lookupAudio(inputtype, localeString, voice, outputParams, defaultStyle,
 						defaultEffects, inputtext);
+				Metrics.cacheLookup("request", wavFileData != null);
 				if (wavFileData != null) {
 					AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wavFileData));
 					MaryData outData = new MaryData(oneOutputType, locale);
@@ -494,26 +716,28 @@ public class Request {
 	private MaryData processOneChunk(MaryData oneInputData, MaryDataType oneOutputType, String outputParams, Locale locale)
 			throws Exception, TransformerConfigurationException, FileNotFoundException, TransformerException, IOException {
 		logger.debug("Determining which modules to use");
-		List<MaryModule> neededModules = ModuleRegistry.modulesRequiredForProcessing(oneInputData.getType(), oneOutputType,
-				locale, oneInputData.getDefaultVoice());
-		// Now neededModules contains references to the needed modules,
+		ProcessingPlan plan = ModuleRegistry.getProcessingPlan(oneInputData.getType(), oneOutputType, locale,
+				oneInputData.getDefaultVoice());
+		// Now the plan contains references to the needed modules,
 		// in the order in which they are to process the data.
-		if (neededModules == null) {
+		if (plan == null) {
 			// The modules we have cannot be combined such that
 			// the outputType can be generated from the inputData type.
 			String message = "No known way of generating output (" + oneOutputType.name() + ") from input("
 					+ oneInputData.getType().name() + "), no processing path through modules.";
 			throw new UnsupportedOperationException(message);
 		}
+		List<MaryModule> neededModules = plan.getModules();
 		usedModules.addAll(neededModules);
 		logger.info("Handling request using the following modules:");
 		for (MaryModule m : neededModules) {
 			logger.info("- " + m.name() + " (" + m.getClass().getName() + ")");
 		}
 		MaryData currentData = oneInputData;
-		for (MaryModule m : neededModules) {
-			if (abortRequested)
-				break;
+		for (int step = 0; step < neededModules.size(); step++) {
+			MaryModule m = neededModules.get(step);
+			checkCancelled();
+			laterModules = neededModules.subList(step + 1, neededModules.size());
 			if (m.getState() == MaryModule.MODULE_OFFLINE) {
 				// This should happen only in command line mode:
 				assert MaryProperties.needProperty("server").compareTo("commandline") == 0;
@@ -522,6 +746,7 @@ public class Request {
 				assert m.getState() == MaryModule.MODULE_RUNNING;
 			}
 			long moduleStartTime = System.currentTimeMillis();
+			long moduleStartNanos = System.nanoTime();
 			// Let synthesis know which audio format to produce:
 			// (this isn't nice -- instead, we could add a reference
 			// to the Request to each MaryData, and look up request-specific
@@ -544,10 +769,21 @@ public class Request {
 			}
 			logger.info("Next module: " + m.name());
 			MaryData outData = null;
+			RequestTrace.Span moduleSpan = trace.startSpan("module", m.name(), currentChunk);
 			try {
 				outData = m.process(currentData);
+			} catch (RequestCancelledException e) {
+				throw e;
 			} catch (Exception e) {
+				RequestCancelledException cancelled = findCancellation(e);
+				if (cancelled != null) {
+					// a module wrapped the cancellation in an exception of its own
+					throw cancelled;
+				}
 				throw new Exception("Module " + m.name() + ": Problem processing the data.", e);
+			} finally {
+				trace.endSpan(moduleSpan);
+				laterModules = Collections.emptyList();
 			}
 
 			if (outData == null) {
@@ -558,6 +794,9 @@ public class Request {
 			outData.setDefaultEffects(defaultEffects);
 
 			currentData = outData;
+			long moduleNanos = System.nanoTime() - moduleStartNanos;
+			plan.recordStepTime(step, moduleNanos);
+			Metrics.moduleProcessed(m.name(), moduleNanos);
 			long moduleStopTime = System.currentTimeMillis();
 			long delta = moduleStopTime - moduleStartTime;
 			Long soFar = timingInfo.get(m);
@@ -834,11 +1073,14 @@ public class Request {
 			timeout *= 5;
 		}
 		timer.schedule(timerTask, timeout);
+		RequestTrace.Span span = trace.startSpan("output", "writeOutputData", -1);
 		try {
 			outputData.writeTo(os);
 		} catch (Exception e) {
 			timer.cancel();
 			throw e;
+		} finally {
+			trace.endSpan(span);
 		}
 		timer.cancel();
 	}
@@ -31,13 +31,13 @@ import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.Socket;
 
-import javax.sound.sampled.AudioSystem;
 import javax.xml.transform.TransformerException;
 
 import marytts.datatypes.MaryDataType;
 import marytts.server.http.MaryHttpServerUtils;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.StreamingAudioWriter;
 import marytts.util.io.LoggingReader;
 
 import org.apache.http.HttpResponse;
@@ -173,7 +173,7 @@ public class RequestHandler extends Thread {
 		if (ok) {
 			if (!streamingOutput) {
 				try {
-					request.writeOutputData(dataSocket.getOutputStream());
+					request.writeOutputData(request.getTrace().recordFirstByte(dataSocket.getOutputStream()));
 				} catch (Exception e) {
 					String message = "Cannot write output, client seems to have disconnected.";
 					logger.warn(message, e);
@@ -193,6 +193,7 @@ public class RequestHandler extends Thread {
 			logger.warn("Couldn't close data socket properly.", e);
 			ok = false;
 		}
+		request.getTrace().finish(ok);
 		if (ok)
 			logger.info("Request handled successfully.");
 		else
@@ -213,20 +214,23 @@ public class RequestHandler extends Thread {
 
 		public StreamingOutputWriter(Request request, OutputStream output) throws Exception {
 			this.request = request;
-			this.output = output;
+			this.output = request.getTrace().recordFirstByte(output);
 			this.setName("RW " + request.getId());
 			logger = MaryUtils.getLogger(this.getName());
 		}
 
 		public void run() {
+			RequestTrace.Span span = request.getTrace().startSpan("output", "streamAudio", -1);
 			try {
-				AudioSystem.write(request.getAudio(), request.getAudioFileFormat().getType(), output);
+				StreamingAudioWriter.write(request.getAudio(), request.getAudioFileFormat().getType(), output);
 				output.flush();
 				output.close();
 				logger.info("Finished writing output");
 			} catch (IOException ioe) {
 				logger.info("Cannot write output, client seems to have disconnected. ", ioe);
 				request.abort();
+			} finally {
+				request.getTrace().endSpan(span);
 			}
 		}
 	}
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+import marytts.exceptions.RequestCancelledException;
+
+/**
+ * Admission control for the synthesis requests of the servers: at most <code>server.synthesis.maxconcurrent</code> requests
+ * are processed at the same time, and at most <code>server.synthesis.maxqueued</code> wait for their turn; further requests are
+ * refused.
+ * <p>
+ * Waiting requests are admitted by self-clocked weighted fair queueing between the priority classes: each request is stamped
+ * with a virtual finish time, the later of the current virtual time and the finish time of the previous request of its class
+ * plus its estimated cost divided by the weight of its class, and the request with the earliest finish time is admitted first.
+ * A burst of long bulk requests thus gets its share of the processing, but does not keep short interactive requests waiting.
+ */
+public class RequestScheduler {
+	/**
+	 * The priority class of a request, selected with the PRIORITY parameter of the servers.
+	 */
+	public enum Priority {
+		INTERACTIVE, BULK;
+
+		/**
+		 * @param name
+		 *            the name of a priority class, ignoring case
+		 * @throws IllegalArgumentException
+		 *             if there is no such priority class
+		 */
+		public static Priority forName(String name) {
+			try {
+				return valueOf(name.toUpperCase(Locale.ENGLISH));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown priority '" + name + "', expected interactive or bulk");
+			}
+		}
+
+		@Override
+		public String toString() {
+			return name().toLowerCase(Locale.ENGLISH);
+		}
+	}
+
+	/**
+	 * How often a waiting request checks whether it has been cancelled, in milliseconds.
+	 */
+	private static final long POLL_MILLIS = 50;
+
+	private static RequestScheduler instance;
+
+	private final int maxConcurrent;
+	private final int maxQueued;
+	private final double[] weights;
+	// the finish time of the last request queued in each class
+	private final double[] lastFinish;
+	// the finish time of the last request admitted from each class
+	private final double[] lastAdmittedFinish;
+	private final PriorityQueue<Ticket> waiting = new PriorityQueue<Ticket>();
+	private double virtualTime = 0;
+	private long sequence = 0;
+	private int running = 0;
+
+	/**
+	 * The scheduler shared by all servers, configured with the properties <code>server.synthesis.maxconcurrent</code> (default:
+	 * the number of processors), <code>server.synthesis.maxqueued</code>, <code>server.synthesis.weight.interactive</code> and
+	 * <code>server.synthesis.weight.bulk</code>.
+	 */
+	public static synchronized RequestScheduler getInstance() {
+		if (instance == null) {
+			instance = new RequestScheduler(MaryProperties.getInteger("server.synthesis.maxconcurrent", Runtime.getRuntime()
+					.availableProcessors()), MaryProperties.getInteger("server.synthesis.maxqueued", 100),
+					MaryProperties.getInteger("server.synthesis.weight.interactive", 10), MaryProperties.getInteger(
+							"server.synthesis.weight.bulk", 1));
+		}
+		return instance;
+	}
+
+	RequestScheduler(int maxConcurrent, int maxQueued, int interactiveWeight, int bulkWeight) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("Need to process at least one request at a time, got " + maxConcurrent);
+		}
+		if (interactiveWeight < 1 || bulkWeight < 1) {
+			throw new IllegalArgumentException("Weights must be positive, got " + interactiveWeight + " and " + bulkWeight);
+		}
+		this.maxConcurrent = maxConcurrent;
+		this.maxQueued = Math.max(maxQueued, 0);
+		this.weights = new double[Priority.values().length];
+		weights[Priority.INTERACTIVE.ordinal()] = interactiveWeight;
+		weights[Priority.BULK.ordinal()] = bulkWeight;
+		this.lastFinish = new double[weights.length];
+		this.lastAdmittedFinish = new double[weights.length];
+	}
+
+	/**
+	 * Wait until the request may be processed. Every successful call must be followed by {@link #release()} when the
+	 * processing is over.
+	 * 
+	 * @param request
+	 *            the request to admit, checked for cancellation while it is waiting; or null
+	 * @param priority
+	 *            the priority class of the request
+	 * @param cost
+	 *            the estimated cost of processing the request, e.g. the length of its input
+	 * @throws RequestCancelledException
+	 *             if too many requests are waiting already, or if the request is cancelled while it is waiting.
+	 * @throws InterruptedException
+	 */
+	public void admit(Request request, Priority priority, long cost) throws InterruptedException {
+		long startNanos = System.nanoTime();
+		synchronized (this) {
+			if (running >= maxConcurrent && waiting.size() >= maxQueued) {
+				Metrics.requestRejected();
+				throw new RequestCancelledException("Server is busy: " + running + " requests are being processed and "
+						+ waiting.size() + " are waiting");
+			}
+			int priorityClass = priority.ordinal();
+			double finish = Math.max(virtualTime, lastFinish[priorityClass]) + Math.max(cost, 1) / weights[priorityClass];
+			lastFinish[priorityClass] = finish;
+			Ticket ticket = new Ticket(priorityClass, finish, sequence++);
+			waiting.add(ticket);
+			Metrics.requestQueued();
+			boolean admitted = false;
+			try {
+				while (running >= maxConcurrent || waiting.peek() != ticket) {
+					if (request != null) {
+						request.checkCancelled();
+					}
+					wait(POLL_MILLIS);
+				}
+				running++;
+				virtualTime = finish;
+				lastAdmittedFinish[priorityClass] = finish;
+				admitted = true;
+			} finally {
+				waiting.remove(ticket);
+				if (!admitted) {
+					// a request which is not processed after all must not delay those queued after it
+					lastFinish[priorityClass] = getLastFinish(priorityClass);
+				}
+				Metrics.requestDequeued();
+				// the next request may be admitted now, or may be the first in the queue
+				notifyAll();
+			}
+		}
+		Metrics.requestAdmitted(priority.toString(), System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * The finish time of the last request of the given class which is waiting or has been admitted.
+	 */
+	private double getLastFinish(int priorityClass) {
+		double last = lastAdmittedFinish[priorityClass];
+		for (Ticket ticket : waiting) {
+			if (ticket.priorityClass == priorityClass) {
+				last = Math.max(last, ticket.finish);
+			}
+		}
+		return last;
+	}
+
+	/**
+	 * Give the place of an admitted request to the next waiting one.
+	 */
+	public synchronized void release() {
+		running--;
+		notifyAll();
+	}
+
+	/**
+	 * The number of requests which may be processed at the same time.
+	 */
+	int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * The number of requests currently admitted.
+	 */
+	public synchronized int getRunning() {
+		return running;
+	}
+
+	/**
+	 * The number of requests currently waiting to be admitted.
+	 */
+	public synchronized int getWaiting() {
+		return waiting.size();
+	}
+
+	private static class Ticket implements Comparable<Ticket> {
+		private final int priorityClass;
+		private final double finish;
+		private final long sequence;
+
+		private Ticket(int priorityClass, double finish, long sequence) {
+			this.priorityClass = priorityClass;
+			this.finish = finish;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Ticket other) {
+			if (finish != other.finish) {
+				return finish < other.finish ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+		}
+	}
+}
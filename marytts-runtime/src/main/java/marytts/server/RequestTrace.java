@@ -0,0 +1,236 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import marytts.util.MaryUtils;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The timing of the phases of one request: processing, the paragraph chunks, the modules processing each chunk and the writing of
+ * the output, plus the time when the first byte of output has been written to the client.
+ * <p>
+ * When the request has been handled, the trace is written as one line of JSON to the "trace" logger, and kept in a small buffer
+ * of recent traces which the http server provides via its <code>traces</code> request. The JSON looks like:
+ * 
+ * <pre>
+ * {"trace":"6f1c...","request":12,"start":1700000000000,"success":true,"total_ms":412.5,"first_byte_ms":95.1,
+ *  "spans":[{"type":"module","name":"JTokeniser","chunk":0,"start_ms":1.2,"end_ms":3.4}, ...]}
+ * </pre>
+ * 
+ * Times are in milliseconds since the creation of the request; chunk is the index of the paragraph, or -1 if the module did not
+ * process a single paragraph.
+ */
+public class RequestTrace {
+	/**
+	 * The number of finished traces kept for the <code>traces</code> request.
+	 */
+	static final int MAX_RECENT_TRACES = 100;
+
+	private static final Deque<RequestTrace> recentTraces = new ArrayDeque<RequestTrace>();
+	private static final Logger logger = MaryUtils.getLogger("trace");
+
+	private final String traceId;
+	private final int requestId;
+	private final long startMillis;
+	private final long startNanos;
+	// guarded by this:
+	private final List<Span> spans = new ArrayList<Span>();
+	private long firstByteNanos = -1;
+	private long endNanos = -1;
+	private boolean success;
+
+	public RequestTrace(int requestId) {
+		this.traceId = String.format("%016x", ThreadLocalRandom.current().nextLong());
+		this.requestId = requestId;
+		this.startMillis = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	/**
+	 * Start timing a phase; the phase is only recorded when {@link #endSpan(Span)} is called.
+	 * 
+	 * @param type
+	 *            queue, process, chunk, module or output
+	 * @param name
+	 *            e.g. the module name
+	 * @param chunk
+	 *            the index of the paragraph, or -1
+	 */
+	public Span startSpan(String type, String name, int chunk) {
+		return new Span(type, name, chunk, System.nanoTime());
+	}
+
+	public void endSpan(Span span) {
+		span.endNanos = System.nanoTime();
+		synchronized (this) {
+			spans.add(span);
+		}
+	}
+
+	/**
+	 * Record that the first byte of output has been written to the client; later calls are ignored.
+	 */
+	public synchronized void firstByte() {
+		if (firstByteNanos < 0) {
+			firstByteNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Wrap the stream to the client so that the first write is recorded as the time of the first byte.
+	 */
+	public OutputStream recordFirstByte(OutputStream out) {
+		return new FilterOutputStream(out) {
+			private boolean written;
+
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				recordWrite();
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				if (len > 0) {
+					recordWrite();
+				}
+			}
+
+			private void recordWrite() {
+				if (!written) {
+					written = true;
+					firstByte();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Record that the request has been handled, log the trace and keep it for the <code>traces</code> request. Only the first call
+	 * has an effect.
+	 * 
+	 * @param success
+	 *            whether the output has been sent successfully
+	 */
+	public void finish(boolean success) {
+		synchronized (this) {
+			if (endNanos >= 0) {
+				return;
+			}
+			endNanos = System.nanoTime();
+			this.success = success;
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info(toJson());
+		}
+		synchronized (recentTraces) {
+			if (recentTraces.size() == MAX_RECENT_TRACES) {
+				recentTraces.removeFirst();
+			}
+			recentTraces.addLast(this);
+		}
+	}
+
+	/**
+	 * The most recently finished traces, oldest first.
+	 */
+	public static List<RequestTrace> getRecentTraces() {
+		synchronized (recentTraces) {
+			return new ArrayList<RequestTrace>(recentTraces);
+		}
+	}
+
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"trace\":\"").append(traceId).append("\",\"request\":").append(requestId);
+		json.append(",\"start\":").append(startMillis);
+		if (endNanos >= 0) {
+			json.append(",\"success\":").append(success);
+			json.append(",\"total_ms\":").append(toMillis(endNanos));
+		}
+		if (firstByteNanos >= 0) {
+			json.append(",\"first_byte_ms\":").append(toMillis(firstByteNanos));
+		}
+		json.append(",\"spans\":[");
+		for (int i = 0; i < spans.size(); i++) {
+			Span span = spans.get(i);
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"type\":\"").append(span.type).append("\",\"name\":\"");
+			appendEscaped(json, span.name);
+			json.append("\",\"chunk\":").append(span.chunk);
+			json.append(",\"start_ms\":").append(toMillis(span.startNanos));
+			json.append(",\"end_ms\":").append(toMillis(span.endNanos)).append('}');
+		}
+		json.append("]}");
+		return json.toString();
+	}
+
+	private String toMillis(long nanos) {
+		return String.valueOf((nanos - startNanos) / 1000 / 1000.);
+	}
+
+	private static void appendEscaped(StringBuilder json, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+	}
+
+	/**
+	 * A timed phase of a request.
+	 */
+	public static class Span {
+		private final String type;
+		private final String name;
+		private final int chunk;
+		private final long startNanos;
+		private long endNanos;
+
+		private Span(String type, String name, int chunk, long startNanos) {
+			this.type = type;
+			this.name = name;
+			this.chunk = chunk;
+			this.startNanos = startNanos;
+		}
+	}
+}
@@ -26,10 +26,11 @@ import java.io.OutputStream;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
 
 import marytts.server.Request;
+import marytts.server.RequestTrace;
 import marytts.util.MaryUtils;
+import marytts.util.data.audio.StreamingAudioWriter;
 
 import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.nio.ContentEncoder;
@@ -51,22 +52,40 @@ public class AudioStreamNHttpEntity extends AbstractHttpEntity implements Produc
 	private Logger logger;
 	private Object mutex;
 	private SharedOutputBuffer out;
+	// whether all the audio has been written, and whether the connection has been closed before
+	private volatile boolean written = false;
+	private boolean closed = false;
 
 	public AudioStreamNHttpEntity(Request maryRequest) {
 		this.maryRequest = maryRequest;
 		this.audio = maryRequest.getAudio();
 		this.audioType = maryRequest.getAudioFileFormat().getType();
-		setContentType(MaryHttpServerUtils.getMimeType(audioType));
+		setContentType(MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat()));
 		this.mutex = new Object();
 	}
 
+	/**
+	 * Called when the response is complete or the connection is closed. In the latter case, the request is aborted, as nobody is
+	 * listening any more.
+	 */
 	public void finish() {
-		assert logger != null : "we should never be able to write if run() is not called";
-		logger.info("Completed sending streaming audio");
-		maryRequest = null;
-		audio = null;
-		audioType = null;
-		logger = null;
+		synchronized (mutex) {
+			if (written) {
+				logger.info("Completed sending streaming audio");
+			} else if (maryRequest != null) {
+				maryRequest.abort();
+				closed = true;
+				if (out != null) {
+					// let the writer stop waiting for the buffer to be sent
+					out.shutdown();
+				}
+				mutex.notify();
+			}
+			maryRequest = null;
+			audio = null;
+			audioType = null;
+			logger = null;
+		}
 	}
 
 	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
@@ -104,26 +123,53 @@ public class AudioStreamNHttpEntity extends AbstractHttpEntity implements Produc
 	 * Wait for the SharedOutputBuffer to become available, write audio data to it.
 	 */
 	public void run() {
-		this.logger = MaryUtils.getLogger(Thread.currentThread().getName());
-		// We must wait until produceContent() is called:
-		while (out == null) {
-			synchronized (mutex) {
+		Logger logger = MaryUtils.getLogger(Thread.currentThread().getName());
+		Request request;
+		AudioInputStream audio;
+		AudioFileFormat.Type audioType;
+		boolean started;
+		synchronized (mutex) {
+			this.logger = logger;
+			// finish() may be called as soon as the stream is closed
+			request = maryRequest;
+			audio = this.audio;
+			audioType = this.audioType;
+			// We must wait until produceContent() is called:
+			while (out == null && !closed) {
 				try {
 					mutex.wait();
 				} catch (InterruptedException e) {
 				}
 			}
+			started = out != null;
+		}
+		if (request == null || !started) {
+			logger.info("Connection closed before any output was sent.");
+			if (request != null) {
+				request.getTrace().finish(false);
+			}
+			return;
 		}
-		assert out != null;
-		ContentOutputStream outStream = new ContentOutputStream(out);
+		RequestTrace trace = request.getTrace();
+		OutputStream outStream = trace.recordFirstByte(new ContentOutputStream(out));
+		RequestTrace.Span span = trace.startSpan("output", "streamAudio", -1);
+		boolean success = false;
 		try {
-			AudioSystem.write(audio, audioType, outStream);
+			StreamingAudioWriter.write(audio, audioType, outStream);
+			written = true;
 			outStream.flush();
 			outStream.close();
+			success = true;
 			logger.info("Finished writing output");
 		} catch (IOException ioe) {
 			logger.info("Cannot write output, client seems to have disconnected. ", ioe);
-			maryRequest.abort();
+			request.abort();
+		} catch (IllegalStateException ise) {
+			// the buffer has been shut down by finish()
+			logger.info("Cannot write output, client has disconnected.");
+		} finally {
+			trace.endSpan(span);
+			trace.finish(success);
 		}
 	}
 }
@@ -0,0 +1,545 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import marytts.server.MaryProperties;
+import marytts.server.Metrics;
+import marytts.server.Request;
+import marytts.server.RequestScheduler;
+import marytts.server.RequestTrace;
+import marytts.util.MaryUtils;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentOutputStream;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SharedOutputBuffer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Processes batch synthesis requests, i.e. many inputs which are synthesised with the same parameters.
+ * <p>
+ * The parameters are given in the query string of a POST request, as for <code>process</code> requests but without INPUT_TEXT;
+ * streaming audio types are sent as the corresponding file types. The body of the request contains the inputs as JSON lines, i.e.
+ * one JSON object per line with the input in "text" and an optional "id", e.g.
+ * <p>
+ * <code>{"id": "prompt001", "text": "Welcome to the world of speech synthesis!"}</code>
+ * <p>
+ * If an input has no id, the number of its line is used.
+ * <p>
+ * The inputs are synthesised concurrently on a pool of <code>server.http.batchthreads</code> threads which is shared by all batch
+ * requests; each input waits for admission by the {@link RequestScheduler} with the bulk priority, unless the request asks for
+ * another one with PRIORITY. The results are streamed back as a multipart/mixed response in the order in which they are
+ * completed; each part has the id of its input as Content-ID and a Content-Length. If an input cannot be processed, its part has
+ * the Content-Description "error" and contains the error message as plain text.
+ */
+public class BatchSynthesisRequestHandler extends SynthesisRequestHandler {
+	private final ExecutorService pool;
+	/**
+	 * The maximum number of inputs of one batch which are queued or in processing at any time, so that the results waiting to be
+	 * written do not pile up in memory when the client is slow, and so that concurrent batches share the pool.
+	 */
+	private final int window;
+
+	public BatchSynthesisRequestHandler() {
+		super();
+		int numThreads = MaryProperties.getInteger("server.http.batchthreads", Runtime.getRuntime().availableProcessors());
+		pool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "BatchSynthesis " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		window = 2 * numThreads;
+	}
+
+	@Override
+	protected RequestScheduler.Priority getDefaultPriority() {
+		return RequestScheduler.Priority.BULK;
+	}
+
+	@Override
+	public void handle(final HttpRequest request, final HttpResponse response, final HttpContext context) throws HttpException,
+			IOException {
+		try {
+			String method = request.getRequestLine().getMethod().toUpperCase(Locale.ENGLISH);
+			if (!method.equals("POST") || !(request instanceof HttpEntityEnclosingRequest)) {
+				throw new MethodNotSupportedException(method + " method not supported");
+			}
+			String uri = request.getRequestLine().getUri();
+			int q = uri.indexOf('?');
+			Map<String, String> queryItems = null;
+			if (q != -1 && q < uri.length() - 1) {
+				queryItems = MaryHttpServerUtils.toKeyValuePairs(uri.substring(q + 1), true);
+			}
+			String body = EntityUtils.toString(((HttpEntityEnclosingRequest) request).getEntity(), "UTF-8");
+			process(queryItems, body, response);
+		} catch (RuntimeException re) {
+			logger.warn("runtime exception in handle():", re);
+		}
+	}
+
+	private void process(Map<String, String> queryItems, String body, HttpResponse response) {
+		RequestParameters parameters = parseRequestParameters(queryItems, response);
+		if (parameters == null) {
+			return;
+		}
+		// each part is sent as a whole
+		parameters.streamingAudio = false;
+
+		List<BatchItem> items;
+		try {
+			items = parseItems(body);
+		} catch (IllegalArgumentException e) {
+			MaryHttpServerUtils.errorBadRequest(response, "Cannot read batch inputs: " + e.getMessage());
+			return;
+		}
+		logger.info("Batch request with " + items.size() + " inputs");
+
+		BatchNHttpEntity entity = new BatchNHttpEntity(parameters, items);
+		new Thread(entity, "BatchWriter " + getId()).start();
+		response.setEntity(entity);
+		response.setStatusCode(HttpStatus.SC_OK);
+	}
+
+	/**
+	 * Synthesise one input of a batch. Errors are recorded in the item.
+	 */
+	private BatchItem synthesise(Request maryRequest, BatchItem item) {
+		item.trace = maryRequest.getTrace();
+		try {
+			maryRequest.setInputData(item.text);
+			maryRequest.process();
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			maryRequest.writeOutputData(outputStream);
+			item.contentType = getContentType(maryRequest);
+			item.output = outputStream.toByteArray();
+		} catch (Throwable e) {
+			logger.warn("Processing failed for batch input " + item.id, e);
+			item.error = MaryUtils.getFirstMeaningfulMessage(e);
+			if (item.error == null) {
+				item.error = e.toString();
+			}
+		} finally {
+			item.request = null;
+		}
+		return item;
+	}
+
+	/**
+	 * One input of a batch and, once it has been processed, its output or error message.
+	 */
+	static class BatchItem {
+		final String id;
+		final String text;
+		RequestTrace trace;
+		// the request while the input is being processed
+		volatile Request request;
+		String contentType;
+		byte[] output;
+		String error;
+
+		BatchItem(String id, String text) {
+			this.id = id;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Read the inputs of a batch from JSON lines; empty lines are ignored.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a line is not a JSON object with a "text" string, or if an id is not suitable for a Content-ID header.
+	 */
+	static List<BatchItem> parseItems(String body) {
+		List<BatchItem> items = new ArrayList<BatchItem>();
+		String[] lines = body.split("\r?\n");
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].trim().length() == 0) {
+				continue;
+			}
+			String lineNumber = String.valueOf(i + 1);
+			Map<String, String> fields;
+			try {
+				fields = new JsonLineParser(lines[i]).parseObject();
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage());
+			}
+			String text = fields.get("text");
+			if (text == null) {
+				throw new IllegalArgumentException("line " + lineNumber + ": no text");
+			}
+			String id = fields.containsKey("id") ? fields.get("id") : lineNumber;
+			if (id == null || id.length() == 0 || !id.matches("[^<>\\p{Cntrl}]+")) {
+				throw new IllegalArgumentException("line " + lineNumber + ": invalid id '" + id + "'");
+			}
+			items.add(new BatchItem(id, text));
+		}
+		if (items.isEmpty()) {
+			throw new IllegalArgumentException("no inputs");
+		}
+		return items;
+	}
+
+	/**
+	 * Write the part of the multipart response for a processed item.
+	 */
+	static void writePart(OutputStream out, String boundary, BatchItem item) throws IOException {
+		byte[] data;
+		StringBuilder headers = new StringBuilder();
+		headers.append("--").append(boundary).append("\r\n");
+		headers.append("Content-ID: <").append(item.id).append(">\r\n");
+		if (item.error == null) {
+			headers.append("Content-Type: ").append(item.contentType).append("\r\n");
+			data = item.output;
+		} else {
+			headers.append("Content-Type: text/plain; charset=UTF-8\r\n");
+			headers.append("Content-Description: error\r\n");
+			data = item.error.getBytes("UTF-8");
+		}
+		headers.append("Content-Length: ").append(data.length).append("\r\n\r\n");
+		out.write(headers.toString().getBytes("UTF-8"));
+		out.write(data);
+		out.write("\r\n".getBytes("US-ASCII"));
+	}
+
+	/**
+	 * Write the end of the multipart response.
+	 */
+	static void writeEnd(OutputStream out, String boundary) throws IOException {
+		out.write(("--" + boundary + "--\r\n").getBytes("US-ASCII"));
+	}
+
+	/**
+	 * A minimal parser for the flat JSON objects of the batch inputs: the values must be strings, numbers, booleans or null, and
+	 * are returned as strings.
+	 */
+	private static class JsonLineParser {
+		private final String json;
+		private int pos;
+
+		JsonLineParser(String json) {
+			this.json = json;
+		}
+
+		Map<String, String> parseObject() {
+			Map<String, String> fields = new HashMap<String, String>();
+			expect('{');
+			if (peek() == '}') {
+				pos++;
+			} else {
+				while (true) {
+					skipWhitespace();
+					String key = parseString();
+					expect(':');
+					fields.put(key, parseValue());
+					char c = peek();
+					pos++;
+					if (c == '}') {
+						break;
+					} else if (c != ',') {
+						throw new IllegalArgumentException("expected ',' or '}' at position " + pos);
+					}
+				}
+			}
+			skipWhitespace();
+			if (pos < json.length()) {
+				throw new IllegalArgumentException("unexpected characters after the object at position " + (pos + 1));
+			}
+			return fields;
+		}
+
+		private String parseValue() {
+			if (peek() == '"') {
+				return parseString();
+			}
+			int start = pos;
+			while (pos < json.length() && ",}".indexOf(json.charAt(pos)) == -1 && !Character.isWhitespace(json.charAt(pos))) {
+				pos++;
+			}
+			String token = json.substring(start, pos);
+			if (token.equals("null")) {
+				return null;
+			} else if (token.equals("true") || token.equals("false") || token.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+				return token;
+			}
+			throw new IllegalArgumentException("unsupported value '" + token + "' at position " + (start + 1));
+		}
+
+		private String parseString() {
+			if (pos >= json.length() || json.charAt(pos) != '"') {
+				throw new IllegalArgumentException("expected '\"' at position " + (pos + 1));
+			}
+			pos++;
+			StringBuilder value = new StringBuilder();
+			while (pos < json.length()) {
+				char c = json.charAt(pos++);
+				if (c == '"') {
+					return value.toString();
+				} else if (c != '\\') {
+					value.append(c);
+				} else if (pos < json.length()) {
+					char escaped = json.charAt(pos++);
+					switch (escaped) {
+					case 'b':
+						value.append('\b');
+						break;
+					case 'f':
+						value.append('\f');
+						break;
+					case 'n':
+						value.append('\n');
+						break;
+					case 'r':
+						value.append('\r');
+						break;
+					case 't':
+						value.append('\t');
+						break;
+					case 'u':
+						if (pos + 4 > json.length()) {
+							throw new IllegalArgumentException("incomplete unicode escape at position " + (pos - 1));
+						}
+						try {
+							value.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+						} catch (NumberFormatException e) {
+							throw new IllegalArgumentException("invalid unicode escape at position " + (pos - 1));
+						}
+						pos += 4;
+						break;
+					default:
+						value.append(escaped);
+					}
+				}
+			}
+			throw new IllegalArgumentException("unterminated string");
+		}
+
+		/**
+		 * Skip whitespace and return the next character, which must exist.
+		 */
+		private char peek() {
+			skipWhitespace();
+			if (pos >= json.length()) {
+				throw new IllegalArgumentException("unexpected end of line");
+			}
+			return json.charAt(pos);
+		}
+
+		private void expect(char c) {
+			if (peek() != c) {
+				throw new IllegalArgumentException("expected '" + c + "' at position " + (pos + 1));
+			}
+			pos++;
+		}
+
+		private void skipWhitespace() {
+			while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+				pos++;
+			}
+		}
+	}
+
+	/**
+	 * The multipart response of a batch request. It is written by its own thread, which submits the inputs to the pool and writes
+	 * each result as soon as it is available.
+	 */
+	class BatchNHttpEntity extends AbstractHttpEntity implements ProducingNHttpEntity, Runnable {
+		private final RequestParameters parameters;
+		private final List<BatchItem> items;
+		private final String boundary;
+		private final Object mutex = new Object();
+		private SharedOutputBuffer out;
+		// whether all the results have been written, and whether the connection has been closed before
+		private volatile boolean written = false;
+		private volatile boolean closed = false;
+
+		BatchNHttpEntity(RequestParameters parameters, List<BatchItem> items) {
+			this.parameters = parameters;
+			this.items = items;
+			this.boundary = "MaryBatch-" + UUID.randomUUID();
+			setContentType("multipart/mixed; boundary=" + boundary);
+		}
+
+		public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+			if (out == null) {
+				synchronized (mutex) {
+					out = new SharedOutputBuffer(8192, ioctrl, new HeapByteBufferAllocator());
+					mutex.notify();
+				}
+			}
+			while (!encoder.isCompleted())
+				out.produceContent(encoder);
+		}
+
+		/**
+		 * Called when the response is complete or the connection is closed. In the latter case, no more inputs are submitted and
+		 * the inputs being processed are aborted, as nobody is listening any more.
+		 */
+		public void finish() {
+			if (written) {
+				return;
+			}
+			synchronized (mutex) {
+				closed = true;
+				if (out != null) {
+					// let the writer stop waiting for the buffer to be sent
+					out.shutdown();
+				}
+				mutex.notify();
+			}
+			for (BatchItem item : items) {
+				Request request = item.request;
+				if (request != null) {
+					request.abort();
+				}
+			}
+		}
+
+		public long getContentLength() {
+			return -1;
+		}
+
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		public boolean isStreaming() {
+			return true;
+		}
+
+		public InputStream getContent() {
+			return null;
+		}
+
+		public void writeTo(final OutputStream outstream) throws IOException {
+			throw new RuntimeException("Should not be called");
+		}
+
+		/**
+		 * Wait for the SharedOutputBuffer to become available, then synthesise the inputs and write the results to it.
+		 */
+		public void run() {
+			Logger logger = MaryUtils.getLogger(Thread.currentThread().getName());
+			// We must wait until produceContent() is called:
+			synchronized (mutex) {
+				while (out == null && !closed) {
+					try {
+						mutex.wait();
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+			if (closed) {
+				logger.info("Connection closed before any output was sent.");
+				return;
+			}
+			ContentOutputStream outStream = new ContentOutputStream(out);
+			CompletionService<BatchItem> completionService = new ExecutorCompletionService<BatchItem>(pool);
+			int numSubmitted = 0;
+			int numFailed = 0;
+			long startTime = System.currentTimeMillis();
+			try {
+				for (int numWritten = 0; numWritten < items.size(); numWritten++) {
+					if (closed) {
+						// the inputs which have been submitted stop at their next cancellation check
+						logger.info("Client has disconnected after " + numWritten + " of " + items.size() + " batch results");
+						return;
+					}
+					while (numSubmitted < items.size() && numSubmitted - numWritten < window) {
+						final BatchItem item = items.get(numSubmitted++);
+						Metrics.requestQueued();
+						completionService.submit(new Callable<BatchItem>() {
+							public BatchItem call() {
+								Metrics.requestDequeued();
+								Request maryRequest = parameters.createRequest(getId());
+								item.request = maryRequest;
+								// finish() sets closed before it aborts the requests of the items
+								if (closed) {
+									maryRequest.abort();
+								}
+								return synthesise(maryRequest, item);
+							}
+						});
+					}
+					BatchItem item = completionService.take().get();
+					if (item.error != null) {
+						numFailed++;
+					}
+					item.trace.firstByte();
+					writePart(outStream, boundary, item);
+					outStream.flush();
+					item.trace.finish(item.error == null);
+					// the output can be garbage collected even if the client is slow to read the rest
+					item.output = null;
+				}
+				writeEnd(outStream, boundary);
+				outStream.flush();
+				outStream.close();
+				written = true;
+				logger.info("Finished writing " + items.size() + " batch results (" + numFailed + " failed) in "
+						+ (System.currentTimeMillis() - startTime) + " ms");
+			} catch (IOException ioe) {
+				logger.info("Cannot write output, client seems to have disconnected. ", ioe);
+				finish();
+			} catch (IllegalStateException ise) {
+				// the buffer has been shut down by finish()
+				logger.info("Cannot write output, client has disconnected.");
+			} catch (InterruptedException e) {
+				logger.warn("Interrupted while writing batch results", e);
+			} catch (ExecutionException e) {
+				// cannot happen, as synthesise() records all errors in the items
+				logger.warn("Unexpected error in batch synthesis", e.getCause());
+			}
+		}
+	}
+}
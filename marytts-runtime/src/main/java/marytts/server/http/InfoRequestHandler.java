@@ -19,52 +19,140 @@
  */
 package marytts.server.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
 
 import marytts.features.FeatureProcessorManager;
 import marytts.features.FeatureRegistry;
 import marytts.modules.synthesis.Voice;
+import marytts.server.Mary;
 import marytts.util.MaryRuntimeUtils;
 import marytts.util.MaryUtils;
 import marytts.util.http.Address;
 
+import org.apache.http.Header;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.protocol.HttpContext;
+
+import com.twmacinta.util.MD5;
 
 /**
  * Processor class for information http requests to Mary server
+ * <p>
+ * The responses only change when voices are registered or unregistered, so that they are computed once and then served from
+ * a snapshot for as long as the voices stay the same. Each response carries an ETag derived from its content, so that
+ * clients polling with <code>If-None-Match</code> get a "304 Not Modified" without a body, and is sent gzip-compressed to
+ * clients accepting that.
  * 
  * @author Oytun T&uuml;rk, Marc Schr&ouml;der
  */
 public class InfoRequestHandler extends BaseHttpRequestHandler {
 
+	/**
+	 * Upper bound on the number of responses in a snapshot, as query parameters come from the client.
+	 */
+	static final int MAX_RESPONSES = 1000;
+
+	/**
+	 * The responses computed so far, replaced when the voices change.
+	 */
+	private volatile Snapshot snapshot = new Snapshot(-1);
+
 	public InfoRequestHandler() {
 		super();
 	}
 
+	@Override
+	public void handle(final HttpRequest request, final HttpResponse response, final HttpContext context) throws HttpException,
+			IOException {
+		super.handle(request, response, context);
+		if (!(response.getEntity() instanceof InfoEntity)) {
+			return;
+		}
+		InfoResponse info = ((InfoEntity) response.getEntity()).info;
+		boolean gzip = info.gzipped != null && acceptsGzip(request);
+		response.setHeader("Vary", "Accept-Encoding");
+		response.setHeader("ETag", gzip ? info.gzipETag : info.etag);
+		if (info.matches(request.getHeaders("If-None-Match"))) {
+			response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+			response.setEntity(null);
+		} else if (gzip) {
+			response.setHeader("Content-Encoding", "gzip");
+			response.setEntity(new InfoEntity(info, true));
+		}
+	}
+
 	@Override
 	protected void handleClientRequest(String absPath, Map<String, String> queryItems, HttpResponse response,
 			Address serverAddressAtClient) throws IOException {
 		// Individual info request
-		String infoResponse = handleInfoRequest(absPath, queryItems, response);
-		if (infoResponse == null) { // error condition, handleInfoRequest has set an error message
+		InfoResponse info = getInfoResponse(absPath, queryItems, response);
+		if (info == null) { // error condition, handleInfoRequest has set an error message
 			return;
 		}
 
 		response.setStatusCode(HttpStatus.SC_OK);
-		try {
-			NStringEntity entity = new NStringEntity(infoResponse, "UTF-8");
-			entity.setContentType("text/plain; charset=UTF-8");
-			response.setEntity(entity);
-		} catch (UnsupportedEncodingException e) {
+		response.setEntity(new InfoEntity(info, false));
+	}
+
+	/**
+	 * Get the response from the current snapshot, or compute it.
+	 * 
+	 * @return the response, or null if an error was set in the http response.
+	 */
+	private InfoResponse getInfoResponse(String absPath, Map<String, String> queryItems, HttpResponse response)
+			throws IOException {
+		Snapshot current = snapshot;
+		int registrationCount = Voice.getRegistrationCount();
+		if (current.registrationCount != registrationCount) {
+			current = new Snapshot(registrationCount);
+			snapshot = current;
+		}
+		String key = queryItems == null ? absPath : absPath + new TreeMap<String, String>(queryItems);
+		InfoResponse info = current.responses.get(key);
+		if (info != null) {
+			return info;
+		}
+		String infoResponse = handleInfoRequest(absPath, queryItems, response);
+		if (infoResponse == null) {
+			return null;
+		}
+		info = new InfoResponse(infoResponse);
+		if (mayKeepResponses() && current.responses.size() < MAX_RESPONSES) {
+			current.responses.putIfAbsent(key, info);
+		}
+		return info;
+	}
+
+	/**
+	 * Responses are only kept while the server is running, as the modules are still being registered while it starts.
+	 */
+	boolean mayKeepResponses() {
+		return Mary.currentState() == Mary.STATE_RUNNING;
+	}
+
+	private static boolean acceptsGzip(HttpRequest request) {
+		for (Header header : request.getHeaders("Accept-Encoding")) {
+			for (String coding : header.getValue().split(",")) {
+				String[] codingAndParams = coding.trim().split(";");
+				if (codingAndParams[0].trim().equalsIgnoreCase("gzip")) {
+					return codingAndParams.length == 1 || !codingAndParams[1].replace(" ", "").matches("q=0(\\.0*)?");
+				}
+			}
 		}
+		return false;
 	}
 
-	private String handleInfoRequest(String absPath, Map<String, String> queryItems, HttpResponse response) {
+	String handleInfoRequest(String absPath, Map<String, String> queryItems, HttpResponse response) {
 		logger.debug("New info request: " + absPath);
 		if (queryItems != null) {
 			for (String key : queryItems.keySet()) {
@@ -213,4 +301,76 @@ public class InfoRequestHandler extends BaseHttpRequestHandler {
 		return null;
 	}
 
+	/**
+	 * The responses computed for one state of the registered voices.
+	 */
+	private static class Snapshot {
+		final int registrationCount;
+		final ConcurrentHashMap<String, InfoResponse> responses = new ConcurrentHashMap<String, InfoResponse>();
+
+		Snapshot(int registrationCount) {
+			this.registrationCount = registrationCount;
+		}
+	}
+
+	/**
+	 * An info response with its ETag, and its gzip-compressed form if that is smaller.
+	 */
+	static class InfoResponse {
+		final byte[] body;
+		final String etag;
+		final byte[] gzipped;
+		final String gzipETag;
+
+		InfoResponse(String text) throws IOException {
+			body = text.getBytes("UTF-8");
+			MD5 md5 = new MD5();
+			md5.Update(body);
+			String hash = md5.asHex();
+			etag = "\"" + hash + "\"";
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			GZIPOutputStream gzipStream = new GZIPOutputStream(compressed);
+			gzipStream.write(body);
+			gzipStream.close();
+			if (compressed.size() < body.length) {
+				gzipped = compressed.toByteArray();
+				gzipETag = "\"" + hash + "-gzip\"";
+			} else {
+				gzipped = null;
+				gzipETag = null;
+			}
+		}
+
+		/**
+		 * Whether one of the given If-None-Match headers lists the ETag of this response, in either encoding.
+		 */
+		boolean matches(Header[] ifNoneMatch) {
+			for (Header header : ifNoneMatch) {
+				for (String tag : header.getValue().split(",")) {
+					tag = tag.trim();
+					if (tag.startsWith("W/")) {
+						tag = tag.substring(2);
+					}
+					if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipETag)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The entity of an info response, so that {@link InfoRequestHandler#handle(HttpRequest, HttpResponse, HttpContext)} can
+	 * find the response to add its ETag and encoding.
+	 */
+	private static class InfoEntity extends NByteArrayEntity {
+		final InfoResponse info;
+
+		InfoEntity(InfoResponse info, boolean gzipped) {
+			super(gzipped ? info.gzipped : info.body);
+			this.info = info;
+			setContentType("text/plain; charset=UTF-8");
+		}
+	}
 }
@@ -22,6 +22,10 @@ package marytts.server.http;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import marytts.server.MaryProperties;
 import marytts.util.MaryUtils;
@@ -32,8 +36,10 @@ import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
 import org.apache.http.nio.NHttpConnection;
-import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
 import org.apache.http.nio.protocol.EventListener;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.ListeningIOReactor;
 import org.apache.http.params.BasicHttpParams;
@@ -42,7 +48,6 @@ import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpProcessor;
 import org.apache.http.protocol.ExecutionContext;
-import org.apache.http.protocol.HttpRequestHandlerRegistry;
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
@@ -93,7 +98,13 @@ import org.apache.log4j.Logger;
  * <li><code>vocalizations?voice=dfki-poppy</code> requests the list of vocalization names that are available with the given
  * voice;
  * <li><code>styles?voice=dfki-pavoque-styles</code> requests the list of style names that are available with the given voice;
- * <li><code>process</code> requests the synthesis of some text (see below).</li>
+ * <li><code>process</code> requests the synthesis of some text (see below);</li>
+ * <li><code>process-batch</code> requests the synthesis of many inputs with the same parameters (see
+ * {@link BatchSynthesisRequestHandler});</li>
+ * <li><code>metrics</code> requests the request counts, latencies, cache lookups and memory use of the server in the Prometheus
+ * text format;</li>
+ * <li><code>traces?trace=6f1c0a2b9d3e4f50</code> requests the timing of the phases of recent requests (see
+ * {@link marytts.server.RequestTrace}); without the parameter, the traces of all recent requests are sent.</li>
  * </ul>
  * <p>
  * In Each pair has the following structure:
@@ -107,10 +118,18 @@ import org.apache.log4j.Logger;
  * OUTPUT_TYPE (output data type)
  * <p>
  * AUDIO (audio format. It may include streaming/non-streaming information as well. Example values for non-streaming formats:
- * AU_FILE, MP3_FILE, WAVE_FILE Example values for streaming formats: AU_STREAM, MP3_STREAM)
+ * AU_FILE, MP3_FILE, WAVE_FILE Example values for streaming formats: AU_STREAM, MP3_STREAM, WAVE_STREAM. RAW_FILE and RAW_STREAM
+ * send headerless 16 bit PCM of content type audio/L16.)
  * <p>
  * STYLE (Style descriptor)
  * <p>
+ * TIMEOUT (Time in milliseconds after which the server stops processing the request; the server may stop it earlier, as set in
+ * the property server.request.timeout. A request stopped before any output was sent gets the status 503.)
+ * <p>
+ * PRIORITY (interactive or bulk: the share of the processing the request gets when the server is busy, see RequestScheduler.
+ * The default is interactive for process requests and bulk for batch requests. A request refused because too many requests
+ * are waiting gets the status 503.)
+ * <p>
  * INPUT_TEXT (Input text to be synthesised)
  * <p>
  * OUTPUT_TEXT (Output text - if the output type is not audio)
@@ -177,13 +196,26 @@ public class MaryHttpServer extends Thread {
 		httpproc.addInterceptor(new ResponseContent());
 		httpproc.addInterceptor(new ResponseConnControl());
 
-		BufferingHttpServiceHandler handler = new BufferingHttpServiceHandler(httpproc, new DefaultHttpResponseFactory(),
+		AsyncNHttpServiceHandler handler = new AsyncNHttpServiceHandler(httpproc, new DefaultHttpResponseFactory(),
 				new DefaultConnectionReuseStrategy(), params);
 
+		// Synthesis requests may wait for admission by the RequestScheduler, so they are handled off the I/O reactor threads;
+		// the number of threads is limited by the scheduler, which refuses requests when too many are waiting.
+		ExecutorService synthesisThreads = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "HTTPSynthesis " + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
 		// Set up request handlers
-		HttpRequestHandlerRegistry registry = new HttpRequestHandlerRegistry();
-		registry.register("/process", new SynthesisRequestHandler());
-		InfoRequestHandler infoRH = new InfoRequestHandler();
+		NHttpRequestHandlerRegistry registry = new NHttpRequestHandlerRegistry();
+		registry.register("/process", new RequestHandlerAdaptor(new SynthesisRequestHandler(), synthesisThreads));
+		registry.register("/process-batch", new RequestHandlerAdaptor(new BatchSynthesisRequestHandler()));
+		NHttpRequestHandler infoRH = new RequestHandlerAdaptor(new InfoRequestHandler());
 		registry.register("/version", infoRH);
 		registry.register("/datatypes", infoRH);
 		registry.register("/locales", infoRH);
@@ -199,7 +231,9 @@ public class MaryHttpServer extends Thread {
 		registry.register("/features-discrete", infoRH);
 		registry.register("/vocalizations", infoRH);
 		registry.register("/styles", infoRH);
-		registry.register("*", new FileRequestHandler());
+		registry.register("/metrics", new RequestHandlerAdaptor(new MetricsRequestHandler()));
+		registry.register("/traces", new RequestHandlerAdaptor(new TraceRequestHandler()));
+		registry.register("*", new RequestHandlerAdaptor(new FileRequestHandler()));
 
 		handler.setHandlerResolver(registry);
 
@@ -237,6 +271,8 @@ public class MaryHttpServer extends Thread {
 
 		public void connectionClosed(final NHttpConnection conn) {
 			logger.info("Connection closed: " + conn);
+			// stop processing a request for which nobody is listening any more
+			RequestHandlerAdaptor.connectionClosed(conn.getContext());
 		}
 
 		public void fatalIOException(final IOException ex, final NHttpConnection conn) {
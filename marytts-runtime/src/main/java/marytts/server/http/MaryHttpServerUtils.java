@@ -30,10 +30,12 @@ import java.util.Map;
 import java.util.StringTokenizer;
 
 import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
 
 import marytts.util.ConversionUtils;
 import marytts.util.MaryUtils;
 import marytts.util.data.audio.MaryAudioUtils;
+import marytts.util.data.audio.StreamingAudioWriter;
 import marytts.util.string.StringUtils;
 
 import org.apache.http.HttpResponse;
@@ -145,6 +147,18 @@ public class MaryHttpServerUtils {
 
 	//
 
+	/**
+	 * The MIME type of an audio file format; for {@link StreamingAudioWriter#RAW}, with the sample rate and number of channels.
+	 */
+	public static String getMimeType(AudioFileFormat audioFileFormat) {
+		AudioFileFormat.Type audioType = audioFileFormat.getType();
+		if (audioType == StreamingAudioWriter.RAW) {
+			AudioFormat format = audioFileFormat.getFormat();
+			return "audio/L16; rate=" + (int) format.getSampleRate() + "; channels=" + format.getChannels();
+		}
+		return getMimeType(audioType);
+	}
+
 	public static String getMimeType(AudioFileFormat.Type audioType) {
 		if (audioType == AudioFileFormat.Type.WAVE) {
 			return "audio/x-wav";
@@ -218,4 +232,30 @@ public class MaryHttpServerUtils {
 		}
 	}
 
+	public static void errorServiceUnavailable(HttpResponse response, String message) {
+		int status = HttpStatus.SC_SERVICE_UNAVAILABLE;
+		response.setStatusCode(status);
+		logger.debug("Returning HTTP status " + status + ": " + message);
+		try {
+			NStringEntity entity = new NStringEntity("<html><body><h1>Service unavailable</h1><p>" + message
+					+ ".</p></body></html>", "UTF-8");
+			entity.setContentType("text/html; charset=UTF-8");
+			response.setEntity(entity);
+		} catch (UnsupportedEncodingException e) {
+		}
+	}
+
+	public static void errorBadRequest(HttpResponse response, String message) {
+		int status = HttpStatus.SC_BAD_REQUEST;
+		response.setStatusCode(status);
+		logger.debug("Returning HTTP status " + status + ": " + message);
+		try {
+			NStringEntity entity = new NStringEntity("<html><body><h1>Bad request</h1><p>" + message + ".</h1></body></html>",
+					"UTF-8");
+			entity.setContentType("text/html; charset=UTF-8");
+			response.setEntity(entity);
+		} catch (UnsupportedEncodingException e) {
+		}
+	}
+
 }
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+import marytts.server.Metrics;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Provides the server metrics (see {@link Metrics}) in the Prometheus text format.
+ */
+public class MetricsRequestHandler extends BaseHttpRequestHandler {
+
+	public MetricsRequestHandler() {
+		super();
+	}
+
+	@Override
+	protected void handleClientRequest(String absPath, Map<String, String> queryItems, HttpResponse response,
+			Address serverAddressAtClient) throws IOException {
+		StringBuilder metrics = new StringBuilder();
+		Metrics.writeTo(metrics);
+		MaryHttpServerUtils.toHttpResponse(metrics.toString().getBytes("UTF-8"), response,
+				"text/plain; version=0.0.4; charset=UTF-8");
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import marytts.server.Request;
+
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.nio.entity.BufferingNHttpEntity;
+import org.apache.http.nio.entity.ConsumingNHttpEntity;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+
+/**
+ * Runs a blocking request handler in the asynchronous http server, as the BufferingHttpServiceHandler of HttpCore does: the
+ * body of the request is buffered in memory before the handler is called, and the response is submitted when the handler
+ * returns.
+ * <p>
+ * Handlers which answer quickly are called on the I/O reactor thread of the connection. Handlers which may block, e.g. while a
+ * synthesis request waits for admission, are called on a thread of an executor, so that they do not hold up the other
+ * connections served by the same I/O reactor thread. While such a handler runs, the request it processes can be aborted when the
+ * client closes the connection, see {@link #abortOnClose(Request)}.
+ */
+class RequestHandlerAdaptor implements NHttpRequestHandler {
+	/**
+	 * The connection context attribute holding the {@link ConnectionMonitor} of the handler running on an executor thread.
+	 */
+	static final String CONNECTION_MONITOR = "marytts.connection-monitor";
+
+	private static final ThreadLocal<ConnectionMonitor> currentMonitor = new ThreadLocal<ConnectionMonitor>();
+
+	private final HttpRequestHandler handler;
+	private final Executor executor;
+
+	/**
+	 * Call the handler on the I/O reactor thread.
+	 */
+	RequestHandlerAdaptor(HttpRequestHandler handler) {
+		this(handler, null);
+	}
+
+	/**
+	 * @param executor
+	 *            the executor to call the handler on, or null to call it on the I/O reactor thread
+	 */
+	RequestHandlerAdaptor(HttpRequestHandler handler, Executor executor) {
+		this.handler = handler;
+		this.executor = executor;
+	}
+
+	public ConsumingNHttpEntity entityRequest(HttpEntityEnclosingRequest request, HttpContext context) throws HttpException,
+			IOException {
+		return new BufferingNHttpEntity(request.getEntity(), new HeapByteBufferAllocator());
+	}
+
+	public void handle(final HttpRequest request, final HttpResponse response, final NHttpResponseTrigger trigger,
+			final HttpContext context) throws HttpException, IOException {
+		if (executor == null) {
+			handler.handle(request, response, context);
+			trigger.submitResponse(response);
+			return;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				ConnectionMonitor monitor = new ConnectionMonitor();
+				if (context != null) {
+					context.setAttribute(CONNECTION_MONITOR, monitor);
+				}
+				currentMonitor.set(monitor);
+				try {
+					try {
+						handler.handle(request, response, context);
+					} finally {
+						currentMonitor.remove();
+						if (context != null) {
+							context.removeAttribute(CONNECTION_MONITOR);
+						}
+					}
+					trigger.submitResponse(response);
+				} catch (HttpException e) {
+					trigger.handleException(e);
+				} catch (IOException e) {
+					trigger.handleException(e);
+				} catch (RuntimeException e) {
+					trigger.handleException(new HttpException("Request handler failed", e));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Abort the given request if the client closes the connection before the handler running on the current thread returns. This
+	 * has no effect for handlers called on the I/O reactor thread.
+	 * 
+	 * @param maryRequest
+	 *            the request processed by the handler
+	 */
+	static void abortOnClose(Request maryRequest) {
+		ConnectionMonitor monitor = currentMonitor.get();
+		if (monitor != null) {
+			monitor.setRequest(maryRequest);
+		}
+	}
+
+	/**
+	 * To be called when a connection is closed, so that the request processed for it is aborted.
+	 * 
+	 * @param context
+	 *            the context of the connection
+	 */
+	static void connectionClosed(HttpContext context) {
+		ConnectionMonitor monitor = (ConnectionMonitor) context.getAttribute(CONNECTION_MONITOR);
+		if (monitor != null) {
+			monitor.close();
+		}
+	}
+
+	/**
+	 * The request processed for a connection, and whether the connection has been closed, whichever is known first.
+	 */
+	static class ConnectionMonitor {
+		private Request request;
+		private boolean closed;
+
+		synchronized void setRequest(Request maryRequest) {
+			request = maryRequest;
+			if (closed) {
+				request.abort();
+			}
+		}
+
+		synchronized void close() {
+			closed = true;
+			if (request != null) {
+				request.abort();
+			}
+		}
+	}
+}
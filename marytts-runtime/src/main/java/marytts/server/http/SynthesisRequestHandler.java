@@ -35,8 +35,10 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 
 import marytts.datatypes.MaryDataType;
+import marytts.exceptions.RequestCancelledException;
 import marytts.modules.synthesis.Voice;
 import marytts.server.Request;
+import marytts.server.RequestScheduler;
 import marytts.server.RequestHandler.StreamingOutputPiper;
 import marytts.server.RequestHandler.StreamingOutputWriter;
 import marytts.util.MaryRuntimeUtils;
@@ -57,7 +59,7 @@ import org.apache.log4j.Logger;
 public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 	private static int id = 0;
 
-	private static synchronized int getId() {
+	static synchronized int getId() {
 		return id++;
 	}
 
@@ -103,16 +105,166 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 
 		String inputText = queryItems.get("INPUT_TEXT");
 
+		RequestParameters parameters = parseRequestParameters(queryItems, response);
+		if (parameters == null) {
+			return;
+		}
+		boolean streamingAudio = parameters.streamingAudio;
+
+		String logMsg = queryItems.get("LOG");
+		if (logMsg != null) {
+			logger.info("Connection info: " + logMsg);
+		}
+
+		final Request maryRequest = parameters.createRequest(getId());
+		response.setHeader("X-Trace-Id", maryRequest.getTrace().getTraceId());
+
+		// Process the request and send back the data
+		boolean ok = true;
+		try {
+			maryRequest.setInputData(inputText);
+			logger.info("Read: " + inputText);
+		} catch (Exception e) {
+			String message = "Problem reading input";
+			logger.warn(message, e);
+			MaryHttpServerUtils.errorInternalServerError(response, message, e);
+			ok = false;
+		}
+		if (ok) {
+			if (streamingAudio) {
+				// Start two separate threads:
+				// 1. one thread to process the request;
+				new Thread("RH " + maryRequest.getId()) {
+					public void run() {
+						Logger myLogger = MaryUtils.getLogger(this.getName());
+						try {
+							maryRequest.process();
+							myLogger.info("Streaming request processed successfully.");
+						} catch (RequestCancelledException e) {
+							myLogger.info("Streaming request cancelled: " + e.getMessage());
+						} catch (Throwable t) {
+							myLogger.error("Processing failed.", t);
+						}
+					}
+				}.start();
+
+				// 2. one thread to take the audio data as it becomes available
+				// and write it into the ProducingNHttpEntity.
+				// The second one does not depend on the first one practically,
+				// because the AppendableSequenceAudioInputStream returned by
+				// maryRequest.getAudio() was already created in the constructor of Request.
+				AudioInputStream audio = maryRequest.getAudio();
+				assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
+				AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
+				AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest);
+				new Thread(entity, "HTTPWriter " + maryRequest.getId()).start();
+				// entity knows its contentType, no need to set explicitly here.
+				response.setEntity(entity);
+				response.setStatusCode(HttpStatus.SC_OK);
+				return;
+			} else { // not streaming audio
+				// Process input data to output data, unless the client goes away
+				RequestHandlerAdaptor.abortOnClose(maryRequest);
+				try {
+					maryRequest.process(); // this may take some time
+				} catch (RequestCancelledException e) {
+					MaryHttpServerUtils.errorServiceUnavailable(response, e.getMessage());
+					ok = false;
+				} catch (Throwable e) {
+					String message = "Processing failed.";
+					logger.error(message, e);
+					MaryHttpServerUtils.errorInternalServerError(response, message, e);
+					ok = false;
+				}
+				if (ok) {
+					// Write output data to client
+					try {
+						ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+						maryRequest.writeOutputData(outputStream);
+						MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, getContentType(maryRequest));
+					} catch (Exception e) {
+						String message = "Cannot write output";
+						logger.warn(message, e);
+						MaryHttpServerUtils.errorInternalServerError(response, message, e);
+						ok = false;
+					}
+				}
+			}
+		}
+
+		maryRequest.getTrace().finish(ok);
+		if (ok)
+			logger.info("Request handled successfully.");
+		else
+			logger.info("Request couldn't be handled successfully.");
+		if (MaryRuntimeUtils.lowMemoryCondition()) {
+			logger.info("Low memory condition detected (only " + MaryUtils.availableMemory()
+					+ " bytes left). Triggering garbage collection.");
+			Runtime.getRuntime().gc();
+			logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
+		}
+	}
+
+	/**
+	 * @return the content type of the output data of a processed request
+	 */
+	static String getContentType(Request maryRequest) {
+		if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) // text output
+			return "text/plain; charset=UTF-8";
+		else
+			// audio output
+			return MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat());
+	}
+
+	/**
+	 * The parameters of a synthesis request other than the input data.
+	 */
+	static class RequestParameters {
+		MaryDataType inputType;
+		MaryDataType outputType;
+		Locale locale;
+		Voice voice;
+		String effects;
+		String style;
+		String outputTypeParams;
+		AudioFileFormat audioFileFormat;
+		boolean streamingAudio;
+		long timeoutMillis;
+		RequestScheduler.Priority priority;
+
+		Request createRequest(int id) {
+			Request request = new Request(inputType, outputType, locale, voice, effects, style, id, audioFileFormat,
+					streamingAudio, outputTypeParams);
+			request.setTimeout(Request.getServerTimeout(timeoutMillis));
+			request.setPriority(priority);
+			return request;
+		}
+	}
+
+	/**
+	 * Read the parameters of a synthesis request from the query items INPUT_TYPE, OUTPUT_TYPE, LOCALE, AUDIO, VOICE, STYLE,
+	 * OUTPUT_TYPE_PARAMS, TIMEOUT, PRIORITY and the audio effects.
+	 * 
+	 * @return the parameters, or null if they are not valid, in which case the error has been set in the response.
+	 */
+	protected RequestParameters parseRequestParameters(Map<String, String> queryItems, HttpResponse response) {
+		if (queryItems == null
+				|| !(queryItems.containsKey("INPUT_TYPE") && queryItems.containsKey("OUTPUT_TYPE") && queryItems
+						.containsKey("LOCALE"))) {
+			MaryHttpServerUtils.errorMissingQueryParameter(response, "'INPUT_TYPE' and 'OUTPUT_TYPE' and 'LOCALE'");
+			return null;
+		}
+
 		MaryDataType inputType = MaryDataType.get(queryItems.get("INPUT_TYPE"));
 		if (inputType == null) {
 			MaryHttpServerUtils.errorWrongQueryParameterValue(response, "INPUT_TYPE", queryItems.get("INPUT_TYPE"), null);
-			return;
+			return null;
 		}
 
 		MaryDataType outputType = MaryDataType.get(queryItems.get("OUTPUT_TYPE"));
 		if (outputType == null) {
 			MaryHttpServerUtils.errorWrongQueryParameterValue(response, "OUTPUT_TYPE", queryItems.get("OUTPUT_TYPE"), null);
-			return;
+			return null;
 		}
 		boolean isOutputText = true;
 		boolean streamingAudio = false;
@@ -122,7 +274,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 			String audioTypeName = queryItems.get("AUDIO");
 			if (audioTypeName == null) {
 				MaryHttpServerUtils.errorMissingQueryParameter(response, "'AUDIO' when OUTPUT_TYPE=AUDIO");
-				return;
+				return null;
 			}
 			if (audioTypeName.endsWith("_STREAM")) {
 				streamingAudio = true;
@@ -137,15 +289,15 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 			}
 			if (audioFileFormatType == null) {
 				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"), null);
-				return;
+				return null;
 			} else if (audioFileFormatType.toString().equals("MP3") && !MaryRuntimeUtils.canCreateMP3()) {
 				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"),
 						"Conversion to MP3 not supported.");
-				return;
+				return null;
 			} else if (audioFileFormatType.toString().equals("Vorbis") && !MaryRuntimeUtils.canCreateOgg()) {
 				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "AUDIO", queryItems.get("AUDIO"),
 						"Conversion to OGG Vorbis format not supported.");
-				return;
+				return null;
 			}
 		}
 		// optionally, there may be output type parameters
@@ -155,7 +307,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 		Locale locale = MaryUtils.string2locale(queryItems.get("LOCALE"));
 		if (locale == null) {
 			MaryHttpServerUtils.errorWrongQueryParameterValue(response, "LOCALE", queryItems.get("LOCALE"), null);
-			return;
+			return null;
 		}
 
 		Voice voice = null;
@@ -169,7 +321,7 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 			if (voice == null) {
 				// a voice name was given but there is no such voice
 				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "VOICE", queryItems.get("VOICE"), null);
-				return;
+				return null;
 			}
 		}
 		if (voice == null) { // no voice tag -- use locale default if it exists.
@@ -181,19 +333,34 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 		if (style == null)
 			style = "";
 
+		long timeoutMillis = 0;
+		String timeout = queryItems.get("TIMEOUT");
+		if (timeout != null) {
+			try {
+				timeoutMillis = Long.parseLong(timeout);
+			} catch (NumberFormatException e) {
+				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "TIMEOUT", timeout, "Expected milliseconds");
+				return null;
+			}
+		}
+
+		RequestScheduler.Priority priority = getDefaultPriority();
+		String priorityName = queryItems.get("PRIORITY");
+		if (priorityName != null) {
+			try {
+				priority = RequestScheduler.Priority.forName(priorityName);
+			} catch (IllegalArgumentException e) {
+				MaryHttpServerUtils.errorWrongQueryParameterValue(response, "PRIORITY", priorityName, e.getMessage());
+				return null;
+			}
+		}
+
 		String effects = toRequestedAudioEffectsString(queryItems);
 		if (effects.length() > 0)
 			logger.debug("Audio effects requested: " + effects);
 		else
 			logger.debug("No audio effects requested");
 
-		String logMsg = queryItems.get("LOG");
-		if (logMsg != null) {
-			logger.info("Connection info: " + logMsg);
-		}
-
-		// Now, the parse is complete.
-
 		// Construct audio file format -- even when output is not AUDIO,
 		// in case we need to pass via audio to get our output type.
 		if (audioFileFormatType == null) {
@@ -209,94 +376,27 @@ public class SynthesisRequestHandler extends BaseHttpRequestHandler {
 		} else {
 			audioFormat = Voice.AF16000;
 		}
-		AudioFileFormat audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
-
-		final Request maryRequest = new Request(inputType, outputType, locale, voice, effects, style, getId(), audioFileFormat,
-				streamingAudio, outputTypeParams);
-
-		// Process the request and send back the data
-		boolean ok = true;
-		try {
-			maryRequest.setInputData(inputText);
-			logger.info("Read: " + inputText);
-		} catch (Exception e) {
-			String message = "Problem reading input";
-			logger.warn(message, e);
-			MaryHttpServerUtils.errorInternalServerError(response, message, e);
-			ok = false;
-		}
-		if (ok) {
-			if (streamingAudio) {
-				// Start two separate threads:
-				// 1. one thread to process the request;
-				new Thread("RH " + maryRequest.getId()) {
-					public void run() {
-						Logger myLogger = MaryUtils.getLogger(this.getName());
-						try {
-							maryRequest.process();
-							myLogger.info("Streaming request processed successfully.");
-						} catch (Throwable t) {
-							myLogger.error("Processing failed.", t);
-						}
-					}
-				}.start();
 
-				// 2. one thread to take the audio data as it becomes available
-				// and write it into the ProducingNHttpEntity.
-				// The second one does not depend on the first one practically,
-				// because the AppendableSequenceAudioInputStream returned by
-				// maryRequest.getAudio() was already created in the constructor of Request.
-				AudioInputStream audio = maryRequest.getAudio();
-				assert audio != null : "Streaming audio but no audio stream -- very strange indeed! :-(";
-				AudioFileFormat.Type audioType = maryRequest.getAudioFileFormat().getType();
-				AudioStreamNHttpEntity entity = new AudioStreamNHttpEntity(maryRequest);
-				new Thread(entity, "HTTPWriter " + maryRequest.getId()).start();
-				// entity knows its contentType, no need to set explicitly here.
-				response.setEntity(entity);
-				response.setStatusCode(HttpStatus.SC_OK);
-				return;
-			} else { // not streaming audio
-				// Process input data to output data
-				try {
-					maryRequest.process(); // this may take some time
-				} catch (Throwable e) {
-					String message = "Processing failed.";
-					logger.error(message, e);
-					MaryHttpServerUtils.errorInternalServerError(response, message, e);
-					ok = false;
-				}
-				if (ok) {
-					// Write output data to client
-					try {
-						ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-						maryRequest.writeOutputData(outputStream);
-						String contentType;
-						if (maryRequest.getOutputType().isXMLType() || maryRequest.getOutputType().isTextType()) // text output
-							contentType = "text/plain; charset=UTF-8";
-						else
-							// audio output
-							contentType = MaryHttpServerUtils.getMimeType(maryRequest.getAudioFileFormat().getType());
-						MaryHttpServerUtils.toHttpResponse(outputStream.toByteArray(), response, contentType);
-					} catch (Exception e) {
-						String message = "Cannot write output";
-						logger.warn(message, e);
-						MaryHttpServerUtils.errorInternalServerError(response, message, e);
-						ok = false;
-					}
-				}
-			}
-		}
+		RequestParameters parameters = new RequestParameters();
+		parameters.inputType = inputType;
+		parameters.outputType = outputType;
+		parameters.locale = locale;
+		parameters.voice = voice;
+		parameters.effects = effects;
+		parameters.style = style;
+		parameters.outputTypeParams = outputTypeParams;
+		parameters.audioFileFormat = new AudioFileFormat(audioFileFormatType, audioFormat, AudioSystem.NOT_SPECIFIED);
+		parameters.streamingAudio = streamingAudio;
+		parameters.timeoutMillis = timeoutMillis;
+		parameters.priority = priority;
+		return parameters;
+	}
 
-		if (ok)
-			logger.info("Request handled successfully.");
-		else
-			logger.info("Request couldn't be handled successfully.");
-		if (MaryRuntimeUtils.lowMemoryCondition()) {
-			logger.info("Low memory condition detected (only " + MaryUtils.availableMemory()
-					+ " bytes left). Triggering garbage collection.");
-			Runtime.getRuntime().gc();
-			logger.info("After garbage collection: " + MaryUtils.availableMemory() + " bytes available.");
-		}
+	/**
+	 * The priority class of the requests which do not ask for one with the PRIORITY parameter.
+	 */
+	protected RequestScheduler.Priority getDefaultPriority() {
+		return RequestScheduler.Priority.INTERACTIVE;
 	}
 
 	protected String toRequestedAudioEffectsString(Map<String, String> keyValuePairs) {
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import java.io.IOException;
+import java.util.Map;
+
+import marytts.server.RequestTrace;
+import marytts.util.http.Address;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * Provides the traces of the most recently handled requests (see {@link RequestTrace}) as JSON lines, oldest first. With the
+ * parameter <code>trace</code>, only the trace with the given id is provided, which is sent to clients in the X-Trace-Id header.
+ */
+public class TraceRequestHandler extends BaseHttpRequestHandler {
+
+	public TraceRequestHandler() {
+		super();
+	}
+
+	@Override
+	protected void handleClientRequest(String absPath, Map<String, String> queryItems, HttpResponse response,
+			Address serverAddressAtClient) throws IOException {
+		String traceId = queryItems != null ? queryItems.get("trace") : null;
+		StringBuilder traces = new StringBuilder();
+		for (RequestTrace trace : RequestTrace.getRecentTraces()) {
+			if (traceId == null || traceId.equals(trace.getTraceId())) {
+				traces.append(trace.toJson()).append('\n');
+			}
+		}
+		if (traceId != null && traces.length() == 0) {
+			MaryHttpServerUtils.errorWrongQueryParameterValue(response, "trace", traceId, "no such recent trace");
+			return;
+		}
+		MaryHttpServerUtils.toHttpResponse(traces.toString().getBytes("UTF-8"), response, "text/plain; charset=UTF-8");
+	}
+}
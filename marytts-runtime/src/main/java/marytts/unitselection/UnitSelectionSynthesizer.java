@@ -38,8 +38,8 @@ import marytts.datatypes.MaryData;
 import marytts.datatypes.MaryDataType;
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
+import marytts.modules.synthesis.IncrementalWaveformSynthesizer;
 import marytts.modules.synthesis.Voice;
-import marytts.modules.synthesis.WaveformSynthesizer;
 import marytts.modules.synthesis.Voice.Gender;
 import marytts.server.MaryProperties;
 import marytts.unitselection.concat.UnitConcatenator;
@@ -68,12 +68,14 @@ import org.w3c.dom.traversal.TreeWalker;
  *
  */
 
-public class UnitSelectionSynthesizer implements WaveformSynthesizer {
+public class UnitSelectionSynthesizer implements IncrementalWaveformSynthesizer {
 	/**
 	 * A map with Voice objects as keys, and Lists of UtteranceProcessors as values. Idea: For a given voice, find the list of
 	 * utterance processors to apply.
 	 */
 	private Logger logger;
+	private boolean incremental;
+	private int lookAhead;
 
 	public UnitSelectionSynthesizer() {
 	}
@@ -83,6 +85,8 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 	 */
 	public void startup() throws Exception {
 		logger = MaryUtils.getLogger("UnitSelectionSynthesizer");
+		incremental = MaryProperties.getBoolean("unitselection.incremental", false);
+		lookAhead = MaryProperties.getInteger("unitselection.incremental.lookahead", 3);
 		// Register UnitSelection voices:
 		logger.debug("Register UnitSelection voices:");
 		List<String> voiceNames = MaryProperties.getList("unitselection.voices.list");
@@ -149,15 +153,9 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 			throws SynthesisException {
 		assert voice instanceof UnitSelectionVoice;
 		UnitSelectionVoice v = (UnitSelectionVoice) voice;
-		UnitDatabase udb = v.getDatabase();
 		// Select:
 		UnitSelector unitSel = v.getUnitSelector();
-		UnitConcatenator unitConcatenator;
-		if (outputParams != null && outputParams.contains("MODIFICATION")) {
-			unitConcatenator = v.getModificationConcatenator();
-		} else {
-			unitConcatenator = v.getConcatenator();
-		}
+		UnitConcatenator unitConcatenator = getConcatenator(v, outputParams);
 		// TODO: check if we actually need to access v.getDatabase() here
 		UnitDatabase database = v.getDatabase();
 		logger.debug("Selecting units with a " + unitSel.getClass().getName() + " from a " + database.getClass().getName());
@@ -170,11 +168,62 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 		// logger.debug("Units selected:\n"+sw.toString());
 		// }
 
+		AudioInputStream audio = concatenate(unitConcatenator, selectedUnits);
+		propagateDurations(selectedUnits, database, 0);
+		logPropagatedDurations(tokensAndBoundaries);
+		return audio;
+	}
+
+	/**
+	 * Select and concatenate the units phrase by phrase, and pass the audio of each phrase to the receiver as soon as it has been
+	 * created. The units of each phrase are selected taking into account the first
+	 * <code>unitselection.incremental.lookahead</code> phones and boundaries of the next phrase. Unless
+	 * <code>unitselection.incremental = true</code>, the audio of all phrases is passed to the receiver at once.
+	 * 
+	 * @see UnitSelector#getPhraseEnd(List, int)
+	 */
+	public void synthesizeIncrementally(List<Element> tokensAndBoundaries, Voice voice, String outputParams,
+			AudioReceiver receiver) throws SynthesisException {
+		if (!incremental) {
+			receiver.append(synthesize(tokensAndBoundaries, voice, outputParams));
+			return;
+		}
+		assert voice instanceof UnitSelectionVoice;
+		UnitSelectionVoice v = (UnitSelectionVoice) voice;
+		UnitSelector unitSel = v.getUnitSelector();
+		UnitConcatenator unitConcatenator = getConcatenator(v, outputParams);
+		UnitDatabase database = v.getDatabase();
+		List<Element> segmentsAndBoundaries = UnitSelector.getSegmentsAndBoundaries(tokensAndBoundaries);
+		float endInSeconds = 0;
+		int start = 0;
+		while (start < segmentsAndBoundaries.size()) {
+			long time = System.currentTimeMillis();
+			int end = UnitSelector.getPhraseEnd(segmentsAndBoundaries, start);
+			List<SelectedUnit> selectedUnits = unitSel.selectUnits(segmentsAndBoundaries, start, end, lookAhead);
+			AudioInputStream audio = concatenate(unitConcatenator, selectedUnits);
+			endInSeconds = propagateDurations(selectedUnits, database, endInSeconds);
+			logger.debug("Selected " + selectedUnits.size() + " units for elements " + start + " to " + end + " in "
+					+ (System.currentTimeMillis() - time) + " milliseconds");
+			receiver.append(audio);
+			start = end;
+		}
+		logPropagatedDurations(tokensAndBoundaries);
+	}
+
+	private UnitConcatenator getConcatenator(UnitSelectionVoice v, String outputParams) {
+		if (outputParams != null && outputParams.contains("MODIFICATION")) {
+			return v.getModificationConcatenator();
+		} else {
+			return v.getConcatenator();
+		}
+	}
+
+	private AudioInputStream concatenate(UnitConcatenator unitConcatenator, List<SelectedUnit> selectedUnits)
+			throws SynthesisException {
 		// Concatenate:
 		logger.debug("Now creating audio with a " + unitConcatenator.getClass().getName());
-		AudioInputStream audio = null;
 		try {
-			audio = unitConcatenator.getAudio(selectedUnits);
+			return unitConcatenator.getAudio(selectedUnits);
 		} catch (IOException ioe) {
 			StringWriter sw = new StringWriter();
 			PrintWriter pw = new PrintWriter(sw);
@@ -182,9 +231,17 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 				pw.println(selIt.next());
 			throw new SynthesisException("Problems generating audio for unit chain: " + sw.toString(), ioe);
 		}
+	}
 
-		// Propagate unit durations to XML tree:
-		float endInSeconds = 0;
+	/**
+	 * Propagate the durations of the concatenated units to the XML tree.
+	 * 
+	 * @param startInSeconds
+	 *            the time at which the first unit starts
+	 * @return the time at which the last unit ends
+	 */
+	private float propagateDurations(List<SelectedUnit> selectedUnits, UnitDatabase database, float startInSeconds) {
+		float endInSeconds = startInSeconds;
 		float durLeftHalfInSeconds = 0;
 		String unitString = "";
 		String unitAttrName = "units"; // name of the attribute that is added for unit selection diagnostics
@@ -205,7 +262,7 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 			endInSeconds += unitDurationInSeconds;
 			int endInMillis = (int) (1000 * endInSeconds);
 			int unitDurationInMillis = endInMillis - prevEndInMillis;
-			unitString = t.getName() + " " + udb.getFilename(unit) + " " + unit.index + " " + unitDurationInSeconds;
+			unitString = t.getName() + " " + database.getFilename(unit) + " " + unit.index + " " + unitDurationInSeconds;
 			if (halfphone) {
 				if (((HalfPhoneTarget) t).isLeftHalf()) {
 					durLeftHalfInSeconds = unitDurationInSeconds;
@@ -253,6 +310,10 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 						+ " ms has no maryxml element.");
 			}
 		}
+		return endInSeconds;
+	}
+
+	private void logPropagatedDurations(List<Element> tokensAndBoundaries) {
 		if (logger.getEffectiveLevel().equals(Level.DEBUG)) {
 			try {
 				MaryNormalisedWriter writer = new MaryNormalisedWriter();
@@ -263,8 +324,6 @@ public class UnitSelectionSynthesizer implements WaveformSynthesizer {
 				logger.warn("Problem writing XML to logfile: " + e);
 			}
 		}
-
-		return audio;
 	}
 
 }
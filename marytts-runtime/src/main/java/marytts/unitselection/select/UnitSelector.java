@@ -20,7 +20,9 @@
 package marytts.unitselection.select;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import marytts.datatypes.MaryXML;
 import marytts.exceptions.SynthesisException;
@@ -39,6 +41,11 @@ import org.w3c.dom.NodeList;
  *
  */
 public class UnitSelector {
+	/**
+	 * The minimum break index of the boundaries at the end of phrases, see {@link #getPhraseEnd(List, int)}.
+	 */
+	public static final int PHRASE_BREAKINDEX = 4;
+
 	protected UnitDatabase database;
 	protected Logger logger;
 	protected float targetCostWeight;
@@ -85,21 +92,36 @@ public class UnitSelector {
 	public List<SelectedUnit> selectUnits(List<Element> tokensAndBoundaries, marytts.modules.synthesis.Voice voice)
 			throws SynthesisException {
 		long time = System.currentTimeMillis();
+		List<SelectedUnit> selectedUnits = selectUnits(getSegmentsAndBoundaries(tokensAndBoundaries), 0, -1, 0);
+		long newtime = System.currentTimeMillis() - time;
+		logger.debug("Selection took " + newtime + " milliseconds");
+		return selectedUnits;
+	}
 
-		List<Element> segmentsAndBoundaries = new ArrayList<Element>();
-		for (Element tOrB : tokensAndBoundaries) {
-			if (tOrB.getTagName().equals(MaryXML.BOUNDARY)) {
-				segmentsAndBoundaries.add(tOrB);
-			} else {
-				assert tOrB.getTagName().equals(MaryXML.TOKEN) : "Expected token, got " + tOrB.getTagName();
-				NodeList segs = tOrB.getElementsByTagName(MaryXML.PHONE);
-				for (int i = 0, max = segs.getLength(); i < max; i++) {
-					segmentsAndBoundaries.add((Element) segs.item(i));
-				}
-			}
+	/**
+	 * Select the units for a part of an utterance, e.g. for one phrase. The selection also takes into account the targets of
+	 * some following phone and boundary elements, but their units are not returned, so that the units of the next part can be
+	 * selected in the next call.
+	 * 
+	 * @param segmentsAndBoundaries
+	 *            the phone and boundary MaryXML elements representing the complete utterance.
+	 * @param start
+	 *            the index of the first element of the part
+	 * @param end
+	 *            the index after the last element of the part, or -1 for the end of the utterance
+	 * @param lookAhead
+	 *            the number of elements after the part whose targets are taken into account
+	 * @return the units selected for the elements of the part, without the units of the look-ahead elements
+	 * @throws IllegalStateException
+	 *             if no path for generating the target utterance could be found
+	 */
+	public List<SelectedUnit> selectUnits(List<Element> segmentsAndBoundaries, int start, int end, int lookAhead)
+			throws SynthesisException {
+		if (end < 0) {
+			end = segmentsAndBoundaries.size();
 		}
-
-		List<Target> targets = createTargets(segmentsAndBoundaries);
+		int contextEnd = Math.min(end + lookAhead, segmentsAndBoundaries.size());
+		List<Target> targets = createTargets(segmentsAndBoundaries.subList(start, contextEnd));
 		// compute target features for each target in the chain
 		TargetCostFunction tcf = database.getTargetCostFunction();
 		for (Target target : targets) {
@@ -121,9 +143,90 @@ public class UnitSelector {
 		if (selectedUnits == null) {
 			throw new IllegalStateException("Viterbi: can't find path");
 		}
-		long newtime = System.currentTimeMillis() - time;
-		logger.debug("Selection took " + newtime + " milliseconds");
-		return selectedUnits;
+		if (start == 0 && end == segmentsAndBoundaries.size()) {
+			return selectedUnits;
+		}
+		// Keep the units of the part. Units without an element (silences added as context by createTargets())
+		// belong to the part only at the beginning and at the end of the utterance.
+		Set<Element> lookAheadElements = new HashSet<Element>(segmentsAndBoundaries.subList(end, contextEnd));
+		List<SelectedUnit> partUnits = new ArrayList<SelectedUnit>();
+		boolean atBeginning = true;
+		for (SelectedUnit unit : selectedUnits) {
+			Element element = unit.getTarget().getMaryxmlElement();
+			if (element == null) {
+				if (atBeginning ? start == 0 : end == segmentsAndBoundaries.size()) {
+					partUnits.add(unit);
+				}
+			} else if (lookAheadElements.contains(element)) {
+				break;
+			} else {
+				partUnits.add(unit);
+				atBeginning = false;
+			}
+		}
+		return partUnits;
+	}
+
+	/**
+	 * Get the phone and boundary elements of the given tokens and boundaries.
+	 * 
+	 * @param tokensAndBoundaries
+	 *            the token and boundary MaryXML elements representing an utterance.
+	 * @return a list of MaryXML phone and boundary elements
+	 */
+	public static List<Element> getSegmentsAndBoundaries(List<Element> tokensAndBoundaries) {
+		List<Element> segmentsAndBoundaries = new ArrayList<Element>();
+		for (Element tOrB : tokensAndBoundaries) {
+			if (tOrB.getTagName().equals(MaryXML.BOUNDARY)) {
+				segmentsAndBoundaries.add(tOrB);
+			} else {
+				assert tOrB.getTagName().equals(MaryXML.TOKEN) : "Expected token, got " + tOrB.getTagName();
+				NodeList segs = tOrB.getElementsByTagName(MaryXML.PHONE);
+				for (int i = 0, max = segs.getLength(); i < max; i++) {
+					segmentsAndBoundaries.add((Element) segs.item(i));
+				}
+			}
+		}
+		return segmentsAndBoundaries;
+	}
+
+	/**
+	 * Find the end of the phrase starting at the given element. Phrases end after a boundary with a break index of at least
+	 * {@link #PHRASE_BREAKINDEX}; the pause at such a boundary is a safe place to split the selection of the units. A phrase
+	 * contains at least one phone, and the last phrase of an utterance contains all remaining elements.
+	 * 
+	 * @param segmentsAndBoundaries
+	 *            a list of MaryXML phone and boundary elements
+	 * @param start
+	 *            the index of the first element of the phrase
+	 * @return the index after the last element of the phrase
+	 */
+	public static int getPhraseEnd(List<Element> segmentsAndBoundaries, int start) {
+		int size = segmentsAndBoundaries.size();
+		boolean hasPhone = false;
+		for (int i = start; i < size; i++) {
+			Element element = segmentsAndBoundaries.get(i);
+			if (element.getTagName().equals(MaryXML.PHONE)) {
+				hasPhone = true;
+			} else if (hasPhone && getBreakindex(element) >= PHRASE_BREAKINDEX) {
+				// Don't leave a last part without phones:
+				for (int j = i + 1; j < size; j++) {
+					if (segmentsAndBoundaries.get(j).getTagName().equals(MaryXML.PHONE)) {
+						return i + 1;
+					}
+				}
+				return size;
+			}
+		}
+		return size;
+	}
+
+	private static int getBreakindex(Element boundary) {
+		try {
+			return Integer.parseInt(boundary.getAttribute("breakindex"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
 	}
 
 	/**
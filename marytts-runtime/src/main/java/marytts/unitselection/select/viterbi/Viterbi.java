@@ -40,7 +40,9 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import marytts.exceptions.RequestCancelledException;
 import marytts.exceptions.SynthesisException;
+import marytts.server.Request;
 import marytts.unitselection.data.DiphoneUnit;
 import marytts.unitselection.data.Unit;
 import marytts.unitselection.data.UnitDatabase;
@@ -194,12 +196,18 @@ public class Viterbi {
 	 * 
 	 * @throws SynthesisException
 	 *             if for any part of the target chain, no candidates can be found
+	 * @throws RequestCancelledException
+	 *             if the request processed by the current thread is cancelled meanwhile
 	 */
 	public void apply() throws SynthesisException {
 		logger.debug("Viterbi running with beam size " + beamSize);
+		Request request = Request.current();
 		// go through all but the last point
 		// (since last point has no item)
 		for (ViterbiPoint point = firstPoint; point.next != null; point = point.next) {
+			if (request != null) {
+				request.checkCancelled();
+			}
 			// The candidates for the current item:
 			// candidate selection is carried out by UnitSelector
 			Target target = point.target;
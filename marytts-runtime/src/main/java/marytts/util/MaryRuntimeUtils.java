@@ -192,10 +192,13 @@ public class MaryRuntimeUtils {
 			if (isSupported && AudioSystem.isFileTypeSupported(audioType)) {
 				output.append(typeName).append("_FILE\n");
 
-				if (typeName.equals("MP3") || typeName.equals("Vorbis"))
+				if (typeName.equals("MP3") || typeName.equals("Vorbis") || typeName.equals("WAVE"))
 					output.append(typeName).append("_STREAM\n");
 			}
 		}
+		// headerless PCM, written by StreamingAudioWriter:
+		output.append("RAW_FILE\n");
+		output.append("RAW_STREAM\n");
 		return output.toString();
 	}
 
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+
+import marytts.datatypes.MaryDataType;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ModuleRegistryTest {
+
+	private static final List<MaryDataType> TYPES = Arrays.asList(MaryDataType.TEXT, MaryDataType.TOKENS,
+			MaryDataType.PARTSOFSPEECH, MaryDataType.WORDS, MaryDataType.PHONEMES, MaryDataType.ALLOPHONES,
+			MaryDataType.ACOUSTPARAMS, MaryDataType.AUDIO);
+	private static final List<Locale> LOCALES = Arrays.asList(null, Locale.GERMAN, Locale.ENGLISH, Locale.US, Locale.UK,
+			new Locale("xx"));
+
+	private static void register(MaryDataType input, MaryDataType output, Locale locale) {
+		ModuleRegistry.registerModule(new InternalModule(input.name() + "2" + output.name(), input, output, locale), locale,
+				null);
+	}
+
+	@BeforeClass
+	public static void registerModules() {
+		register(MaryDataType.TEXT, MaryDataType.TOKENS, null);
+		register(MaryDataType.TOKENS, MaryDataType.WORDS, Locale.GERMAN);
+		register(MaryDataType.TOKENS, MaryDataType.PARTSOFSPEECH, Locale.ENGLISH);
+		register(MaryDataType.PARTSOFSPEECH, MaryDataType.WORDS, Locale.ENGLISH);
+		register(MaryDataType.WORDS, MaryDataType.PHONEMES, null);
+		register(MaryDataType.PHONEMES, MaryDataType.ALLOPHONES, Locale.US);
+		register(MaryDataType.PHONEMES, MaryDataType.ACOUSTPARAMS, null);
+		register(MaryDataType.ALLOPHONES, MaryDataType.ACOUSTPARAMS, null);
+		register(MaryDataType.ACOUSTPARAMS, MaryDataType.AUDIO, null);
+		ModuleRegistry.setRegistrationComplete();
+	}
+
+	@Test
+	public void cachedPlansMatchSearch() {
+		for (Locale locale : LOCALES) {
+			for (MaryDataType source : TYPES) {
+				for (MaryDataType target : TYPES) {
+					LinkedList<MaryModule> expected = ModuleRegistry.computeModulesRequiredForProcessing(source, target, locale,
+							null);
+					String what = source + " to " + target + " for " + locale;
+					assertEquals(what, expected, ModuleRegistry.modulesRequiredForProcessing(source, target, locale));
+					// a second lookup is answered from the cache
+					ProcessingPlan plan = ModuleRegistry.getProcessingPlan(source, target, locale, null);
+					if (expected == null) {
+						assertNull(what, plan);
+					} else {
+						assertNotNull(what, plan);
+						assertEquals(what, expected, plan.getModules());
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void localeSpecificModulesArePreferred() {
+		List<MaryModule> english = ModuleRegistry.modulesRequiredForProcessing(MaryDataType.TEXT, MaryDataType.AUDIO, Locale.US);
+		assertEquals(7, english.size());
+		assertEquals(MaryDataType.PARTSOFSPEECH, english.get(1).outputType());
+		assertEquals(MaryDataType.ALLOPHONES, english.get(4).outputType());
+		List<MaryModule> german = ModuleRegistry.modulesRequiredForProcessing(MaryDataType.TEXT, MaryDataType.AUDIO,
+				Locale.GERMAN);
+		assertEquals(5, german.size());
+		assertNull(ModuleRegistry.modulesRequiredForProcessing(MaryDataType.TEXT, MaryDataType.AUDIO, new Locale("xx")));
+	}
+
+	@Test
+	public void unreachableCombinationsDoNotFillCache() {
+		for (int i = 0; i <= ModuleRegistry.MAX_PLANS; i++) {
+			assertNull(ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.AUDIO, new Locale("x" + i), null));
+		}
+		Locale newLocale = new Locale("en", "NZ");
+		ProcessingPlan plan = ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.AUDIO, newLocale, null);
+		assertNotNull(plan);
+		assertTrue(ModuleRegistry.getProcessingPlans().contains(plan));
+		assertTrue(plan == ModuleRegistry.getProcessingPlan(MaryDataType.TEXT, MaryDataType.AUDIO, newLocale, null));
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import marytts.datatypes.MaryDataType;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.sun.speech.freetts.Utterance;
+
+public class Utt2XMLBaseTest {
+
+	private MaryModule domModule(MaryDataType input, MaryDataType output) {
+		return new InternalModule("DOM module", input, output, null);
+	}
+
+	@Test
+	public void noViewWithoutConversionBack() {
+		// e.g. the English pipeline, which only runs DOM modules after the last conversion to MaryXML
+		List<MaryModule> later = Arrays.asList(domModule(MaryDataType.ACOUSTPARAMS, MaryDataType.ALLOPHONES),
+				domModule(MaryDataType.ALLOPHONES, MaryDataType.ACOUSTPARAMS));
+		assertFalse(Utt2XMLBase.isConvertedBack(MaryDataType.FREETTS_ACOUSTPARAMS, later));
+		assertFalse(Utt2XMLBase.isConvertedBack(MaryDataType.FREETTS_ACOUSTPARAMS, new ArrayList<MaryModule>()));
+	}
+
+	@Test
+	public void noViewForConversionToOtherUtterances() {
+		MaryModule otherXML2Utt = new XML2UttBase("XML2Utt Other", MaryDataType.ACOUSTPARAMS, MaryDataType.FESTIVAL_UTT, null) {
+			protected void fillUtterance(Utterance utterance, Element sentence) {
+			}
+		};
+		assertFalse(Utt2XMLBase.isConvertedBack(MaryDataType.FREETTS_ACOUSTPARAMS, Arrays.asList(otherXML2Utt)));
+	}
+
+	@Test
+	public void viewForLaterConversionBack() {
+		List<MaryModule> later = Arrays.asList(domModule(MaryDataType.ACOUSTPARAMS, MaryDataType.ACOUSTPARAMS),
+				new XML2UttAcoustParams());
+		assertTrue(Utt2XMLBase.isConvertedBack(MaryDataType.FREETTS_ACOUSTPARAMS, later));
+	}
+}
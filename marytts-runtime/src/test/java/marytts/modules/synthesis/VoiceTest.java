@@ -0,0 +1,169 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.modules.synthesis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureRegistry;
+import marytts.util.MaryUtils;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class VoiceTest {
+	// a language of its own, so that the voices of other tests do not get in the way
+	private static final Locale XQ = new Locale("xq");
+	private static final Locale XQ_AA = new Locale("xq", "AA");
+	private static final Locale XQ_AA_V = new Locale("xq", "AA", "v");
+	private static final Locale XQ_BB = new Locale("xq", "BB");
+	private static final List<Locale> LOCALES = Arrays.asList(XQ, XQ_AA, XQ_AA_V, XQ_BB, new Locale("xq", "CC"), new Locale(
+			"xr"), new Locale("xr", "AA"));
+
+	private final List<Voice> registered = new ArrayList<Voice>();
+
+	@BeforeClass
+	public static void setUpFeatureProcessors() {
+		if (FeatureRegistry.getFallbackFeatureProcessorManager() == null) {
+			FeatureRegistry.setFallbackFeatureProcessorManager(new FeatureProcessorManager());
+		}
+	}
+
+	@After
+	public void unregisterVoices() {
+		for (Voice voice : registered) {
+			Voice.unregisterVoice(voice);
+			System.clearProperty("voice." + voice.getName() + ".allophoneset");
+			System.clearProperty("voice." + voice.getName() + ".wants.to.be.default");
+		}
+	}
+
+	private Voice register(String name, Locale locale, Voice.Gender gender, int wantToBeDefault) throws Exception {
+		System.setProperty("voice." + name + ".allophoneset", "jar:/marytts/features/allophones.ROOT.xml");
+		System.setProperty("voice." + name + ".wants.to.be.default", String.valueOf(wantToBeDefault));
+		Voice voice = new Voice(name, locale, new AudioFormat(16000, 16, 1, true, false), null, gender);
+		registered.add(voice);
+		Voice.registerVoice(voice);
+		return voice;
+	}
+
+	@Test
+	public void voicesOfALocaleAreThoseItSubsumes() throws Exception {
+		List<Voice> all = new ArrayList<Voice>();
+		int i = 0;
+		for (Locale locale : LOCALES) {
+			all.add(register("subsumed" + i++, locale, Voice.FEMALE, 0));
+		}
+		for (Locale general : LOCALES) {
+			List<Voice> expected = new ArrayList<Voice>();
+			for (Voice voice : Voice.getAvailableVoices()) {
+				if (all.contains(voice) && MaryUtils.subsumes(general, voice.getLocale())) {
+					expected.add(voice);
+				}
+			}
+			assertEquals(general.toString(), expected, Voice.getAvailableVoices(general));
+		}
+		// a language covers all its countries, a country all its variants, but not the other way round
+		assertEquals(5, Voice.getAvailableVoices(XQ).size());
+		assertEquals(2, Voice.getAvailableVoices(XQ_AA).size());
+		assertEquals(1, Voice.getAvailableVoices(XQ_AA_V).size());
+		assertTrue(Voice.getAvailableVoices(new Locale("xq", "DD")).isEmpty());
+	}
+
+	@Test
+	public void voicesAreOrderedByWishToBeDefault() throws Exception {
+		Voice low = register("order-low", XQ_AA, Voice.FEMALE, 1);
+		Voice high = register("order-high", XQ_BB, Voice.MALE, 10);
+		Voice middle = register("order-middle", XQ_AA, Voice.MALE, 5);
+		assertEquals(Arrays.asList(high, middle, low), Voice.getAvailableVoices(XQ));
+		assertEquals(Arrays.asList(middle, low), Voice.getAvailableVoices(XQ_AA));
+	}
+
+	@Test
+	public void firstVoiceOfEachGenderIsPicked() throws Exception {
+		Voice female1 = register("gender-f1", XQ_AA, Voice.FEMALE, 1);
+		Voice female2 = register("gender-f2", XQ_AA_V, Voice.FEMALE, 5);
+		Voice male = register("gender-m", XQ_BB, Voice.MALE, 0);
+		// the female voice most wanting to be default, among those of the subsumed locales
+		assertSame(female2, Voice.getVoice(XQ, Voice.FEMALE));
+		assertSame(female2, Voice.getVoice(XQ_AA, Voice.FEMALE));
+		assertSame(female2, Voice.getVoice(XQ_AA_V, Voice.FEMALE));
+		assertSame(male, Voice.getVoice(XQ, Voice.MALE));
+		assertSame(male, Voice.getVoice(XQ_BB, Voice.MALE));
+		assertNull(Voice.getVoice(XQ_AA, Voice.MALE));
+		assertNull(Voice.getVoice(XQ_BB, Voice.FEMALE));
+		Voice.unregisterVoice(female2);
+		assertSame(female1, Voice.getVoice(XQ, Voice.FEMALE));
+		assertNull(Voice.getVoice(XQ_AA_V, Voice.FEMALE));
+	}
+
+	@Test
+	public void defaultVoiceWantsMostToBeDefault() throws Exception {
+		Voice first = register("default-first", XQ_AA, Voice.MALE, 1);
+		assertSame(first, Voice.getDefaultVoice(XQ_AA));
+		Voice keen = register("default-keen", XQ_AA, Voice.MALE, 5);
+		assertSame(keen, Voice.getDefaultVoice(XQ_AA));
+		// an equal wish does not replace the current default
+		register("default-equal", XQ_AA, Voice.MALE, 5);
+		assertSame(keen, Voice.getDefaultVoice(XQ_AA));
+		// without a default voice for the locale itself, a female voice is preferred
+		Voice female = register("default-female", XQ_BB, Voice.FEMALE, 0);
+		assertSame(female, Voice.getDefaultVoice(XQ));
+	}
+
+	@Test
+	public void unregisterVoice() throws Exception {
+		Voice low = register("unregister-low", XQ_AA, Voice.FEMALE, 1);
+		Voice high = register("unregister-high", XQ_AA, Voice.FEMALE, 9);
+		// male, so that electing it differs from falling back to the first female voice
+		Voice middle = register("unregister-middle", XQ_AA, Voice.MALE, 5);
+		assertSame(high, Voice.getDefaultVoice(XQ_AA));
+		int count = Voice.getRegistrationCount();
+
+		Voice.unregisterVoice(high);
+		assertEquals(count + 1, Voice.getRegistrationCount());
+		assertNull(Voice.getVoice("unregister-high"));
+		assertFalse(Voice.getAvailableVoices().contains(high));
+		assertEquals(Arrays.asList(middle, low), Voice.getAvailableVoices(XQ_AA));
+		// the remaining voice which most wants to be default is elected
+		assertSame(middle, Voice.getDefaultVoice(XQ_AA));
+
+		// unregistering a voice twice changes nothing
+		Voice.unregisterVoice(high);
+		assertEquals(count + 1, Voice.getRegistrationCount());
+
+		Voice.unregisterVoice(middle);
+		Voice.unregisterVoice(low);
+		assertNull(Voice.getDefaultVoice(XQ_AA));
+		assertTrue(Voice.getAvailableVoices(XQ_AA).isEmpty());
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+	@Test
+	public void histogramBucketsAreCumulative() {
+		Metrics.Histogram histogram = new Metrics.Histogram(new double[] { 0.1, 1 });
+		histogram.observe(0.05);
+		histogram.observe(0.1);
+		histogram.observe(0.5);
+		histogram.observe(7);
+		assertEquals(4, histogram.getCount());
+		assertEquals(7.65, histogram.getSum(), 1e-9);
+		StringBuilder out = new StringBuilder();
+		histogram.writeTo(out, "x", "m=\"a\"");
+		assertEquals("x_bucket{m=\"a\",le=\"0.1\"} 2\n" + "x_bucket{m=\"a\",le=\"1.0\"} 3\n" + "x_bucket{m=\"a\",le=\"+Inf\"} 4\n"
+				+ "x_sum{m=\"a\"} 7.65\n" + "x_count{m=\"a\"} 4\n", out.toString());
+	}
+
+	@Test
+	public void requestsAreExported() {
+		Metrics.requestStarted();
+		Metrics.moduleProcessed("Test\"Module", 2000000);
+		Metrics.cacheLookup("test", true);
+		Metrics.cacheLookup("test", false);
+		Metrics.cacheLookup("test", false);
+		Metrics.requestFinished("test-voice", 30000000, 3, -1, true);
+		StringBuilder out = new StringBuilder();
+		Metrics.writeTo(out);
+		String metrics = out.toString();
+		assertTrue(metrics.contains("# TYPE mary_module_duration_seconds histogram\n"));
+		assertTrue(metrics.contains("mary_module_duration_seconds_bucket{module=\"Test\\\"Module\",le=\"0.001\"} 0\n"));
+		assertTrue(metrics.contains("mary_module_duration_seconds_bucket{module=\"Test\\\"Module\",le=\"0.005\"} 1\n"));
+		assertTrue(metrics.contains("mary_request_duration_seconds_count{voice=\"test-voice\"} 1\n"));
+		assertTrue(metrics.contains("mary_realtime_factor_bucket{voice=\"test-voice\",le=\"0.01\"} 1\n"));
+		assertTrue(metrics.contains("mary_cache_lookups_total{cache=\"test\",result=\"hit\"} 1\n"));
+		assertTrue(metrics.contains("mary_cache_lookups_total{cache=\"test\",result=\"miss\"} 2\n"));
+		assertTrue(metrics.contains("\nmary_requests_in_flight 0\n"));
+		assertTrue(metrics.contains("\njvm_memory_heap_used_bytes "));
+	}
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NioMaryServerTest {
+	private NioMaryServer server;
+	private int port;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new NioMaryServer(0);
+		Thread t = new Thread(server);
+		t.setDaemon(true);
+		t.start();
+		port = server.getLocalPort();
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		server.shutdown();
+	}
+
+	@Test
+	public void takeLine() throws Exception {
+		ByteBuffer in = ByteBuffer.allocate(64);
+		in.put("MARY VERSION\r\n12".getBytes("UTF-8"));
+		assertEquals("MARY VERSION", NioMaryServer.takeLine(in));
+		assertNull(NioMaryServer.takeLine(in));
+		in.put("3\nrest".getBytes("UTF-8"));
+		assertEquals("123", NioMaryServer.takeLine(in));
+		assertEquals(4, in.position());
+	}
+
+	@Test
+	public void frameOutputStream() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		NioMaryServer.FrameOutputStream frames = new NioMaryServer.FrameOutputStream(out);
+		frames.write(new byte[10000]);
+		frames.write(7);
+		frames.close();
+		NioMaryServer.writeFrame(out, NioMaryServer.FRAME_END, new byte[0]);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(NioMaryServer.FRAME_DATA, in.readByte());
+		assertEquals(8192, in.readInt());
+		in.readFully(new byte[8192]);
+		assertEquals(NioMaryServer.FRAME_DATA, in.readByte());
+		assertEquals(10001 - 8192, in.readInt());
+		byte[] rest = new byte[10001 - 8192];
+		in.readFully(rest);
+		assertEquals(7, rest[rest.length - 1]);
+		assertEquals(NioMaryServer.FRAME_END, in.readByte());
+		assertEquals(0, in.readInt());
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void infoRequest() throws Exception {
+		Socket socket = new Socket("localhost", port);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+		out.println("MARY VERSION");
+		assertTrue(in.readLine().startsWith("Mary TTS server"));
+		String line;
+		while (!(line = in.readLine()).isEmpty()) {
+			// skip the rest of the version information
+		}
+		// the connection remains open for further requests
+		out.println("MARY VERSION");
+		assertTrue(in.readLine().startsWith("Mary TTS server"));
+		socket.close();
+	}
+
+	@Test
+	public void unknownRequestNumber() throws Exception {
+		Socket socket = new Socket("localhost", port);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+		out.println("4711");
+		assertEquals("Error parsing request:", in.readLine());
+		assertEquals("Invalid identification number.", in.readLine());
+		assertNull(in.readLine());
+		socket.close();
+	}
+
+	@Test
+	public void framedError() throws Exception {
+		Socket socket = new Socket("localhost", port);
+		PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+		out.println("MARY FRAMED IN=NO_SUCH_TYPE OUT=AUDIO LOCALE=en_US");
+		DataInputStream in = new DataInputStream(socket.getInputStream());
+		assertEquals(NioMaryServer.FRAME_ERROR, in.readByte());
+		byte[] message = new byte[in.readInt()];
+		in.readFully(message);
+		assertTrue(new String(message, "UTF-8").startsWith("Error parsing request: "));
+		assertEquals(-1, in.read());
+		socket.close();
+	}
+}
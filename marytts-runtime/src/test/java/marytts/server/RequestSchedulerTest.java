@@ -0,0 +1,122 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import marytts.datatypes.MaryDataType;
+import marytts.exceptions.RequestCancelledException;
+
+import org.junit.Test;
+
+public class RequestSchedulerTest {
+
+	private Thread enqueue(RequestScheduler scheduler, RequestScheduler.Priority priority, long cost, String name,
+			List<String> admitted) throws InterruptedException {
+		return enqueue(scheduler, null, priority, cost, name, admitted);
+	}
+
+	private Thread enqueue(final RequestScheduler scheduler, final Request request, final RequestScheduler.Priority priority,
+			final long cost, final String name, final List<String> admitted) throws InterruptedException {
+		int waiting = scheduler.getWaiting();
+		Thread thread = new Thread() {
+			public void run() {
+				try {
+					scheduler.admit(request, priority, cost);
+					admitted.add(name);
+				} catch (InterruptedException e) {
+					// end of test
+				} catch (RequestCancelledException e) {
+					// not admitted
+				}
+			}
+		};
+		thread.start();
+		while (scheduler.getWaiting() == waiting) {
+			Thread.sleep(1);
+		}
+		return thread;
+	}
+
+	@Test
+	public void shortInteractiveRequestsOvertakeBulkRequests() throws Exception {
+		RequestScheduler scheduler = new RequestScheduler(1, 10, 10, 1);
+		scheduler.admit(null, RequestScheduler.Priority.BULK, 1000);
+		List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+		List<Thread> threads = new ArrayList<Thread>();
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.BULK, 1000, "bulk1", admitted));
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.BULK, 1000, "bulk2", admitted));
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.INTERACTIVE, 50, "interactive1", admitted));
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.INTERACTIVE, 50, "interactive2", admitted));
+		assertEquals(1, scheduler.getRunning());
+		for (int i = 1; i <= threads.size(); i++) {
+			scheduler.release();
+			while (admitted.size() < i) {
+				Thread.sleep(1);
+			}
+			assertEquals(1, scheduler.getRunning());
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(Arrays.asList("interactive1", "interactive2", "bulk1", "bulk2"), admitted);
+		assertEquals(0, scheduler.getWaiting());
+	}
+
+	@Test
+	public void cancelledRequestDoesNotDelayItsClass() throws Exception {
+		RequestScheduler scheduler = new RequestScheduler(1, 10, 10, 1);
+		scheduler.admit(null, RequestScheduler.Priority.INTERACTIVE, 1);
+		List<String> admitted = Collections.synchronizedList(new ArrayList<String>());
+		Request cancelled = new Request(MaryDataType.TEXT, MaryDataType.RAWMARYXML, Locale.US, null, null, null, 1, null);
+		Thread thread = enqueue(scheduler, cancelled, RequestScheduler.Priority.BULK, 1000, "cancelled", admitted);
+		cancelled.abort();
+		thread.join();
+		assertEquals(0, scheduler.getWaiting());
+		// with the cancelled request still counted, the short bulk request would finish at 1001, after the interactive one at 10
+		List<Thread> threads = new ArrayList<Thread>();
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.INTERACTIVE, 100, "interactive", admitted));
+		threads.add(enqueue(scheduler, RequestScheduler.Priority.BULK, 1, "bulk", admitted));
+		for (int i = 1; i <= threads.size(); i++) {
+			scheduler.release();
+			while (admitted.size() < i) {
+				Thread.sleep(1);
+			}
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertEquals(Arrays.asList("bulk", "interactive"), admitted);
+	}
+
+	@Test(expected = RequestCancelledException.class)
+	public void refuseWhenQueueIsFull() throws Exception {
+		RequestScheduler scheduler = new RequestScheduler(2, 0, 10, 1);
+		scheduler.admit(null, RequestScheduler.Priority.INTERACTIVE, 10);
+		scheduler.admit(null, RequestScheduler.Priority.INTERACTIVE, 10);
+		scheduler.admit(null, RequestScheduler.Priority.INTERACTIVE, 10);
+	}
+}
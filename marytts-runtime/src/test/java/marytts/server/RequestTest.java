@@ -0,0 +1,128 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Locale;
+
+import marytts.datatypes.MaryDataType;
+import marytts.exceptions.RequestCancelledException;
+import marytts.exceptions.SynthesisException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RequestTest {
+
+	private static Request newRequest(int id) {
+		return new Request(MaryDataType.TEXT, MaryDataType.RAWMARYXML, Locale.US, null, null, null, id, null);
+	}
+
+	@After
+	public void clearServerTimeout() {
+		System.clearProperty("server.request.timeout");
+	}
+
+	@Test
+	public void requestWithoutTimeoutIsNotCancelled() throws Exception {
+		Request request = newRequest(1);
+		Thread.sleep(20);
+		assertFalse(request.isCancelled());
+		request.checkCancelled();
+	}
+
+	@Test
+	public void deadlineExpires() throws Exception {
+		Request request = newRequest(2);
+		request.setTimeout(10);
+		Thread.sleep(50);
+		assertTrue(request.isCancelled());
+		try {
+			request.checkCancelled();
+			fail("expected the deadline to have passed");
+		} catch (RequestCancelledException e) {
+			assertEquals("Request 2 has not finished within 10 ms", e.getMessage());
+		}
+	}
+
+	@Test
+	public void deadlineIsMeasuredFromCreation() throws Exception {
+		Request request = newRequest(3);
+		Thread.sleep(50);
+		// a timeout set late still counts the time the request has already been around
+		request.setTimeout(10);
+		assertTrue(request.isCancelled());
+		request.setTimeout(60000);
+		assertFalse(request.isCancelled());
+	}
+
+	@Test
+	public void abort() {
+		Request request = newRequest(4);
+		request.abort();
+		assertTrue(request.isCancelled());
+		try {
+			request.checkCancelled();
+			fail("expected the request to be aborted");
+		} catch (RequestCancelledException e) {
+			assertEquals("Request 4 has been aborted", e.getMessage());
+		}
+	}
+
+	@Test
+	public void serverTimeoutUnset() {
+		assertEquals(0, Request.getServerTimeout(0));
+		assertEquals(0, Request.getServerTimeout(-5));
+		assertEquals(300, Request.getServerTimeout(300));
+	}
+
+	@Test
+	public void serverTimeoutIsUpperBound() {
+		System.setProperty("server.request.timeout", "1000");
+		// clients without a timeout of their own get the server's
+		assertEquals(1000, Request.getServerTimeout(0));
+		assertEquals(1000, Request.getServerTimeout(-1));
+		// clients may ask for less, but not for more
+		assertEquals(300, Request.getServerTimeout(300));
+		assertEquals(1000, Request.getServerTimeout(5000));
+	}
+
+	@Test
+	public void serverTimeoutDisabled() {
+		System.setProperty("server.request.timeout", "0");
+		assertEquals(0, Request.getServerTimeout(0));
+		assertEquals(5000, Request.getServerTimeout(5000));
+	}
+
+	@Test
+	public void findCancellation() {
+		RequestCancelledException cancelled = new RequestCancelledException("gone");
+		SynthesisException wrapped = new SynthesisException("synthesis failed", new IllegalStateException(cancelled));
+		assertSame(cancelled, Request.findCancellation(cancelled));
+		assertSame(cancelled, Request.findCancellation(wrapped));
+		assertNull(Request.findCancellation(new SynthesisException("synthesis failed", new IllegalStateException())));
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RequestTraceTest {
+
+	@Test
+	public void spansAndFirstByte() throws Exception {
+		RequestTrace trace = new RequestTrace(42);
+		RequestTrace.Span chunk = trace.startSpan("chunk", "paragraph", 0);
+		RequestTrace.Span module = trace.startSpan("module", "Odd\"Module", 0);
+		trace.endSpan(module);
+		trace.endSpan(chunk);
+		assertFalse(trace.toJson().contains("first_byte_ms"));
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = trace.recordFirstByte(bytes);
+		out.write(new byte[0]);
+		assertFalse(trace.toJson().contains("first_byte_ms"));
+		out.write(new byte[] { 1, 2, 3 }, 1, 2);
+		assertEquals(2, bytes.size());
+		trace.finish(true);
+
+		String json = trace.toJson();
+		assertTrue(json, json.startsWith("{\"trace\":\"" + trace.getTraceId() + "\",\"request\":42,\"start\":"));
+		assertTrue(json, json.contains(",\"success\":true,\"total_ms\":"));
+		assertTrue(json, json.contains(",\"first_byte_ms\":"));
+		// spans are listed in the order in which they end
+		assertTrue(json, json.contains("\"spans\":[{\"type\":\"module\",\"name\":\"Odd\\\"Module\",\"chunk\":0,\"start_ms\":"));
+		assertTrue(json, json.contains("},{\"type\":\"chunk\",\"name\":\"paragraph\",\"chunk\":0,"));
+		assertEquals(16, trace.getTraceId().length());
+	}
+
+	@Test
+	public void recentTracesAreBounded() {
+		RequestTrace first = new RequestTrace(1);
+		first.finish(false);
+		first.finish(true);
+		assertTrue(first.toJson().contains("\"success\":false"));
+		List<RequestTrace> recent = RequestTrace.getRecentTraces();
+		assertSame(first, recent.get(recent.size() - 1));
+
+		for (int i = 0; i < RequestTrace.MAX_RECENT_TRACES; i++) {
+			new RequestTrace(i).finish(true);
+		}
+		recent = RequestTrace.getRecentTraces();
+		assertEquals(RequestTrace.MAX_RECENT_TRACES, recent.size());
+		assertNotSame(first, recent.get(0));
+		assertFalse(recent.contains(first));
+	}
+}
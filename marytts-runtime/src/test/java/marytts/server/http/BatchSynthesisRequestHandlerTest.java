@@ -0,0 +1,93 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import marytts.server.http.BatchSynthesisRequestHandler.BatchItem;
+
+import org.junit.Test;
+
+public class BatchSynthesisRequestHandlerTest {
+
+	@Test
+	public void parseItems() {
+		List<BatchItem> items = BatchSynthesisRequestHandler.parseItems("{\"id\": \"a1\", \"text\": \"Hello \\\"world\\\"!\"}\r\n"
+				+ "\n" + "  { \"text\" : \"Gr\\u00fc\\u00dfe\\nzwei\", \"speed\": 1.5, \"ssml\": false }  \n");
+		assertEquals(2, items.size());
+		assertEquals("a1", items.get(0).id);
+		assertEquals("Hello \"world\"!", items.get(0).text);
+		// lines are counted including empty ones
+		assertEquals("3", items.get(1).id);
+		assertEquals("Grüße\nzwei", items.get(1).text);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void itemWithoutText() {
+		BatchSynthesisRequestHandler.parseItems("{\"id\": \"a1\"}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void malformedItem() {
+		BatchSynthesisRequestHandler.parseItems("{\"text\": \"unterminated}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void idWhichBreaksHeader() {
+		BatchSynthesisRequestHandler.parseItems("{\"id\": \"a>\\r\\nX-Injected: 1\", \"text\": \"Hello\"}");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyBatch() {
+		BatchSynthesisRequestHandler.parseItems("\n \n");
+	}
+
+	@Test
+	public void writeParts() throws Exception {
+		BatchItem audio = new BatchItem("a1", "Hello");
+		audio.contentType = "audio/x-wav";
+		audio.output = new byte[] { 'R', 'I', 'F', 'F' };
+		BatchItem failed = new BatchItem("a2", "Hello");
+		failed.error = "No voice";
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BatchSynthesisRequestHandler.writePart(out, "b", audio);
+		BatchSynthesisRequestHandler.writePart(out, "b", failed);
+		BatchSynthesisRequestHandler.writeEnd(out, "b");
+		assertEquals("--b\r\nContent-ID: <a1>\r\nContent-Type: audio/x-wav\r\nContent-Length: 4\r\n\r\nRIFF\r\n"
+				+ "--b\r\nContent-ID: <a2>\r\nContent-Type: text/plain; charset=UTF-8\r\nContent-Description: error\r\n"
+				+ "Content-Length: 8\r\n\r\nNo voice\r\n--b--\r\n", out.toString("UTF-8"));
+	}
+
+	@Test
+	public void writerStopsWhenConnectionClosesBeforeOutput() throws Exception {
+		BatchSynthesisRequestHandler handler = new BatchSynthesisRequestHandler();
+		BatchSynthesisRequestHandler.BatchNHttpEntity entity = handler.new BatchNHttpEntity(
+				new SynthesisRequestHandler.RequestParameters(), BatchSynthesisRequestHandler.parseItems("{\"text\": \"Hello\"}"));
+		Thread writer = new Thread(entity);
+		writer.start();
+		entity.finish();
+		writer.join(10000);
+		assertFalse(writer.isAlive());
+	}
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.sound.sampled.AudioFormat;
+
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureRegistry;
+import marytts.modules.synthesis.Voice;
+import marytts.util.io.FileUtils;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+public class InfoRequestHandlerTest {
+
+	/**
+	 * A handler as in a running server, with made-up responses which count how often they are computed.
+	 */
+	private static class CountingHandler extends InfoRequestHandler {
+		private int computed;
+
+		@Override
+		boolean mayKeepResponses() {
+			return true;
+		}
+
+		@Override
+		String handleInfoRequest(String absPath, Map<String, String> queryItems, HttpResponse response) {
+			computed++;
+			return "response to " + absPath + " " + queryItems;
+		}
+	}
+
+	private HttpResponse get(InfoRequestHandler handler, String uri, String header, String value) throws Exception {
+		BasicHttpRequest request = new BasicHttpRequest("GET", uri);
+		request.addHeader("Host", "localhost:59125");
+		if (header != null) {
+			request.addHeader(header, value);
+		}
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+		handler.handle(request, response, null);
+		return response;
+	}
+
+	@Test
+	public void notModified() throws Exception {
+		InfoRequestHandler handler = new InfoRequestHandler();
+		HttpResponse response = get(handler, "/version", null, null);
+		assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+		String etag = response.getFirstHeader("ETag").getValue();
+		response = get(handler, "/version", "If-None-Match", "\"other\", " + etag);
+		assertEquals(HttpStatus.SC_NOT_MODIFIED, response.getStatusLine().getStatusCode());
+		assertNull(response.getEntity());
+		response = get(handler, "/version", "If-None-Match", "\"other\"");
+		assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+	}
+
+	@Test
+	public void gzip() throws Exception {
+		InfoRequestHandler handler = new InfoRequestHandler();
+		String plain = EntityUtils.toString(get(handler, "/audioeffects", null, null).getEntity(), "UTF-8");
+		HttpResponse response = get(handler, "/audioeffects", "Accept-Encoding", "deflate, gzip");
+		assertNotNull(response.getFirstHeader("Content-Encoding"));
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(EntityUtils.toByteArray(response.getEntity())));
+		assertEquals(plain, FileUtils.getStreamAsString(in, "UTF-8"));
+		response = get(handler, "/audioeffects", "Accept-Encoding", "gzip;q=0");
+		assertNull(response.getFirstHeader("Content-Encoding"));
+	}
+
+	@Test
+	public void errorsHaveNoETag() throws Exception {
+		HttpResponse response = get(new InfoRequestHandler(), "/exampletext", null, null);
+		assertEquals(HttpStatus.SC_BAD_REQUEST, response.getStatusLine().getStatusCode());
+		assertNull(response.getFirstHeader("ETag"));
+	}
+
+	@Test
+	public void responsesAreComputedOncePerConfiguration() throws Exception {
+		CountingHandler handler = new CountingHandler();
+		String body = EntityUtils.toString(get(handler, "/voices", null, null).getEntity(), "UTF-8");
+		assertEquals(body, EntityUtils.toString(get(handler, "/voices", null, null).getEntity(), "UTF-8"));
+		assertEquals(1, handler.computed);
+		get(handler, "/locales", null, null);
+		assertEquals(2, handler.computed);
+		// the order of the query parameters does not matter
+		get(handler, "/exampletext?datatype=TEXT&locale=de", null, null);
+		get(handler, "/exampletext?locale=de&datatype=TEXT", null, null);
+		assertEquals(3, handler.computed);
+		get(handler, "/exampletext?datatype=RAWMARYXML&locale=de", null, null);
+		assertEquals(4, handler.computed);
+	}
+
+	@Test
+	public void responsesAreNotKeptWhileStarting() throws Exception {
+		CountingHandler handler = new CountingHandler() {
+			@Override
+			boolean mayKeepResponses() {
+				return false;
+			}
+		};
+		get(handler, "/voices", null, null);
+		get(handler, "/voices", null, null);
+		assertEquals(2, handler.computed);
+	}
+
+	@Test
+	public void newSnapshotWhenVoicesChange() throws Exception {
+		CountingHandler handler = new CountingHandler();
+		get(handler, "/voices", null, null);
+		get(handler, "/voices", null, null);
+		assertEquals(1, handler.computed);
+		if (FeatureRegistry.getFallbackFeatureProcessorManager() == null) {
+			FeatureRegistry.setFallbackFeatureProcessorManager(new FeatureProcessorManager());
+		}
+		System.setProperty("voice.snapshot-voice.allophoneset", "jar:/marytts/features/allophones.ROOT.xml");
+		Voice voice = new Voice("snapshot-voice", new Locale("xq"), new AudioFormat(16000, 16, 1, true, false), null, Voice.FEMALE);
+		int registrationCount = Voice.getRegistrationCount();
+		Voice.registerVoice(voice);
+		try {
+			assertEquals(registrationCount + 1, Voice.getRegistrationCount());
+			get(handler, "/voices", null, null);
+			get(handler, "/voices", null, null);
+			assertEquals(2, handler.computed);
+		} finally {
+			Voice.unregisterVoice(voice);
+			System.clearProperty("voice.snapshot-voice.allophoneset");
+		}
+		get(handler, "/voices", null, null);
+		assertEquals(3, handler.computed);
+	}
+
+	@Test
+	public void numberOfResponsesIsBounded() throws Exception {
+		CountingHandler handler = new CountingHandler();
+		for (int i = 0; i < InfoRequestHandler.MAX_RESPONSES; i++) {
+			get(handler, "/version?n=" + i, null, null);
+		}
+		assertEquals(InfoRequestHandler.MAX_RESPONSES, handler.computed);
+		get(handler, "/version?n=0", null, null);
+		assertEquals(InfoRequestHandler.MAX_RESPONSES, handler.computed);
+		// further responses are computed each time, and still have an ETag
+		HttpResponse response = get(handler, "/version?n=-1", null, null);
+		assertNotNull(response.getFirstHeader("ETag"));
+		get(handler, "/version?n=-1", null, null);
+		assertEquals(InfoRequestHandler.MAX_RESPONSES + 2, handler.computed);
+	}
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import marytts.datatypes.MaryDataType;
+import marytts.server.Request;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.protocol.NHttpResponseTrigger;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.Test;
+
+public class RequestHandlerAdaptorTest {
+
+	private static class Trigger implements NHttpResponseTrigger {
+		private final CountDownLatch done = new CountDownLatch(1);
+		private HttpResponse response;
+		private Exception exception;
+
+		public void submitResponse(HttpResponse response) {
+			this.response = response;
+			done.countDown();
+		}
+
+		public void handleException(HttpException e) {
+			exception = e;
+			done.countDown();
+		}
+
+		public void handleException(IOException e) {
+			exception = e;
+			done.countDown();
+		}
+	}
+
+	@Test
+	public void blockingHandlerDoesNotHoldUpCaller() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final Thread[] handlerThread = new Thread[1];
+		HttpRequestHandler blocking = new HttpRequestHandler() {
+			public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException, IOException {
+				handlerThread[0] = Thread.currentThread();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage());
+				}
+				response.setStatusCode(HttpStatus.SC_ACCEPTED);
+			}
+		};
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			Trigger trigger = new Trigger();
+			HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+			new RequestHandlerAdaptor(blocking, executor).handle(new BasicHttpRequest("GET", "/process"), response, trigger, null);
+			// the call returns while the handler is still waiting
+			assertEquals(1, trigger.done.getCount());
+			release.countDown();
+			assertTrue(trigger.done.await(10, TimeUnit.SECONDS));
+			assertSame(response, trigger.response);
+			assertEquals(HttpStatus.SC_ACCEPTED, trigger.response.getStatusLine().getStatusCode());
+			assertNotSame(Thread.currentThread(), handlerThread[0]);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void handlerExceptionIsPassedToTrigger() throws Exception {
+		HttpRequestHandler failing = new HttpRequestHandler() {
+			public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+				throw new IllegalStateException("failed");
+			}
+		};
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			Trigger trigger = new Trigger();
+			new RequestHandlerAdaptor(failing, executor).handle(new BasicHttpRequest("GET", "/process"),
+					new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), trigger, null);
+			assertTrue(trigger.done.await(10, TimeUnit.SECONDS));
+			assertTrue(trigger.exception instanceof HttpException);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Request newRequest() {
+		return new Request(MaryDataType.TEXT, MaryDataType.RAWMARYXML, Locale.US, null, null, null, 1, null);
+	}
+
+	@Test
+	public void closingConnectionAbortsRunningRequest() throws Exception {
+		final Request maryRequest = newRequest();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		HttpRequestHandler blocking = new HttpRequestHandler() {
+			public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException, IOException {
+				RequestHandlerAdaptor.abortOnClose(maryRequest);
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e.getMessage());
+				}
+			}
+		};
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			Trigger trigger = new Trigger();
+			HttpContext context = new BasicHttpContext();
+			new RequestHandlerAdaptor(blocking, executor).handle(new BasicHttpRequest("GET", "/process"),
+					new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"), trigger, context);
+			assertTrue(started.await(10, TimeUnit.SECONDS));
+			assertFalse(maryRequest.isCancelled());
+			RequestHandlerAdaptor.connectionClosed(context);
+			assertTrue(maryRequest.isCancelled());
+			release.countDown();
+			assertTrue(trigger.done.await(10, TimeUnit.SECONDS));
+			// the connection no longer refers to the finished handler
+			assertNull(context.getAttribute(RequestHandlerAdaptor.CONNECTION_MONITOR));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void closeBeforeRequestIsKnownAbortsIt() {
+		RequestHandlerAdaptor.ConnectionMonitor monitor = new RequestHandlerAdaptor.ConnectionMonitor();
+		monitor.close();
+		Request maryRequest = newRequest();
+		monitor.setRequest(maryRequest);
+		assertTrue(maryRequest.isCancelled());
+	}
+
+	@Test
+	public void closingIdleConnectionIsHarmless() {
+		// a handler on the I/O reactor thread has no monitor to register with
+		Request maryRequest = newRequest();
+		RequestHandlerAdaptor.abortOnClose(maryRequest);
+		RequestHandlerAdaptor.connectionClosed(new BasicHttpContext());
+		assertFalse(maryRequest.isCancelled());
+	}
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.unitselection.select;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import marytts.datatypes.MaryXML;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureProcessorManager;
+import marytts.features.FeatureVector;
+import marytts.unitselection.data.DiphoneUnit;
+import marytts.unitselection.data.FeatureFileReader;
+import marytts.unitselection.data.Unit;
+import marytts.unitselection.data.UnitDatabase;
+import marytts.unitselection.select.viterbi.ViterbiCandidate;
+import marytts.util.dom.DomUtils;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+public class UnitSelectorTest {
+
+	private List<Element> segmentsAndBoundaries(String sentence) throws Exception {
+		Document doc = DomUtils.parseDocument("<s>" + sentence + "</s>");
+		List<Element> tokensAndBoundaries = new ArrayList<Element>();
+		NodeList elements = doc.getElementsByTagName("*");
+		for (int i = 0; i < elements.getLength(); i++) {
+			Element element = (Element) elements.item(i);
+			if (element.getTagName().equals(MaryXML.TOKEN) || element.getTagName().equals(MaryXML.BOUNDARY)) {
+				tokensAndBoundaries.add(element);
+			}
+		}
+		return UnitSelector.getSegmentsAndBoundaries(tokensAndBoundaries);
+	}
+
+	@Test
+	public void segmentsAndBoundaries() throws Exception {
+		List<Element> elements = segmentsAndBoundaries("<boundary breakindex='4'/>"
+				+ "<t><syllable><ph p='h'/><ph p='i'/></syllable></t><t>,</t><boundary breakindex='5'/>");
+		assertEquals(4, elements.size());
+		assertEquals("_", UnitSelector.getPhoneSymbol(elements.get(0)));
+		assertEquals("h", UnitSelector.getPhoneSymbol(elements.get(1)));
+		assertEquals("i", UnitSelector.getPhoneSymbol(elements.get(2)));
+		assertEquals("_", UnitSelector.getPhoneSymbol(elements.get(3)));
+	}
+
+	@Test
+	public void phrasesEndAfterPhraseBoundaries() throws Exception {
+		List<Element> elements = segmentsAndBoundaries("<boundary breakindex='4'/><t><ph p='a'/><ph p='b'/></t>"
+				+ "<boundary breakindex='2'/><t><ph p='c'/></t><boundary breakindex='4'/>"
+				+ "<t><ph p='d'/></t><boundary breakindex='5'/><t><ph p='e'/></t>"
+				+ "<boundary breakindex='6'/><boundary breakindex='6'/>");
+		// a leading boundary does not end a phrase, nor does a boundary within a phrase
+		assertEquals(6, UnitSelector.getPhraseEnd(elements, 0));
+		assertEquals(8, UnitSelector.getPhraseEnd(elements, 6));
+		// the last phrase includes the trailing boundaries
+		assertEquals(11, UnitSelector.getPhraseEnd(elements, 8));
+	}
+
+	@Test
+	public void unparsableBreakindex() throws Exception {
+		List<Element> elements = segmentsAndBoundaries("<t><ph p='a'/></t><boundary/><t><ph p='b'/></t><boundary breakindex='x'/>"
+				+ "<t><ph p='c'/></t>");
+		assertEquals(5, UnitSelector.getPhraseEnd(elements, 0));
+	}
+
+	/**
+	 * Three phrases; the utterance ends with a phone, so that the diphone selector adds a final silence.
+	 */
+	private static final String THREE_PHRASES = "<boundary breakindex='4'/><t><ph p='a'/><ph p='b'/></t>"
+			+ "<boundary breakindex='4'/><t><ph p='c'/><ph p='d'/></t><boundary breakindex='5'/><t><ph p='e'/><ph p='f'/></t>";
+
+	@Test
+	public void phrasesCoverEachElementOnce() throws Exception {
+		List<Element> elements = segmentsAndBoundaries(THREE_PHRASES);
+		for (UnitSelector selector : new UnitSelector[] { new UnitSelector(), new HalfPhoneUnitSelector(),
+				new DiphoneUnitSelector() }) {
+			selector.load(new StubDatabase(), 0.5f, -1);
+			List<Element> whole = elementsOf(selector.selectUnits(elements, 0, -1, 0));
+			for (int lookAhead = 0; lookAhead <= elements.size(); lookAhead++) {
+				List<Element> concatenated = new ArrayList<Element>();
+				int phrases = 0;
+				for (int start = 0; start < elements.size(); phrases++) {
+					int end = UnitSelector.getPhraseEnd(elements, start);
+					List<Element> part = elementsOf(selector.selectUnits(elements, start, end, lookAhead));
+					for (Element element : part) {
+						if (element != null) {
+							int index = elements.indexOf(element);
+							assertTrue(selector.getClass().getSimpleName() + ": element " + index + " outside of part " + start
+									+ "-" + end, index >= start && index < end);
+						}
+					}
+					concatenated.addAll(part);
+					start = end;
+				}
+				assertEquals(3, phrases);
+				assertEquals(selector.getClass().getSimpleName() + ", look-ahead " + lookAhead, whole, concatenated);
+			}
+		}
+	}
+
+	@Test
+	public void lookAheadIsSelectedButNotReturned() throws Exception {
+		List<Element> elements = segmentsAndBoundaries(THREE_PHRASES);
+		StubDatabase database = new StubDatabase();
+		UnitSelector selector = new UnitSelector();
+		selector.load(database, 0.5f, -1);
+		int end = UnitSelector.getPhraseEnd(elements, 0);
+		assertEquals(4, end);
+		List<Element> part = elementsOf(selector.selectUnits(elements, 0, end, 2));
+		assertEquals(elements.subList(0, end), part);
+		// the look-ahead elements took part in the search
+		assertEquals(elements.subList(0, end + 2), database.requested);
+		// the look-ahead is limited to the end of the utterance
+		database.requested.clear();
+		int start = UnitSelector.getPhraseEnd(elements, end);
+		part = elementsOf(selector.selectUnits(elements, start, -1, 100));
+		assertEquals(elements.subList(start, elements.size()), part);
+		assertEquals(elements.subList(start, elements.size()), database.requested);
+	}
+
+	@Test
+	public void edgeSilencesOnlyAtUtteranceEdges() throws Exception {
+		List<Element> elements = segmentsAndBoundaries(THREE_PHRASES);
+		UnitSelector selector = new DiphoneUnitSelector();
+		selector.load(new StubDatabase(), 0.5f, -1);
+		int end1 = UnitSelector.getPhraseEnd(elements, 0);
+		int end2 = UnitSelector.getPhraseEnd(elements, end1);
+		List<Element> first = elementsOf(selector.selectUnits(elements, 0, end1, 1));
+		List<Element> middle = elementsOf(selector.selectUnits(elements, end1, end2, 1));
+		List<Element> last = elementsOf(selector.selectUnits(elements, end2, -1, 1));
+		// the initial silence is kept in the first phrase only
+		assertNull(first.get(0));
+		assertNotNull(first.get(first.size() - 1));
+		assertFalse(middle.contains(null));
+		// the final silence is kept in the last phrase only
+		assertNotNull(last.get(0));
+		assertNull(last.get(last.size() - 1));
+		assertEquals(1, Collections.frequency(first, null));
+		assertEquals(1, Collections.frequency(last, null));
+	}
+
+	private static List<Element> elementsOf(List<SelectedUnit> units) {
+		List<Element> elements = new ArrayList<Element>();
+		for (SelectedUnit unit : units) {
+			Element element = unit.getTarget().getMaryxmlElement();
+			// the two halves of a phone or boundary count as one element
+			if (element == null || elements.isEmpty() || elements.get(elements.size() - 1) != element) {
+				elements.add(element);
+			}
+		}
+		return elements;
+	}
+
+	/**
+	 * A database offering one unit for every target, at no cost, and recording the elements of the targets it was asked for.
+	 */
+	private static class StubDatabase extends UnitDatabase {
+		final List<Element> requested = new ArrayList<Element>();
+		private final Set<Element> seen = new HashSet<Element>();
+		private final StubCostFunction costFunction = new StubCostFunction();
+		private int nextIndex;
+
+		@Override
+		public TargetCostFunction getTargetCostFunction() {
+			return costFunction;
+		}
+
+		@Override
+		public JoinCostFunction getJoinCostFunction() {
+			return costFunction;
+		}
+
+		@Override
+		public List<ViterbiCandidate> getCandidates(Target target) {
+			Unit unit;
+			if (target instanceof DiphoneTarget) {
+				record(((DiphoneTarget) target).left.getMaryxmlElement());
+				record(((DiphoneTarget) target).right.getMaryxmlElement());
+				unit = new DiphoneUnit(new Unit(0, 1, nextIndex++), new Unit(0, 1, nextIndex++));
+			} else {
+				record(target.getMaryxmlElement());
+				unit = new Unit(0, 1, nextIndex++);
+			}
+			List<ViterbiCandidate> candidates = new ArrayList<ViterbiCandidate>();
+			candidates.add(new ViterbiCandidate(target, unit, costFunction));
+			return candidates;
+		}
+
+		private void record(Element element) {
+			if (element != null && seen.add(element)) {
+				requested.add(element);
+			}
+		}
+	}
+
+	private static class StubCostFunction implements TargetCostFunction, JoinCostFunction {
+		public double cost(Target target, Unit unit) {
+			return 0;
+		}
+
+		public double cost(Target t1, Unit u1, Target t2, Unit u2) {
+			return 0;
+		}
+
+		public void computeTargetFeatures(Target target) {
+		}
+
+		public void load(String featureFileName, InputStream weightsStream, FeatureProcessorManager featProc) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void load(FeatureFileReader featureFileReader, InputStream weightsStream, FeatureProcessorManager featProc) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void init(String configPrefix) {
+		}
+
+		public void load(String joinFileName, InputStream weightStream, String precompiledCostFileName, float wSignal) {
+			throw new UnsupportedOperationException();
+		}
+
+		public FeatureDefinition getFeatureDefinition() {
+			return null;
+		}
+
+		public String getFeature(Unit unit, String featureName) {
+			return "";
+		}
+
+		public FeatureVector getFeatureVector(Unit unit) {
+			return null;
+		}
+
+		public FeatureVector[] getFeatureVectors() {
+			return null;
+		}
+	}
+}
@@ -20,6 +20,14 @@
 package marytts.machinelearning;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import marytts.util.MaryUtils;
 import marytts.util.io.FileUtils;
@@ -41,6 +49,12 @@ public class GMMTrainer {
 
 	public double[] logLikelihoods;
 
+	// Number of threads among which the observations are divided in the EM iterations
+	public int numThreads = Runtime.getRuntime().availableProcessors();
+
+	// Minimum number of observations per thread, smaller data sets are processed with fewer threads
+	private static final int MIN_OBSERVATIONS_PER_THREAD = 1000;
+
 	public GMMTrainer() {
 		logLikelihoods = null;
 	}
@@ -147,211 +161,292 @@ public class GMMTrainer {
 	 */
 	public GMM expectationMaximization(double[][] x, GMM initialGmm, int emMinimumIterations, int emMaximumIterations,
 			boolean isUpdateCovariances, double tinyLogLikelihoodChangePercent, double minimumCovarianceAllowed) {
-		int i, j, k;
 		int totalObservations = x.length;
 
 		GMM gmm = new GMM(initialGmm);
+		int dim = gmm.featureDimension;
 
-		for (i = 0; i < totalObservations; i++)
-			assert x[i].length == gmm.featureDimension;
-
-		int numIterations = 1;
-
-		double error = 0.0;
-		double prevErr;
+		// Copy the observations to one contiguous array
+		double[] data = new double[totalObservations * dim];
+		for (int j = 0; j < totalObservations; j++) {
+			assert x[j].length == dim;
+			System.arraycopy(x[j], 0, data, j * dim, dim);
+		}
 
-		for (k = 0; k < gmm.totalComponents; k++)
+		for (int k = 0; k < gmm.totalComponents; k++)
 			gmm.weights[k] = 1.0f / gmm.totalComponents;
 
-		boolean bContinue = true;
+		// Model parameters in contiguous arrays, read by all threads
+		double[] means = new double[gmm.totalComponents * dim];
+		double[] precisions = new double[gmm.totalComponents * (gmm.isDiagonalCovariance ? dim : dim * dim)];
+		double[] factors = new double[gmm.totalComponents];
 
-		double[] zDenum = new double[totalObservations];
-		double P_xj_tetak;
+		// Each thread accumulates the sufficient statistics of a contiguous block of observations
+		int numBlocks = Math.max(1, Math.min(numThreads, totalObservations / MIN_OBSERVATIONS_PER_THREAD));
+		List<ExpectationStep> blocks = new ArrayList<ExpectationStep>(numBlocks);
+		for (int b = 0; b < numBlocks; b++)
+			blocks.add(new ExpectationStep(data, dim, (int) ((long) totalObservations * b / numBlocks),
+					(int) ((long) totalObservations * (b + 1) / numBlocks), gmm.isDiagonalCovariance, means, precisions, factors));
+		ExpectationStep total = new ExpectationStep(data, dim, 0, 0, gmm.isDiagonalCovariance, means, precisions, factors);
+		ExecutorService pool = numBlocks > 1 ? Executors.newFixedThreadPool(numBlocks) : null;
 
-		double[][] zNum = new double[totalObservations][gmm.totalComponents];
-		double[][] z = new double[totalObservations][gmm.totalComponents];
+		logLikelihoods = new double[emMaximumIterations];
+		int numIterations = 1;
+		long start, end;
+		try {
+			// The log-likelihood of the model after each iteration is computed in the same pass over the data as the
+			// expectation step of the next iteration
+			setModelParameters(gmm, means, precisions, factors);
+			accumulate(blocks, total, pool);
+
+			// Main EM iterations loop
+			while (true) {
+				start = System.currentTimeMillis();
+
+				double error = maximization(gmm, total, totalObservations, isUpdateCovariances, minimumCovarianceAllowed);
+				setModelParameters(gmm, means, precisions, factors);
+				accumulate(blocks, total, pool);
+				logLikelihoods[numIterations - 1] = total.logLikelihood;
+
+				end = System.currentTimeMillis();
+
+				System.out.println("For " + String.valueOf(gmm.totalComponents) + " mixes - EM iteration no: "
+						+ String.valueOf(numIterations) + " with avg. difference in means " + String.valueOf(error)
+						+ " log-likelihood=" + String.valueOf(logLikelihoods[numIterations - 1]) + " in "
+						+ String.valueOf((end - start) / 1000.0) + " sec");
+
+				// Force iterations to stop if maximum number of iterations has been reached
+				if (numIterations + 1 > emMaximumIterations)
+					break;
+
+				// Force iterations to stop if minimum number of iterations has been reached AND total log likelihood does not
+				// change much
+				if (numIterations > emMinimumIterations
+						&& logLikelihoods[numIterations - 1] - logLikelihoods[numIterations - 2] < Math
+								.abs(logLikelihoods[numIterations - 1] / 100 * tinyLogLikelihoodChangePercent))
+					break;
+
+				numIterations++;
+			}
+		} finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
 
-		double[] num1 = new double[gmm.featureDimension];
-		double[] tmpMean = new double[gmm.featureDimension];
+		logLikelihoods = Arrays.copyOf(logLikelihoods, numIterations - 1);
 
-		double[][] num2 = new double[gmm.featureDimension][gmm.featureDimension];
+		System.out.println("GMM training completed...");
 
-		double tmpSum;
-		double mean_diff;
-		double denum;
-		double diffk;
-		double tmpZeroMean;
-		int d1, d2;
-		logLikelihoods = new double[emMaximumIterations];
+		return gmm;
+	}
 
-		long start, end;
-		start = end = 0;
-
-		// Main EM iteartions loop
-		while (bContinue) {
-			start = System.currentTimeMillis();
-			// Expectation step
-			// Find zjk's at time (s+1) using alphak's at time (s)
-			for (j = 0; j < totalObservations; j++) {
-				zDenum[j] = 0.0f;
-				for (k = 0; k < gmm.totalComponents; k++) {
-					// P(xj|teta_k)
-					if (gmm.isDiagonalCovariance)
-						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
-								gmm.components[k].getCovMatrixDiagonal(), gmm.components[k].getConstantTerm());
-					else
-						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
-								gmm.components[k].getInvCovMatrix(), gmm.components[k].getConstantTerm());
-
-					/*
-					 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
-					 */
-
-					zNum[j][k] = gmm.weights[k] * P_xj_tetak;
-					zDenum[j] = zDenum[j] + zNum[j][k];
-				}
+	/**
+	 * Copy the means, the inverse covariances and the weighted constant terms of the components to contiguous arrays
+	 */
+	private static void setModelParameters(GMM gmm, double[] means, double[] precisions, double[] factors) {
+		int dim = gmm.featureDimension;
+		for (int k = 0; k < gmm.totalComponents; k++) {
+			GaussianComponent component = gmm.components[k];
+			System.arraycopy(component.meanVector, 0, means, k * dim, dim);
+			if (gmm.isDiagonalCovariance) {
+				double[] variances = component.getCovMatrixDiagonal();
+				for (int d = 0; d < dim; d++)
+					precisions[k * dim + d] = 1.0 / variances[d];
+			} else {
+				double[][] invCovMatrix = component.getInvCovMatrix();
+				for (int d = 0; d < dim; d++)
+					System.arraycopy(invCovMatrix[d], 0, precisions, k * dim * dim + d * dim, dim);
 			}
+			factors[k] = gmm.weights[k] * component.getConstantTerm();
+		}
+	}
 
-			// Find zjk's at time (s+1)
-			for (j = 0; j < totalObservations; j++) {
-				for (k = 0; k < gmm.totalComponents; k++)
-					z[j][k] = zNum[j][k] / zDenum[j];
+	/**
+	 * Run the expectation step for all blocks of observations and sum up their statistics in total
+	 */
+	private static void accumulate(List<ExpectationStep> blocks, ExpectationStep total, ExecutorService pool) {
+		try {
+			if (pool == null) {
+				blocks.get(0).call();
+			} else {
+				for (Future<Void> future : pool.invokeAll(blocks))
+					future.get();
 			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("EM iteration failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("EM iteration interrupted", e);
+		} catch (Exception e) {
+			throw new RuntimeException("EM iteration failed", e);
+		}
+		total.reset();
+		for (ExpectationStep block : blocks)
+			total.add(block);
+	}
 
-			// Now update alphak's to find their values at time (s+1)
-			for (k = 0; k < gmm.totalComponents; k++) {
-				tmpSum = 0.0;
-				for (j = 0; j < totalObservations; j++)
-					tmpSum += z[j][k];
-
-				gmm.weights[k] = tmpSum / totalObservations;
+	/**
+	 * Update the weights, means and, if requested, the covariances of the components from the sufficient statistics
+	 * 
+	 * @return the sum of the distances between the old and new means
+	 */
+	private static double maximization(GMM gmm, ExpectationStep statistics, int totalObservations,
+			boolean isUpdateCovariances, double minimumCovarianceAllowed) {
+		int dim = gmm.featureDimension;
+		double meanDiff = 0.0;
+		for (int k = 0; k < gmm.totalComponents; k++) {
+			GaussianComponent component = gmm.components[k];
+			double denum = statistics.sumZ[k];
+			gmm.weights[k] = denum / totalObservations;
+
+			double diffk = 0.0;
+			for (int d = 0; d < dim; d++) {
+				double mean = statistics.sumZX[k * dim + d] / denum;
+				double tmpZeroMean = mean - component.meanVector[d];
+				diffk += tmpZeroMean * tmpZeroMean;
+				component.meanVector[d] = mean;
 			}
-
-			// Maximization step
-			// Find the model parameters at time (s+1) using zjk's at time (s+1)
-			mean_diff = 0.0;
-			for (k = 0; k < gmm.totalComponents; k++) {
-				for (d1 = 0; d1 < gmm.featureDimension; d1++) {
-					num1[d1] = 0.0f;
-					for (d2 = 0; d2 < gmm.featureDimension; d2++)
-						num2[d1][d2] = 0.0f;
+			meanDiff += Math.sqrt(diffk);
+
+			if (isUpdateCovariances) {
+				if (gmm.isDiagonalCovariance) {
+					for (int d = 0; d < dim; d++)
+						component.covMatrix[0][d] = Math.max(statistics.sumZXX[k * dim + d] / denum, minimumCovarianceAllowed);
+				} else {
+					// only the upper triangle is accumulated
+					int offset = k * dim * dim;
+					for (int d1 = 0; d1 < dim; d1++) {
+						for (int d2 = d1; d2 < dim; d2++) {
+							double cov = Math.max(statistics.sumZXX[offset + d1 * dim + d2] / denum, minimumCovarianceAllowed);
+							component.covMatrix[d1][d2] = cov;
+							component.covMatrix[d2][d1] = cov;
+						}
+					}
 				}
 
-				denum = 0.0;
-
-				for (j = 0; j < totalObservations; j++) {
-					denum += z[j][k];
-
-					for (d1 = 0; d1 < gmm.featureDimension; d1++) {
-						num1[d1] += x[j][d1] * z[j][k];
+				component.setDerivedValues();
+			}
+		}
+		return meanDiff;
+	}
 
-						tmpZeroMean = x[j][d1] - gmm.components[k].meanVector[d1];
+	/**
+	 * The expectation step for a block of observations: computes the posterior probability z of each component for each
+	 * observation and accumulates the sufficient statistics for the maximization step, i.e. for each component the sum of z,
+	 * of z*x and of z*(x-mean)*(x-mean)' with the current mean, and the log-likelihood of the observations.
+	 */
+	private static class ExpectationStep implements Callable<Void> {
+		private final double[] data;
+		private final int dim;
+		private final int start;
+		private final int end;
+		private final boolean isDiagonalCovariance;
+		private final double[] means;
+		private final double[] precisions;
+		private final double[] factors;
+
+		double logLikelihood;
+		final double[] sumZ;
+		final double[] sumZX;
+		final double[] sumZXX;
+
+		// weighted pdf values of the components and differences to their means for the current observation
+		private final double[] p;
+		private final double[] diffs;
+
+		ExpectationStep(double[] data, int dim, int start, int end, boolean isDiagonalCovariance, double[] means,
+				double[] precisions, double[] factors) {
+			this.data = data;
+			this.dim = dim;
+			this.start = start;
+			this.end = end;
+			this.isDiagonalCovariance = isDiagonalCovariance;
+			this.means = means;
+			this.precisions = precisions;
+			this.factors = factors;
+			int totalComponents = factors.length;
+			sumZ = new double[totalComponents];
+			sumZX = new double[totalComponents * dim];
+			sumZXX = new double[precisions.length];
+			p = new double[totalComponents];
+			diffs = new double[totalComponents * dim];
+		}
 
-						for (d2 = 0; d2 < gmm.featureDimension; d2++)
-							num2[d1][d2] += z[j][k] * tmpZeroMean * (x[j][d2] - gmm.components[k].meanVector[d2]);
-					}
-				}
+		void reset() {
+			logLikelihood = 0.0;
+			Arrays.fill(sumZ, 0.0);
+			Arrays.fill(sumZX, 0.0);
+			Arrays.fill(sumZXX, 0.0);
+		}
 
-				for (d1 = 0; d1 < gmm.featureDimension; d1++)
-					tmpMean[d1] = num1[d1] / denum;
+		void add(ExpectationStep other) {
+			logLikelihood += other.logLikelihood;
+			for (int i = 0; i < sumZ.length; i++)
+				sumZ[i] += other.sumZ[i];
+			for (int i = 0; i < sumZX.length; i++)
+				sumZX[i] += other.sumZX[i];
+			for (int i = 0; i < sumZXX.length; i++)
+				sumZXX[i] += other.sumZXX[i];
+		}
 
-				diffk = 0.0f;
-				for (d1 = 0; d1 < gmm.featureDimension; d1++) {
-					tmpZeroMean = tmpMean[d1] - gmm.components[k].meanVector[d1];
-					diffk += tmpZeroMean * tmpZeroMean;
+		public Void call() {
+			reset();
+			int totalComponents = factors.length;
+			for (int j = start; j < end; j++) {
+				int x = j * dim;
+				double pSum = 0.0;
+				for (int k = 0; k < totalComponents; k++) {
+					int m = k * dim;
+					for (int d = 0; d < dim; d++)
+						diffs[m + d] = data[x + d] - means[m + d];
+					p[k] = factors[k] * Math.exp(-0.5 * quadraticForm(k));
+					pSum += p[k];
 				}
-				diffk = Math.sqrt(diffk);
-				mean_diff += diffk;
-
-				for (d1 = 0; d1 < gmm.featureDimension; d1++)
-					gmm.components[k].meanVector[d1] = tmpMean[d1];
-
-				if (isUpdateCovariances) {
-					if (gmm.isDiagonalCovariance) {
-						for (d1 = 0; d1 < gmm.featureDimension; d1++)
-							gmm.components[k].covMatrix[0][d1] = Math.max(num2[d1][d1] / denum, minimumCovarianceAllowed);
+				logLikelihood += Math.log(pSum);
+
+				for (int k = 0; k < totalComponents; k++) {
+					double z = p[k] / pSum;
+					int m = k * dim;
+					sumZ[k] += z;
+					for (int d = 0; d < dim; d++)
+						sumZX[m + d] += z * data[x + d];
+					if (isDiagonalCovariance) {
+						for (int d = 0; d < dim; d++)
+							sumZXX[m + d] += z * diffs[m + d] * diffs[m + d];
 					} else {
-						for (d1 = 0; d1 < gmm.featureDimension; d1++) {
-							for (d2 = 0; d2 < gmm.featureDimension; d2++)
-								gmm.components[k].covMatrix[d1][d2] = Math.max(num2[d1][d2] / denum, minimumCovarianceAllowed);
+						int offset = k * dim * dim;
+						for (int d1 = 0; d1 < dim; d1++) {
+							double zDiff = z * diffs[m + d1];
+							int row = offset + d1 * dim;
+							for (int d2 = d1; d2 < dim; d2++)
+								sumZXX[row + d2] += zDiff * diffs[m + d2];
 						}
 					}
-
-					gmm.components[k].setDerivedValues();
 				}
 			}
+			return null;
+		}
 
-			if (numIterations == 1)
-				error = mean_diff;
-			else {
-				prevErr = error;
-				error = mean_diff;
-			}
-
-			logLikelihoods[numIterations - 1] = 0.0;
-			if (gmm.isDiagonalCovariance) {
-				for (j = 0; j < totalObservations; j++) {
-					double tmp = 0.0;
-					for (k = 0; k < gmm.totalComponents; k++) {
-						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
-								gmm.components[k].getCovMatrixDiagonal(), gmm.components[k].getConstantTerm());
-
-						/*
-						 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
-						 */
-
-						tmp += gmm.weights[k] * P_xj_tetak;
-					}
-
-					logLikelihoods[numIterations - 1] += Math.log(tmp);
-				}
+		/**
+		 * @return (x-mean)' * inverse covariance * (x-mean) for component k, with x-mean in diffs
+		 */
+		private double quadraticForm(int k) {
+			int m = k * dim;
+			double q = 0.0;
+			if (isDiagonalCovariance) {
+				for (int d = 0; d < dim; d++)
+					q += diffs[m + d] * diffs[m + d] * precisions[m + d];
 			} else {
-				for (j = 0; j < totalObservations; j++) {
-					double tmp = 0.0;
-					for (k = 0; k < gmm.totalComponents; k++) {
-						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
-								gmm.components[k].getInvCovMatrix(), gmm.components[k].getConstantTerm());
-
-						/*
-						 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
-						 */
-
-						tmp += gmm.weights[k] * P_xj_tetak;
-					}
-
-					logLikelihoods[numIterations - 1] += Math.log(tmp);
+				int offset = k * dim * dim;
+				for (int d1 = 0; d1 < dim; d1++) {
+					double row = 0.0;
+					for (int d2 = 0; d2 < dim; d2++)
+						row += precisions[offset + d1 * dim + d2] * diffs[m + d2];
+					q += diffs[m + d1] * row;
 				}
 			}
-
-			end = System.currentTimeMillis();
-
-			System.out.println("For " + String.valueOf(gmm.totalComponents) + " mixes - EM iteration no: "
-					+ String.valueOf(numIterations) + " with avg. difference in means " + String.valueOf(error)
-					+ " log-likelihood=" + String.valueOf(logLikelihoods[numIterations - 1]) + " in "
-					+ String.valueOf((end - start) / 1000.0) + " sec");
-
-			// Force iterations to stop if maximum number of iterations has been reached
-			if (numIterations + 1 > emMaximumIterations)
-				break;
-
-			// Force iterations to stop if minimum number of iterations has been reached AND total log likelihood does not change
-			// much
-			if (numIterations > emMinimumIterations
-					&& logLikelihoods[numIterations - 1] - logLikelihoods[numIterations - 2] < Math
-							.abs(logLikelihoods[numIterations - 1] / 100 * tinyLogLikelihoodChangePercent))
-				break;
-
-			numIterations++;
+			return q;
 		}
-
-		double[] tmpLogLikelihoods = new double[numIterations - 1];
-		System.arraycopy(logLikelihoods, 0, tmpLogLikelihoods, 0, numIterations - 1);
-		logLikelihoods = new double[numIterations - 1];
-		System.arraycopy(tmpLogLikelihoods, 0, logLikelihoods, 0, numIterations - 1);
-
-		System.out.println("GMM training completed...");
-
-		return gmm;
 	}
 
 	public static void testEndianFileIO() throws IOException {
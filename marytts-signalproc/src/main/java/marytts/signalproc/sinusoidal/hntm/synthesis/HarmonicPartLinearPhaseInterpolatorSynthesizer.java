@@ -58,17 +58,27 @@ import marytts.util.string.StringUtils;
  * Stylianou, Y., 1996, "Harmonic plus Noise Models for Speech, combined with Statistical Methods, for Speech and Speaker
  * Modification", Ph.D. thesis, Ecole Nationale Supérieure des Télécommunications. (Chapter 3, A Harmonic plus Noise Model, HNM)
  * 
+ * The harmonics are generated with a recursive oscillator, i.e. a phasor which is rotated by a constant angle from one sample to
+ * the next, instead of evaluating the cosine at every sample. The harmonic tracks are only kept for the samples which have not
+ * been output yet, unless they are to be written to separate files.
+ * 
  * @author Oytun T&uumlrk
  * 
  */
 public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
-	// TO DO: Decrease the buffer sizes since with the latest implementation, we do not have to keep all signal
-	// When the user enters a reference file to write separate output tracks to files, set the buffer sizes as we do previously,
-	// i.e. sufficient to keep all signal
-	// Note that, in normal operation mode, we do not write the harmonic tracks to separate files, i.e. reference file is null.
+	// The recursive oscillator is re-initialised with the exact phase after this many samples, so that rounding errors cannot
+	// accumulate over long tracks
+	private static final int OSCILLATOR_REINIT_INTERVAL = 256;
+	private static final double INITIAL_TRACK_BUFFER_IN_SECONDS = 0.1;
+
 	private double[] harmonicPart = null;
+	// The harmonic tracks and overlap weights for the samples from trackBufferStart on.
+	// When the user enters a reference file to write separate output tracks to files, they keep all signal;
+	// in normal operation mode, they only keep the samples which have not been output yet.
 	private double[][] harmonicTracks;
 	private double[][] winOverlapWgt;
+	private int trackBufferStart;
+	private boolean keepAllTracks;
 	//
 
 	private HntmAnalyzerParams analysisParams;
@@ -102,6 +112,7 @@ public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
 		analysisParams = analysisParamsIn;
 		synthesisParams = synthesisParamsIn;
 		referenceFile = referenceFileIn;
+		keepAllTracks = referenceFile != null && synthesisParams.writeSeparateHarmonicTracksToOutputs;
 
 		transitionLen = SignalProcUtils.time2sample(synthesisParams.unvoicedVoicedTrackTransitionInSeconds,
 				hnmSignal.samplingRateInHz);
@@ -127,17 +138,19 @@ public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
 
 			// Separate tracks
 			int k;
+			int trackBufferLen = outputLen;
+			if (!keepAllTracks)
+				trackBufferLen = Math.min(outputLen,
+						SignalProcUtils.time2sample(INITIAL_TRACK_BUFFER_IN_SECONDS, hnmSignal.samplingRateInHz));
+			trackBufferStart = 0;
 			if (analysisParams.hnmPitchVoicingAnalyzerParams.maximumTotalHarmonics > 0) {
 				harmonicTracks = new double[analysisParams.hnmPitchVoicingAnalyzerParams.maximumTotalHarmonics][];
 				winOverlapWgt = new double[analysisParams.hnmPitchVoicingAnalyzerParams.maximumTotalHarmonics][];
 				for (k = 0; k < analysisParams.hnmPitchVoicingAnalyzerParams.maximumTotalHarmonics; k++) {
-					harmonicTracks[k] = new double[outputLen];
-					Arrays.fill(harmonicTracks[k], 0.0);
+					harmonicTracks[k] = new double[trackBufferLen];
 
-					if (synthesisParams.overlappingHarmonicPartSynthesis) {
-						winOverlapWgt[k] = new double[outputLen];
-						Arrays.fill(winOverlapWgt[k], 0.0);
-					}
+					if (synthesisParams.overlappingHarmonicPartSynthesis)
+						winOverlapWgt[k] = new double[trackBufferLen];
 				}
 			}
 			//
@@ -433,7 +446,28 @@ public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
 				Mk = (int) Math.floor((phasekiPlusOneEstimate - phasekiPlusOne) / MathUtils.TWOPI + 0.5);
 				//
 
-				for (n = Math.max(0, trackStartIndex); n <= Math.min(trackEndIndex, harmonicPart.length - 1); n++) {
+				// Samples which have already been output are not synthesized again
+				int firstIndex = Math.max(Math.max(0, trackStartIndex), trackBufferStart);
+				int lastIndex = Math.min(trackEndIndex, harmonicPart.length - 1);
+				if (firstIndex > lastIndex)
+					continue;
+				ensureTrackBufferContains(lastIndex);
+				double[] harmonicTrack = harmonicTracks[k];
+				double[] overlapWgt = winOverlapWgt[k];
+
+				// Recursive oscillator: (cosPhase, sinPhase) is rotated by phaseIncrement from one sample to the next
+				double phaseIncrement = (phasekiPlusOne + MathUtils.TWOPI * Mk - phaseki) / (tsikPlusOne - tsik)
+						/ hnmSignal.samplingRateInHz;
+				double startPhase = phaseki + (phasekiPlusOne + MathUtils.TWOPI * Mk - phaseki)
+						* (SignalProcUtils.sample2time(firstIndex, hnmSignal.samplingRateInHz) - tsik) / (tsikPlusOne - tsik);
+				double cosIncrement = Math.cos(phaseIncrement);
+				double sinIncrement = Math.sin(phaseIncrement);
+				double cosPhase = 0.0;
+				double sinPhase = 0.0;
+				double cosPhasekt;
+				//
+
+				for (n = firstIndex; n <= lastIndex; n++) {
 					double t = SignalProcUtils.sample2time(n, hnmSignal.samplingRateInHz);
 
 					// if (t>=tsik && t<tsikPlusOne)
@@ -450,29 +484,69 @@ public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
 						//
 
 						// Phase estimate
-						phasekt = phaseki + (phasekiPlusOne + MathUtils.TWOPI * Mk - phaseki) * (t - tsik) / (tsikPlusOne - tsik);
+						if ((n - firstIndex) % OSCILLATOR_REINIT_INTERVAL == 0) {
+							phasekt = startPhase + (n - firstIndex) * phaseIncrement;
+							cosPhase = Math.cos(phasekt);
+							sinPhase = Math.sin(phasekt);
+						}
+						cosPhasekt = cosPhase;
+						double nextCosPhase = cosPhase * cosIncrement - sinPhase * sinIncrement;
+						sinPhase = sinPhase * cosIncrement + cosPhase * sinIncrement;
+						cosPhase = nextCosPhase;
 						//
 
 						if (synthesisParams.overlappingHarmonicPartSynthesis) {
 							currentOverlapWinWgt = overlapWinWgt[n - Math.max(0, trackStartIndex)];
-							winOverlapWgt[k][n] += currentOverlapWinWgt;
+							overlapWgt[n - trackBufferStart] += currentOverlapWinWgt;
 						} else
 							currentOverlapWinWgt = 1.0;
 
 						if (!isPrevTrackVoiced && n - trackStartIndex < transitionLen)
-							harmonicTracks[k][n] = currentOverlapWinWgt * halfTransitionWinLeft[n - trackStartIndex] * akt
-									* Math.cos(phasekt);
+							harmonicTrack[n - trackBufferStart] = currentOverlapWinWgt * halfTransitionWinLeft[n - trackStartIndex]
+									* akt * cosPhasekt;
 						else if (!isNextTrackVoiced && trackEndIndex - n < transitionLen)
-							harmonicTracks[k][n] = currentOverlapWinWgt
-									* halfTransitionWinRight[transitionLen - (trackEndIndex - n) - 1] * akt * Math.cos(phasekt);
+							harmonicTrack[n - trackBufferStart] = currentOverlapWinWgt
+									* halfTransitionWinRight[transitionLen - (trackEndIndex - n) - 1] * akt * cosPhasekt;
 						else
-							harmonicTracks[k][n] = currentOverlapWinWgt * akt * Math.cos(phasekt);
+							harmonicTrack[n - trackBufferStart] = currentOverlapWinWgt * akt * cosPhasekt;
 					}
 				}
 			}
 		}
 	}
 
+	// Enlarge the track buffers if necessary so that they contain the sample with the given index
+	private void ensureTrackBufferContains(int sampleIndex) {
+		int len = harmonicTracks[0].length;
+		if (sampleIndex - trackBufferStart < len)
+			return;
+
+		int newLen = Math.max(2 * len, sampleIndex - trackBufferStart + 1);
+		for (int k = 0; k < harmonicTracks.length; k++) {
+			harmonicTracks[k] = Arrays.copyOf(harmonicTracks[k], newLen);
+			if (synthesisParams.overlappingHarmonicPartSynthesis)
+				winOverlapWgt[k] = Arrays.copyOf(winOverlapWgt[k], newLen);
+		}
+	}
+
+	// Discard the track buffer contents before the sample with the given index, which have been output
+	private void discardTrackBufferBefore(int sampleIndex) {
+		int len = harmonicTracks[0].length;
+		int shift = Math.min(sampleIndex - trackBufferStart, len);
+		if (shift <= 0)
+			return;
+
+		for (int k = 0; k < harmonicTracks.length; k++) {
+			System.arraycopy(harmonicTracks[k], shift, harmonicTracks[k], 0, len - shift);
+			Arrays.fill(harmonicTracks[k], len - shift, len, 0.0);
+			if (synthesisParams.overlappingHarmonicPartSynthesis) {
+				System.arraycopy(winOverlapWgt[k], shift, winOverlapWgt[k], 0, len - shift);
+				Arrays.fill(winOverlapWgt[k], len - shift, len, 0.0);
+			}
+		}
+		trackBufferStart = sampleIndex;
+	}
+
 	public double[] generateOutput(boolean pipeOutAllOutput) {
 		double[] output = null;
 
@@ -483,30 +557,33 @@ public class HarmonicPartLinearPhaseInterpolatorSynthesizer {
 				pipeOutEndIndex = harmonicPart.length;
 
 			output = new double[Math.min(pipeOutEndIndex, harmonicPart.length - 1) - pipeOutStartIndex + 1];
+			// Samples beyond the end of the track buffers have not been synthesized, i.e. they are zero
+			int lastIndex = Math.min(Math.min(pipeOutEndIndex, harmonicPart.length - 1), trackBufferStart
+					+ harmonicTracks[0].length - 1);
 			if (!synthesisParams.overlappingHarmonicPartSynthesis) {
 				for (k = 0; k < harmonicTracks.length; k++) {
-					// for (n=0; n<harmonicPart.length; n++)
-					for (n = pipeOutStartIndex; n <= Math.min(pipeOutEndIndex, harmonicPart.length - 1); n++) {
-						// harmonicPart[n] += harmonicTracks[k][n];
-						output[n - pipeOutStartIndex] += harmonicTracks[k][n];
+					double[] harmonicTrack = harmonicTracks[k];
+					for (n = pipeOutStartIndex; n <= lastIndex; n++) {
+						output[n - pipeOutStartIndex] += harmonicTrack[n - trackBufferStart];
 					}
 				}
 			} else {
 				for (k = 0; k < harmonicTracks.length; k++) {
-					// for (n=0; n<harmonicPart.length; n++)
-					for (n = pipeOutStartIndex; n <= Math.min(pipeOutEndIndex, harmonicPart.length - 1); n++) {
-						if (winOverlapWgt[k][n] > 0.0f) {
-							// harmonicPart[n] += harmonicTracks[k][n]/winOverlapWgt[k][n];
-							output[n - pipeOutStartIndex] += harmonicTracks[k][n] / winOverlapWgt[k][n];
+					double[] harmonicTrack = harmonicTracks[k];
+					double[] overlapWgt = winOverlapWgt[k];
+					for (n = pipeOutStartIndex; n <= lastIndex; n++) {
+						if (overlapWgt[n - trackBufferStart] > 0.0f) {
+							output[n - pipeOutStartIndex] += harmonicTrack[n - trackBufferStart] / overlapWgt[n - trackBufferStart];
 						} else {
-							// harmonicPart[n] += harmonicTracks[k][n];
-							output[n - pipeOutStartIndex] += harmonicTracks[k][n];
+							output[n - pipeOutStartIndex] += harmonicTrack[n - trackBufferStart];
 						}
 					}
 				}
 			}
 
 			pipeOutStartIndex = pipeOutEndIndex + 1;
+			if (!keepAllTracks)
+				discardTrackBufferBefore(pipeOutStartIndex);
 
 			if (pipeOutAllOutput && referenceFile != null && FileUtils.exists(referenceFile)
 					&& synthesisParams.writeSeparateHarmonicTracksToOutputs) {
@@ -70,7 +70,7 @@ public class MaryAudioUtils {
 
 	/**
 	 * Return an audio file format type for the given string. In addition to the built-in types, this can deal with MP3 supported
-	 * by tritonus.
+	 * by tritonus, and with {@link StreamingAudioWriter#RAW}.
 	 * 
 	 * @return the audio file format type if it is known, or null.
 	 * @see MaryServerUtils#canCreateMP3()
@@ -84,6 +84,8 @@ public class MaryAudioUtils {
 		} else if (name.equals("Vorbis")) {
 			// supported by tritonus plugin
 			at = new AudioFileFormat.Type("Vorbis", "ogg");
+		} else if (name.equals("RAW")) {
+			at = StreamingAudioWriter.RAW;
 		} else {
 			try {
 				at = (AudioFileFormat.Type) AudioFileFormat.Type.class.getField(name).get(null);
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Writes audio to an output stream while it is being read, also for audio of unknown length such as the audio of a request
+ * which is still being synthesised. AudioSystem.write() cannot write WAVE files of unknown length, because the WAVE header
+ * contains the length of the data; this class writes a header with the maximum length instead, which players treat as "read
+ * until the end of the stream". In addition, the {@link #RAW} type writes headerless 16 bit PCM samples in network byte order
+ * (audio/L16).
+ */
+public class StreamingAudioWriter {
+	/**
+	 * Headerless 16 bit signed PCM, big-endian.
+	 */
+	public static final AudioFileFormat.Type RAW = new AudioFileFormat.Type("RAW", "raw");
+
+	private static final int UNKNOWN_LENGTH = 0xFFFFFFFF;
+	private static final int BUFFER_SIZE = 4096;
+
+	/**
+	 * Write the audio to the output stream in the given audio file format type. The data is flushed whenever it has been read
+	 * from the audio input stream, so that the receiver gets the audio as soon as it is available.
+	 * 
+	 * @param audio
+	 *            the audio, possibly of unknown length
+	 * @param type
+	 *            the audio file format type; WAVE and RAW are written by this class, other types by
+	 *            {@link AudioSystem#write(AudioInputStream, AudioFileFormat.Type, OutputStream)}.
+	 * @param out
+	 *            the output stream, which is not closed
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the audio cannot be read or written, or if it cannot be converted to PCM.
+	 */
+	public static long write(AudioInputStream audio, AudioFileFormat.Type type, OutputStream out) throws IOException {
+		if (type == RAW) {
+			return copy(toPCM16(audio, true), out);
+		} else if (type == AudioFileFormat.Type.WAVE && audio.getFrameLength() == AudioSystem.NOT_SPECIFIED) {
+			AudioInputStream pcm = toPCM16(audio, false);
+			writeWaveHeader(pcm.getFormat(), out);
+			return 44 + copy(pcm, out);
+		} else {
+			return AudioSystem.write(audio, type, out);
+		}
+	}
+
+	/**
+	 * Write a 44 byte WAVE header for 16 bit PCM data of unknown length.
+	 */
+	static void writeWaveHeader(AudioFormat format, OutputStream out) throws IOException {
+		int channels = format.getChannels();
+		int sampleRate = (int) format.getSampleRate();
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeBytes("RIFF");
+		header.writeInt(UNKNOWN_LENGTH);
+		header.writeBytes("WAVE");
+		header.writeBytes("fmt ");
+		header.writeInt(Integer.reverseBytes(16));
+		header.writeShort(Short.reverseBytes((short) 1)); // PCM
+		header.writeShort(Short.reverseBytes((short) channels));
+		header.writeInt(Integer.reverseBytes(sampleRate));
+		header.writeInt(Integer.reverseBytes(sampleRate * channels * 2));
+		header.writeShort(Short.reverseBytes((short) (channels * 2)));
+		header.writeShort(Short.reverseBytes((short) 16));
+		header.writeBytes("data");
+		header.writeInt(UNKNOWN_LENGTH);
+		header.flush();
+	}
+
+	/**
+	 * Convert the audio to 16 bit signed PCM with the given byte order, unless it is in that format already.
+	 */
+	static AudioInputStream toPCM16(AudioInputStream audio, boolean bigEndian) throws IOException {
+		AudioFormat format = audio.getFormat();
+		if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED && format.getSampleSizeInBits() == 16
+				&& format.isBigEndian() == bigEndian) {
+			return audio;
+		}
+		AudioFormat pcm = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, bigEndian);
+		try {
+			return AudioSystem.getAudioInputStream(pcm, audio);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Cannot convert audio from " + format + " to " + pcm, e);
+		}
+	}
+
+	private static long copy(AudioInputStream audio, OutputStream out) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		long total = 0;
+		int n;
+		while ((n = audio.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+			out.flush();
+			total += n;
+		}
+		return total;
+	}
+}
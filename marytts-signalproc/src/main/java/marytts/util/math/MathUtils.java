@@ -3862,6 +3862,10 @@ public class MathUtils {
 			return result;
 		}
 
+		// the cofactor expansion below takes factorial time
+		if (matrix.length > 3)
+			return determinantByLUDecomposition(matrix);
+
 		for (int i = 0; i < matrix[0].length; i++) {
 			double temp[][] = new double[matrix.length - 1][matrix[0].length - 1];
 			for (int j = 1; j < matrix.length; j++) {
@@ -3879,6 +3883,28 @@ public class MathUtils {
 		return result;
 	}
 
+	// Computes the determinant of a square matrix as the product of the diagonal of its LU decomposition
+	private static double determinantByLUDecomposition(double[][] matrix) {
+		int dim = matrix.length;
+		double[][] lu = new double[dim][];
+		for (int i = 0; i < dim; i++) {
+			lu[i] = matrix[i].clone();
+			boolean isZeroRow = true;
+			for (int j = 0; j < dim && isZeroRow; j++)
+				isZeroRow = lu[i][j] == 0.0;
+			if (isZeroRow)
+				return 0.0;
+		}
+
+		double[] d = new double[1];
+		luDecompose(lu, dim, new int[dim], d);
+		double det = d[0];
+		for (int i = 0; i < dim; i++)
+			det *= lu[i][i];
+
+		return det;
+	}
+
 	public static double[] random(int numSamples) {
 		double[] x = null;
 
@@ -0,0 +1,66 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.machinelearning;
+
+/**
+ * Measure the time per EM iteration of {@link GMMTrainer} on synthetic data, with the original implementation in separate
+ * passes over the data ({@link SeparatePassesGMMTrainer}) and with the sufficient statistics accumulated in one pass on one and
+ * on all available threads.
+ * <p>
+ * Usage: <code>GMMTrainerBenchmark [observations [dimension [components [iterations]]]]</code>
+ */
+public class GMMTrainerBenchmark {
+
+	private static GMM run(String name, GMMTrainer trainer, double[][] x, GMM initialGmm, int iterations) {
+		long start = System.nanoTime();
+		GMM gmm = trainer.expectationMaximization(x, initialGmm, iterations, iterations, true, 0.0001, 1e-4);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%-38s %8.3f s per iteration, log-likelihood %.6f%n", name, seconds / iterations,
+				trainer.logLikelihoods[trainer.logLikelihoods.length - 1]);
+		return gmm;
+	}
+
+	public static void main(String[] args) {
+		int numObservations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int dim = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		int totalComponents = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		System.err.println(numObservations + " observations, dimension " + dim + ", " + totalComponents + " components, "
+				+ iterations + " iterations, " + numThreads + " processors");
+
+		double[][] x = GMMTrainerTest.createObservations(totalComponents, numObservations, dim, 4711);
+		for (boolean isDiagonalCovariance : new boolean[] { true, false }) {
+			System.err.println(isDiagonalCovariance ? "Diagonal covariance:" : "Full covariance:");
+			GMM initialGmm = GMMTrainerTest.createInitialGmm(x, totalComponents, isDiagonalCovariance);
+
+			GMMTrainer trainer = new SeparatePassesGMMTrainer();
+			run("  separate passes:", trainer, x, initialGmm, iterations);
+
+			trainer = new GMMTrainer();
+			trainer.numThreads = 1;
+			run("  sufficient statistics, 1 thread:", trainer, x, initialGmm, iterations);
+
+			trainer = new GMMTrainer();
+			trainer.numThreads = numThreads;
+			run("  sufficient statistics, " + numThreads + " thread(s):", trainer, x, initialGmm, iterations);
+		}
+	}
+}
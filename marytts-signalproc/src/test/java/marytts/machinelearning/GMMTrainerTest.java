@@ -0,0 +1,101 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.machinelearning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class GMMTrainerTest {
+
+	/**
+	 * Create observations from numClusters Gaussian clusters with random means and standard deviations, with correlated
+	 * dimensions, in random order.
+	 */
+	static double[][] createObservations(int numClusters, int numObservations, int dim, long seed) {
+		Random random = new Random(seed);
+		double[][] means = new double[numClusters][dim];
+		double[][] deviations = new double[numClusters][dim];
+		for (int c = 0; c < numClusters; c++) {
+			for (int d = 0; d < dim; d++) {
+				means[c][d] = 20 * random.nextDouble();
+				deviations[c][d] = 0.5 + random.nextDouble();
+			}
+		}
+		double[][] x = new double[numObservations][dim];
+		for (int j = 0; j < numObservations; j++) {
+			int c = random.nextInt(numClusters);
+			double previous = 0;
+			for (int d = 0; d < dim; d++) {
+				double noise = deviations[c][d] * random.nextGaussian();
+				x[j][d] = means[c][d] + noise + 0.5 * previous;
+				previous = noise;
+			}
+		}
+		return x;
+	}
+
+	static GMM createInitialGmm(double[][] x, int totalComponents, boolean isDiagonalCovariance) {
+		GMMTrainerParams params = new GMMTrainerParams();
+		params.totalComponents = totalComponents;
+		params.isDiagonalCovariance = isDiagonalCovariance;
+		KMeansClusteringTrainer kmeansClusterer = new KMeansClusteringTrainer();
+		kmeansClusterer.train(x, new KMeansClusteringTrainerParams(params));
+		return new GMM(kmeansClusterer);
+	}
+
+	private void assertSameModel(GMM expected, GMM actual, double delta) {
+		assertArrayEquals(expected.weights, actual.weights, delta);
+		for (int k = 0; k < expected.totalComponents; k++) {
+			assertArrayEquals(expected.components[k].meanVector, actual.components[k].meanVector, delta);
+			for (int d = 0; d < expected.components[k].covMatrix.length; d++)
+				assertArrayEquals(expected.components[k].covMatrix[d], actual.components[k].covMatrix[d], delta);
+		}
+	}
+
+	private void compareWithSeparatePasses(boolean isDiagonalCovariance) {
+		double[][] x = createObservations(3, 3000, 4, 42);
+		GMM initialGmm = createInitialGmm(x, 3, isDiagonalCovariance);
+
+		GMMTrainer separatePasses = new SeparatePassesGMMTrainer();
+		GMM expected = separatePasses.expectationMaximization(x, initialGmm, 5, 20, true, 0.0001, 1e-4);
+
+		GMMTrainer trainer = new GMMTrainer();
+		trainer.numThreads = 3;
+		GMM actual = trainer.expectationMaximization(x, initialGmm, 5, 20, true, 0.0001, 1e-4);
+
+		assertSameModel(expected, actual, 1e-8);
+		assertEquals(separatePasses.logLikelihoods.length, trainer.logLikelihoods.length);
+		assertArrayEquals(separatePasses.logLikelihoods, trainer.logLikelihoods, 1e-6);
+	}
+
+	@Test
+	public void diagonalCovariance() {
+		compareWithSeparatePasses(true);
+	}
+
+	@Test
+	public void fullCovariance() {
+		compareWithSeparatePasses(false);
+	}
+}
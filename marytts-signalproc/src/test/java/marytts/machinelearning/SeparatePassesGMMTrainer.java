@@ -0,0 +1,239 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.machinelearning;
+
+import marytts.util.math.MathUtils;
+
+/**
+ * The original EM iterations of {@link GMMTrainer}, with separate passes over the data for the expectation step, the
+ * maximization step and the log-likelihood. Used as the reference in {@link GMMTrainerTest} and {@link GMMTrainerBenchmark}.
+ */
+public class SeparatePassesGMMTrainer extends GMMTrainer {
+
+	@Override
+	public GMM expectationMaximization(double[][] x, GMM initialGmm, int emMinimumIterations, int emMaximumIterations,
+			boolean isUpdateCovariances, double tinyLogLikelihoodChangePercent, double minimumCovarianceAllowed) {
+		int i, j, k;
+		int totalObservations = x.length;
+
+		GMM gmm = new GMM(initialGmm);
+
+		for (i = 0; i < totalObservations; i++)
+			assert x[i].length == gmm.featureDimension;
+
+		int numIterations = 1;
+
+		double error = 0.0;
+		double prevErr;
+
+		for (k = 0; k < gmm.totalComponents; k++)
+			gmm.weights[k] = 1.0f / gmm.totalComponents;
+
+		boolean bContinue = true;
+
+		double[] zDenum = new double[totalObservations];
+		double P_xj_tetak;
+
+		double[][] zNum = new double[totalObservations][gmm.totalComponents];
+		double[][] z = new double[totalObservations][gmm.totalComponents];
+
+		double[] num1 = new double[gmm.featureDimension];
+		double[] tmpMean = new double[gmm.featureDimension];
+
+		double[][] num2 = new double[gmm.featureDimension][gmm.featureDimension];
+
+		double tmpSum;
+		double mean_diff;
+		double denum;
+		double diffk;
+		double tmpZeroMean;
+		int d1, d2;
+		logLikelihoods = new double[emMaximumIterations];
+
+		long start, end;
+		start = end = 0;
+
+		// Main EM iteartions loop
+		while (bContinue) {
+			start = System.currentTimeMillis();
+			// Expectation step
+			// Find zjk's at time (s+1) using alphak's at time (s)
+			for (j = 0; j < totalObservations; j++) {
+				zDenum[j] = 0.0f;
+				for (k = 0; k < gmm.totalComponents; k++) {
+					// P(xj|teta_k)
+					if (gmm.isDiagonalCovariance)
+						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
+								gmm.components[k].getCovMatrixDiagonal(), gmm.components[k].getConstantTerm());
+					else
+						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
+								gmm.components[k].getInvCovMatrix(), gmm.components[k].getConstantTerm());
+
+					/*
+					 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
+					 */
+
+					zNum[j][k] = gmm.weights[k] * P_xj_tetak;
+					zDenum[j] = zDenum[j] + zNum[j][k];
+				}
+			}
+
+			// Find zjk's at time (s+1)
+			for (j = 0; j < totalObservations; j++) {
+				for (k = 0; k < gmm.totalComponents; k++)
+					z[j][k] = zNum[j][k] / zDenum[j];
+			}
+
+			// Now update alphak's to find their values at time (s+1)
+			for (k = 0; k < gmm.totalComponents; k++) {
+				tmpSum = 0.0;
+				for (j = 0; j < totalObservations; j++)
+					tmpSum += z[j][k];
+
+				gmm.weights[k] = tmpSum / totalObservations;
+			}
+
+			// Maximization step
+			// Find the model parameters at time (s+1) using zjk's at time (s+1)
+			mean_diff = 0.0;
+			for (k = 0; k < gmm.totalComponents; k++) {
+				for (d1 = 0; d1 < gmm.featureDimension; d1++) {
+					num1[d1] = 0.0f;
+					for (d2 = 0; d2 < gmm.featureDimension; d2++)
+						num2[d1][d2] = 0.0f;
+				}
+
+				denum = 0.0;
+
+				for (j = 0; j < totalObservations; j++) {
+					denum += z[j][k];
+
+					for (d1 = 0; d1 < gmm.featureDimension; d1++) {
+						num1[d1] += x[j][d1] * z[j][k];
+
+						tmpZeroMean = x[j][d1] - gmm.components[k].meanVector[d1];
+
+						for (d2 = 0; d2 < gmm.featureDimension; d2++)
+							num2[d1][d2] += z[j][k] * tmpZeroMean * (x[j][d2] - gmm.components[k].meanVector[d2]);
+					}
+				}
+
+				for (d1 = 0; d1 < gmm.featureDimension; d1++)
+					tmpMean[d1] = num1[d1] / denum;
+
+				diffk = 0.0f;
+				for (d1 = 0; d1 < gmm.featureDimension; d1++) {
+					tmpZeroMean = tmpMean[d1] - gmm.components[k].meanVector[d1];
+					diffk += tmpZeroMean * tmpZeroMean;
+				}
+				diffk = Math.sqrt(diffk);
+				mean_diff += diffk;
+
+				for (d1 = 0; d1 < gmm.featureDimension; d1++)
+					gmm.components[k].meanVector[d1] = tmpMean[d1];
+
+				if (isUpdateCovariances) {
+					if (gmm.isDiagonalCovariance) {
+						for (d1 = 0; d1 < gmm.featureDimension; d1++)
+							gmm.components[k].covMatrix[0][d1] = Math.max(num2[d1][d1] / denum, minimumCovarianceAllowed);
+					} else {
+						for (d1 = 0; d1 < gmm.featureDimension; d1++) {
+							for (d2 = 0; d2 < gmm.featureDimension; d2++)
+								gmm.components[k].covMatrix[d1][d2] = Math.max(num2[d1][d2] / denum, minimumCovarianceAllowed);
+						}
+					}
+
+					gmm.components[k].setDerivedValues();
+				}
+			}
+
+			if (numIterations == 1)
+				error = mean_diff;
+			else {
+				prevErr = error;
+				error = mean_diff;
+			}
+
+			logLikelihoods[numIterations - 1] = 0.0;
+			if (gmm.isDiagonalCovariance) {
+				for (j = 0; j < totalObservations; j++) {
+					double tmp = 0.0;
+					for (k = 0; k < gmm.totalComponents; k++) {
+						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
+								gmm.components[k].getCovMatrixDiagonal(), gmm.components[k].getConstantTerm());
+
+						/*
+						 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
+						 */
+
+						tmp += gmm.weights[k] * P_xj_tetak;
+					}
+
+					logLikelihoods[numIterations - 1] += Math.log(tmp);
+				}
+			} else {
+				for (j = 0; j < totalObservations; j++) {
+					double tmp = 0.0;
+					for (k = 0; k < gmm.totalComponents; k++) {
+						P_xj_tetak = MathUtils.getGaussianPdfValue(x[j], gmm.components[k].meanVector,
+								gmm.components[k].getInvCovMatrix(), gmm.components[k].getConstantTerm());
+
+						/*
+						 * if (P_xj_tetak<MathUtils.TINY_PROBABILITY) P_xj_tetak=MathUtils.TINY_PROBABILITY;
+						 */
+
+						tmp += gmm.weights[k] * P_xj_tetak;
+					}
+
+					logLikelihoods[numIterations - 1] += Math.log(tmp);
+				}
+			}
+
+			end = System.currentTimeMillis();
+
+			System.out.println("For " + String.valueOf(gmm.totalComponents) + " mixes - EM iteration no: "
+					+ String.valueOf(numIterations) + " with avg. difference in means " + String.valueOf(error)
+					+ " log-likelihood=" + String.valueOf(logLikelihoods[numIterations - 1]) + " in "
+					+ String.valueOf((end - start) / 1000.0) + " sec");
+
+			// Force iterations to stop if maximum number of iterations has been reached
+			if (numIterations + 1 > emMaximumIterations)
+				break;
+
+			// Force iterations to stop if minimum number of iterations has been reached AND total log likelihood does not change
+			// much
+			if (numIterations > emMinimumIterations
+					&& logLikelihoods[numIterations - 1] - logLikelihoods[numIterations - 2] < Math
+							.abs(logLikelihoods[numIterations - 1] / 100 * tinyLogLikelihoodChangePercent))
+				break;
+
+			numIterations++;
+		}
+
+		double[] tmpLogLikelihoods = new double[numIterations - 1];
+		System.arraycopy(logLikelihoods, 0, tmpLogLikelihoods, 0, numIterations - 1);
+		logLikelihoods = new double[numIterations - 1];
+		System.arraycopy(tmpLogLikelihoods, 0, logLikelihoods, 0, numIterations - 1);
+
+		System.out.println("GMM training completed...");
+
+		return gmm;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.signalproc.sinusoidal.hntm.synthesis;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import marytts.signalproc.sinusoidal.hntm.analysis.FrameHarmonicPart;
+import marytts.signalproc.sinusoidal.hntm.analysis.HntmAnalyzerParams;
+import marytts.signalproc.sinusoidal.hntm.analysis.HntmSpeechFrame;
+import marytts.signalproc.sinusoidal.hntm.analysis.HntmSpeechSignal;
+import marytts.util.math.ComplexNumber;
+
+import org.junit.Test;
+
+public class HarmonicPartLinearPhaseInterpolatorSynthesizerTest {
+
+	/**
+	 * A signal with random harmonic amplitudes and f0 values, and with voiced and unvoiced stretches.
+	 */
+	private static HntmSpeechSignal createSignal(long seed, float durationInSeconds, float frameShiftInSeconds) {
+		Random random = new Random(seed);
+		int numFrames = (int) (durationInSeconds / frameShiftInSeconds) - 1;
+		HntmSpeechSignal signal = new HntmSpeechSignal(numFrames, 16000, durationInSeconds);
+		boolean voiced = true;
+		for (int i = 0; i < numFrames; i++) {
+			HntmSpeechFrame frame = signal.frames[i];
+			frame.tAnalysisInSeconds = (i + 1) * frameShiftInSeconds;
+			if (random.nextDouble() < 0.1)
+				voiced = !voiced;
+			frame.h = new FrameHarmonicPart();
+			if (voiced) {
+				frame.f0InHz = 100 + 150 * random.nextFloat();
+				frame.h.complexAmps = new ComplexNumber[10 + random.nextInt(30)];
+				for (int k = 0; k < frame.h.complexAmps.length; k++)
+					frame.h.complexAmps[k] = new ComplexNumber(1000 * random.nextGaussian() / (k + 1), 1000 * random.nextGaussian()
+							/ (k + 1));
+			}
+		}
+		return signal;
+	}
+
+	private static HntmSynthesizerParams synthesisParams(boolean overlapping, boolean keepAllTracks) {
+		HntmSynthesizerParams synthesisParams = new HntmSynthesizerParams();
+		synthesisParams.overlappingHarmonicPartSynthesis = overlapping;
+		// the separate tracks are kept if they are to be written to files; they are not written if the reference file does not
+		// exist
+		synthesisParams.writeSeparateHarmonicTracksToOutputs = keepAllTracks;
+		return synthesisParams;
+	}
+
+	private static double[] synthesize(HntmSpeechSignal signal, boolean overlapping, boolean keepAllTracks) {
+		HarmonicPartLinearPhaseInterpolatorSynthesizer synthesizer = new HarmonicPartLinearPhaseInterpolatorSynthesizer(signal,
+				new HntmAnalyzerParams(), synthesisParams(overlapping, keepAllTracks), keepAllTracks ? "nonexistent.wav" : null);
+		return synthesizer.synthesizeAll();
+	}
+
+	private static double[] synthesizeWithCosine(HntmSpeechSignal signal, boolean overlapping) {
+		CosineHarmonicPartSynthesizer synthesizer = new CosineHarmonicPartSynthesizer(signal, new HntmAnalyzerParams(),
+				synthesisParams(overlapping, false));
+		return synthesizer.synthesizeAll();
+	}
+
+	private static double snr(double[] reference, double[] signal) {
+		double signalEnergy = 0.0;
+		double errorEnergy = 0.0;
+		for (int n = 0; n < reference.length; n++) {
+			signalEnergy += reference[n] * reference[n];
+			errorEnergy += (reference[n] - signal[n]) * (reference[n] - signal[n]);
+		}
+		return 10 * Math.log10(signalEnergy / errorEnergy);
+	}
+
+	@Test
+	public void trackBuffersDoNotChangeOutput() {
+		for (boolean overlapping : new boolean[] { false, true }) {
+			HntmSpeechSignal signal = createSignal(1, 1.0f, 0.007f);
+			double[] allTracks = synthesize(signal, overlapping, true);
+			double[] bufferedTracks = synthesize(signal, overlapping, false);
+			assertArrayEquals(allTracks, bufferedTracks, 0.0);
+		}
+	}
+
+	@Test
+	public void recursiveOscillatorMatchesCosine() {
+		for (boolean overlapping : new boolean[] { false, true }) {
+			for (long seed = 1; seed <= 3; seed++) {
+				HntmSpeechSignal signal = createSignal(seed, 1.0f, 0.005f + 0.001f * seed);
+				double[] cosine = synthesizeWithCosine(signal, overlapping);
+				double[] oscillator = synthesize(signal, overlapping, false);
+				assertEquals(cosine.length, oscillator.length);
+				// The remaining difference is mostly due to the single precision of the sample times used for the cosine
+				double snr = snr(cosine, oscillator);
+				assertTrue("SNR " + snr + " dB", snr > 70);
+			}
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.data.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.Test;
+
+public class StreamingAudioWriterTest {
+	private static final byte[] SAMPLES = new byte[] { 1, 2, 3, 4, 5, 6 };
+
+	private AudioInputStream audio(long frameLength) {
+		AudioFormat format = new AudioFormat(16000, 16, 1, true, false);
+		return new AudioInputStream(new ByteArrayInputStream(SAMPLES), format, frameLength);
+	}
+
+	@Test
+	public void raw() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(6, StreamingAudioWriter.write(audio(3), StreamingAudioWriter.RAW, out));
+		// converted to big-endian
+		assertArrayEquals(new byte[] { 2, 1, 4, 3, 6, 5 }, out.toByteArray());
+		assertSame(StreamingAudioWriter.RAW, MaryAudioUtils.getAudioFileFormatType("RAW"));
+	}
+
+	@Test
+	public void waveOfUnknownLength() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(50, StreamingAudioWriter.write(audio(AudioSystem.NOT_SPECIFIED), AudioFileFormat.Type.WAVE, out));
+		byte[] wave = out.toByteArray();
+		assertEquals(50, wave.length);
+		ByteBuffer header = ByteBuffer.wrap(wave).order(ByteOrder.LITTLE_ENDIAN);
+		assertEquals("RIFF", new String(wave, 0, 4, "US-ASCII"));
+		assertEquals(-1, header.getInt(4));
+		assertEquals("WAVEfmt ", new String(wave, 8, 8, "US-ASCII"));
+		assertEquals(16, header.getInt(16));
+		assertEquals(1, header.getShort(20));
+		assertEquals(1, header.getShort(22));
+		assertEquals(16000, header.getInt(24));
+		assertEquals(32000, header.getInt(28));
+		assertEquals(2, header.getShort(32));
+		assertEquals(16, header.getShort(34));
+		assertEquals("data", new String(wave, 36, 4, "US-ASCII"));
+		assertEquals(-1, header.getInt(40));
+		assertArrayEquals(SAMPLES, Arrays.copyOfRange(wave, 44, 50));
+	}
+
+	@Test
+	public void waveOfKnownLength() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingAudioWriter.write(audio(3), AudioFileFormat.Type.WAVE, out);
+		byte[] wave = out.toByteArray();
+		AudioInputStream read = AudioSystem.getAudioInputStream(new ByteArrayInputStream(wave));
+		assertEquals(3, read.getFrameLength());
+		assertArrayEquals(SAMPLES, Arrays.copyOfRange(wave, wave.length - 6, wave.length));
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.util.math;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MathUtilsTest {
+
+	@Test
+	public void determinant() {
+		assertEquals(-2.0, MathUtils.determinant(new double[][] { { 1, 2 }, { 3, 4 } }), 1e-12);
+		assertEquals(-32.0, MathUtils.determinant(new double[][] { { 2, 0, 1, 3 }, { 1, 1, 0, 2 }, { 0, 3, 1, 1 },
+				{ 4, 1, 2, 0 } }), 1e-9);
+		assertEquals(-127.0, MathUtils.determinant(new double[][] { { 0, 2, 1, 0, 1 }, { 3, 0, 0, 1, 2 }, { 1, 1, 4, 0, 0 },
+				{ 0, 0, 1, 5, 1 }, { 2, 1, 0, 0, 3 } }), 1e-9);
+		assertEquals(0.0, MathUtils.determinant(new double[][] { { 1, 2, 3, 4 }, { 2, 4, 6, 8 }, { 0, 1, 0, 1 },
+				{ 1, 0, 0, 1 } }), 1e-9);
+		assertEquals(0.0, MathUtils.determinant(new double[][] { { 1, 2, 3, 4 }, { 0, 0, 0, 0 }, { 0, 1, 0, 1 },
+				{ 1, 0, 0, 1 } }), 0.0);
+	}
+}
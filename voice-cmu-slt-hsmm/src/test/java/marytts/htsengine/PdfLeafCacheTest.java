@@ -0,0 +1,184 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.htsengine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import marytts.cart.CART;
+import marytts.cart.DecisionNode;
+import marytts.cart.Node;
+import marytts.features.FeatureDefinition;
+import marytts.features.FeatureVector;
+import marytts.util.FeatureUtils;
+import marytts.util.io.FileUtils;
+import marytts.util.io.PropertiesAccessor;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compare the leaf pdfs found for the contexts of the example sentence of the cmu-slt-hsmm voice with and without caching.
+ */
+public class PdfLeafCacheTest {
+	private static final String VOICE = "cmu-slt-hsmm";
+
+	private static HMMData cached;
+	private static HMMData uncached;
+	private static FeatureDefinition featureDefinition;
+	private static List<FeatureVector> contexts;
+
+	private static HMMData loadVoice(int modelCacheSize) throws Exception {
+		Properties props = new Properties();
+		InputStream config = PdfLeafCacheTest.class.getResourceAsStream("/marytts/voice/CmuSltHsmm/voice.config");
+		props.load(config);
+		config.close();
+		props.setProperty("voice." + VOICE + ".modelCacheSize", String.valueOf(modelCacheSize));
+		HMMData htsData = new HMMData();
+		htsData.initHMMData(new PropertiesAccessor(props), VOICE);
+		return htsData;
+	}
+
+	@BeforeClass
+	public static void loadVoices() throws Exception {
+		cached = loadVoice(100);
+		uncached = loadVoice(0);
+		featureDefinition = cached.getFeatureDefinition();
+		String pfeats = FileUtils.getStreamAsString(
+				PdfLeafCacheTest.class.getResourceAsStream("/marytts/voice/CmuSltHsmm/cmu_us_arctic_slt_b0487.pfeats"), "UTF-8");
+		// the example sentence, and variants of it in which random byte features have other values
+		contexts = new ArrayList<FeatureVector>(Arrays.asList(FeatureUtils.readFeatureVectors(pfeats)));
+		Random random = new Random(4711);
+		int numSentenceContexts = contexts.size();
+		for (int i = 0; i < 20 * numSentenceContexts; i++) {
+			byte[] features = contexts.get(random.nextInt(numSentenceContexts)).getByteValuedDiscreteFeatures().clone();
+			for (int n = random.nextInt(5); n >= 0; n--) {
+				int f = random.nextInt(features.length);
+				features[f] = (byte) random.nextInt(featureDefinition.getNumberOfValues(f));
+			}
+			contexts.add(withByteFeatures(features));
+		}
+	}
+
+	private static FeatureVector withByteFeatures(byte[] features) {
+		return featureDefinition.toFeatureVector(0, features, new short[0], new float[0]);
+	}
+
+	private static void collectFeatureIndices(Node node, Set<Integer> queried) {
+		if (node instanceof DecisionNode) {
+			DecisionNode decision = (DecisionNode) node;
+			queried.add(decision.getFeatureIndex());
+			for (int i = 0; i < decision.getNumberOfDaugthers(); i++) {
+				collectFeatureIndices(decision.getDaughter(i), queried);
+			}
+		}
+	}
+
+	private static Set<Integer> queriedFeatures(CART[] trees) {
+		Set<Integer> queried = new TreeSet<Integer>();
+		for (CART tree : trees) {
+			collectFeatureIndices(tree.getRootNode(), queried);
+		}
+		return queried;
+	}
+
+	private static HTSModel searchDur(HMMData htsData, FeatureVector fv) {
+		HTSModel m = new HTSModel(htsData.getCartTreeSet().getNumStates());
+		htsData.getCartTreeSet().searchDurInCartTree(m, fv, htsData, 0.0);
+		return m;
+	}
+
+	private static HTSModel searchLf0(HMMData htsData, FeatureVector fv) {
+		HTSModel m = new HTSModel(htsData.getCartTreeSet().getNumStates());
+		htsData.getCartTreeSet().searchLf0InCartTree(m, fv, featureDefinition, 0.5);
+		return m;
+	}
+
+	private static void assertSameDur(String context, HTSModel expected, HTSModel actual, int numStates) {
+		for (int s = 0; s < numStates; s++) {
+			assertEquals(context, expected.getDur(s), actual.getDur(s));
+		}
+		assertEquals(context, expected.getDurError(), actual.getDurError(), 0.0);
+	}
+
+	private static void assertSameLf0(String context, HTSModel expected, HTSModel actual, int numStates, int vsize) {
+		for (int s = 0; s < numStates; s++) {
+			assertEquals(context, expected.getVoiced(s), actual.getVoiced(s));
+			for (int j = 0; j < vsize; j++) {
+				assertEquals(context, expected.getLf0Mean(s, j), actual.getLf0Mean(s, j), 0.0);
+				assertEquals(context, expected.getLf0Variance(s, j), actual.getLf0Variance(s, j), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void cachedLookupsFindSamePdfs() {
+		CartTreeSet cachedTrees = cached.getCartTreeSet();
+		int numStates = cachedTrees.getNumStates();
+		int lf0Size = cachedTrees.getLf0Stream();
+		// twice, so that the second round is answered from the cache as far as it holds the contexts
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < contexts.size(); i++) {
+				FeatureVector fv = contexts.get(i);
+				String context = "context " + i + " in round " + round;
+				assertSameDur(context, searchDur(uncached, fv), searchDur(cached, fv), numStates);
+				assertSameLf0(context, searchLf0(uncached, fv), searchLf0(cached, fv), numStates, lf0Size);
+			}
+		}
+		assertTrue(cachedTrees.getCache(HMMData.FeatureType.DUR).getHitCount() > 0);
+		assertTrue(cachedTrees.getCache(HMMData.FeatureType.LF0).getHitCount() > 0);
+		assertEquals(0, uncached.getCartTreeSet().getCache(HMMData.FeatureType.LF0).getHitCount());
+	}
+
+	@Test
+	public void contextsDifferingInUnqueriedFeaturesShareEntry() {
+		CartTreeSet cachedTrees = cached.getCartTreeSet();
+		int numStates = cachedTrees.getNumStates();
+		int lf0Size = cachedTrees.getLf0Stream();
+		Set<Integer> queried = queriedFeatures(cachedTrees.getTrees(HMMData.FeatureType.LF0));
+		assertTrue(queried.size() < featureDefinition.getNumberOfByteFeatures());
+		PdfLeafCache lf0Cache = cachedTrees.getCache(HMMData.FeatureType.LF0);
+		for (int i = 0; i < contexts.size(); i += 7) {
+			FeatureVector fv = contexts.get(i);
+			searchLf0(cached, fv);
+			byte[] features = fv.getByteValuedDiscreteFeatures().clone();
+			for (int f = 0; f < features.length; f++) {
+				if (!queried.contains(f)) {
+					features[f] = (byte) ((features[f] + 1) % featureDefinition.getNumberOfValues(f));
+				}
+			}
+			FeatureVector other = withByteFeatures(features);
+			long hits = lf0Cache.getHitCount();
+			HTSModel fromCache = searchLf0(cached, other);
+			assertEquals("context " + i, hits + 1, lf0Cache.getHitCount());
+			assertSameLf0("context " + i, searchLf0(uncached, other), fromCache, numStates, lf0Size);
+		}
+	}
+}
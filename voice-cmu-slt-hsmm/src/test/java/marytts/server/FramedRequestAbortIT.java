@@ -0,0 +1,78 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataOutputStream;
+import java.net.Socket;
+
+import marytts.util.MaryRuntimeUtils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FramedRequestAbortIT {
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		MaryRuntimeUtils.ensureMaryStarted();
+	}
+
+	private static void awaitWaiting(RequestScheduler scheduler, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (scheduler.getWaiting() != expected && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, scheduler.getWaiting());
+	}
+
+	@Test
+	public void closingConnectionAbortsWaitingRequest() throws Exception {
+		NioMaryServer server = new NioMaryServer(0);
+		Thread t = new Thread(server);
+		t.setDaemon(true);
+		t.start();
+		RequestScheduler scheduler = RequestScheduler.getInstance();
+		int admitted = 0;
+		try {
+			// keep the request waiting for admission
+			for (; admitted < scheduler.getMaxConcurrent(); admitted++) {
+				scheduler.admit(null, RequestScheduler.Priority.INTERACTIVE, 1);
+			}
+			Socket socket = new Socket("localhost", server.getLocalPort());
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.write("MARY FRAMED IN=TEXT OUT=AUDIO LOCALE=en_US AUDIO=WAVE\n".getBytes("UTF-8"));
+			byte[] text = "Hello world".getBytes("UTF-8");
+			out.writeInt(text.length);
+			out.write(text);
+			out.flush();
+			awaitWaiting(scheduler, 1);
+			socket.close();
+			awaitWaiting(scheduler, 0);
+			assertEquals(admitted, scheduler.getRunning());
+		} finally {
+			for (; admitted > 0; admitted--) {
+				scheduler.release();
+			}
+			server.shutdown();
+		}
+	}
+}
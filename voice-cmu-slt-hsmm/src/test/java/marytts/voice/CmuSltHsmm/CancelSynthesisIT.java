@@ -0,0 +1,99 @@
+/**
+ * Copyright 2000-2006 DFKI GmbH.
+ * All Rights Reserved.  Use is subject to license terms.
+ *
+ * This file is part of MARY TTS.
+ *
+ * MARY TTS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package marytts.voice.CmuSltHsmm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import marytts.datatypes.MaryDataType;
+import marytts.exceptions.RequestCancelledException;
+import marytts.modules.HTSEngine;
+import marytts.modules.synthesis.Voice;
+import marytts.server.Request;
+import marytts.util.MaryRuntimeUtils;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CancelSynthesisIT {
+
+	/**
+	 * A request which is cancelled as soon as the HMM synthesis checks for it.
+	 */
+	private static class CancelledInSynthesis extends Request {
+		private boolean cancelledInSynthesis;
+
+		CancelledInSynthesis(Voice voice) {
+			super(MaryDataType.PARTSOFSPEECH, MaryDataType.AUDIO, Locale.US, voice, null, null, 1, new AudioFileFormat(
+					AudioFileFormat.Type.WAVE, voice.dbAudioFormat(), AudioSystem.NOT_SPECIFIED));
+		}
+
+		@Override
+		public void checkCancelled() throws RequestCancelledException {
+			for (StackTraceElement caller : new Throwable().getStackTrace()) {
+				if (caller.getClassName().equals(HTSEngine.class.getName())) {
+					cancelledInSynthesis = true;
+					throw new RequestCancelledException("Request 1 has been aborted");
+				}
+			}
+		}
+	}
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		MaryRuntimeUtils.ensureMaryStarted();
+	}
+
+	@Test
+	public void cancellationIsNotWrapped() throws Exception {
+		CancelledInSynthesis request = new CancelledInSynthesis(Voice.getVoice(new Config().getName()));
+		request.setInputData("<maryxml xmlns=\"http://mary.dfki.de/2002/MaryXML\" version=\"0.5\" xml:lang=\"en-US\">"
+				+ "<p><s><t pos=\"UH\">Hello</t><t pos=\"NN\">world</t></s></p></maryxml>");
+		try {
+			request.process();
+			fail("expected the request to be cancelled");
+		} catch (RequestCancelledException e) {
+			assertEquals("Request 1 has been aborted", e.getMessage());
+		}
+		assertTrue(request.cancelledInSynthesis);
+		// a streaming reader sees the end of the audio instead of waiting forever
+		final AudioInputStream audio = request.getAudio();
+		FutureTask<Integer> read = new FutureTask<Integer>(new Callable<Integer>() {
+			public Integer call() throws IOException {
+				return audio.read(new byte[4096]);
+			}
+		});
+		Thread reader = new Thread(read);
+		reader.setDaemon(true);
+		reader.start();
+		assertEquals(-1, read.get(10, TimeUnit.SECONDS).intValue());
+	}
+}